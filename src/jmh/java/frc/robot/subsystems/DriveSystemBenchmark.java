@@ -0,0 +1,88 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.DriveIO.DriveIOInputs;
+
+import static frc.robot.Constants.DriveConstants.*;
+
+/**
+ * The work {@link DriveSystem} does every loop: field oriented mecanum mixing for the drive command, and
+ * {@link DriveSystem#periodic()} integrating a loop's worth of odometry samples from a stub {@link DriveIO}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriveSystemBenchmark {
+
+  private final double[] outputs = new double[4];
+  private DriveSystem driveSystem;
+
+  private double angle;
+
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    driveSystem = new DriveSystem(new TurningDriveIO());
+    angle = 0;
+  }
+
+  @Benchmark
+  public double[] fieldOrientedMix() {
+    angle += 1.3;
+    DriveSystem.mixCartesian(0.6, -0.4, 0.25, angle, outputs);
+    return outputs;
+  }
+
+  @Benchmark
+  public TimestampedPose periodic() {
+    InputSnapshot.getInstance().update();
+    driveSystem.periodic();
+    return driveSystem.getTimestampedPose();
+  }
+
+  /** Drives in a slow arc, with a loop's worth of odometry samples each time the inputs are read. */
+  private static class TurningDriveIO implements DriveIO {
+    private final int samplesPerLoop = (int) Math.round(TimedRobot.kDefaultPeriod / ODOMETRY_PERIOD);
+    private double time = 0;
+    private double angle = 0;
+
+    @Override
+    public void updateInputs(DriveIOInputs inputs) {
+      for (int sample = 0; sample < samplesPerLoop; sample++) {
+        time += ODOMETRY_PERIOD;
+        angle += 0.1;
+        int offset = sample * DriveIOInputs.ODOMETRY_SAMPLE_SIZE;
+        inputs.odometrySamples[offset] = time;
+        inputs.odometrySamples[offset + 1] = angle;
+        inputs.odometrySamples[offset + 2] = 1.2;
+        inputs.odometrySamples[offset + 3] = 0.8;
+        inputs.odometrySamples[offset + 4] = 1.2;
+        inputs.odometrySamples[offset + 5] = 0.8;
+      }
+      inputs.odometrySampleCount = samplesPerLoop;
+      inputs.gyroAngle = angle;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The shot map lookup {@link OuttakeSubsystem#shootAtDistance} does every loop while aiming, over the tuned range
+ * and past both ends. Run with -prof gc to check that it allocates nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShotMapBenchmark {
+
+  private ShotMap shotMap;
+  private double distance;
+
+  @Setup
+  public void setup() {
+    shotMap = new ShotMap(Path.of("src/main/deploy", ShotMap.FILE));
+    distance = 0;
+  }
+
+  @Benchmark
+  public double getRPM() {
+    distance += 0.037;
+    if (distance > 7) {
+      distance = 1;
+    }
+    return shotMap.getRPM(distance);
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.telemetry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One loop of {@link SignalLogger#endLoop()} with every signal changing, the worst case for the robot loop.
+ * Divide by the signal count for the cost per sample. The writer thread runs as it would on the robot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalLoggerBenchmark {
+
+  @Param({"100", "500"})
+  private int signalCount;
+
+  private SignalLogger logger;
+  private double value = 0;
+  private double timestamp = 0;
+
+  @Setup
+  public void setup() throws IOException {
+    logger = new SignalLogger(Files.createTempDirectory("signal-logger"));
+    for (int i = 0; i < signalCount; i++) {
+      int offset = i;
+      logger.addDouble("Signal " + i, () -> value + offset);
+    }
+    logger.start();
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (logger.getDroppedFrames() > 0) {
+      System.out.println("Dropped frames: " + logger.getDroppedFrames());
+    }
+  }
+
+  @Benchmark
+  public void endLoop() {
+    value += 1;
+    timestamp += 0.02;
+    logger.endLoop(timestamp);
+  }
+}
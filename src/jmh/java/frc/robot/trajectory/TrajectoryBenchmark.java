@@ -0,0 +1,143 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.trajectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.controller.HolonomicDriveController;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.MecanumDriveWheelSpeeds;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.math.trajectory.TrajectoryUtil;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+
+import static frc.robot.Constants.DriveConstants.*;
+
+/**
+ * Trajectory work done during autos: generating the paths DriveToCargo and DriveToHub plan at runtime,
+ * getting the precomputed paths ready by loading their binary files, parsing the equivalent PathWeaver
+ * JSON or generating them from scratch, and the per-loop sampling and control MecanumControllerCommand does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrajectoryBenchmark {
+
+  @Param({AutoPaths.TAXI, AutoPaths.TARMAC_TO_TERMINAL, AutoPaths.TERMINAL_TO_TARMAC})
+  public String path;
+
+  private TrajectoryConfig config;
+  private Pose2d start;
+  private Transform2d toCargo;
+  private Transform2d toHub;
+
+  private Trajectory trajectory;
+  private Path file;
+  private String json;
+  private HolonomicDriveController controller;
+  private double time;
+
+  @Setup
+  public void setup() throws IOException {
+    config = new TrajectoryConfig(MAX_SPEED, MAX_ACCELERATION);
+    start = new Pose2d(5.0, 2.0, Rotation2d.fromDegrees(30));
+
+    // Typical movements seen by vision: a ball a couple of meters off to the side, and the hub across the tarmac
+    toCargo = new Transform2d(new Translation2d(2.0, 0.6), Rotation2d.fromDegrees(15));
+    toHub = new Transform2d(new Translation2d(3.5, -1.0), Rotation2d.fromDegrees(-20));
+
+    trajectory = AutoPaths.generate(path);
+    file = Files.createTempFile(path, TrajectoryFile.EXTENSION);
+    TrajectoryFile.write(trajectory, file);
+    json = TrajectoryUtil.serializeTrajectory(trajectory);
+    controller = new HolonomicDriveController(
+      new PIDController(1, 0, 0),
+      new PIDController(1, 0, 0),
+      new ProfiledPIDController(1, 0, 0, new TrapezoidProfile.Constraints(MAX_ROTATION_SPEED, MAX_ROTATION_ACCELERATION))
+    );
+    time = 0;
+  }
+
+  @TearDown
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public Trajectory generateAutoPath() {
+    return AutoPaths.generate(path);
+  }
+
+  /**
+   * How the robot gets the precomputed paths ready at startup.
+   */
+  @Benchmark
+  public Trajectory loadAutoPath() throws IOException {
+    return TrajectoryFile.read(file);
+  }
+
+  /**
+   * The same path from PathWeaver JSON, for comparison.
+   */
+  @Benchmark
+  public Trajectory parseAutoPathJson() {
+    return TrajectoryUtil.deserializeTrajectory(json);
+  }
+
+  @Benchmark
+  public Trajectory generateDriveToCargo() {
+    return TrajectoryGenerator.generateTrajectory(start, List.of(), start.plus(toCargo), config);
+  }
+
+  @Benchmark
+  public Trajectory generateDriveToHub() {
+    return TrajectoryGenerator.generateTrajectory(start, List.of(), start.plus(toHub), config);
+  }
+
+  /**
+   * What MecanumControllerCommand does each loop: sample, run the holonomic controller, and convert to wheel speeds.
+   */
+  @Benchmark
+  public MecanumDriveWheelSpeeds followerLoop() {
+    time += 0.02;
+    if (time > trajectory.getTotalTimeSeconds()) {
+      time = 0;
+    }
+
+    Trajectory.State desired = trajectory.sample(time);
+    ChassisSpeeds speeds = controller.calculate(desired.poseMeters, desired, desired.poseMeters.getRotation());
+    MecanumDriveWheelSpeeds wheelSpeeds = KINEMATICS.toWheelSpeeds(speeds);
+    wheelSpeeds.desaturate(MAX_SPEED);
+    return wheelSpeeds;
+  }
+}
@@ -0,0 +1,98 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static frc.robot.Constants.VisionConstants.*;
+
+/**
+ * Cost of one frame of {@link MultiTargetTracker}, once its tracks are established. <br/>
+ *
+ * Every piece of cargo rolls in a straight line with a little measurement noise, and the detections come in a
+ * different order each frame, so the assignment has to untangle them. The frames cycle through a precomputed
+ * recording, so only the tracker's own work is measured. Run with -prof gc to check that a frame allocates nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiTargetTrackerBenchmark {
+
+  /** Frames in the recording, at PhotonVision's 30 fps. */
+  private static final int FRAMES = 64;
+  private static final double FRAME_PERIOD = 1.0 / 30;
+
+  @Param({"5", "20"})
+  private int detections;
+
+  private final double[][] frameX = new double[FRAMES][];
+  private final double[][] frameY = new double[FRAMES][];
+
+  private MultiTargetTracker tracker;
+  private int frame;
+  private double timestamp;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(342);
+
+    double[] startX = new double[detections];
+    double[] startY = new double[detections];
+    double[] velocityX = new double[detections];
+    double[] velocityY = new double[detections];
+    for (int j = 0; j < detections; j++) {
+      // Spread out on a grid so the gate can tell them apart
+      startX[j] = 1.0 + (j % 5) * 1.5;
+      startY[j] = 1.0 + (j / 5) * 1.5;
+      velocityX[j] = random.nextDouble() - 0.5;
+      velocityY[j] = random.nextDouble() - 0.5;
+    }
+
+    for (int f = 0; f < FRAMES; f++) {
+      frameX[f] = new double[detections];
+      frameY[f] = new double[detections];
+
+      // Rotate the order the cargo is reported in
+      for (int j = 0; j < detections; j++) {
+        int k = (j + f) % detections;
+        // Bounce back and forth so the recording can loop without a jump
+        double t = (f < FRAMES / 2 ? f : FRAMES - f) * FRAME_PERIOD;
+        frameX[f][k] = startX[j] + velocityX[j] * t + random.nextGaussian() * CARGO_POSITION_STD_DEV;
+        frameY[f][k] = startY[j] + velocityY[j] * t + random.nextGaussian() * CARGO_POSITION_STD_DEV;
+      }
+    }
+
+    tracker = new MultiTargetTracker(CARGO_MAX_TRACKS, detections);
+    frame = 0;
+    timestamp = 0;
+    for (int f = 0; f < FRAMES; f++) {
+      update();
+    }
+  }
+
+  @Benchmark
+  public int update() {
+    tracker.update(timestamp, frameX[frame], frameY[frame], detections);
+    frame = (frame + 1) % FRAMES;
+    timestamp += FRAME_PERIOD;
+    return tracker.getTrackCount();
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+import org.photonvision.targeting.TargetCorner;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import frc.robot.vision.PhotonVisionIO.PhotonVisionIOInputs;
+
+/**
+ * Decoding cost of PhotonVision results per loop, leaving out the NetworkTables read. <br/>
+ *
+ * {@link #perCall()} is what {@link PhotonVision} used to do: hasTargets(), getHorizontalOffset(),
+ * getVerticalOffset() and transformToTarget() each called getLatestResult(), which decoded a new result.
+ * {@link #perFrame()} is {@link PhotonResultDecoder} decoding once into reused inputs, which only happens on loops
+ * where a new result has arrived.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhotonResultDecoderBenchmark {
+
+  @Param({"1", "4"})
+  private int targetCount;
+
+  private byte[] data;
+
+  private final PhotonResultDecoder decoder = new PhotonResultDecoder();
+  private final PhotonVisionIOInputs inputs = new PhotonVisionIOInputs();
+
+  @Setup
+  public void setup() {
+    List<PhotonTrackedTarget> targets = new ArrayList<>();
+    for (int i = 0; i < targetCount; i++) {
+      List<TargetCorner> corners = List.of(
+        new TargetCorner(100, 100), new TargetCorner(140, 100), new TargetCorner(140, 140), new TargetCorner(100, 140)
+      );
+      targets.add(new PhotonTrackedTarget(5.0 * i, -3.0, 2.5, 0.0, new Transform2d(1.0 + i, 0.5, Rotation2d.fromDegrees(10)), corners));
+    }
+
+    PhotonPipelineResult result = new PhotonPipelineResult(22.0, targets);
+    data = result.populatePacket(new Packet(result.getPacketSize())).getData();
+  }
+
+  @Benchmark
+  public double perCall() {
+    double sum = 0;
+    for (int call = 0; call < 4; call++) {
+      PhotonPipelineResult result = new PhotonPipelineResult();
+      result.createFromPacket(new Packet(data));
+      if (result.hasTargets()) {
+        sum += result.getBestTarget().getYaw();
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double perFrame() {
+    decoder.decode(data, 1.0, inputs);
+    return inputs.yaw[0];
+  }
+}
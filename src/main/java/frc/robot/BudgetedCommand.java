@@ -0,0 +1,72 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import frc.robot.LoopScheduler.Priority;
+
+/**
+ * Runs another command, skipping its execute() when it isn't expected to fit in what's left of the loop's budget.
+ * Created by {@link LoopScheduler#budgeted(Command, Priority)}.
+ */
+class BudgetedCommand extends CommandBase {
+
+  private final LoopScheduler scheduler;
+  private final Command command;
+  private final Priority priority;
+
+  /** Nanoseconds execute() is expected to take, from its last run. */
+  private double expectedNanos = 0;
+  /** Loops in a row execute() has been skipped. */
+  private int skippedLoops = 0;
+
+  BudgetedCommand(LoopScheduler scheduler, Command command, Priority priority) {
+    this.scheduler = scheduler;
+    this.command = command;
+    this.priority = priority;
+
+    setName(command.getName());
+    addRequirements(command.getRequirements().toArray(new Subsystem[0]));
+  }
+
+  @Override
+  public void initialize() {
+    skippedLoops = 0;
+    command.initialize();
+  }
+
+  @Override
+  public void execute() {
+    boolean overdue = priority == Priority.NORMAL && skippedLoops >= LoopScheduler.MAX_DEFERRED_LOOPS;
+    if (!overdue && !scheduler.hasTime(expectedNanos)) {
+      skippedLoops++;
+      expectedNanos *= LoopScheduler.DEFERRED_COST_DECAY;
+      scheduler.recordDeferred();
+      return;
+    }
+
+    long start = scheduler.nanoTime();
+    command.execute();
+    expectedNanos = scheduler.nanoTime() - start;
+    skippedLoops = 0;
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    command.end(interrupted);
+  }
+
+  @Override
+  public boolean isFinished() {
+    return command.isFinished();
+  }
+
+  @Override
+  public boolean runsWhenDisabled() {
+    return command.runsWhenDisabled();
+  }
+}
@@ -4,8 +4,12 @@
 
 package frc.robot;
 
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.MecanumDriveKinematics;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.util.Units;
 
 /**
@@ -37,6 +41,36 @@ public final class Constants {
         public static final double WHEEL_DIAMETER = Units.inchesToMeters(6);
         public static final double WHEEL_CIRCUMFERENCE = Units.inchesToMeters(6 * Math.PI);
 
+        /** Gear reduction between each drive motor and its wheel. */
+        public static final double GEAR_RATIO = 10.71;
+
+        /** Meters travelled by the wheel per rotation of the motor. */
+        public static final double POSITION_CONVERSION = WHEEL_CIRCUMFERENCE / GEAR_RATIO;
+
+        /** Meters per second of the wheel per RPM of the motor. */
+        public static final double VELOCITY_CONVERSION = POSITION_CONVERSION / 60;
+
+        /** Voltage needed to overcome static friction. Estimate, to be replaced with the SysId value. */
+        public static final double KS = 0.15;
+
+        /** Voltage per meter per second of wheel speed. Estimate, to be replaced with the SysId value. */
+        public static final double KV = 2.6;
+
+        /** Voltage per meter per second squared of wheel acceleration. Estimate, to be replaced with the SysId value. */
+        public static final double KA = 0.3;
+
+        /** P constant for the velocity loop running on each SparkMax, in duty cycle per meter per second of error. */
+        public static final double VELOCITY_P = 0.1;
+
+        /** Wheel speed in meters per second commanded by full joystick in closed-loop teleop. */
+        public static final double MAX_WHEEL_SPEED = 4.0;
+
+        /** The motor driving each wheel, used for simulation. */
+        public static final DCMotor DRIVE_MOTOR = DCMotor.getNEO(1);
+
+        /** Mass of the robot in kilograms, including battery and bumpers, used for simulation. */
+        public static final double ROBOT_MASS = Units.lbsToKilograms(125);
+
         /** Wheel base is the horizontal distance between the center of the back wheel and the center of the front wheel. */
         public static final double WHEEL_BASE = Units.inchesToMeters(20.5);
 
@@ -55,6 +89,12 @@ public final class Constants {
         /** Maximum angular acceleration in radians per second squared. */
         public static final double MAX_ROTATION_ACCELERATION = 1.0;
 
+        /** Period in seconds of the odometry sampling thread (200 Hz). The samples are integrated once per 20 ms robot loop. */
+        public static final double ODOMETRY_PERIOD = 0.005;
+
+        /** Most odometry samples kept between robot loops, enough for a loop overrun of several periods. */
+        public static final int MAX_ODOMETRY_SAMPLES = 16;
+
         /** Distance from the center of the robot to each of the wheels. */
         public static final MecanumDriveKinematics KINEMATICS = new MecanumDriveKinematics(
             new Translation2d(WHEEL_BASE / 2, TRACK_WIDTH / 2), 
@@ -83,5 +123,311 @@ public final class Constants {
 
         /** D constant for the shooter PID loop. */
         public static final double D = 0.0;
+
+        /**
+         * F constant for the shooter PID loop: the Talon's full output over the Falcon's free speed of 6380 RPM in ticks
+         * per 100 ms. Without it the P term alone holds the flywheel well short of the setpoint.
+         */
+        public static final double F = 1023 / (6380 * CPR / 600);
+
+        /** I constant for the shooter PID loop, to take out what friction leaves after F. */
+        public static final double I = 0.001;
+
+        /** Error in ticks per 100 ms beyond which the I term is cleared, 200 RPM, so it only acts near the setpoint. */
+        public static final double I_ZONE = 200 * CPR / 600;
+
+        /** RPM within the setpoint to be counted as up to speed. */
+        public static final double RPM_TOLERANCE = 15;
+
+        /** Supply current in amps of the leading shooter motor that means cargo is being launched. */
+        public static final double SHOT_CURRENT_THRESHOLD = 30;
+
+        /** Spacing in meters of the distances the shot map is sampled at when loaded. */
+        public static final double SHOT_MAP_RESOLUTION = 0.05;
+
+        /** Motors driving the flywheel. */
+        public static final int SHOOTER_MOTOR_COUNT = 2;
+        public static final DCMotor SHOOTER_MOTOR = DCMotor.getFalcon500(SHOOTER_MOTOR_COUNT);
+
+        /** Reduction from the motors to the flywheel. The encoder is on the motor. */
+        public static final double FLYWHEEL_GEARING = 1.0;
+
+        /** Moment of inertia of the flywheel in kg m^2, used by the simulation. */
+        public static final double FLYWHEEL_MOI = 0.004;
+
+        /**
+         * Flywheel model for the state-space controller, in volts per radian per second and volts per radian per second
+         * squared. Estimated from the Falcon 500 motor curve and {@link #FLYWHEEL_MOI}; replace with characterized values.
+         */
+        public static final double FLYWHEEL_KV = 0.018;
+        public static final double FLYWHEEL_KA = 0.005;
+
+        /** How far the flywheel's velocity is trusted to follow the model each loop, in radians per second. */
+        public static final double FLYWHEEL_MODEL_STD_DEV = 3.0;
+
+        /** Noise on the encoder's velocity measurement in radians per second. */
+        public static final double FLYWHEEL_ENCODER_STD_DEV = 0.01;
+
+        /** Velocity error in radians per second the LQR weighs against using all of {@link #FLYWHEEL_MAX_VOLTAGE}. */
+        public static final double FLYWHEEL_VELOCITY_TOLERANCE = 8.0;
+
+        /** Most voltage the state-space controller applies. Voltage compensation on the Talons holds them to it. */
+        public static final double FLYWHEEL_MAX_VOLTAGE = 12.0;
+    }
+
+    public static final class IntakeConstants {
+        // Motor IDs
+        public static final int DEPLOY_MOTOR_ID = 0;
+        public static final int ROLLER_MOTOR_ID = 1;
+
+        /** roboRIO DIO channels of the limit switches at each end of the arm. */
+        public static final int LIMIT_SWITCH_UP_CHANNEL = 0;
+        public static final int LIMIT_SWITCH_DOWN_CHANNEL = 1;
+
+        /** Counts per revolution of the mag encoder on the intake arm's pivot. */
+        public static final double DEPLOY_CPR = 4096;
+
+        /** Motor raising and lowering the intake, the reduction from it to the arm, and the arm's length and mass. */
+        public static final DCMotor DEPLOY_MOTOR = DCMotor.getVex775Pro(1);
+        public static final double DEPLOY_GEARING = 150.0;
+        public static final double DEPLOY_ARM_LENGTH = 0.35;
+        public static final double DEPLOY_ARM_MASS = 3.5;
+
+        /**
+         * Arm angles in degrees above horizontal where the limit switches close, stowed just past vertical and deployed
+         * below horizontal. The encoder reads zero stowed, and counts up as the intake deploys.
+         */
+        public static final double DEPLOY_STOWED_ANGLE = 95.0;
+        public static final double DEPLOY_DEPLOYED_ANGLE = -15.0;
+
+        /**
+         * How far past a limit switch the profile aims, in degrees, so the switch always closes. If the switch doesn't
+         * close, the arm is held lightly against the hard stop, short of this.
+         */
+        public static final double DEPLOY_OVERTRAVEL = 3.0;
+
+        /** Motion Magic cruise velocity in degrees per second and acceleration in degrees per second squared of the arm. */
+        public static final double DEPLOY_CRUISE_VELOCITY = 540.0;
+        public static final double DEPLOY_ACCELERATION = 2700.0;
+
+        /**
+         * Gains of the Talon's position loop, in its native units of 1023 for full output per count of error and per
+         * count per 100 ms of profile velocity, and the output that holds the arm up level against gravity.
+         */
+        public static final double DEPLOY_P = 4.0;
+        public static final double DEPLOY_F = 1.2;
+        public static final double DEPLOY_KG = 0.11;
+
+        /**
+         * Current in amps that counts as stalled, with the arm moving slower than this many degrees per second, once
+         * it's lasted this many seconds. Lifting the arm level takes nearly as much current, but it's moving.
+         */
+        public static final double DEPLOY_STALL_CURRENT = 15.0;
+        public static final double DEPLOY_STALL_VELOCITY = 10.0;
+        public static final double DEPLOY_STALL_TIME = 0.1;
+
+        /**
+         * Degrees short of a Motion Magic target that count as stalled, with the arm moving slower than
+         * {@link #DEPLOY_STALL_VELOCITY}. Held against a hard stop the arm draws well under
+         * {@link #DEPLOY_STALL_CURRENT}, so this catches it instead; it has to be less than how far
+         * {@link #DEPLOY_OVERTRAVEL} aims past the hard stops.
+         */
+        public static final double DEPLOY_STALL_ERROR = 1.0;
+    }
+
+    public static final class ClimbConstants {
+        // Motor IDs
+        public static final int CLIMB_MOTOR_1_ID = 8;
+        public static final int CLIMB_MOTOR_2_ID = 7;
+        public static final int SECOND_STAGE_MOTOR_1_ID = 6;
+        public static final int SECOND_STAGE_MOTOR_2_ID = 5;
+
+        /** roboRIO DIO channels of the limit switches on each telescope, after the intake's two. */
+        public static final int CLIMB_LIMIT_SWITCH_1_CHANNEL = 2;
+        public static final int CLIMB_LIMIT_SWITCH_2_CHANNEL = 3;
+
+        /** Counts per revolution of the Falcon encoders on the telescopes. */
+        public static final double CLIMB_CPR = 2048;
+
+        /** Counts per revolution of the hex bore encoder on the second stage. */
+        public static final double SECOND_STAGE_CPR = 8192;
+
+        /** Motor driving each telescope, and the reduction from it to the spool. */
+        public static final DCMotor CLIMB_MOTOR = DCMotor.getFalcon500(1);
+        public static final double CLIMB_GEARING = 20.0;
+
+        /** Radius of the spool the telescope's strap winds onto, in meters. */
+        public static final double CLIMB_SPOOL_RADIUS = Units.inchesToMeters(0.625);
+
+        /**
+         * Telescope travel in meters per encoder count. Positive output pulls the telescopes in, as in
+         * {@link frc.robot.commands.climb.ClimbStageOne}, so the count goes down as they extend.
+         */
+        public static final double CLIMB_METERS_PER_TICK = 2 * Math.PI * CLIMB_SPOOL_RADIUS / (CLIMB_CPR * CLIMB_GEARING);
+
+        /** Furthest the telescopes extend in meters, from fully in at the limit switches. */
+        public static final double CLIMB_MAX_EXTENSION = 0.65;
+
+        /** Motors driving the second stage, the reduction from them to the arms, and the arms' moment of inertia in kg m^2. */
+        public static final DCMotor SECOND_STAGE_MOTOR = DCMotor.getVex775Pro(2);
+        public static final double SECOND_STAGE_GEARING = 150.0;
+        public static final double SECOND_STAGE_MOI = 0.25;
+
+        /** Second stage angle in degrees when the robot is powered on, where the encoder reads zero. */
+        public static final double SECOND_STAGE_INITIAL_ANGLE = 90.0;
+
+        /** Range of second stage angles in degrees the arms can safely be driven through. */
+        public static final double SECOND_STAGE_MIN_ANGLE = 62.5;
+        public static final double SECOND_STAGE_MAX_ANGLE = 115.0;
+
+        /** Second stage angle in degrees with the arms folded against the robot, clear of the rungs. */
+        public static final double SECOND_STAGE_STOWED_ANGLE = 90.0;
+
+        /** Second stage angle in degrees that puts the arms' hooks on the rung the telescopes are pulled up to. */
+        public static final double SECOND_STAGE_LATCH_ANGLE = 105.0;
+
+        /** Second stage angle in degrees that tilts the robot, hanging from the arms, towards the next rung. */
+        public static final double SECOND_STAGE_REACH_ANGLE = 80.0;
+
+        /** Telescope extension in meters that puts the hooks above the mid rung, for the driver to drive under. */
+        public static final double MID_REACH_EXTENSION = 0.62;
+
+        /** Telescope extension in meters that puts the hooks past the next rung, with the robot tilted towards it. */
+        public static final double NEXT_REACH_EXTENSION = 0.62;
+
+        /** Telescope extension in meters by which the robot has been let down onto the second stage, so turning it tilts the robot. */
+        public static final double SECOND_STAGE_HANDOFF_EXTENSION = 0.1;
+
+        /** Telescope extension in meters below which the second stage can let go of the last rung while pulling up. */
+        public static final double SECOND_STAGE_RELEASE_EXTENSION = 0.4;
+
+        /** How far past the limit switches the telescopes are pulled, in meters, so the switches always close. */
+        public static final double CLIMB_PULL_OVERTRAVEL = 0.01;
+
+        /** Errors counted as at the target, in meters for the telescopes and degrees for the second stage. */
+        public static final double CLIMB_POSITION_TOLERANCE = 0.01;
+        public static final double SECOND_STAGE_ANGLE_TOLERANCE = 2.0;
+
+        /** Robot pitch in degrees, hanging from the second stage at {@link #SECOND_STAGE_REACH_ANGLE}, that points the telescopes at the next rung. */
+        public static final double NEXT_RUNG_PITCH = -25.0;
+
+        /** Pitch error in degrees allowed before pulling onto the next rung, and before hooking the second stage on. */
+        public static final double REACH_PITCH_TOLERANCE = 3.0;
+        public static final double LATCH_PITCH_TOLERANCE = 3.0;
+
+        /** Fastest the robot can be swinging, in degrees per second, for its pitch to count as settled. */
+        public static final double PITCH_RATE_TOLERANCE = 15.0;
+
+        /** Motion Magic cruise velocity in meters per second and acceleration in meters per second squared of the telescopes. */
+        public static final double CLIMB_CRUISE_VELOCITY = 0.45;
+        public static final double CLIMB_ACCELERATION = 3.0;
+
+        /** Motion Magic cruise velocity in degrees per second and acceleration in degrees per second squared of the second stage. */
+        public static final double SECOND_STAGE_CRUISE_VELOCITY = 300.0;
+        public static final double SECOND_STAGE_ACCELERATION = 1500.0;
+
+        /**
+         * Gains of the Talons' position loops, in their native units of 1023 for full output per count of error, per
+         * count the error changes by each 1 ms loop, and per count per 100 ms of profile velocity. The feedforwards are
+         * full output over the free speed. The second stage needs damping to turn the robot hanging from it.
+         */
+        public static final double CLIMB_P = 0.1;
+        public static final double CLIMB_D = 0.0;
+        public static final double CLIMB_F = 0.047;
+        public static final double SECOND_STAGE_P = 10.0;
+        public static final double SECOND_STAGE_D = 200.0;
+        public static final double SECOND_STAGE_F = 0.6;
+
+        /** Proportional gain of the Talons' velocity loops for synchronized moves, per count per 100 ms of error. */
+        public static final double CLIMB_VELOCITY_P = 0.03;
+
+        /**
+         * Speed in meters per second of synchronized telescope moves. It's the most a telescope can manage hauling the
+         * robot up, since keeping the two level no longer depends on leaving the Talons headroom.
+         */
+        public static final double CLIMB_SYNC_VELOCITY = 0.5;
+
+        /** Speed correction in meters per second per meter the average extension is off the profile. */
+        public static final double CLIMB_SYNC_POSITION_P = 5.0;
+
+        /** Speed correction of each side in meters per second per meter the telescopes are apart. */
+        public static final double CLIMB_SYNC_P = 20.0;
+
+        /** Distance in meters between the two telescopes, for working out how far the robot rolls when they're apart. */
+        public static final double CLIMB_TELESCOPE_SPACING = 0.56;
+
+        /**
+         * Period in seconds of the robot's swing hanging from a rung. Tilting the robot over exactly one swing leaves it
+         * with no swing to wait out.
+         */
+        public static final double ROBOT_SWING_PERIOD = 1.7;
+    }
+
+    public static final class VisionConstants {
+        /** Name of the PhotonVision camera used to find cargo. */
+        public static final String PHOTON_CAMERA = "photonvision";
+
+        /** Pose of the center of the hub on the field in meters, facing the red alliance wall. */
+        public static final Pose2d HUB_POSE = new Pose2d(8.23, 4.115, new Rotation2d());
+
+        /** Time in milliseconds for the Limelight to capture an image, added on top of the reported pipeline latency. */
+        public static final double LIMELIGHT_CAPTURE_LATENCY = 11.0;
+
+        /** Height in meters of the Limelight's lens above the floor. */
+        public static final double LIMELIGHT_HEIGHT = 0.8;
+
+        /** Angle in degrees the Limelight is tilted up from horizontal. */
+        public static final double LIMELIGHT_MOUNT_ANGLE = 30.0;
+
+        /** Height in meters of the vision tape around the upper hub. */
+        public static final double HUB_TARGET_HEIGHT = 2.64;
+
+        /** Radius in meters of the ring of vision tape, from the tape to the center of the hub. */
+        public static final double HUB_TARGET_RADIUS = 0.68;
+
+        /** Age in seconds after which a Limelight frame is too old to act on. */
+        public static final double LIMELIGHT_MAX_FRAME_AGE = 0.25;
+
+        /** How long in seconds of odometry history is kept for replaying late vision measurements. */
+        public static final double POSE_HISTORY_SECONDS = 1.0;
+
+        /** Standard deviation in meters of a Limelight robot position measurement. */
+        public static final double VISION_STD_DEV_METERS = 0.15;
+
+        /** Standard deviation in radians of a Limelight robot heading measurement. */
+        public static final double VISION_STD_DEV_RADIANS = Math.toRadians(5);
+
+        /** Odometry drift in meters of standard deviation per meter driven. */
+        public static final double ODOMETRY_DRIFT_PER_METER = 0.05;
+
+        /** Gyro drift in radians of standard deviation per radian turned. */
+        public static final double GYRO_DRIFT_PER_RADIAN = 0.02;
+
+        /** Transform from the center of the robot to the PhotonVision camera. */
+        public static final Transform2d ROBOT_TO_PHOTON_CAMERA = new Transform2d();
+
+        /** Most pieces of cargo tracked at once. */
+        public static final int CARGO_MAX_TRACKS = 32;
+
+        /** Furthest in meters a detection can be from a track's predicted position and still belong to it. */
+        public static final double CARGO_GATE_DISTANCE = 0.5;
+
+        /** Standard deviation in meters of a cargo position measured by PhotonVision. */
+        public static final double CARGO_POSITION_STD_DEV = 0.1;
+
+        /** Standard deviation in meters per second squared of how cargo accelerates between frames. */
+        public static final double CARGO_ACCELERATION_STD_DEV = 2.0;
+
+        /** Frames a track must be seen in before it is trusted. */
+        public static final int CARGO_CONFIRM_HITS = 3;
+
+        /** Time in seconds a track is kept without being seen. */
+        public static final double CARGO_TRACK_TIMEOUT = 0.5;
+
+        /** Least time in seconds between re-plans of the path to a piece of cargo. */
+        public static final double CARGO_REPLAN_PERIOD = 0.25;
+
+        /** Furthest ahead in seconds a rolling piece of cargo's path is searched for somewhere to meet it. */
+        public static final double CARGO_INTERCEPT_HORIZON = 6.0;
     }
 }
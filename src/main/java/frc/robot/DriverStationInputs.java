@@ -0,0 +1,71 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+
+/**
+ * The driver station state and the driver's joystick, logged each loop so a match can be replayed with the same
+ * robot mode and driver inputs. During replay the values go back into the simulated driver station, so the
+ * scheduler, joystick buttons and commands see them exactly as they would have.
+ */
+public class DriverStationInputs {
+  /** The port of the only joystick the robot reads. */
+  private static final int DRIVER_PORT = 0;
+
+  private static final int AXIS_COUNT = 6;
+  private static final int BUTTON_COUNT = 12;
+
+  public boolean enabled;
+  public boolean autonomous;
+  public boolean test;
+
+  public final double[] driverAxes = new double[AXIS_COUNT];
+
+  /** One bit per button, button 1 in the lowest bit. */
+  public int driverButtons;
+
+  /** POV angle in degrees, or -1 if not pressed. */
+  public int driverPov = -1;
+
+  /**
+   * Read the current state from the driver station.
+   */
+  public void update() {
+    enabled = DriverStation.isEnabled();
+    autonomous = DriverStation.isAutonomous();
+    test = DriverStation.isTest();
+
+    // Reading axes that aren't there prints warnings, so only read what the joystick has
+    int axisCount = Math.min(AXIS_COUNT, DriverStation.getStickAxisCount(DRIVER_PORT));
+    for (int axis = 0; axis < AXIS_COUNT; axis++) {
+      driverAxes[axis] = (axis < axisCount) ? DriverStation.getStickAxis(DRIVER_PORT, axis) : 0;
+    }
+    driverButtons = DriverStation.getStickButtons(DRIVER_PORT);
+    driverPov = (DriverStation.getStickPOVCount(DRIVER_PORT) > 0) ? DriverStation.getStickPOV(DRIVER_PORT, 0) : -1;
+  }
+
+  /**
+   * Put these values into the simulated driver station and wait for the robot code to see them.
+   */
+  public void applyToSimulation() {
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setEnabled(enabled);
+    DriverStationSim.setAutonomous(autonomous);
+    DriverStationSim.setTest(test);
+
+    DriverStationSim.setJoystickAxisCount(DRIVER_PORT, AXIS_COUNT);
+    for (int axis = 0; axis < AXIS_COUNT; axis++) {
+      DriverStationSim.setJoystickAxis(DRIVER_PORT, axis, driverAxes[axis]);
+    }
+    DriverStationSim.setJoystickButtonCount(DRIVER_PORT, BUTTON_COUNT);
+    DriverStationSim.setJoystickButtons(DRIVER_PORT, driverButtons);
+    DriverStationSim.setJoystickPOVCount(DRIVER_PORT, 1);
+    DriverStationSim.setJoystickPOV(DRIVER_PORT, 0, driverPov);
+
+    DriverStationSim.notifyNewData();
+  }
+}
@@ -0,0 +1,70 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.Arrays;
+
+import frc.robot.telemetry.LatencyHistogram;
+import frc.robot.telemetry.LoopProfiler;
+
+/**
+ * Reads every sensor once at the start of the robot loop, before the scheduler runs. <br/>
+ *
+ * Subsystems register the call that fills in their IO inputs when they are constructed. Everything after that,
+ * subsystem periodics, commands and dashboard properties, reads the inputs objects instead of the hardware, so
+ * the number of CAN and JNI calls per loop doesn't depend on how often a value is asked for, and every reader
+ * in a loop sees the same value.
+ */
+public final class InputSnapshot {
+  private static InputSnapshot instance;
+
+  private final LatencyHistogram updateTime = LoopProfiler.getInstance().histogram("InputSnapshot.update");
+
+  /** Replaced whole on registration, in the order registered. */
+  private Runnable[] readers = new Runnable[0];
+
+  private InputSnapshot() {}
+
+  /**
+   * @return the snapshot shared by the whole robot
+   */
+  public static synchronized InputSnapshot getInstance() {
+    if (instance == null) {
+      instance = new InputSnapshot();
+    }
+    return instance;
+  }
+
+  /**
+   * Drop the shared snapshot and every reader registered with it, for programs that build more than one robot, as the
+   * tests do.
+   */
+  public static synchronized void resetInstance() {
+    instance = null;
+  }
+
+  /**
+   * Add a reader to run at the start of every loop. Call this during construction.
+   *
+   * @param reader reads the hardware into an inputs object, such as <code>() -> io.updateInputs(inputs)</code>
+   */
+  public void register(Runnable reader) {
+    readers = Arrays.copyOf(readers, readers.length + 1);
+    readers[readers.length - 1] = reader;
+  }
+
+  /**
+   * Run every reader. Call once at the start of every robot loop.
+   */
+  public void update() {
+    long start = System.nanoTime();
+
+    for (int i = 0; i < readers.length; i++) {
+      readers[i].run();
+    }
+
+    updateTime.record(System.nanoTime() - start);
+  }
+}
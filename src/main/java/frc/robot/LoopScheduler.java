@@ -0,0 +1,422 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.sendable.Sendable;
+import edu.wpi.first.util.sendable.SendableRegistry;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.smartdashboard.SendableBuilderImpl;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import frc.robot.telemetry.LatencyHistogram;
+import frc.robot.telemetry.LoopProfiler;
+
+/**
+ * Runs the command scheduler within a time budget per loop, so an overrun slows the dashboard instead of the drive. <br/>
+ *
+ * Everything the loop runs has a {@link Priority}. High priority subsystems and commands stay with the command
+ * scheduler and always run. Normal and low priority subsystem periodics and dashboard updates are taken off the
+ * scheduler and run after it, only while their last duration fits in what's left of {@link #LOOP_BUDGET}. A normal
+ * priority task is put off for at most {@link #MAX_DEFERRED_LOOPS} loops, while a low priority one is skipped for as
+ * long as there's no time, or any normal priority task is waiting. The budget is shorter than the robot period, so a
+ * task that takes longer than expected still leaves time for logging. Low and normal priority commands are wrapped by
+ * {@link #budgeted}, and skip execute() the same way. <br/>
+ *
+ * The budget is counted from {@link #startLoop()}, which the robot calls before the mode's periodic function, so
+ * everything in the loop is counted against it. <br/>
+ *
+ * When a loop runs past the robot period, the overrun is blamed on whichever item took longest that loop: a timed
+ * item in the {@link LoopProfiler}, a task run here, or the untimed rest of the command scheduler. Overruns are
+ * counted by cause under the "LoopScheduler" table, and the first for each cause is reported to the driver station.
+ */
+public final class LoopScheduler {
+  /** Seconds of each loop given to the scheduler and its tasks, leaving the rest for logging and publishing. */
+  public static final double LOOP_BUDGET = 0.015;
+
+  /** Most loops in a row a normal priority task is put off before it runs anyway. */
+  public static final int MAX_DEFERRED_LOOPS = 5;
+
+  /** How much the expected duration of a task shrinks each loop it's put off, so it's tried again before long. */
+  static final double DEFERRED_COST_DECAY = 0.8;
+
+  private static LoopScheduler instance;
+
+  /** What to give up first when the loop runs out of time. */
+  public enum Priority {
+    /** Always runs, such as drive and shooter control. */
+    HIGH,
+    /** Put off when out of time, but never for more than {@link #MAX_DEFERRED_LOOPS} loops, such as vision tracking. */
+    NORMAL,
+    /** Skipped when out of time, such as dashboard updates. */
+    LOW
+  }
+
+  /** A periodic call run after the command scheduler, and what's known about its cost. */
+  private static class Task {
+    final String name;
+    final Priority priority;
+    final Runnable action;
+
+    /** Nanoseconds the task is expected to take, from its last run and shrunk each loop it's put off. */
+    double expectedNanos = 0;
+    /** Loops in a row the task has been put off. */
+    int deferredLoops = 0;
+    /** Nanoseconds the task took this loop outside of anything the profiler timed, or 0 if it didn't run. */
+    long selfNanos = 0;
+
+    Task(String name, Priority priority, Runnable action) {
+      this.name = name;
+      this.priority = priority;
+      this.action = action;
+    }
+  }
+
+  private final long budgetNanos;
+  /** Nanoseconds from an arbitrary start, like System.nanoTime(). */
+  private final LongSupplier clock;
+  private final LoopProfiler profiler = LoopProfiler.getInstance();
+  private final LatencyHistogram schedulerTime = profiler.aggregateHistogram("CommandScheduler.run");
+
+  /** Replaced whole on registration, in the order registered. */
+  private Task[] tasks = new Task[0];
+  /** Where the low priority tasks start this loop, moved along each loop so one slow task can't starve the rest. */
+  private int lowPriorityStart = 0;
+
+  private long loopStart = 0;
+  /** Nanoseconds in the command scheduler this loop outside of anything the profiler timed. */
+  private long schedulerSelfNanos = 0;
+  private int deferredCount = 0;
+  private double loopTime = 0;
+  private int overruns = 0;
+
+  private final NetworkTable table = NetworkTableInstance.getDefault().getTable("LoopScheduler");
+  private final NetworkTableEntry loopTimeEntry = table.getEntry("Loop Time (ms)");
+  private final NetworkTableEntry deferredEntry = table.getEntry("Deferred");
+  private final NetworkTableEntry overrunsEntry = table.getEntry("Overruns");
+  private final NetworkTableEntry lastCauseEntry = table.getEntry("Last Overrun Cause");
+  private final NetworkTable causesTable = table.getSubTable("Overruns By Cause");
+  /** Overruns blamed on each cause, only added to when a loop overruns. */
+  private final Map<String, Integer> overrunsByCause = new HashMap<>();
+
+  /**
+   * @param budget seconds of each loop to give the scheduler and its tasks
+   */
+  public LoopScheduler(double budget) {
+    this(budget, System::nanoTime);
+  }
+
+  /**
+   * @param budget seconds of each loop to give the scheduler and its tasks
+   * @param clock nanoseconds from an arbitrary start, which tests and simulations advance themselves instead of
+   *              waiting on System.nanoTime()
+   */
+  public LoopScheduler(double budget, LongSupplier clock) {
+    budgetNanos = (long) (budget * 1e9);
+    this.clock = clock;
+  }
+
+  /**
+   * @return the scheduler used by the robot, with a budget of {@link #LOOP_BUDGET}
+   */
+  public static synchronized LoopScheduler getInstance() {
+    if (instance == null) {
+      instance = new LoopScheduler(LOOP_BUDGET);
+    }
+    return instance;
+  }
+
+  /**
+   * Drop the scheduler used by the robot and every task added to it, for programs that build more than one robot, as
+   * the tests do.
+   */
+  public static synchronized void resetInstance() {
+    instance = null;
+  }
+
+  /**
+   * Replace the scheduler used by the robot, for tests that run the robot on their own clock. Call this before the
+   * robot is constructed.
+   */
+  static synchronized void setInstance(LoopScheduler scheduler) {
+    instance = scheduler;
+  }
+
+  /**
+   * Run something every loop after the command scheduler, if there's time. Call this during construction.
+   *
+   * @param name what to blame overruns on, such as "CargoTrackerSubsystem.periodic"
+   * @param priority {@link Priority#HIGH} to always run it
+   * @param action the work to do each loop
+   */
+  public void addTask(String name, Priority priority, Runnable action) {
+    Task[] added = new Task[tasks.length + 1];
+    System.arraycopy(tasks, 0, added, 0, tasks.length);
+    added[tasks.length] = new Task(name, priority, action);
+    tasks = added;
+  }
+
+  /**
+   * Give a subsystem a priority. High priority subsystems are left with the command scheduler, and the rest have
+   * their periodic() and, in simulation, simulationPeriodic() run as a task instead. Call this during construction.
+   * <br/>
+   *
+   * Taking a subsystem off the command scheduler also takes its default command, so a subsystem with a default
+   * command can't be given a lower priority. Setting one afterwards would put the subsystem back on the command
+   * scheduler, and run its periodic() twice a loop.
+   *
+   * @param subsystem a subsystem already registered with the command scheduler, without a default command
+   * @param priority what to give up first when out of time
+   * @throws IllegalArgumentException if the priority isn't high and the subsystem has a default command
+   */
+  public void addSubsystem(Subsystem subsystem, Priority priority) {
+    if (priority == Priority.HIGH) {
+      return;
+    }
+
+    CommandScheduler commands = CommandScheduler.getInstance();
+    if (commands.getDefaultCommand(subsystem) != null) {
+      throw new IllegalArgumentException(SendableRegistry.getName(subsystem)
+          + " has a default command, which the command scheduler would drop along with the subsystem");
+    }
+
+    commands.unregisterSubsystem(subsystem);
+    addTask(SendableRegistry.getName(subsystem) + ".periodic", priority, () -> {
+      subsystem.periodic();
+      if (RobotBase.isSimulation()) {
+        subsystem.simulationPeriodic();
+      }
+    });
+  }
+
+  /**
+   * Put a sendable on SmartDashboard, the same as {@link edu.wpi.first.wpilibj.smartdashboard.SmartDashboard#putData},
+   * but with its properties updated as a low priority task instead of every loop. Call this during construction.
+   *
+   * @param data the sendable, put under its registered name
+   */
+  public void addDashboardData(Sendable data) {
+    String key = SendableRegistry.getName(data);
+    NetworkTable dataTable = NetworkTableInstance.getDefault().getTable("SmartDashboard").getSubTable(key);
+
+    SendableBuilderImpl builder = new SendableBuilderImpl();
+    builder.setTable(dataTable);
+    data.initSendable(builder);
+    builder.startListeners();
+    dataTable.getEntry(".name").setString(key);
+
+    addTask("SmartDashboard/" + key, Priority.LOW, builder::update);
+  }
+
+  /**
+   * Wrap a command so its execute() is skipped when the loop is out of time. Its name and requirements are the same.
+   *
+   * @param command the command to run
+   * @param priority {@link Priority#HIGH} to always run it, in which case the command is returned as it is
+   * @return the command to schedule in its place
+   */
+  public Command budgeted(Command command, Priority priority) {
+    if (priority == Priority.HIGH) {
+      return command;
+    }
+    return new BudgetedCommand(this, command, priority);
+  }
+
+  /**
+   * Call first thing in every robot loop, before the mode's periodic function and reading the inputs.
+   */
+  public void startLoop() {
+    loopStart = nanoTime();
+    deferredCount = 0;
+  }
+
+  /**
+   * Run the command scheduler, then as many of the tasks as there's time for. Call once every robot loop, in place of
+   * <code>CommandScheduler.getInstance().run()</code>.
+   */
+  public void run() {
+    long timedBefore = profiler.getLoopTotal();
+    long start = nanoTime();
+
+    CommandScheduler.getInstance().run();
+
+    long end = nanoTime();
+    schedulerTime.record(end - start);
+    schedulerSelfNanos = (end - start) - (profiler.getLoopTotal() - timedBefore);
+
+    // Normal priority tasks that can't be put off again come first, then the rest of them, then low priority ones
+    for (int i = 0; i < tasks.length; i++) {
+      Task task = tasks[i];
+      task.selfNanos = 0;
+      if (task.priority == Priority.HIGH
+          || (task.priority == Priority.NORMAL && task.deferredLoops >= MAX_DEFERRED_LOOPS)) {
+        runTask(task);
+      }
+    }
+    // Low priority work waits for any normal priority work that was put off
+    boolean allRan = runTasks(Priority.NORMAL, 0, true);
+    runTasks(Priority.LOW, lowPriorityStart, allRan);
+
+    // Ready for the next loop
+    for (int i = 0; i < tasks.length; i++) {
+      if (tasks[i].deferredLoops < 0) {
+        tasks[i].deferredLoops = 0;
+      }
+    }
+    if (tasks.length > 0) {
+      lowPriorityStart = (lowPriorityStart + 1) % tasks.length;
+    }
+  }
+
+  /**
+   * Run each task of a priority that hasn't run yet this loop, if it's expected to fit in the budget.
+   *
+   * @param allowed false to put them all off
+   * @return whether none were put off
+   */
+  private boolean runTasks(Priority priority, int first, boolean allowed) {
+    boolean allRan = true;
+    for (int offset = 0; offset < tasks.length; offset++) {
+      Task task = tasks[(first + offset) % tasks.length];
+      if (task.priority != priority || task.deferredLoops < 0) {
+        continue;
+      }
+
+      if (allowed && hasTime(task.expectedNanos)) {
+        runTask(task);
+      } else {
+        task.deferredLoops++;
+        task.expectedNanos *= DEFERRED_COST_DECAY;
+        deferredCount++;
+        allRan = false;
+      }
+    }
+    return allRan;
+  }
+
+  /**
+   * Run a task and note how long it took. Its deferred count is left negative until the end of {@link #run()}, to mark
+   * it as having run this loop.
+   */
+  private void runTask(Task task) {
+    long timedBefore = profiler.getLoopTotal();
+    long start = nanoTime();
+
+    task.action.run();
+
+    long duration = nanoTime() - start;
+    task.expectedNanos = duration;
+    task.selfNanos = duration - (profiler.getLoopTotal() - timedBefore);
+    task.deferredLoops = -1;
+  }
+
+  /**
+   * @return whether something expected to take this long fits in what's left of this loop's budget
+   */
+  boolean hasTime(double expectedNanos) {
+    return nanoTime() - loopStart + expectedNanos <= budgetNanos;
+  }
+
+  /**
+   * @return the time on the scheduler's clock in nanoseconds, which {@link BudgetedCommand} times execute() with
+   */
+  long nanoTime() {
+    return clock.getAsLong();
+  }
+
+  /**
+   * Called by {@link BudgetedCommand} when it skips execute() for lack of time.
+   */
+  void recordDeferred() {
+    deferredCount++;
+  }
+
+  /**
+   * Check the loop time and blame any overrun. Call once every robot loop, after logging and before
+   * {@link LoopProfiler#endLoop()}.
+   */
+  public void endLoop() {
+    long loopNanos = nanoTime() - loopStart;
+    loopTime = loopNanos / 1e9;
+    loopTimeEntry.setDouble(loopNanos / 1e6);
+    deferredEntry.setDouble(deferredCount);
+
+    if (loopTime <= TimedRobot.kDefaultPeriod) {
+      return;
+    }
+
+    overruns++;
+    String cause = getSlowest();
+    Integer count = overrunsByCause.get(cause);
+    overrunsByCause.put(cause, (count == null) ? 1 : count + 1);
+
+    overrunsEntry.setDouble(overruns);
+    lastCauseEntry.setString(cause);
+    causesTable.getEntry(cause).setDouble(overrunsByCause.get(cause));
+    if (count == null) {
+      DriverStation.reportWarning(String.format("Loop overrun of %.1f ms, first caused by %s", loopNanos / 1e6, cause),
+          false);
+    }
+  }
+
+  /**
+   * @return the name of whatever took longest this loop
+   */
+  private String getSlowest() {
+    String slowest = "CommandScheduler.run";
+    long slowestNanos = schedulerSelfNanos;
+
+    LatencyHistogram timed = profiler.getSlowest();
+    if (timed != null && timed.getLoopTotal() > slowestNanos) {
+      slowest = timed.getName();
+      slowestNanos = timed.getLoopTotal();
+    }
+
+    for (int i = 0; i < tasks.length; i++) {
+      if (tasks[i].selfNanos > slowestNanos) {
+        slowest = tasks[i].name;
+        slowestNanos = tasks[i].selfNanos;
+      }
+    }
+    return slowest;
+  }
+
+  /**
+   * @return seconds from {@link #startLoop()} to {@link #endLoop()} in the last loop
+   */
+  public double getLoopTime() {
+    return loopTime;
+  }
+
+  /**
+   * @return how many tasks were put off or skipped in the last loop
+   */
+  public int getDeferredCount() {
+    return deferredCount;
+  }
+
+  /**
+   * @return how many loops have run past the robot period
+   */
+  public int getOverruns() {
+    return overruns;
+  }
+
+  /**
+   * @return how many overruns have been blamed on each cause
+   */
+  public Map<String, Integer> getOverrunsByCause() {
+    return new HashMap<>(overrunsByCause);
+  }
+}
@@ -4,9 +4,18 @@
 
 package frc.robot;
 
+import java.lang.management.ManagementFactory;
+
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.can.CanStatusFrames;
+import frc.robot.telemetry.HalCallCounter;
+import frc.robot.telemetry.LatencyHistogram;
+import frc.robot.telemetry.LoopProfiler;
+import frc.robot.telemetry.SignalLogger;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -19,6 +28,29 @@ public class Robot extends TimedRobot {
 
   private RobotContainer m_robotContainer;
 
+  private final RobotMode m_mode;
+  private final DriverStationInputs m_driverStationInputs = new DriverStationInputs();
+
+  /** Used to measure how many bytes each loop allocates, or null if the JVM can't report it. */
+  private com.sun.management.ThreadMXBean m_threadBean;
+  private long m_mainThreadId;
+
+  private LatencyHistogram m_loggerTime;
+
+  /** Native calls made by the IO layer during the last loop. */
+  private int m_halCalls;
+
+  public Robot() {
+    this(RobotMode.fromRuntime());
+  }
+
+  /**
+   * @param mode where the robot's inputs come from
+   */
+  public Robot(RobotMode mode) {
+    m_mode = mode;
+  }
+
   /**
    * This function is run when the robot is first started up and should be used for any
    * initialization code.
@@ -27,7 +59,29 @@ public class Robot extends TimedRobot {
   public void robotInit() {
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
-    m_robotContainer = new RobotContainer();
+    m_robotContainer = new RobotContainer(m_mode);
+    m_loggerTime = LoopProfiler.getInstance().histogram("SignalLogger.endLoop");
+
+    // The IO implementations have set their status frames by now
+    for (String problem : CanStatusFrames.getInstance().check()) {
+      DriverStation.reportWarning("CAN status frames: " + problem, false);
+    }
+
+    // Signals are registered by the subsystems as they are constructed above
+    SignalLogger.getInstance().addInputs("DriverStation", m_driverStationInputs);
+    SignalLogger.getInstance().addDouble("Robot/HAL Calls", () -> m_halCalls);
+    SignalLogger.getInstance().addDouble("Robot/Loop Time", LoopScheduler.getInstance()::getLoopTime);
+    SignalLogger.getInstance().addDouble("Robot/Deferred Tasks", LoopScheduler.getInstance()::getDeferredCount);
+    SignalLogger.getInstance().start();
+
+    // Garbage created every loop turns into GC pauses, which show up as loop overruns
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+      m_threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      m_mainThreadId = Thread.currentThread().getId();
+      if (!m_threadBean.isThreadAllocatedMemorySupported()) {
+        m_threadBean = null;
+      }
+    }
   }
 
   /**
@@ -39,11 +93,103 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotPeriodic() {
+    // Driver station state for the log, the same values the scheduler is about to see
+    m_driverStationInputs.update();
+
+    // Every sensor, read once for the whole loop
+    InputSnapshot.getInstance().update();
+
     // Runs the Scheduler.  This is responsible for polling buttons, adding newly-scheduled
     // commands, running already-scheduled commands, removing finished or interrupted commands,
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
-    CommandScheduler.getInstance().run();
+    // The lower priority subsystems and dashboard updates run after it, if there's time left.
+    long allocatedBefore = (m_threadBean != null) ? m_threadBean.getThreadAllocatedBytes(m_mainThreadId) : 0;
+
+    LoopScheduler.getInstance().run();
+
+    m_halCalls = HalCallCounter.endLoop();
+
+    long start = System.nanoTime();
+    SignalLogger.getInstance().endLoop();
+    m_loggerTime.record(System.nanoTime() - start);
+
+    // Blames any overrun, so has to come before the profiler starts its next loop
+    LoopScheduler.getInstance().endLoop();
+    LoopProfiler.getInstance().endLoop();
+    CanStatusFrames.getInstance().periodic();
+
+    if (m_threadBean != null) {
+      SmartDashboard.putNumber("Loop Allocated Bytes", m_threadBean.getThreadAllocatedBytes(m_mainThreadId) - allocatedBefore);
+    }
+    SmartDashboard.putNumber("Log Dropped Frames", SignalLogger.getInstance().getDroppedFrames());
+    SmartDashboard.putNumber("HAL Calls Per Loop", m_halCalls);
+  }
+
+  /**
+   * @return the container holding the robot's subsystems and commands, or null before robotInit()
+   */
+  public RobotContainer getRobotContainer() {
+    return m_robotContainer;
+  }
+
+  /**
+   * @return the number of native calls the IO layer made during the last loop, see {@link HalCallCounter}
+   */
+  public int getHalCalls() {
+    return m_halCalls;
+  }
+
+  /**
+   * @return the driver station state logged each loop, which replay writes back into the simulated driver station
+   */
+  public DriverStationInputs getDriverStationInputs() {
+    return m_driverStationInputs;
+  }
+
+  /**
+   * Starts the loop's time budget before the mode's init and periodic functions, which run ahead of robotPeriodic().
+   */
+  @Override
+  protected void loopFunc() {
+    LoopScheduler.getInstance().startLoop();
+    super.loopFunc();
+  }
+
+  /**
+   * Run one iteration of the robot loop, for harnesses that step time themselves instead of calling startCompetition().
+   */
+  public void runLoop() {
+    loopFunc();
+  }
+
+  /**
+   * Run one iteration of the robot loop without the mode functions, for harnesses that schedule commands themselves.
+   */
+  public void runRobotPeriodic() {
+    LoopScheduler.getInstance().startLoop();
+    robotPeriodic();
+  }
+
+  /**
+   * Stop the robot and let go of the shared state robotInit() set up, so another Robot can be built in the same
+   * program, as the tests do: commands are cancelled, the subsystems and buttons taken off the command scheduler,
+   * the log is written out and closed, and the input snapshot and loop scheduler start over.
+   */
+  @Override
+  public void close() {
+    super.close();
+
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    scheduler.cancelAll();
+    scheduler.clearButtons();
+    if (m_robotContainer != null) {
+      m_robotContainer.unregisterSubsystems();
+    }
+
+    SignalLogger.resetInstance();
+    InputSnapshot.resetInstance();
+    LoopScheduler.resetInstance();
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
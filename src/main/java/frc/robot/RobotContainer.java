@@ -9,19 +9,53 @@ import edu.wpi.first.wpilibj.GenericHID;
 import edu.wpi.first.wpilibj.Joystick;
 import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.button.JoystickButton;
+import frc.robot.LoopScheduler.Priority;
 import frc.robot.commands.Intake.Deploy;
 import frc.robot.commands.Intake.Retract;
+import frc.robot.commands.auto.ShootThreeStart;
+import frc.robot.commands.climb.AutoClimb;
+import frc.robot.commands.climb.HoldClimb;
 import frc.robot.commands.drive.DriveWithJoystick;
-import frc.robot.commands.outtake.OuttakeHigh;
+import frc.robot.commands.outtake.ShootAtDistance;
+import frc.robot.subsystems.CargoTrackerSubsystem;
+import frc.robot.subsystems.ClimbIO;
+import frc.robot.subsystems.ClimbIOReal;
+import frc.robot.subsystems.ClimbIOSim;
+import frc.robot.subsystems.ClimbSubsystem;
+import frc.robot.subsystems.DriveIO;
+import frc.robot.subsystems.DriveIOReal;
+import frc.robot.subsystems.DriveIOSim;
 import frc.robot.subsystems.DriveSystem;
+import frc.robot.subsystems.IntakeIO;
+import frc.robot.subsystems.IntakeIOReal;
+import frc.robot.subsystems.IntakeIOSim;
+import frc.robot.subsystems.OuttakeIO;
+import frc.robot.subsystems.OuttakeIOReal;
+import frc.robot.subsystems.OuttakeIOSim;
 import frc.robot.subsystems.OuttakeSubsystem;
+import frc.robot.subsystems.PoseEstimatorSubsystem;
+import frc.robot.subsystems.ShotMap;
+import frc.robot.telemetry.LoopProfiler;
+import frc.robot.trajectory.AutoPaths;
+import frc.robot.trajectory.TrajectoryLibrary;
+import frc.robot.trajectory.TrajectoryPlanner;
+import frc.robot.vision.Limelight;
+import frc.robot.vision.LimelightIO;
+import frc.robot.vision.LimelightIOReal;
+import frc.robot.vision.PhotonVision;
+import frc.robot.vision.PhotonVisionIO;
+import frc.robot.vision.PhotonVisionIOReal;
 
 import frc.robot.subsystems.IntakeSubsystem;
 
+import static frc.robot.Constants.VisionConstants.*;
+
 
 /**
  * This class is where the bulk of the robot should be declared. Since Command-based is a
@@ -34,29 +68,105 @@ public class RobotContainer {
   private DriveSystem driveSystem;
   private OuttakeSubsystem outtake;
   private IntakeSubsystem intake;
+  private ClimbSubsystem climb;
+  private PoseEstimatorSubsystem poseEstimator;
+  private CargoTrackerSubsystem cargoTracker;
+
+  private Limelight limelight;
+  private PhotonVision photon;
+
+  private TrajectoryLibrary trajectories;
+  private TrajectoryPlanner planner;
+
+  /** Names of the autonomous routines, shared by the dashboard chooser and the headless auto simulation. */
+  public static final String TAXI_AUTO = "Taxi";
+  public static final String SHOOT_THREE_START_AUTO = "Shoot Three Start";
+
+  private SendableChooser<String> autoChooser;
 
 
   private InstantCommand toggleFieldOriented; 
   private InstantCommand toggleSlowMode;
+  private InstantCommand toggleClosedLoop;
+  private InstantCommand toggleStateSpace;
+  private InstantCommand toggleSequencing;
   private Command deploy;
   private Command retract;
+  private Command autoClimb;
 
   private DriveWithJoystick driveWithJoystick;
 
-  private OuttakeHigh outtakeHigh;
+  private ShootAtDistance shootAtDistance;
 
   private Joystick driver;
   private JoystickButton toggleFieldOrientedBtn;
   private JoystickButton toggleSlowModeBtn;
+  private JoystickButton toggleClosedLoopBtn;
+  private JoystickButton toggleStateSpaceBtn;
+  private JoystickButton toggleSequencingBtn;
   private JoystickButton deployButton;
+  private JoystickButton shootButton;
+  private JoystickButton climbButton;
+
+  /**
+   * The container for the robot. Contains subsystems, OI devices, and commands.
+   * 
+   * @param mode decides whether the subsystems talk to hardware, a simulation of it, or nothing when replaying a log
+   */
+  public RobotContainer(RobotMode mode) {
+
+    //Shooter speeds by distance, loaded now so a match doesn't pay for it
+    ShotMap shotMap = new ShotMap();
+
+    //Subsystems and vision, given the IO for the mode
+    //In replay the IO interfaces' own methods do nothing, and the inputs are filled in from the log
+    if (mode == RobotMode.REPLAY) {
+      driveSystem = new DriveSystem(new DriveIO() {});
+      outtake = new OuttakeSubsystem(new OuttakeIO() {}, shotMap);
+      intake = new IntakeSubsystem(new IntakeIO() {});
+      climb = new ClimbSubsystem(new ClimbIO() {}, driveSystem::getPitch);
+      limelight = new Limelight(new LimelightIO() {});
+      photon = new PhotonVision(new PhotonVisionIO() {});
+    } else {
+      ClimbIO climbIO;
+      DriveIO driveIO;
+      OuttakeIO outtakeIO;
+      if (mode == RobotMode.SIM) {
+        //The climber model tilts the robot, and the simulated gyro reads it
+        ClimbIOSim climbSim = new ClimbIOSim();
+        climbIO = climbSim;
+        driveIO = new DriveIOSim(climbSim::getPitch);
+
+        //A match starts with one cargo preloaded
+        OuttakeIOSim outtakeSim = new OuttakeIOSim();
+        outtakeSim.loadCargo(1);
+        outtakeIO = outtakeSim;
+      } else {
+        climbIO = new ClimbIOReal();
+        driveIO = new DriveIOReal();
+        outtakeIO = new OuttakeIOReal();
+      }
+
+      driveSystem = new DriveSystem(driveIO);
+      outtake = new OuttakeSubsystem(outtakeIO, shotMap);
+      intake = new IntakeSubsystem((mode == RobotMode.SIM) ? new IntakeIOSim() : new IntakeIOReal());
+      climb = new ClimbSubsystem(climbIO, driveSystem::getPitch);
+      limelight = new Limelight(new LimelightIOReal());
+      photon = new PhotonVision(new PhotonVisionIOReal(PHOTON_CAMERA));
+    }
 
-  /** The container for the robot. Contains subsystems, OI devices, and commands. */
-  public RobotContainer() {
+    poseEstimator = new PoseEstimatorSubsystem(driveSystem, limelight);
+    cargoTracker = new CargoTrackerSubsystem(photon, poseEstimator);
 
-    //Subsystems
-    driveSystem = new DriveSystem();
-    outtake = new OuttakeSubsystem();
-    intake = new IntakeSubsystem();
+    //Autonomous paths, loaded now so autonomous doesn't pay for them
+    trajectories = new TrajectoryLibrary();
+    //Plans vision-dependent paths in the background, or when replaying, on the loops the log says they finished
+    planner = new TrajectoryPlanner(mode);
+
+    //Autonomous chooser
+    autoChooser = new SendableChooser<>();
+    autoChooser.setDefaultOption(TAXI_AUTO, TAXI_AUTO);
+    autoChooser.addOption(SHOOT_THREE_START_AUTO, SHOOT_THREE_START_AUTO);
 
     //Joystick
     driver = new Joystick(0);
@@ -64,26 +174,33 @@ public class RobotContainer {
     //Buttons
     toggleFieldOrientedBtn = new JoystickButton(driver, 5);
     toggleSlowModeBtn = new JoystickButton(driver, 7);
+    toggleClosedLoopBtn = new JoystickButton(driver, 8);
+    toggleStateSpaceBtn = new JoystickButton(driver, 9);
+    toggleSequencingBtn = new JoystickButton(driver, 10);
     deployButton = new JoystickButton(driver, 6);
+    shootButton = new JoystickButton(driver, 1);
+    climbButton = new JoystickButton(driver, 4);
 
 
     //Commands 
     //Toggle Commands
     toggleFieldOriented = new InstantCommand(driveSystem::toggleFieldOriented, driveSystem);
     toggleSlowMode = new InstantCommand(driveSystem::toggleSlowMode, driveSystem);
+    toggleClosedLoop = new InstantCommand(driveSystem::toggleClosedLoop, driveSystem);
+    toggleStateSpace = new InstantCommand(outtake::toggleStateSpace, outtake);
+    toggleSequencing = new InstantCommand(outtake::toggleSequencing, outtake);
 
-    //Drive With Joystick
-    driveWithJoystick = new DriveWithJoystick(driveSystem, driver);
-    driveSystem.setDefaultCommand(driveWithJoystick);
-
-
-    outtakeHigh = new OuttakeHigh(outtake);
+    shootAtDistance = new ShootAtDistance(outtake, limelight);
     
     //Intake Commands
     deploy = new Deploy(intake);
     retract = new Retract(intake);
     intake.setDefaultCommand(retract);
 
+    //Climb Commands
+    autoClimb = new AutoClimb(climb);
+    climb.setDefaultCommand(new HoldClimb(climb));
+
     //Drive With Joystick
     driveWithJoystick = new DriveWithJoystick(driveSystem, driver);
     driveSystem.setDefaultCommand(driveWithJoystick);
@@ -91,9 +208,22 @@ public class RobotContainer {
     // Configure the button bindings
     configureButtonBindings();
 
+    //Every command the scheduler runs is timed, which has to be set up after the buttons are bound
+    LoopProfiler.getInstance().instrumentScheduler(CommandScheduler.getInstance());
+
+    //Drive, shooter, intake, climb, targeting and odometry always run, and cargo tracking can wait a few loops
+    LoopScheduler scheduler = LoopScheduler.getInstance();
+    scheduler.addSubsystem(cargoTracker, Priority.NORMAL);
+
     //Documentation for sendables: https://docs.wpilib.org/en/latest/docs/software/telemetry/robot-telemetry-with-sendable.html
-    SmartDashboard.putData(driveSystem);
-    SmartDashboard.putData(outtake);
+    //Subsystem properties are only updated when the loop has time for them
+    scheduler.addDashboardData(driveSystem);
+    scheduler.addDashboardData(outtake);
+    scheduler.addDashboardData(climb);
+    scheduler.addDashboardData(limelight);
+    scheduler.addDashboardData(poseEstimator);
+    scheduler.addDashboardData(cargoTracker);
+    SmartDashboard.putData("Autonomous", autoChooser);
   }
 
   /**
@@ -105,7 +235,13 @@ public class RobotContainer {
   private void configureButtonBindings() {
     toggleFieldOrientedBtn.whenPressed(toggleFieldOriented);
     toggleSlowModeBtn.whenPressed(toggleSlowMode);
+    toggleClosedLoopBtn.whenPressed(toggleClosedLoop);
+    toggleStateSpaceBtn.whenPressed(toggleStateSpace);
+    toggleSequencingBtn.whenPressed(toggleSequencing);
     deployButton.whileHeld(deploy);
+    shootButton.whileHeld(shootAtDistance);
+    //First press puts the telescopes up, second climbs to traversal, and a press while climbing pauses
+    climbButton.toggleWhenPressed(autoClimb);
   }
 
   /**
@@ -114,10 +250,65 @@ public class RobotContainer {
    * @return the command to run in autonomous
    */
   public Command getAutonomousCommand() {
-    // trajectory to follow during auto
-    var trajectory = new Trajectory();
+    return getAutonomousCommand(autoChooser.getSelected());
+  }
+
+  /**
+   * Build an autonomous routine by name.
+   *
+   * @param name one of the autonomous names, such as {@link #TAXI_AUTO}
+   * @return the command to run in autonomous, or null if there is no routine with that name
+   */
+  public Command getAutonomousCommand(String name) {
+    if (SHOOT_THREE_START_AUTO.equals(name)) {
+      return new ShootThreeStart(driveSystem, outtake, intake, poseEstimator, limelight, cargoTracker, planner);
+    }
+
+    if (TAXI_AUTO.equals(name)) {
+      // trajectory to follow during auto
+      Trajectory trajectory = trajectories.get(AutoPaths.TAXI);
+
+      // start from where the path starts, then follow it
+      return new InstantCommand(() -> poseEstimator.resetPose(trajectory.getInitialPose()))
+        .andThen(driveSystem.trajectoryCommand(trajectory, poseEstimator::getEstimatedPose));
+    }
+
+    return null;
+  }
+
+  /**
+   * Take every subsystem off the command scheduler, along with its default command, when the robot is closed.
+   */
+  void unregisterSubsystems() {
+    CommandScheduler.getInstance().unregisterSubsystem(driveSystem, outtake, intake, climb, poseEstimator, cargoTracker,
+        limelight, photon);
+  }
+
+  /**
+   * @return the pose estimator, for reporting where the robot ended up
+   */
+  public PoseEstimatorSubsystem getPoseEstimator() {
+    return poseEstimator;
+  }
+
+  /**
+   * @return the drive, for tests that read it the way commands do
+   */
+  public DriveSystem getDriveSystem() {
+    return driveSystem;
+  }
 
-    // command to follow that trajectory
-    return driveSystem.trajectoryCommand(trajectory);
+  /**
+   * @return the shooter, for tests that read it the way commands do
+   */
+  public OuttakeSubsystem getOuttake() {
+    return outtake;
+  }
+
+  /**
+   * @return the Limelight, for tests that read it the way commands do
+   */
+  public Limelight getLimelight() {
+    return limelight;
   }
 }
@@ -0,0 +1,28 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.wpilibj.RobotBase;
+
+/**
+ * Where the robot code's inputs come from, which decides the IO implementation each subsystem is given.
+ */
+public enum RobotMode {
+  /** Running on the roboRIO, talking to real hardware. */
+  REAL,
+
+  /** Running on a desktop against simulated hardware. */
+  SIM,
+
+  /** Running on a desktop with inputs read back from a log, see {@link frc.robot.simulation.LogReplay}. */
+  REPLAY;
+
+  /**
+   * @return {@link #REAL} on the roboRIO, otherwise {@link #SIM}
+   */
+  public static RobotMode fromRuntime() {
+    return RobotBase.isReal() ? REAL : SIM;
+  }
+}
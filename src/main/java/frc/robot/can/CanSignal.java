@@ -0,0 +1,28 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.can;
+
+/**
+ * Values a motor controller reports in its CAN status frames. <br/>
+ *
+ * IO implementations declare the ones they read to {@link CanStatusFrames}, which slows down every frame that
+ * doesn't carry one of them.
+ */
+public enum CanSignal {
+  /** Output the controller is applying. Declare this on a controller that others follow. */
+  APPLIED_OUTPUT,
+  FAULTS,
+  LIMIT_SWITCHES,
+  VELOCITY,
+  POSITION,
+  CURRENT,
+  TEMPERATURE,
+  BUS_VOLTAGE,
+  ANALOG,
+  /** Closed-loop error and target. */
+  CLOSED_LOOP,
+  /** Active trajectory point of Motion Magic. */
+  MOTION_MAGIC
+}
@@ -0,0 +1,367 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.can;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
+import com.ctre.phoenix.motorcontrol.can.BaseTalon;
+import com.ctre.phoenix.motorcontrol.can.TalonFX;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+import com.revrobotics.REVLibError;
+
+import edu.wpi.first.hal.can.CANStatus;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+
+import static frc.robot.can.CanSignal.*;
+
+/**
+ * Sets the status frame periods of every motor controller from what the code actually reads. <br/>
+ *
+ * Out of the box each SparkMax and Talon sends every status frame at its default rate, most of which nobody reads.
+ * Each IO implementation declares the signals it uses and how often it needs them when it creates its motor
+ * controllers; a frame carrying a declared signal is sent at the fastest rate asked for, and every other frame is
+ * slowed right down. <br/>
+ *
+ * The resulting configuration is kept so {@link #check()} can verify it, and an estimate of the bus load from the
+ * configured devices is published under the "CAN" table next to the utilization the roboRIO measures.
+ */
+public final class CanStatusFrames {
+  /** Bits in an extended CAN frame with 8 data bytes, not counting bit stuffing. */
+  private static final double FRAME_BITS = 128;
+  private static final double BUS_BITS_PER_SECOND = 1_000_000;
+
+  /** Estimated utilization above which {@link #check()} warns, leaving room for devices this doesn't know about. */
+  private static final double MAX_ESTIMATED_UTILIZATION = 0.6;
+
+  /** Loops between reading the measured utilization, 1 second at the default 20 ms period. */
+  private static final int PUBLISH_PERIOD_LOOPS = 50;
+
+  /** Period of the control frames sent to each device: every 10 ms by Phoenix, every loop by REVLib. */
+  private static final int TALON_CONTROL_PERIOD = 10;
+  private static final int SPARK_MAX_CONTROL_PERIOD = 20;
+
+  /** Longest period each vendor allows, in milliseconds. */
+  private static final int TALON_MAX_PERIOD = 255;
+  private static final int SPARK_MAX_MAX_PERIOD = 65535;
+
+  private static final FrameSpec[] SPARK_MAX_FRAMES = {
+    new FrameSpec("Status0", 10, 100, EnumSet.of(APPLIED_OUTPUT, FAULTS, LIMIT_SWITCHES)),
+    new FrameSpec("Status1", 20, 500, EnumSet.of(VELOCITY, CURRENT, TEMPERATURE, BUS_VOLTAGE)),
+    new FrameSpec("Status2", 20, 500, EnumSet.of(POSITION)),
+    new FrameSpec("Status3", 50, 500, EnumSet.of(ANALOG))
+  };
+  private static final PeriodicFrame[] SPARK_MAX_FRAME_IDS = {
+    PeriodicFrame.kStatus0, PeriodicFrame.kStatus1, PeriodicFrame.kStatus2, PeriodicFrame.kStatus3
+  };
+
+  // The Talons' selected sensor comes in Status 2, and the raw quadrature, pulse width and integrated sensor values
+  // in their own frames, which nothing here reads
+  private static final FrameSpec[] TALON_SRX_FRAMES = {
+    new FrameSpec("Status_1_General", 10, 100, EnumSet.of(APPLIED_OUTPUT, FAULTS, LIMIT_SWITCHES)),
+    new FrameSpec("Status_2_Feedback0", 20, 255, EnumSet.of(VELOCITY, POSITION, CURRENT)),
+    new FrameSpec("Status_3_Quadrature", 160, 255, EnumSet.noneOf(CanSignal.class)),
+    new FrameSpec("Status_4_AinTempVbat", 160, 255, EnumSet.of(TEMPERATURE, BUS_VOLTAGE, ANALOG)),
+    new FrameSpec("Status_8_PulseWidth", 160, 255, EnumSet.noneOf(CanSignal.class)),
+    new FrameSpec("Status_10_MotionMagic", 160, 255, EnumSet.of(MOTION_MAGIC)),
+    new FrameSpec("Status_12_Feedback1", 160, 255, EnumSet.noneOf(CanSignal.class)),
+    new FrameSpec("Status_13_Base_PIDF0", 160, 255, EnumSet.of(CLOSED_LOOP)),
+    new FrameSpec("Status_14_Turn_PIDF1", 160, 255, EnumSet.noneOf(CanSignal.class))
+  };
+  private static final StatusFrameEnhanced[] TALON_SRX_FRAME_IDS = {
+    StatusFrameEnhanced.Status_1_General, StatusFrameEnhanced.Status_2_Feedback0,
+    StatusFrameEnhanced.Status_3_Quadrature, StatusFrameEnhanced.Status_4_AinTempVbat,
+    StatusFrameEnhanced.Status_8_PulseWidth, StatusFrameEnhanced.Status_10_MotionMagic,
+    StatusFrameEnhanced.Status_12_Feedback1, StatusFrameEnhanced.Status_13_Base_PIDF0,
+    StatusFrameEnhanced.Status_14_Turn_PIDF1
+  };
+
+  // A TalonFX has no analog input, and sends its supply and stator current in a frame of their own
+  private static final FrameSpec[] TALON_FX_FRAMES = {
+    new FrameSpec("Status_1_General", 10, 100, EnumSet.of(APPLIED_OUTPUT, FAULTS, LIMIT_SWITCHES)),
+    new FrameSpec("Status_2_Feedback0", 20, 255, EnumSet.of(VELOCITY, POSITION)),
+    new FrameSpec("Status_4_AinTempVbat", 160, 255, EnumSet.of(TEMPERATURE, BUS_VOLTAGE)),
+    new FrameSpec("Status_10_MotionMagic", 160, 255, EnumSet.of(MOTION_MAGIC)),
+    new FrameSpec("Status_12_Feedback1", 160, 255, EnumSet.noneOf(CanSignal.class)),
+    new FrameSpec("Status_13_Base_PIDF0", 160, 255, EnumSet.of(CLOSED_LOOP)),
+    new FrameSpec("Status_14_Turn_PIDF1", 160, 255, EnumSet.noneOf(CanSignal.class)),
+    new FrameSpec("Status_21_FeedbackIntegrated", 250, 255, EnumSet.noneOf(CanSignal.class)),
+    new FrameSpec("Status_Brushless_Current", 50, 255, EnumSet.of(CURRENT))
+  };
+  private static final StatusFrameEnhanced[] TALON_FX_FRAME_IDS = {
+    StatusFrameEnhanced.Status_1_General, StatusFrameEnhanced.Status_2_Feedback0,
+    StatusFrameEnhanced.Status_4_AinTempVbat, StatusFrameEnhanced.Status_10_MotionMagic,
+    StatusFrameEnhanced.Status_12_Feedback1, StatusFrameEnhanced.Status_13_Base_PIDF0,
+    StatusFrameEnhanced.Status_14_Turn_PIDF1, StatusFrameEnhanced.Status_21_FeedbackIntegrated,
+    StatusFrameEnhanced.Status_Brushless_Current
+  };
+
+  private static CanStatusFrames instance;
+
+  private final List<DeviceConfiguration> devices = new ArrayList<>();
+
+  private final NetworkTable table = NetworkTableInstance.getDefault().getTable("CAN");
+  private final NetworkTableEntry estimatedEntry = table.getEntry("Estimated Utilization (%)");
+  private final NetworkTableEntry defaultEntry = table.getEntry("Default Rates Utilization (%)");
+  private final NetworkTableEntry measuredEntry = table.getEntry("Measured Utilization (%)");
+  private final NetworkTableEntry busOffEntry = table.getEntry("Bus Off Count");
+  private final NetworkTableEntry txFullEntry = table.getEntry("TX Full Count");
+  private int loopsSincePublish = 0;
+
+  /** A status frame and the signals it carries, with periods in milliseconds. */
+  private static class FrameSpec {
+    final String name;
+    final int defaultPeriod;
+    final int unusedPeriod;
+    final Set<CanSignal> signals;
+
+    FrameSpec(String name, int defaultPeriod, int unusedPeriod, Set<CanSignal> signals) {
+      this.name = name;
+      this.defaultPeriod = defaultPeriod;
+      this.unusedPeriod = unusedPeriod;
+      this.signals = signals;
+    }
+  }
+
+  /** A signal a device's user reads, and the longest it can go between updates. */
+  public static class SignalUse {
+    public final CanSignal signal;
+    public final int periodMs;
+
+    SignalUse(CanSignal signal, int periodMs) {
+      this.signal = signal;
+      this.periodMs = periodMs;
+    }
+  }
+
+  /** The status frame periods chosen for one device, and what they were chosen from. */
+  public static class DeviceConfiguration {
+    public final String name;
+    /** "SparkMax", "TalonFX" or "TalonSRX". */
+    public final String type;
+    public final int id;
+    /** Longest acceptable period in milliseconds of each declared signal. */
+    public final Map<CanSignal, Integer> requested;
+    public final List<String> frameNames;
+    /** Period in milliseconds of each frame in {@link #frameNames}. */
+    public final List<Integer> framePeriods;
+
+    private final FrameSpec[] frames;
+    private final int controlPeriod;
+
+    DeviceConfiguration(String name, String type, int id, Map<CanSignal, Integer> requested, FrameSpec[] frames,
+        int[] periods, int controlPeriod) {
+      this.name = name;
+      this.type = type;
+      this.id = id;
+      this.requested = Collections.unmodifiableMap(requested);
+      this.frames = frames;
+      this.controlPeriod = controlPeriod;
+
+      List<String> names = new ArrayList<>();
+      List<Integer> periodList = new ArrayList<>();
+      for (int i = 0; i < frames.length; i++) {
+        names.add(frames[i].name);
+        periodList.add(periods[i]);
+      }
+      frameNames = Collections.unmodifiableList(names);
+      framePeriods = Collections.unmodifiableList(periodList);
+    }
+
+    /**
+     * @param configured true for the configured periods, false for the vendor defaults
+     * @return frames per second this device puts on the bus, both directions
+     */
+    double framesPerSecond(boolean configured) {
+      double total = 1000.0 / controlPeriod;
+      for (int i = 0; i < frames.length; i++) {
+        total += 1000.0 / (configured ? framePeriods.get(i) : frames[i].defaultPeriod);
+      }
+      return total;
+    }
+  }
+
+  /**
+   * Use {@link #getInstance()} on the robot. Tests make their own, so each starts with no devices.
+   */
+  CanStatusFrames() {}
+
+  /**
+   * @return the manager shared by the whole robot
+   */
+  public static synchronized CanStatusFrames getInstance() {
+    if (instance == null) {
+      instance = new CanStatusFrames();
+    }
+    return instance;
+  }
+
+  /**
+   * Declare a signal for {@link #configure}.
+   *
+   * @param signal the value that is read
+   * @param periodMs the longest it can go between updates, in milliseconds
+   */
+  public static SignalUse use(CanSignal signal, int periodMs) {
+    return new SignalUse(signal, periodMs);
+  }
+
+  /**
+   * Set the status frames of a SparkMax. Call once, when the motor controller is created.
+   *
+   * @param name what the motor does, for the dashboard and warnings
+   * @param motor the motor controller
+   * @param uses every signal read from it, nothing if it is only ever given outputs
+   */
+  public void configure(String name, CANSparkMax motor, SignalUse... uses) {
+    DeviceConfiguration device = add(name, "SparkMax", motor.getDeviceId(), SPARK_MAX_FRAMES, SPARK_MAX_MAX_PERIOD,
+        SPARK_MAX_CONTROL_PERIOD, uses);
+
+    for (int i = 0; i < SPARK_MAX_FRAMES.length; i++) {
+      REVLibError error = motor.setPeriodicFramePeriod(SPARK_MAX_FRAME_IDS[i], device.framePeriods.get(i));
+      if (error != REVLibError.kOk) {
+        DriverStation.reportWarning("Could not set " + SPARK_MAX_FRAMES[i].name + " on " + name + ": " + error, false);
+      }
+    }
+  }
+
+  /**
+   * Set the status frames of a TalonFX or TalonSRX. Call once, when the motor controller is created.
+   *
+   * @param name what the motor does, for the dashboard and warnings
+   * @param motor the motor controller
+   * @param uses every signal read from it, nothing if it is only ever given outputs
+   */
+  public void configure(String name, BaseTalon motor, SignalUse... uses) {
+    boolean talonFX = motor instanceof TalonFX;
+    FrameSpec[] frames = talonFX ? TALON_FX_FRAMES : TALON_SRX_FRAMES;
+    StatusFrameEnhanced[] frameIds = talonFX ? TALON_FX_FRAME_IDS : TALON_SRX_FRAME_IDS;
+    DeviceConfiguration device = add(name, talonFX ? "TalonFX" : "TalonSRX", motor.getDeviceID(), frames,
+        TALON_MAX_PERIOD, TALON_CONTROL_PERIOD, uses);
+
+    // No timeout, so a missing Talon doesn't hold up robotInit
+    for (int i = 0; i < frames.length; i++) {
+      motor.setStatusFramePeriod(frameIds[i], device.framePeriods.get(i), 0);
+    }
+  }
+
+  /**
+   * Work out the frame periods for a device from its declared signals and record them.
+   */
+  private synchronized DeviceConfiguration add(String name, String type, int id, FrameSpec[] frames, int maxPeriod,
+      int controlPeriod, SignalUse[] uses) {
+    Map<CanSignal, Integer> requested = new EnumMap<>(CanSignal.class);
+    for (SignalUse use : uses) {
+      requested.merge(use.signal, use.periodMs, Math::min);
+    }
+
+    int[] periods = new int[frames.length];
+    for (int i = 0; i < frames.length; i++) {
+      int period = frames[i].unusedPeriod;
+      for (Map.Entry<CanSignal, Integer> entry : requested.entrySet()) {
+        if (frames[i].signals.contains(entry.getKey())) {
+          period = Math.min(period, entry.getValue());
+        }
+      }
+      periods[i] = Math.max(1, Math.min(period, maxPeriod));
+    }
+
+    DeviceConfiguration device = new DeviceConfiguration(name, type, id, requested, frames, periods, controlPeriod);
+    devices.add(device);
+    return device;
+  }
+
+  /**
+   * @return every device configured so far, in the order they were configured
+   */
+  public synchronized List<DeviceConfiguration> getDevices() {
+    return Collections.unmodifiableList(new ArrayList<>(devices));
+  }
+
+  /**
+   * Estimate the bus utilization from the configured devices, including the control frames sent to them.
+   *
+   * @param configured true for the configured periods, false for what the same devices send by default
+   * @return utilization from 0 to 1
+   */
+  public synchronized double getEstimatedUtilization(boolean configured) {
+    double framesPerSecond = 0;
+    for (DeviceConfiguration device : devices) {
+      framesPerSecond += device.framesPerSecond(configured);
+    }
+    return framesPerSecond * FRAME_BITS / BUS_BITS_PER_SECOND;
+  }
+
+  /**
+   * Check the configuration: every declared signal arrives at least as often as asked for, no two devices of the
+   * same type share an id, and the estimated load leaves headroom. Runs against whatever devices have been
+   * configured, so in simulation it checks the same configuration the robot would get.
+   *
+   * @return a description of each problem, empty if there are none
+   */
+  public synchronized List<String> check() {
+    List<String> problems = new ArrayList<>();
+    Set<String> ids = new HashSet<>();
+
+    for (DeviceConfiguration device : devices) {
+      if (!ids.add(device.type + " " + device.id)) {
+        problems.add(device.name + ": another " + device.type + " already has CAN id " + device.id);
+      }
+
+      for (Map.Entry<CanSignal, Integer> entry : device.requested.entrySet()) {
+        int fastest = Integer.MAX_VALUE;
+        for (int i = 0; i < device.frames.length; i++) {
+          if (device.frames[i].signals.contains(entry.getKey())) {
+            fastest = Math.min(fastest, device.framePeriods.get(i));
+          }
+        }
+
+        if (fastest == Integer.MAX_VALUE) {
+          problems.add(device.name + ": a " + device.type + " doesn't report " + entry.getKey());
+        } else if (fastest > entry.getValue()) {
+          problems.add(device.name + ": " + entry.getKey() + " arrives every " + fastest + " ms, needed every "
+              + entry.getValue() + " ms");
+        }
+      }
+    }
+
+    double utilization = getEstimatedUtilization(true);
+    if (utilization > MAX_ESTIMATED_UTILIZATION) {
+      problems.add(String.format("Estimated CAN utilization is %.0f%%", utilization * 100));
+    }
+    return problems;
+  }
+
+  /**
+   * Call once at the end of every robot loop. Publishes the estimated and measured utilization every
+   * {@link #PUBLISH_PERIOD_LOOPS} loops.
+   */
+  public void periodic() {
+    loopsSincePublish++;
+    if (loopsSincePublish < PUBLISH_PERIOD_LOOPS) {
+      return;
+    }
+    loopsSincePublish = 0;
+
+    CANStatus status = RobotController.getCANStatus();
+    estimatedEntry.setDouble(getEstimatedUtilization(true) * 100);
+    defaultEntry.setDouble(getEstimatedUtilization(false) * 100);
+    measuredEntry.setDouble(status.percentBusUtilization * 100);
+    busOffEntry.setDouble(status.busOffCount);
+    txFullEntry.setDouble(status.txFullCount);
+  }
+}
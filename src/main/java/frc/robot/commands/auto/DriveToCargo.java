@@ -5,58 +5,111 @@
 package frc.robot.commands.auto;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.trajectory.Trajectory;
-import edu.wpi.first.math.trajectory.TrajectoryGenerator;
-import edu.wpi.first.wpilibj2.command.InstantCommand;
-import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import frc.robot.commands.drive.FollowPlannedTrajectory;
+import frc.robot.subsystems.CargoTrackerSubsystem;
 import frc.robot.subsystems.DriveSystem;
-import frc.robot.vision.PhotonVision;
-
-public class DriveToCargo extends SequentialCommandGroup {
+import frc.robot.subsystems.PoseEstimatorSubsystem;
+import frc.robot.trajectory.CargoIntercept;
+import frc.robot.trajectory.TrajectoryPlanner;
 
-  private DriveSystem subsystem;
-  private PhotonVision photon;
+import static frc.robot.Constants.VisionConstants.*;
 
-  private Trajectory trajectory;
+/**
+ * Drives to meet the closest piece of cargo. <br/>
+ *
+ * The cargo may be rolling, so rather than driving to where it is, the robot heads for where it can first catch it
+ * using {@link CargoIntercept}, and re-plans as the cargo's tracked velocity changes.
+ */
+public class DriveToCargo extends FollowPlannedTrajectory {
 
   /** Creates a new DriveToCargo. */
-  public DriveToCargo(DriveSystem subsystem, PhotonVision photon) {
-    this.subsystem = subsystem;
-    this.photon = photon;
-
-    addRequirements(subsystem);
-
-    // inside a command so they are evaluated at runtime rather than instantiation
-    InstantCommand generateTrajectory = new InstantCommand(
-      () -> {
-        // movement needed in order to get to cargo
-        Transform2d transform = photon.transformToTarget();
-
-        // if transform is null, instead transform to no movement
-        transform = (transform == null) ? new Transform2d() : transform;
-
-        // desired end pose, generated from current location plus movement to target
-        Pose2d endPose = subsystem.getPose().plus(transform);
-
-        trajectory = TrajectoryGenerator.generateTrajectory(
-          subsystem.getPose(), // current pose
-          List.of(), // waypoints to hit along path
-          endPose,  // desired end pose
-          subsystem.getTrajectoryConfig() // config includes max speed and accel
-        );
-      },
-      subsystem
-    );
+  public DriveToCargo(DriveSystem subsystem, PoseEstimatorSubsystem poseEstimator, CargoTrackerSubsystem cargoTracker, TrajectoryPlanner planner) {
+    this(subsystem, poseEstimator, new Intercept(subsystem, poseEstimator, cargoTracker, planner));
+  }
 
-    addCommands(
-      // generated at runtime instead of constructor
-      generateTrajectory,
-      // run generated path
-      subsystem.trajectoryCommand(trajectory)
+  private DriveToCargo(DriveSystem subsystem, PoseEstimatorSubsystem poseEstimator, Intercept intercept) {
+    super(
+      subsystem,
+      // evaluated when the command starts rather than at instantiation, and generated in the background
+      intercept::plan,
+      intercept::replan,
+      CARGO_REPLAN_PERIOD,
+      poseEstimator::getEstimatedPose
     );
   }
 
-  
+  /**
+   * Plans the paths to one piece of cargo, chosen when the command starts.
+   */
+  private static class Intercept {
+    private DriveSystem driveSystem;
+    private PoseEstimatorSubsystem poseEstimator;
+    private CargoTrackerSubsystem cargoTracker;
+    private TrajectoryPlanner planner;
+
+    /** Track ID of the cargo being chased, which stays the same piece of cargo even if others come into view. */
+    private int trackId = -1;
+
+    Intercept(DriveSystem driveSystem, PoseEstimatorSubsystem poseEstimator, CargoTrackerSubsystem cargoTracker, TrajectoryPlanner planner) {
+      this.driveSystem = driveSystem;
+      this.poseEstimator = poseEstimator;
+      this.cargoTracker = cargoTracker;
+      this.planner = planner;
+    }
+
+    CompletableFuture<Trajectory> plan() {
+      Pose2d start = poseEstimator.getEstimatedPose();
+      trackId = cargoTracker.getClosestTrackId(start.getTranslation());
+
+      Pose2d endPose = interceptFrom(start, 0);
+
+      // if nothing is tracked, instead plan no movement
+      if (endPose == null) {
+        return planner.plan(start, List.of(), start, driveSystem.getTrajectoryConfig());
+      }
+
+      // start out heading straight for the cargo
+      return planner.plan(
+        new Pose2d(start.getTranslation(), endPose.getRotation()), // current pose
+        List.of(), // waypoints to hit along path
+        endPose,  // desired end pose
+        driveSystem.getTrajectoryConfig() // config includes max speed and accel
+      );
+    }
+
+    /**
+     * @param from where the current trajectory will have the robot when the new one takes over
+     * @return the new plan, or null to finish the current trajectory if the cargo is no longer tracked
+     */
+    CompletableFuture<Trajectory> replan(Trajectory.State from) {
+      Pose2d endPose = interceptFrom(from.poseMeters, from.velocityMetersPerSecond);
+      if (endPose == null) {
+        return null;
+      }
+
+      return planner.plan(
+        from.poseMeters,
+        List.of(),
+        endPose,
+        // a new config, since the shared one must not change while it's being used
+        CargoIntercept.startingAt(driveSystem.getTrajectoryConfig(), from.velocityMetersPerSecond)
+      );
+    }
+
+    private Pose2d interceptFrom(Pose2d start, double startSpeed) {
+      Translation2d cargo = cargoTracker.getTrackPosition(trackId);
+      if (cargo == null) {
+        return null;
+      }
+
+      TrajectoryConfig limits = driveSystem.getTrajectoryConfig();
+      return CargoIntercept.interceptPose(start, startSpeed, cargo, cargoTracker.getTrackVelocity(trackId), limits, CARGO_INTERCEPT_HORIZON);
+    }
+  }
 }
@@ -6,58 +6,38 @@ package frc.robot.commands.auto;
 
 import java.util.List;
 
-import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
-
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Transform2d;
-import edu.wpi.first.math.trajectory.Trajectory;
-import edu.wpi.first.math.trajectory.TrajectoryGenerator;
-import edu.wpi.first.wpilibj2.command.InstantCommand;
+import frc.robot.commands.drive.FollowPlannedTrajectory;
 import frc.robot.subsystems.DriveSystem;
+import frc.robot.subsystems.PoseEstimatorSubsystem;
+import frc.robot.trajectory.TrajectoryPlanner;
 import frc.robot.vision.Limelight;
 
-public class DriveToHub extends SequentialCommandGroup {
-
-  private DriveSystem driveSystem;
-  private Limelight lime;
-
-  private Trajectory trajectory;
+public class DriveToHub extends FollowPlannedTrajectory {
 
   /** Creates a new DriveToHub. */
-  public DriveToHub(DriveSystem driveSystem, Limelight lime) {
-    this.driveSystem = driveSystem;
-    this.lime = lime;
-
-    // Use addRequirements() here to declare subsystem dependencies.
-    addRequirements(driveSystem);
-
-    InstantCommand driveToHub = new InstantCommand(
+  public DriveToHub(DriveSystem driveSystem, PoseEstimatorSubsystem poseEstimator, Limelight lime, TrajectoryPlanner planner) {
+    super(
+      driveSystem,
+      //Planned in the background when the command starts - allows the robot to drive to hub
       () -> {
         Transform2d transformToHub = lime.generateTransform();
 
         transformToHub = (transformToHub == null) ? new Transform2d() : transformToHub;
 
-        Pose2d endPose = driveSystem.getPose().plus(transformToHub);
+        // The transform was measured when the frame was captured, so apply it to where the robot was then
+        Pose2d endPose = poseEstimator.getEstimatedPoseAt(lime.getCaptureTimestamp()).plus(transformToHub);
 
-        trajectory = TrajectoryGenerator.generateTrajectory(
-          driveSystem.getPose(), // current pose
+        return planner.plan(
+          poseEstimator.getEstimatedPose(), // current pose
           List.of(), // waypoints to hit along path
           endPose,  // desired end pose
           driveSystem.getTrajectoryConfig() // config includes max speed and accel
         );
-      }, 
-      driveSystem
+      },
+      //drives the instructed path, tracking the vision-corrected pose it was planned from
+      poseEstimator::getEstimatedPose
     );
-
-    addCommands(
-      //Generated at runtime instead of in constructor - allows the robot to drive to hub
-      driveToHub,
-
-      //drives the instructed path
-      driveSystem.trajectoryCommand(trajectory)
-    );
-
   }
-
- 
 }
@@ -5,32 +5,38 @@
 package frc.robot.commands.auto;
 
 
-import edu.wpi.first.wpilibj2.command.ParallelCommandGroup;
+import edu.wpi.first.wpilibj2.command.ParallelDeadlineGroup;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import frc.robot.commands.Intake.Deploy;
 import frc.robot.commands.drive.RotateToAngle;
 import frc.robot.commands.drive.RotateToTarget;
 import frc.robot.commands.outtake.OuttakeHigh;
+import frc.robot.subsystems.CargoTrackerSubsystem;
 import frc.robot.subsystems.DriveSystem;
 import frc.robot.subsystems.IntakeSubsystem;
 import frc.robot.subsystems.OuttakeSubsystem;
+import frc.robot.subsystems.PoseEstimatorSubsystem;
+import frc.robot.telemetry.LoopProfiler;
+import frc.robot.trajectory.TrajectoryPlanner;
 import frc.robot.vision.Limelight;
-import frc.robot.vision.PhotonVision;
 
 
 public class ShootThreeStart extends SequentialCommandGroup {
-  private OuttakeSubsystem autoOuttake;
-  private DriveSystem autoDriveSystem;
-  private PhotonVision autoPhoton;
-  private IntakeSubsystem autoIntake;
-  private Limelight autoLime;
-  /** Creates a new ShootThreeInAuto. */
-  public ShootThreeStart() {
-    autoOuttake = new OuttakeSubsystem();
-    autoIntake = new IntakeSubsystem();
+  /** Longest time in seconds to spend on a shot, so a jammed or missing cargo doesn't stall the routine. */
+  private static final double SHOOT_TIMEOUT = 3.0;
+
+  /** Time in seconds given to each turn, since the turning commands hold their angle rather than finishing. */
+  private static final double TURN_TIME = 1.0;
+
+  /** Creates a new ShootThreeInAuto. Uses the robot's subsystems rather than creating its own, which would claim the same motors twice. */
+  public ShootThreeStart(DriveSystem autoDriveSystem, OuttakeSubsystem autoOuttake, IntakeSubsystem autoIntake,
+      PoseEstimatorSubsystem autoPoseEstimator, Limelight autoLime, CargoTrackerSubsystem autoCargoTracker, TrajectoryPlanner autoPlanner) {
     // Add your commands in the addCommands() call, e.g.
     // addCommands(new FooCommand(), new BarCommand());
     
+    // Each step is instrumented so the LoopProfiler can report how long it took
+    LoopProfiler profiler = LoopProfiler.getInstance();
+
     /**
      * This sequential command allows the robot to shoot the preloaded,
      * Collect the cargo from the tarmac and the terminal,
@@ -39,22 +45,22 @@ public class ShootThreeStart extends SequentialCommandGroup {
      */
     addCommands(
       //Shoots the preloaded cargo into the upper port
-      new OuttakeHigh(autoOuttake),
+      profiler.instrument(new OuttakeHigh(autoOuttake, 1)).withTimeout(SHOOT_TIMEOUT),
       //Backs up so the robot can target the next cargo
-      new AutoDrive(autoDriveSystem, -0.8, 0.8),
+      profiler.instrument(new AutoDrive(autoDriveSystem, -0.8, 0.8)),
       //Rotates the robot to a 60 degree angle
-      new RotateToAngle(autoDriveSystem, 60.0),
-      //Runs the DriveToCargo and Deploy commands at the same time, twice over
-      new ParallelCommandGroup(new DriveToCargo(autoDriveSystem, autoPhoton), new Deploy(autoIntake)),
-      new ParallelCommandGroup(new DriveToCargo(autoDriveSystem, autoPhoton), new Deploy(autoIntake)),
+      profiler.instrument(new RotateToAngle(autoDriveSystem, 60.0)).withTimeout(TURN_TIME),
+      //Runs the Deploy command while DriveToCargo drives to each cargo, twice over
+      new ParallelDeadlineGroup(profiler.instrument(new DriveToCargo(autoDriveSystem, autoPoseEstimator, autoCargoTracker, autoPlanner)), profiler.instrument(new Deploy(autoIntake))),
+      new ParallelDeadlineGroup(profiler.instrument(new DriveToCargo(autoDriveSystem, autoPoseEstimator, autoCargoTracker, autoPlanner)), profiler.instrument(new Deploy(autoIntake))),
       //Drives the robot from the terminal to the tarmac
-      new AutoDrive(autoDriveSystem, 0.8, 2.0),
+      profiler.instrument(new AutoDrive(autoDriveSystem, 0.8, 2.0)),
       //Rotates the robot so it can target the hub
-      new RotateToTarget(autoDriveSystem, autoLime, null),
+      profiler.instrument(new RotateToTarget(autoDriveSystem, autoLime, null)).withTimeout(TURN_TIME),
       //Drives the robot to the hub
-      new DriveToHub(autoDriveSystem, autoLime),
+      profiler.instrument(new DriveToHub(autoDriveSystem, autoPoseEstimator, autoLime, autoPlanner)),
       //Outtakes the two collected cargo into the hub
-      new OuttakeHigh(autoOuttake)
+      profiler.instrument(new OuttakeHigh(autoOuttake, 2)).withTimeout(SHOOT_TIMEOUT)
     );
   }
 }
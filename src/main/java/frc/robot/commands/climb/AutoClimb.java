@@ -0,0 +1,51 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.climb;
+
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.subsystems.ClimbSubsystem;
+
+/**
+ * Runs the automatic climb. <br/>
+ *
+ * The first run puts the telescopes up and finishes, for the driver to drive under the mid rung. The next run climbs
+ * from the mid rung to the traversal rung. Whether it finishes or is interrupted, both stages hold where they are,
+ * and the next run carries on from the same step.
+ */
+public class AutoClimb extends CommandBase {
+  private ClimbSubsystem subsystem;
+
+  /** Creates a new AutoClimb. */
+  public AutoClimb(ClimbSubsystem subsystem) {
+    // Use addRequirements() here to declare subsystem dependencies.
+    this.subsystem = subsystem;
+    addRequirements(this.subsystem);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    subsystem.startSequence();
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    subsystem.runSequence();
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    // The synchronizer stops being stepped either way, so the telescopes have to be handed to Motion Magic
+    subsystem.pauseSequence();
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return subsystem.isSequenceWaiting();
+  }
+}
@@ -0,0 +1,45 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.climb;
+
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.subsystems.ClimbSubsystem;
+
+/**
+ * Holds the telescopes and the second stage where the last command left them, stepping the synchronizer every loop.
+ * The climber's default command, so nothing keeps running on a velocity the synchronizer set and stopped stepping.
+ */
+public class HoldClimb extends CommandBase {
+  private ClimbSubsystem subsystem;
+
+  /** Creates a new HoldClimb. */
+  public HoldClimb(ClimbSubsystem subsystem) {
+    // Use addRequirements() here to declare subsystem dependencies.
+    this.subsystem = subsystem;
+    addRequirements(this.subsystem);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    subsystem.startHold();
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    subsystem.hold();
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {}
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return false;
+  }
+}
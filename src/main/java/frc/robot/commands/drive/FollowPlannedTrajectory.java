@@ -0,0 +1,183 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.drive;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.MecanumControllerCommand;
+import frc.robot.subsystems.DriveSystem;
+
+/**
+ * Follows a trajectory that is planned in the background when the command starts. <br/>
+ * Until the plan is ready the robot holds still, so the scheduler never waits on path generation. <br/>
+ *
+ * It can also re-plan while driving, for targets that move. Re-plans start from where the trajectory being followed
+ * says the robot will be one loop later, at the speed it will be going, and are swapped in on that loop, so the robot
+ * carries on smoothly. Only one re-plan runs at a time, at most once per re-plan period.
+ */
+public class FollowPlannedTrajectory extends CommandBase {
+
+  private static final ChassisSpeeds STOPPED = new ChassisSpeeds();
+
+  private DriveSystem driveSystem;
+  private Supplier<CompletableFuture<Trajectory>> planner;
+  private Supplier<Pose2d> poseSupplier;
+
+  private Function<Trajectory.State, CompletableFuture<Trajectory>> replanner;
+  private double replanPeriod;
+
+  private CompletableFuture<Trajectory> plan;
+  private MecanumControllerCommand follower;
+
+  /** Trajectory being followed, and when following it started. */
+  private Trajectory trajectory;
+  private double followStart;
+
+  private CompletableFuture<Trajectory> replan;
+  /** When the pending re-plan should take over. */
+  private double replanSwapTime;
+  private double lastReplanTime;
+
+  /**
+   * Creates a new FollowPlannedTrajectory.
+   * 
+   * @param driveSystem the drive to follow the trajectory with
+   * @param planner starts planning the trajectory, called each time the command is scheduled
+   * @param poseSupplier the position of the robot used while following
+   */
+  public FollowPlannedTrajectory(DriveSystem driveSystem, Supplier<CompletableFuture<Trajectory>> planner, Supplier<Pose2d> poseSupplier) {
+    this(driveSystem, planner, null, 0, poseSupplier);
+  }
+
+  /**
+   * Creates a new FollowPlannedTrajectory that re-plans while it drives.
+   * 
+   * @param driveSystem the drive to follow the trajectory with
+   * @param planner starts planning the trajectory, called each time the command is scheduled
+   * @param replanner starts planning a new trajectory from the given state of the one being followed, or returns null
+   *                  to keep following it
+   * @param replanPeriod least time in seconds between re-plans
+   * @param poseSupplier the position of the robot used while following
+   */
+  public FollowPlannedTrajectory(DriveSystem driveSystem, Supplier<CompletableFuture<Trajectory>> planner,
+      Function<Trajectory.State, CompletableFuture<Trajectory>> replanner, double replanPeriod, Supplier<Pose2d> poseSupplier) {
+    this.driveSystem = driveSystem;
+    this.planner = planner;
+    this.replanner = replanner;
+    this.replanPeriod = replanPeriod;
+    this.poseSupplier = poseSupplier;
+
+    // Use addRequirements() here to declare subsystem dependencies.
+    addRequirements(driveSystem);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    follower = null;
+    replan = null;
+    plan = planner.get();
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    if (follower == null) {
+      if (!plan.isDone() || plan.isCompletedExceptionally()) {
+        // Hold position while the plan is generated
+        driveSystem.drive(STOPPED);
+        return;
+      }
+
+      follow(plan.join());
+    } else if (replanner != null) {
+      updateReplan();
+    }
+
+    follower.execute();
+  }
+
+  private void follow(Trajectory next) {
+    trajectory = next;
+    follower = driveSystem.trajectoryCommand(next, poseSupplier);
+    follower.initialize();
+    followStart = Timer.getFPGATimestamp();
+    lastReplanTime = followStart;
+  }
+
+  /**
+   * Swap in a finished re-plan, or start the next one when it's due.
+   */
+  private void updateReplan() {
+    double now = Timer.getFPGATimestamp();
+
+    if (replan != null) {
+      // Too late to pick up where it starts, so drop it and try again next period
+      boolean late = now > replanSwapTime + TimedRobot.kDefaultPeriod / 2;
+      if (!replan.isDone()) {
+        if (late) {
+          replan.cancel(false);
+          replan = null;
+        }
+        return;
+      }
+
+      // A failed or late re-plan just leaves the current trajectory in place
+      if (!late && !replan.isCompletedExceptionally()) {
+        follower.end(false);
+        follow(replan.join());
+      }
+      replan = null;
+      return;
+    }
+
+    double elapsed = now - followStart;
+    if (now - lastReplanTime >= replanPeriod && trajectory.getTotalTimeSeconds() - elapsed > replanPeriod) {
+      lastReplanTime = now;
+      replanSwapTime = now + TimedRobot.kDefaultPeriod;
+      replan = replanner.apply(trajectory.sample(elapsed + TimedRobot.kDefaultPeriod));
+    }
+  }
+
+  /**
+   * @return the trajectory being followed, or null until the first plan is ready
+   */
+  Trajectory getTrajectory() {
+    return (follower != null) ? trajectory : null;
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    if (follower != null) {
+      follower.end(interrupted);
+    } else {
+      plan.cancel(false);
+    }
+    if (replan != null) {
+      replan.cancel(false);
+    }
+    driveSystem.drive(STOPPED);
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    if (plan.isCompletedExceptionally() && !plan.isCancelled()) {
+      DriverStation.reportError("Trajectory planning failed", false);
+      return true;
+    }
+    return follower != null && follower.isFinished();
+  }
+}
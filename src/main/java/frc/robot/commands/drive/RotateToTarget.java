@@ -16,7 +16,11 @@ public class RotateToTarget extends CommandBase {
   private Limelight lime;
   private Joystick joy;
 
-  /** Creates a new RotateToTarget. */
+  /**
+   * Creates a new RotateToTarget.
+   * 
+   * @param j the joystick to drive with while turning, or null to only turn, such as in autonomous
+   */
   public RotateToTarget(DriveSystem driveSystem, Limelight limelight, Joystick j) {
     drive = driveSystem;
     lime = limelight;
@@ -35,10 +39,12 @@ public class RotateToTarget extends CommandBase {
   @Override
   public void execute() {
 
-    double deadBandX = MathUtil.applyDeadband(joy.getX(), 0.15);
-    double deadBandY = MathUtil.applyDeadband(joy.getY(), 0.15);
+    double deadBandX = (joy != null) ? MathUtil.applyDeadband(joy.getX(), 0.15) : 0.0;
+    double deadBandY = (joy != null) ? MathUtil.applyDeadband(joy.getY(), 0.15) : 0.0;
 
-    drive.driveWithTargeting(deadBandX, deadBandY, lime.getHorizontalOffset());
+    // Only turn towards a target seen in a recent frame, otherwise hold the current heading
+    double targetOffset = lime.hasTargets() ? lime.getHorizontalOffset() : 0.0;
+    drive.driveWithTargeting(deadBandX, deadBandY, targetOffset);
     
   }
 
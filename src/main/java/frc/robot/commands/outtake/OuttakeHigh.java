@@ -10,16 +10,32 @@ import frc.robot.subsystems.OuttakeSubsystem;
 public class OuttakeHigh extends CommandBase {
   private OuttakeSubsystem subsystem;
 
-  /** Creates a new OuttakeHigh. */
+  /** Shots to take before finishing, or 0 to keep shooting until interrupted. */
+  private final int shots;
+  private int shotsAtStart;
+
+  /** Creates a new OuttakeHigh that shoots until it's interrupted, such as when a button is released. */
   public OuttakeHigh(OuttakeSubsystem subsystem) {
+    this(subsystem, 0);
+  }
+
+  /**
+   * Creates a new OuttakeHigh that finishes after a number of shots, for autonomous.
+   * 
+   * @param shots how many cargo to shoot
+   */
+  public OuttakeHigh(OuttakeSubsystem subsystem, int shots) {
     this.subsystem = subsystem;
+    this.shots = shots;
     // Use addRequirements() here to declare subsystem dependencies.
     addRequirements(this.subsystem);
   }
 
   // Called when the command is initially scheduled.
   @Override
-  public void initialize() {}
+  public void initialize() {
+    shotsAtStart = subsystem.getShotsFired();
+  }
 
   // Called every time the scheduler runs while the command is scheduled.
   @Override
@@ -36,6 +52,6 @@ public class OuttakeHigh extends CommandBase {
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return false;
+    return shots > 0 && subsystem.getShotsFired() - shotsAtStart >= shots;
   }
 }
@@ -0,0 +1,60 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.outtake;
+
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.subsystems.OuttakeSubsystem;
+import frc.robot.vision.Limelight;
+
+/**
+ * Shoots into the high goal at the flywheel speed for the robot's distance from the hub. <br/>
+ *
+ * The distance is measured by the Limelight every loop, so the speed keeps up while the robot aims or moves. If the
+ * hub goes out of view the last distance is kept, and until the hub is first seen the speed for the nearest tuned
+ * distance is used.
+ */
+public class ShootAtDistance extends CommandBase {
+  private OuttakeSubsystem subsystem;
+  private Limelight lime;
+
+  private double distance;
+
+  /** Creates a new ShootAtDistance. */
+  public ShootAtDistance(OuttakeSubsystem subsystem, Limelight lime) {
+    this.subsystem = subsystem;
+    this.lime = lime;
+    // Use addRequirements() here to declare subsystem dependencies.
+    addRequirements(this.subsystem);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    distance = Double.NaN;
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    double measured = lime.getHubDistance();
+    if (!Double.isNaN(measured)) {
+      distance = measured;
+    }
+
+    subsystem.shootAtDistance(distance);
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    subsystem.stopShooter();
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return false;
+  }
+}
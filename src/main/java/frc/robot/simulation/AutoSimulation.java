@@ -0,0 +1,107 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Robot;
+import frc.robot.RobotContainer;
+import frc.robot.can.CanStatusFrames;
+import frc.robot.telemetry.LoopProfiler;
+import frc.robot.telemetry.LoopProfiler.CommandRun;
+
+/**
+ * Runs an autonomous routine in simulation without the GUI or a driver station, as fast as the computer allows. <br/>
+ *
+ * The simulated clock is paused and stepped one robot loop at a time, so timers, the odometry notifier and the
+ * drivetrain physics all see the same 20ms steps they would on the field, and a 15 second autonomous finishes in
+ * however long the code takes to run. Run it with <code>./gradlew simulateAuto -Pauto="Shoot Three Start"</code>
+ * to check how long each step of a routine takes before getting on a field.
+ */
+public final class AutoSimulation {
+  /** Length of the autonomous period in seconds. */
+  private static final double AUTO_LENGTH = 15.0;
+
+  private AutoSimulation() {}
+
+  /**
+   * @param args the name of the autonomous routine to run, defaults to {@link RobotContainer#TAXI_AUTO}
+   */
+  public static void main(String... args) {
+    String autoName = (args.length > 0) ? args[0] : RobotContainer.TAXI_AUTO;
+
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+
+    // Only advance time when told to, starting now
+    SimHooks.pauseTiming();
+
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(true);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+
+    Robot robot = new Robot();
+    robot.robotInit();
+
+    Command auto = robot.getRobotContainer().getAutonomousCommand(autoName);
+    if (auto == null) {
+      System.err.println("No autonomous routine named \"" + autoName + "\"");
+      System.exit(1);
+    }
+
+    long wallStart = System.nanoTime();
+    double matchStart = Timer.getFPGATimestamp();
+    auto.schedule();
+
+    int loops = 0;
+    long halCalls = 0;
+    int maxHalCalls = 0;
+    while (auto.isScheduled() && Timer.getFPGATimestamp() - matchStart < AUTO_LENGTH) {
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      robot.runRobotPeriodic();
+      loops++;
+      halCalls += robot.getHalCalls();
+      maxHalCalls = Math.max(maxHalCalls, robot.getHalCalls());
+    }
+
+    boolean finished = !auto.isScheduled();
+    if (!finished) {
+      // Ends whatever step was still running, so it shows up as interrupted in the report
+      auto.cancel();
+    }
+    double matchTime = Timer.getFPGATimestamp() - matchStart;
+    double wallTime = (System.nanoTime() - wallStart) / 1e9;
+    Pose2d pose = robot.getRobotContainer().getPoseEstimator().getEstimatedPose();
+
+    System.out.println("Autonomous: " + autoName);
+    System.out.printf("  %s after %.2fs of match time (%d loops)%n", finished ? "Finished" : "Timed out", matchTime, loops);
+    System.out.printf("  Final pose: x=%.3fm y=%.3fm heading=%.1fdeg%n", pose.getX(), pose.getY(), pose.getRotation().getDegrees());
+    System.out.printf("  Simulated in %.2fs of wall time (%.1fx real time)%n", wallTime, matchTime / wallTime);
+    System.out.printf("  HAL calls per loop: %.1f average, %d max%n", (double) halCalls / Math.max(loops, 1), maxHalCalls);
+
+    CanStatusFrames frames = CanStatusFrames.getInstance();
+    System.out.printf("  CAN estimated utilization: %.1f%% (%.1f%% at default frame rates)%n",
+        frames.getEstimatedUtilization(true) * 100, frames.getEstimatedUtilization(false) * 100);
+    for (String problem : frames.check()) {
+      System.out.println("    " + problem);
+    }
+
+    System.out.println("  Commands:");
+    for (CommandRun run : LoopProfiler.getInstance().getCommandRuns()) {
+      System.out.printf("    %-30s %6.2fs -> %6.2fs  %5.2fs%s%n", run.name, run.startTime - matchStart, run.endTime - matchStart,
+          run.getDuration(), run.interrupted ? "  (interrupted)" : "");
+    }
+
+    // The odometry notifier and NetworkTables keep non-daemon threads alive
+    System.exit(finished ? 0 : 2);
+  }
+}
@@ -0,0 +1,166 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.ClimbIOSim;
+import frc.robot.subsystems.ClimbSubsystem;
+import frc.robot.subsystems.ClimbSubsystem.ClimbState;
+
+/**
+ * Runs the automatic climb on the simulated climber, from the floor to the traversal rung, and pulls up onto the mid
+ * rung by hand, each with the telescopes synchronized and each on its own. <br/>
+ *
+ * The first press of the climb button puts the telescopes up, and the second, with the robot under the mid rung,
+ * climbs the rest of the way. The time spent in each step is reported so the slow ones can be found, along with the
+ * rung the robot ended up on and any rung the hooks swung past instead of catching. The simulated telescopes aren't
+ * quite matched, as on the robot, so the most the robot rolled and the roll left when the first limit switch closed
+ * are reported too. Run it with <code>./gradlew simulateClimb</code>.
+ */
+public final class ClimbSimulation {
+  /** Longest time in seconds to let each press of the button run. */
+  private static final double TIMEOUT = 30.0;
+
+  private ClimbSimulation() {}
+
+  public static void main(String... args) {
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+
+    System.out.println("Automatic climb:");
+    autoClimb("Synchronized", true);
+    autoClimb("Motion Magic on each side", false);
+
+    System.out.println("Pulling up onto the mid rung by hand:");
+    manualPull("Synchronized", true);
+    manualPull("Full power open-loop", false);
+
+    System.exit(0);
+  }
+
+  private static void autoClimb(String name, boolean synchronizedClimb) {
+    ClimbIOSim io = new ClimbIOSim();
+    ClimbSubsystem climb = new ClimbSubsystem(io, io::getPitch);
+    ClimberSim climber = io.getClimberSim();
+    if (!synchronizedClimb) {
+      climb.toggleSynchronized();
+    }
+
+    Map<ClimbState, Double> stepTimes = new EnumMap<>(ClimbState.class);
+    TiltTracker tilt = new TiltTracker(climber);
+    double reachTime = press(climb, stepTimes, tilt);
+    double climbTime = press(climb, stepTimes, tilt);
+
+    System.out.println("  " + name);
+    System.out.printf("    Telescopes up:         %s%n", describe(reachTime));
+    System.out.printf("    Mid rung to traversal: %s%n", describe(climbTime));
+    for (Map.Entry<ClimbState, Double> entry : stepTimes.entrySet()) {
+      System.out.printf("      %-10s %.2fs%n", entry.getKey(), entry.getValue());
+    }
+    System.out.printf("    Ended on rung %d of %d, hanging from the %s%n", climber.getRung(), ClimberSim.TRAVERSAL_RUNG,
+        climber.getSupport().name().toLowerCase().replace('_', ' '));
+    System.out.println("    Rungs missed: " + climber.getMisses());
+    tilt.print();
+  }
+
+  /**
+   * Put the telescopes up with the sequence, then hold the button that pulls them in, as
+   * {@link frc.robot.commands.climb.ClimbStageOne} does.
+   */
+  private static void manualPull(String name, boolean synchronizedClimb) {
+    ClimbIOSim io = new ClimbIOSim();
+    ClimbSubsystem climb = new ClimbSubsystem(io, io::getPitch);
+    ClimberSim climber = io.getClimberSim();
+    if (!synchronizedClimb) {
+      climb.toggleSynchronized();
+    }
+    press(climb, new EnumMap<>(ClimbState.class), new TiltTracker(climber));
+
+    TiltTracker tilt = new TiltTracker(climber);
+    double pullTime = Double.NaN;
+    for (double time = 0; time < TIMEOUT; time += TimedRobot.kDefaultPeriod) {
+      InputSnapshot.getInstance().update();
+      climb.periodic();
+      tilt.update();
+      if (climb.limitSwitchTriggered() || (!synchronizedClimb && (climber.isAtLimitSwitch(0) || climber.isAtLimitSwitch(1)))) {
+        pullTime = time;
+        break;
+      }
+      climb.activateClimb();
+    }
+    climb.deactivateClimb();
+
+    System.out.println("  " + name);
+    System.out.printf("    Pulled in:      %s%n", describe(pullTime));
+    System.out.printf("    Hanging from the %s, %.1f cm apart when stopped%n",
+        climber.getSupport().name().toLowerCase().replace('_', ' '),
+        Math.abs(climber.getExtension(0) - climber.getExtension(1)) * 100);
+    tilt.print();
+  }
+
+  /**
+   * Run the climb as the button's command would, until it finishes.
+   *
+   * @param stepTimes time spent in each step, added to
+   * @param tilt the robot's roll, updated every loop
+   * @return seconds taken, or NaN if it didn't finish
+   */
+  private static double press(ClimbSubsystem climb, Map<ClimbState, Double> stepTimes, TiltTracker tilt) {
+    climb.startSequence();
+    for (double time = 0; time < TIMEOUT; time += TimedRobot.kDefaultPeriod) {
+      // As the scheduler runs it: inputs, subsystem periodic, then the command
+      InputSnapshot.getInstance().update();
+      climb.periodic();
+      climb.runSequence();
+      stepTimes.merge(climb.getClimbState(), TimedRobot.kDefaultPeriod, Double::sum);
+      tilt.update();
+
+      if (climb.isSequenceWaiting()) {
+        return time + TimedRobot.kDefaultPeriod;
+      }
+    }
+    climb.pauseSequence();
+    return Double.NaN;
+  }
+
+  private static String describe(double time) {
+    return Double.isNaN(time) ? String.format("did not finish in %.0fs", TIMEOUT) : String.format("%.2fs", time);
+  }
+
+  /**
+   * Keeps the most the robot rolled, and its roll each time the first limit switch closed on a pull.
+   */
+  private static final class TiltTracker {
+    private final ClimberSim climber;
+    private double maximum = 0;
+    private double residual = 0;
+    private boolean atSwitch = true;
+
+    private TiltTracker(ClimberSim climber) {
+      this.climber = climber;
+    }
+
+    private void update() {
+      double roll = Math.abs(climber.getRoll());
+      maximum = Math.max(maximum, roll);
+
+      boolean switchClosed = climber.isAtLimitSwitch(0) || climber.isAtLimitSwitch(1);
+      if (switchClosed && !atSwitch) {
+        residual = Math.max(residual, roll);
+      }
+      atSwitch = switchClosed;
+    }
+
+    private void print() {
+      System.out.printf("    Roll: %.2f deg at most, %.2f deg as the first limit switch closed%n", maximum, residual);
+    }
+  }
+}
@@ -0,0 +1,369 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+
+/**
+ * Physics model of the climber and the robot hanging from it, driven by the voltage applied to each motor. <br/>
+ *
+ * Each telescope is a motor winding a strap onto a spool, carrying its share of the robot's weight while the robot
+ * hangs from the telescopes. Like the real robot, the two sides aren't quite the same: the center of mass is off to
+ * the first side, and that side's telescope has more friction, so driven alike it falls behind and the robot rolls.
+ * The second stage is a motor turning the arms, and carries the robot while it hangs from them. While hanging, the
+ * robot swings about the rung it's on like a damped pendulum. Hanging from the telescopes it swings about level, and
+ * hanging from the second stage it swings about the angle the arms have been turned through since they took the
+ * robot's weight. <br/>
+ *
+ * The rungs are where the field puts them relative to the robot, set below. The telescopes catch a rung when they
+ * pull in past it, and the second stage hooks onto one when it turns past its hook angle with the telescopes pulled
+ * in. Either misses if the robot isn't pitched the right way at that moment. The model uses no clocks or hardware, so
+ * the same inputs always give the same result.
+ *
+ * <p>Telescope voltages are positive to pull in, as the motors are wired. Angles are in degrees.
+ */
+public class ClimberSim {
+  /** What the robot's weight is on. */
+  public enum Support {
+    FLOOR,
+    TELESCOPES,
+    SECOND_STAGE
+  }
+
+  /** Rungs the robot can hang from, counting up from the floor. */
+  public static final int MID_RUNG = 1;
+  public static final int TRAVERSAL_RUNG = 3;
+
+  private static final double GRAVITY = 9.81;
+
+  /** Mass in kg of the moving part of each telescope. */
+  private static final double TELESCOPE_MASS = 1.0;
+
+  /** Share of the robot's weight on each telescope. */
+  private static final double[] TELESCOPE_LOAD_SHARE = {0.58, 0.42};
+
+  /** Sliding friction of each telescope in newtons. */
+  private static final double[] TELESCOPE_FRICTION = {90.0, 30.0};
+
+  /** Slowest a telescope can be moving in meters per second before friction holds it still. */
+  private static final double TELESCOPE_STICTION_VELOCITY = 0.001;
+
+  /** Telescope extension in meters where the hooks pass a rung, pitched the right way. */
+  private static final double RUNG_CATCH_EXTENSION = 0.58;
+
+  /** Robot pitch the telescopes point at the next rung, and how far off it they still catch it. */
+  private static final double RUNG_CATCH_PITCH = -25.0;
+  private static final double RUNG_CATCH_PITCH_TOLERANCE = 6.0;
+
+  /** Second stage angle the hooks meet the rung at, and how far in the telescopes have to be for them to reach. */
+  private static final double SECOND_STAGE_HOOK_ANGLE = 102.0;
+  private static final double SECOND_STAGE_HOOK_EXTENSION = 0.03;
+
+  /** Most the robot can be pitched for the second stage's hooks to land on the rung rather than swing past it. */
+  private static final double SECOND_STAGE_HOOK_PITCH_TOLERANCE = 6.0;
+
+  /** How far the second stage turns back, once the telescopes have the next rung, to let go of the last one. */
+  private static final double SECOND_STAGE_RELEASE_TRAVEL = 5.0;
+
+  /** Telescope extension in meters that closes its limit switch. */
+  private static final double LIMIT_SWITCH_EXTENSION = 0.003;
+
+  /** Hard stops of the second stage in degrees. */
+  private static final double SECOND_STAGE_HARD_STOP_MIN = 55.0;
+  private static final double SECOND_STAGE_HARD_STOP_MAX = 125.0;
+
+  /** Distance in meters from the rung to the robot's center of mass, and how quickly its swing dies down. */
+  private static final double PENDULUM_LENGTH = 0.7;
+  private static final double SWING_DAMPING_RATIO = 0.3;
+
+  private final DCMotor climbMotor;
+  private final double climbGearing;
+  private final double spoolRadius;
+  private final double maxExtension;
+  private final double telescopeSpacing;
+  private final DCMotor secondStageMotor;
+  private final double secondStageGearing;
+  private final double secondStageMoi;
+  private final double robotMass;
+
+  private final double[] extensions = new double[2];
+  private final double[] extensionVelocities = new double[2];
+  private double angle;
+  private double angularVelocity = 0;
+  private double pitch = 0;
+  private double pitchRate = 0;
+
+  private Support support = Support.FLOOR;
+  private int rung = 0;
+
+  /** Whether the second stage is hooked on a rung, which one, and its angle when the robot's weight went on it. */
+  private boolean secondStageHooked = false;
+  private int secondStageRung = 0;
+  private double secondStageReference = 0;
+
+  /** Second stage angle when the telescopes caught the next rung. */
+  private double catchAngle = 0;
+
+  private int misses = 0;
+
+  /**
+   * Creates a new ClimberSim, on the floor with the telescopes in.
+   *
+   * @param climbMotor the motor driving each telescope
+   * @param climbGearing reduction from a telescope motor to its spool
+   * @param spoolRadius radius of the spools in meters
+   * @param maxExtension furthest the telescopes extend in meters
+   * @param telescopeSpacing distance between the telescopes in meters
+   * @param secondStageMotor the motors driving the second stage together
+   * @param secondStageGearing reduction from the second stage motors to the arms
+   * @param secondStageMoi moment of inertia of the arms in kg m^2
+   * @param initialAngle second stage angle to start at
+   * @param robotMass robot mass in kilograms
+   */
+  public ClimberSim(DCMotor climbMotor, double climbGearing, double spoolRadius, double maxExtension,
+      double telescopeSpacing, DCMotor secondStageMotor, double secondStageGearing, double secondStageMoi, double initialAngle, double robotMass) {
+    this.climbMotor = climbMotor;
+    this.climbGearing = climbGearing;
+    this.spoolRadius = spoolRadius;
+    this.maxExtension = maxExtension;
+    this.telescopeSpacing = telescopeSpacing;
+    this.secondStageMotor = secondStageMotor;
+    this.secondStageGearing = secondStageGearing;
+    this.secondStageMoi = secondStageMoi;
+    this.angle = initialAngle;
+    this.robotMass = robotMass;
+  }
+
+  /**
+   * Advance the simulation.
+   *
+   * @param climbVoltage1 voltage applied to the first telescope's motor, positive to pull in
+   * @param climbVoltage2 voltage applied to the second telescope's motor, positive to pull in
+   * @param secondStageVoltage voltage applied to the second stage motors
+   * @param dt the time step in seconds, should be a few milliseconds at most to stay stable
+   */
+  public void update(double climbVoltage1, double climbVoltage2, double secondStageVoltage, double dt) {
+    double previousExtension = getExtension();
+    double previousAngle = angle;
+
+    updateTelescope(0, climbVoltage1, dt);
+    updateTelescope(1, climbVoltage2, dt);
+    updateSecondStage(secondStageVoltage, dt);
+    updatePitch(dt);
+
+    updateSupport(previousExtension, previousAngle);
+  }
+
+  private void updateTelescope(int side, double voltage, double dt) {
+    boolean loaded = support == Support.TELESCOPES;
+    double mass = loaded ? robotMass * TELESCOPE_LOAD_SHARE[side] : TELESCOPE_MASS;
+
+    // The motor pulls in with a force from its voltage, less back-EMF damping proportional to the telescope's speed,
+    // and the robot's weight pulls the telescopes out
+    double force = (loaded ? robotMass * TELESCOPE_LOAD_SHARE[side] * GRAVITY : 0)
+        - climbMotor.KtNMPerAmp * climbGearing * voltage / (climbMotor.rOhms * spoolRadius);
+    double damping = climbMotor.KtNMPerAmp * climbGearing * climbGearing
+        / (climbMotor.rOhms * climbMotor.KvRadPerSecPerVolt * spoolRadius * spoolRadius);
+
+    // Friction holds a telescope still until the force overcomes it, then opposes its motion
+    double velocity = extensionVelocities[side];
+    double friction = TELESCOPE_FRICTION[side];
+    if (Math.abs(velocity) < TELESCOPE_STICTION_VELOCITY && Math.abs(force) <= friction) {
+      extensionVelocities[side] = 0;
+      return;
+    }
+    force -= Math.copySign(friction, (Math.abs(velocity) < TELESCOPE_STICTION_VELOCITY) ? force : velocity);
+
+    // The damping settles an unloaded telescope far faster than the time step, so the step is solved exactly
+    double terminalVelocity = force / damping;
+    double decay = Math.exp(-damping / mass * dt);
+    extensions[side] += terminalVelocity * dt + (velocity - terminalVelocity) * (mass / damping) * (1 - decay);
+    extensionVelocities[side] = terminalVelocity + (velocity - terminalVelocity) * decay;
+
+    if (extensions[side] < 0 || extensions[side] > maxExtension) {
+      extensions[side] = MathUtil.clamp(extensions[side], 0, maxExtension);
+      extensionVelocities[side] = 0;
+    }
+  }
+
+  private void updateSecondStage(double voltage, double dt) {
+    // Hanging from the arms, turning them turns the robot about the rung
+    double inertia = secondStageMoi;
+    if (support == Support.SECOND_STAGE) {
+      inertia += robotMass * PENDULUM_LENGTH * PENDULUM_LENGTH;
+    }
+
+    // Solved exactly like the telescopes, in radians
+    double torque = secondStageMotor.KtNMPerAmp * secondStageGearing * voltage / secondStageMotor.rOhms;
+    double damping = secondStageMotor.KtNMPerAmp * secondStageGearing * secondStageGearing
+        / (secondStageMotor.rOhms * secondStageMotor.KvRadPerSecPerVolt);
+
+    double terminalVelocity = torque / damping;
+    double decay = Math.exp(-damping / inertia * dt);
+    double velocity = Math.toRadians(angularVelocity);
+    angle += Math.toDegrees(terminalVelocity * dt + (velocity - terminalVelocity) * (inertia / damping) * (1 - decay));
+    angularVelocity = Math.toDegrees(terminalVelocity + (velocity - terminalVelocity) * decay);
+
+    if (angle < SECOND_STAGE_HARD_STOP_MIN || angle > SECOND_STAGE_HARD_STOP_MAX) {
+      angle = MathUtil.clamp(angle, SECOND_STAGE_HARD_STOP_MIN, SECOND_STAGE_HARD_STOP_MAX);
+      angularVelocity = 0;
+    }
+  }
+
+  private void updatePitch(double dt) {
+    if (support == Support.FLOOR) {
+      pitch = 0;
+      pitchRate = 0;
+      return;
+    }
+
+    double equilibrium = (support == Support.SECOND_STAGE) ? angle - secondStageReference : 0;
+    double naturalFrequency = Math.sqrt(GRAVITY / PENDULUM_LENGTH);
+    double acceleration = -naturalFrequency * naturalFrequency * (pitch - equilibrium)
+        - 2 * SWING_DAMPING_RATIO * naturalFrequency * pitchRate;
+
+    pitchRate += acceleration * dt;
+    pitch += pitchRate * dt;
+  }
+
+  /**
+   * Move the robot's weight between the floor, the telescopes and the second stage as the hooks meet the rungs.
+   */
+  private void updateSupport(double previousExtension, double previousAngle) {
+    double extension = getExtension();
+    boolean caughtRung = previousExtension >= RUNG_CATCH_EXTENSION && extension < RUNG_CATCH_EXTENSION;
+
+    switch (support) {
+      case FLOOR:
+        // The driver has the robot under the mid rung
+        if (caughtRung && rung == 0) {
+          support = Support.TELESCOPES;
+          rung = MID_RUNG;
+        }
+        break;
+
+      case TELESCOPES:
+        if (rung == MID_RUNG && extension >= RUNG_CATCH_EXTENSION) {
+          // Let down far enough to stand on the floor again
+          support = Support.FLOOR;
+          rung = 0;
+          break;
+        }
+
+        boolean reachedHook = previousAngle < SECOND_STAGE_HOOK_ANGLE && angle >= SECOND_STAGE_HOOK_ANGLE;
+        if (!secondStageHooked && reachedHook && extension <= SECOND_STAGE_HOOK_EXTENSION) {
+          if (Math.abs(pitch) <= SECOND_STAGE_HOOK_PITCH_TOLERANCE) {
+            secondStageHooked = true;
+            secondStageRung = rung;
+          } else {
+            misses++;
+          }
+        }
+
+        if (secondStageHooked && secondStageRung == rung && extension > SECOND_STAGE_HOOK_EXTENSION) {
+          // Letting the telescopes out lowers the robot onto the second stage
+          support = Support.SECOND_STAGE;
+          secondStageReference = angle;
+        } else if (secondStageHooked && secondStageRung < rung && angle - catchAngle >= SECOND_STAGE_RELEASE_TRAVEL) {
+          secondStageHooked = false;
+        }
+        break;
+
+      case SECOND_STAGE:
+        if (caughtRung && rung < TRAVERSAL_RUNG) {
+          if (Math.abs(pitch - RUNG_CATCH_PITCH) <= RUNG_CATCH_PITCH_TOLERANCE) {
+            support = Support.TELESCOPES;
+            rung++;
+            catchAngle = angle;
+          } else {
+            misses++;
+          }
+        }
+        break;
+    }
+  }
+
+  /**
+   * @param side 0 for the first telescope, 1 for the second
+   * @return extension of the telescope in meters
+   */
+  public double getExtension(int side) {
+    return extensions[side];
+  }
+
+  /**
+   * @param side 0 for the first telescope, 1 for the second
+   * @return velocity of the telescope in meters per second, positive extending
+   */
+  public double getExtensionVelocity(int side) {
+    return extensionVelocities[side];
+  }
+
+  /**
+   * @return the average extension of the telescopes in meters
+   */
+  public double getExtension() {
+    return (extensions[0] + extensions[1]) / 2;
+  }
+
+  /**
+   * @return how far the robot is rolled by one telescope being out further than the other, in degrees, positive with
+   *         the first one further out
+   */
+  public double getRoll() {
+    return Math.toDegrees(Math.atan2(extensions[0] - extensions[1], telescopeSpacing));
+  }
+
+  /**
+   * @param side 0 for the first telescope, 1 for the second
+   * @return whether the telescope is in far enough to close its limit switch
+   */
+  public boolean isAtLimitSwitch(int side) {
+    return extensions[side] <= LIMIT_SWITCH_EXTENSION;
+  }
+
+  /**
+   * @return second stage angle in degrees
+   */
+  public double getAngle() {
+    return angle;
+  }
+
+  /**
+   * @return second stage angular velocity in degrees per second
+   */
+  public double getAngularVelocity() {
+    return angularVelocity;
+  }
+
+  /**
+   * @return robot pitch in degrees, as the gyro would measure it
+   */
+  public double getPitch() {
+    return pitch;
+  }
+
+  /**
+   * @return what the robot's weight is on
+   */
+  public Support getSupport() {
+    return support;
+  }
+
+  /**
+   * @return the rung the robot is hanging from, 0 on the floor up to {@link #TRAVERSAL_RUNG}
+   */
+  public int getRung() {
+    return rung;
+  }
+
+  /**
+   * @return times the hooks swung past a rung instead of catching it
+   */
+  public int getMisses() {
+    return misses;
+  }
+}
@@ -0,0 +1,144 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.OuttakeIOSim;
+import frc.robot.subsystems.OuttakeSubsystem;
+import frc.robot.subsystems.ShotMap;
+
+import static frc.robot.Constants.OuttakeConstants.*;
+
+/**
+ * Compares the shooter's two flywheel controllers on the simulated flywheel. <br/>
+ *
+ * For each controller the flywheel is spun up from a stop to the high goal speed, held there, and then a piece of
+ * cargo is launched, which takes some of the flywheel's speed with it. The time to first get within
+ * {@link frc.robot.Constants.OuttakeConstants#RPM_TOLERANCE} is reported for both, along with the speed the flywheel
+ * settles at. <br/>
+ *
+ * Then two pieces of cargo are shot with the default TalonFX velocity loop, once with the feeder sequenced shot by shot and
+ * once with it running continuously, and the time to empty the feeder is reported along with the flywheel's speed as
+ * each piece of cargo left. Run it with <code>./gradlew simulateFlywheel</code>.
+ */
+public final class FlywheelSimulation {
+  /** Longest time in seconds to wait for the flywheel to reach its setpoint. */
+  private static final double TIMEOUT = 5.0;
+
+  /** Time in seconds the flywheel is held at speed before the shot. */
+  private static final double HOLD_TIME = 1.0;
+
+  private FlywheelSimulation() {}
+
+  public static void main(String... args) {
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+
+    System.out.printf("Flywheel to %.0f RPM, within %.0f RPM:%n", HIGH_RPM, RPM_TOLERANCE);
+    run("TalonFX velocity loop", false);
+    run("State space", true);
+
+    System.out.printf("Shooting two cargo at %.0f RPM:%n", HIGH_RPM);
+    emptyFeeder("Continuous feeding", false);
+    emptyFeeder("Sequenced feeding", true);
+
+    System.exit(0);
+  }
+
+  private static void run(String name, boolean stateSpace) {
+    OuttakeIOSim io = new OuttakeIOSim();
+    OuttakeSubsystem outtake = new OuttakeSubsystem(io, new ShotMap());
+    if (stateSpace) {
+      outtake.toggleStateSpace();
+    }
+
+    outtake.shootHigh();
+    double spinUp = timeToSpeed(outtake);
+    for (double time = 0; time < HOLD_TIME; time += TimedRobot.kDefaultPeriod) {
+      step(outtake);
+    }
+    double held = outtake.getRPM();
+
+    io.launchCargo();
+    double dip = outtake.getRPM();
+    double recovery = timeToSpeed(outtake);
+    for (double time = 0; time < HOLD_TIME; time += TimedRobot.kDefaultPeriod) {
+      step(outtake);
+    }
+
+    System.out.println("  " + name);
+    System.out.println("    Spin-up:  " + describe(spinUp));
+    System.out.printf("    Recovery: %s, from %.0f RPM after the shot%n", describe(recovery), dip);
+    System.out.printf("    Settled at %.0f RPM before the shot and %.0f RPM after%n", held, outtake.getRPM());
+
+    // Leave the flywheel stopped, since the next run's subsystem is stepped by the same input snapshot
+    outtake.stopShooter();
+  }
+
+  private static void emptyFeeder(String name, boolean sequencing) {
+    OuttakeIOSim io = new OuttakeIOSim();
+    OuttakeSubsystem outtake = new OuttakeSubsystem(io, new ShotMap());
+    if (!sequencing) {
+      outtake.toggleSequencing();
+    }
+    io.loadCargo(2);
+
+    // As the scheduler runs it: subsystem periodic, then the shooting command
+    double time = 0;
+    while (io.getCargoLoaded() > 0 && time < TIMEOUT) {
+      step(outtake);
+      outtake.shootHigh();
+      time += TimedRobot.kDefaultPeriod;
+    }
+    outtake.stopShooter();
+
+    int missed = 0;
+    StringBuilder launches = new StringBuilder();
+    for (double rpm : io.getLaunchRpms()) {
+      launches.append(String.format(" %.0f", rpm));
+      if (Math.abs(rpm - HIGH_RPM) > RPM_TOLERANCE) {
+        missed++;
+      }
+    }
+
+    System.out.println("  " + name);
+    if (io.getCargoLoaded() > 0) {
+      System.out.printf("    Not empty after %.1fs%n", TIMEOUT);
+    } else {
+      System.out.printf("    Emptied in %.2fs from a stop%n", time);
+    }
+    System.out.println("    Launched at RPM:" + launches + ", " + missed + " out of tolerance");
+  }
+
+  /**
+   * Step until the flywheel is up to speed.
+   *
+   * @return seconds taken, or NaN if it didn't make it
+   */
+  private static double timeToSpeed(OuttakeSubsystem outtake) {
+    for (double time = 0; time < TIMEOUT; time += TimedRobot.kDefaultPeriod) {
+      step(outtake);
+      if (outtake.upToSpeed()) {
+        return time + TimedRobot.kDefaultPeriod;
+      }
+    }
+    return Double.NaN;
+  }
+
+  /**
+   * Run one robot loop of the outtake, reading its inputs and then running its controller.
+   */
+  private static void step(OuttakeSubsystem outtake) {
+    InputSnapshot.getInstance().update();
+    outtake.periodic();
+  }
+
+  private static String describe(double time) {
+    return Double.isNaN(time) ? String.format("not within tolerance after %.1fs", TIMEOUT) : String.format("%.2fs", time);
+  }
+}
@@ -0,0 +1,154 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.IntakeIOSim;
+import frc.robot.subsystems.IntakeSubsystem;
+
+import static frc.robot.Constants.IntakeConstants.DEPLOY_DEPLOYED_ANGLE;
+import static frc.robot.Constants.IntakeConstants.DEPLOY_STOWED_ANGLE;
+
+/**
+ * Deploys and retracts the simulated intake, with profiled moves and with the arm driven slowly to the switches. <br/>
+ *
+ * The time from the button to the limit switch is reported each way, along with how fast the arm hit the hard stop
+ * just past it. Then each switch in turn is broken, to check the motor is stopped by the stall detection rather than
+ * left pushing against the hard stop. Run it with <code>./gradlew simulateIntake</code>; the same runs are checked by
+ * IntakeSimulationTest.
+ */
+public final class IntakeSimulation {
+  /** Longest time in seconds to let each move run. */
+  private static final double TIMEOUT = 3.0;
+
+  private IntakeSimulation() {}
+
+  public static void main(String... args) {
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+
+    System.out.println("Deploying and retracting the intake:");
+    run("Motion Magic", true);
+    run("Fixed output", false);
+
+    System.out.println("Deploying with the deployed limit switch broken:");
+    missedSwitch("Motion Magic", true, true);
+    missedSwitch("Fixed output", false, true);
+    System.out.println("Retracting with the stowed limit switch broken:");
+    missedSwitch("Motion Magic", true, false);
+    missedSwitch("Fixed output", false, false);
+
+    System.exit(0);
+  }
+
+  private static void run(String name, boolean profiled) {
+    IntakeIOSim io = new IntakeIOSim();
+    IntakeSubsystem intake = create(io, profiled);
+
+    System.out.println("  " + name);
+    double deployTime = move(intake, io, true);
+    System.out.printf("    Deploy:  %s, hitting the stop at %.0f deg/s%n", describe(deployTime), io.getImpactVelocity());
+    double retractTime = move(intake, io, false);
+    System.out.printf("    Retract: %s, hitting the stop at %.0f deg/s%n", describe(retractTime), io.getImpactVelocity());
+  }
+
+  /**
+   * Make an intake on the simulated arm, stowed with its encoder homed.
+   *
+   * @param profiled whether to move the arm with Motion Magic, rather than driving it slowly to the switches
+   */
+  static IntakeSubsystem create(IntakeIOSim io, boolean profiled) {
+    IntakeSubsystem intake = new IntakeSubsystem(io);
+    if (!profiled) {
+      intake.toggleProfiledDeploy();
+    }
+    // Let the stowed switch home the encoder, as it does when the robot is enabled
+    step(intake);
+    return intake;
+  }
+
+  /**
+   * Hold the deploy button, or let the retract default command run, until the limit switch closes, then for another
+   * second to let the arm come to rest.
+   *
+   * @return seconds to the switch, or NaN if it didn't close
+   */
+  static double move(IntakeSubsystem intake, IntakeIOSim io, boolean deploy) {
+    double switchTime = Double.NaN;
+    for (double time = 0; time < TIMEOUT; time += TimedRobot.kDefaultPeriod) {
+      step(intake);
+      double angle = io.getArmAngle();
+      if (Double.isNaN(switchTime) && (deploy ? angle <= DEPLOY_DEPLOYED_ANGLE : angle >= DEPLOY_STOWED_ANGLE)) {
+        switchTime = time;
+      }
+      if (time >= switchTime + 1) {
+        break;
+      }
+
+      if (deploy) {
+        intake.deployIntake();
+      } else {
+        intake.retractIntake();
+      }
+    }
+    return switchTime;
+  }
+
+  private static void missedSwitch(String name, boolean profiled, boolean deploy) {
+    IntakeIOSim io = new IntakeIOSim();
+    double stopTime = moveWithBrokenSwitch(create(io, profiled), io, deploy);
+
+    System.out.println("  " + name);
+    if (Double.isNaN(stopTime)) {
+      System.out.printf("    Not stalled, held at %.1f deg drawing %.1f A%n", io.getArmAngle(), io.getCurrent());
+    } else {
+      System.out.printf("    Stopped for stalling after %.2fs, left at %.1f deg drawing %.1f A%n", stopTime,
+          io.getArmAngle(), io.getCurrent());
+    }
+  }
+
+  /**
+   * Break the limit switch at one end, then drive the arm to it for the whole timeout.
+   *
+   * @param deploy true to break the deployed switch and deploy, false to deploy first and then retract
+   * @return seconds until the arm was stopped for stalling, or NaN if it wasn't
+   */
+  static double moveWithBrokenSwitch(IntakeSubsystem intake, IntakeIOSim io, boolean deploy) {
+    if (!deploy) {
+      move(intake, io, true);
+    }
+    io.breakLimitSwitch(deploy);
+
+    double stopTime = Double.NaN;
+    for (double time = 0; time < TIMEOUT; time += TimedRobot.kDefaultPeriod) {
+      step(intake);
+      if (intake.isStalled() && Double.isNaN(stopTime)) {
+        stopTime = time;
+      }
+
+      if (deploy) {
+        intake.deployIntake();
+      } else {
+        intake.retractIntake();
+      }
+    }
+    return stopTime;
+  }
+
+  /**
+   * Run one robot loop of the intake, reading its inputs and then its periodic.
+   */
+  private static void step(IntakeSubsystem intake) {
+    InputSnapshot.getInstance().update();
+    intake.periodic();
+  }
+
+  private static String describe(double time) {
+    return Double.isNaN(time) ? String.format("did not finish in %.0fs", TIMEOUT) : String.format("%.2fs", time);
+  }
+}
@@ -0,0 +1,215 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.trajectory.CargoIntercept;
+import frc.robot.vision.MultiTargetTracker;
+
+import static frc.robot.Constants.DriveConstants.*;
+import static frc.robot.Constants.VisionConstants.*;
+
+/**
+ * Compares how long it takes to reach rolling cargo by chasing it against intercepting it. <br/>
+ *
+ * Each scenario puts a piece of cargo in front of the robot, rolling in a random direction. A simulated camera reports
+ * it 30 times a second with noise, through the same {@link MultiTargetTracker} the robot uses, and the robot follows
+ * its planned trajectories exactly, stepped in 20ms loops. Chasing is how DriveToCargo used to work: drive to where
+ * the cargo was, and plan again from a stop when it isn't there. Intercepting is how it works now: drive to where
+ * {@link CargoIntercept} says the cargo can be caught, re-planning on the way. Both see the same scenarios and
+ * camera noise. Run it with <code>./gradlew simulateIntercept</code>.
+ */
+public final class InterceptSimulation {
+  private static final int SCENARIOS = 200;
+
+  private static final double CAMERA_PERIOD = 1.0 / 30;
+
+  /** How close in meters the robot's center needs to get to the cargo for the intake to pick it up. */
+  private static final double INTAKE_REACH = 0.3;
+
+  /** Time in seconds the camera watches the cargo before the robot sets off, so the track is trusted. */
+  private static final double TRACKING_LEAD = 0.2;
+
+  /** Time in seconds after which a scenario counts as missed. */
+  private static final double TIMEOUT = 10.0;
+
+  /** Paths shorter than this in meters aren't planned, since there is nowhere to go. */
+  private static final double MIN_PLAN_DISTANCE = 0.05;
+
+  private InterceptSimulation() {}
+
+  public static void main(String... args) {
+    double[][] times = runScenarios(SCENARIOS);
+
+    System.out.printf("Time to intake over %d rolling cargo scenarios:%n", SCENARIOS);
+    double chaseMean = report("Chase", times[0]);
+    double interceptMean = report("Intercept", times[1]);
+    System.out.printf("  Intercepting takes %.1f%% less time on average%n", 100 * (1 - interceptMean / chaseMean));
+  }
+
+  /**
+   * Run the same seeded scenarios with both strategies.
+   *
+   * @param scenarios how many pieces of rolling cargo to go after
+   * @return the times to intake of each scenario, chasing then intercepting, with NaN for a miss
+   */
+  static double[][] runScenarios(int scenarios) {
+    Random random = new Random(342);
+    TrajectoryConfig limits = new TrajectoryConfig(MAX_SPEED, MAX_ACCELERATION);
+
+    double[] chaseTimes = new double[scenarios];
+    double[] interceptTimes = new double[scenarios];
+    for (int i = 0; i < scenarios; i++) {
+      // Somewhere ahead of the robot, rolling slower than the robot can drive
+      double distance = 1.5 + 2.0 * random.nextDouble();
+      double bearing = Math.toRadians(120 * random.nextDouble() - 60);
+      double speed = 0.6 * MAX_SPEED * random.nextDouble();
+      double direction = 2 * Math.PI * random.nextDouble();
+      Translation2d cargo = new Translation2d(distance * Math.cos(bearing), distance * Math.sin(bearing));
+      Translation2d velocity = new Translation2d(speed * Math.cos(direction), speed * Math.sin(direction));
+      long noiseSeed = random.nextLong();
+
+      chaseTimes[i] = timeToIntake(cargo, velocity, false, new Random(noiseSeed), limits);
+      interceptTimes[i] = timeToIntake(cargo, velocity, true, new Random(noiseSeed), limits);
+    }
+    return new double[][] { chaseTimes, interceptTimes };
+  }
+
+  /**
+   * @param times times to intake from {@link #runScenarios}
+   * @return mean time to intake in seconds, counting misses as the timeout
+   */
+  static double meanTime(double[] times) {
+    double total = 0;
+    for (double time : times) {
+      total += Double.isNaN(time) ? TIMEOUT : time;
+    }
+    return total / times.length;
+  }
+
+  /**
+   * @return how many of the scenarios the cargo was never picked up in
+   */
+  static int countMissed(double[] times) {
+    int missed = 0;
+    for (double time : times) {
+      if (Double.isNaN(time)) {
+        missed++;
+      }
+    }
+    return missed;
+  }
+
+  /**
+   * Print a strategy's results.
+   *
+   * @return mean time to intake in seconds, counting misses as the timeout
+   */
+  private static double report(String name, double[] times) {
+    double[] sorted = times.clone();
+    for (int i = 0; i < sorted.length; i++) {
+      if (Double.isNaN(sorted[i])) {
+        sorted[i] = TIMEOUT;
+      }
+    }
+    Arrays.sort(sorted);
+
+    double mean = meanTime(times);
+    System.out.printf("  %-10s mean %5.2fs  median %5.2fs  p90 %5.2fs  missed %d%n", name, mean, sorted[sorted.length / 2],
+        sorted[(int) (sorted.length * 0.9)], countMissed(times));
+    return mean;
+  }
+
+  /**
+   * Run one scenario.
+   *
+   * @param intercept whether to intercept the cargo, otherwise chase it
+   * @return seconds from setting off to picking up the cargo, or NaN if it was never picked up
+   */
+  private static double timeToIntake(Translation2d cargo, Translation2d velocity, boolean intercept, Random noise, TrajectoryConfig limits) {
+    MultiTargetTracker tracker = new MultiTargetTracker(CARGO_MAX_TRACKS, 1);
+    double[] detectionX = new double[1];
+    double[] detectionY = new double[1];
+    double nextFrame = 0;
+
+    Pose2d robot = new Pose2d();
+    Trajectory trajectory = null;
+    double followStart = 0;
+    double lastReplan = 0;
+    double period = TimedRobot.kDefaultPeriod;
+
+    for (int loop = 0; loop * period < TRACKING_LEAD + TIMEOUT; loop++) {
+      double time = loop * period;
+
+      // Camera frames since the last loop
+      while (nextFrame <= time) {
+        detectionX[0] = cargo.getX() + velocity.getX() * nextFrame + noise.nextGaussian() * CARGO_POSITION_STD_DEV;
+        detectionY[0] = cargo.getY() + velocity.getY() * nextFrame + noise.nextGaussian() * CARGO_POSITION_STD_DEV;
+        tracker.update(nextFrame, detectionX, detectionY, 1);
+        nextFrame += CAMERA_PERIOD;
+      }
+      if (time < TRACKING_LEAD) {
+        continue;
+      }
+
+      if (trajectory != null) {
+        robot = trajectory.sample(time - followStart).poseMeters;
+      }
+
+      Translation2d actual = cargo.plus(velocity.times(time));
+      if (robot.getTranslation().getDistance(actual) <= INTAKE_REACH) {
+        return time - TRACKING_LEAD;
+      }
+
+      if (tracker.getTrackCount() == 0 || !tracker.isConfirmed(0)) {
+        continue;
+      }
+
+      // What the robot knows about the cargo, moved on to now
+      double age = time - tracker.getTime();
+      Translation2d tracked = new Translation2d(tracker.getX(0) + tracker.getVelocityX(0) * age, tracker.getY(0) + tracker.getVelocityY(0) * age);
+      Translation2d trackedVelocity = new Translation2d(tracker.getVelocityX(0), tracker.getVelocityY(0));
+
+      if (trajectory == null || time - followStart >= trajectory.getTotalTimeSeconds()) {
+        // Plan from a stop, either to start or because the last path ended without reaching the cargo
+        Pose2d end;
+        if (intercept) {
+          end = CargoIntercept.interceptPose(robot, 0, tracked, trackedVelocity, limits, CARGO_INTERCEPT_HORIZON);
+        } else {
+          Translation2d toCargo = tracked.minus(robot.getTranslation());
+          end = new Pose2d(tracked, new Rotation2d(toCargo.getX(), toCargo.getY()));
+        }
+
+        if (end.getTranslation().getDistance(robot.getTranslation()) >= MIN_PLAN_DISTANCE) {
+          // The robot holds still for the loop it takes the planner to finish
+          trajectory = TrajectoryGenerator.generateTrajectory(new Pose2d(robot.getTranslation(), end.getRotation()), List.of(), end, limits);
+          followStart = time + period;
+          lastReplan = time;
+        }
+      } else if (intercept && time - lastReplan >= CARGO_REPLAN_PERIOD
+          && trajectory.getTotalTimeSeconds() - (time - followStart) > CARGO_REPLAN_PERIOD) {
+        // Re-plan from where the robot will be next loop, as FollowPlannedTrajectory does
+        Trajectory.State from = trajectory.sample(time - followStart + period);
+        Pose2d end = CargoIntercept.interceptPose(from.poseMeters, from.velocityMetersPerSecond, tracked, trackedVelocity, limits, CARGO_INTERCEPT_HORIZON);
+        trajectory = TrajectoryGenerator.generateTrajectory(from.poseMeters, List.of(), end,
+            CargoIntercept.startingAt(limits, from.velocityMetersPerSecond));
+        followStart = time + period;
+        lastReplan = time;
+      }
+    }
+
+    return Double.NaN;
+  }
+}
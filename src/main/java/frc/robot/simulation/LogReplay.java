@@ -0,0 +1,135 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.Robot;
+import frc.robot.RobotMode;
+import frc.robot.telemetry.SignalLogReader;
+import frc.robot.telemetry.SignalLogger;
+
+/**
+ * Re-runs the robot code against the inputs recorded in a match log, as fast as the computer allows. <br/>
+ *
+ * The subsystems are given IO that does nothing, and before each loop the logged inputs for that loop are written
+ * into their inputs objects, the driver station state is restored, and the simulated clock is stepped to the logged
+ * time. Everything after that is the unmodified robot logic, so a code change can be checked against what actually
+ * happened on the field. The replayed run is logged like any other, to compare against the original.
+ * Run it with <code>./gradlew replayLog -Plog=path/to/robot_123.rlog</code>.
+ */
+public final class LogReplay {
+  private LogReplay() {}
+
+  /** What a replay covered. */
+  static final class Result {
+    /** Loops run, one per logged frame. */
+    int frames = 0;
+    /** FPGA time in seconds of the first and last frames, NaN if there were none. */
+    double firstTimestamp = Double.NaN;
+    double lastTimestamp = Double.NaN;
+    /** Logged signals fed back as inputs, out of all the signals in the log. */
+    int matchedSignals = 0;
+    int loggedSignals = 0;
+
+    /**
+     * @return seconds of robot time the log covers
+     */
+    double getMatchTime() {
+      return Double.isNaN(firstTimestamp) ? 0 : lastTimestamp - firstTimestamp;
+    }
+  }
+
+  /**
+   * @param args the path of the log to replay
+   */
+  public static void main(String... args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: LogReplay <log file>");
+      System.exit(1);
+    }
+    Path path = Paths.get(args[0]);
+    SignalLogReader reader = new SignalLogReader(path);
+
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+
+    // Only advance time when told to
+    SimHooks.pauseTiming();
+
+    Robot robot = new Robot(RobotMode.REPLAY);
+    robot.robotInit();
+
+    long wallStart = System.nanoTime();
+    Result result = replay(reader, robot);
+    double wallTime = (System.nanoTime() - wallStart) / 1e9;
+
+    System.out.println("Replayed " + path);
+    System.out.printf("  %d loops covering %.1fs of robot time%n", result.frames, result.getMatchTime());
+    System.out.printf("  Replayed in %.2fs of wall time (%.1fx real time)%n", wallTime, result.getMatchTime() / wallTime);
+    System.out.println("  " + result.matchedSignals + " of " + result.loggedSignals + " logged signals fed back as inputs");
+
+    // NetworkTables keeps non-daemon threads alive. The replayed log is flushed on the way out.
+    System.exit(0);
+  }
+
+  /**
+   * Run a loop of a replay robot for every frame of a log, with the logged inputs written back first.
+   *
+   * @param reader the log, read to the end
+   * @param robot a robot built with {@link RobotMode#REPLAY}, with robotInit() called, on paused timing that's no
+   *              later than the log's first frame
+   * @return how many loops were run and how many of the logged signals were inputs
+   */
+  static Result replay(SignalLogReader reader, Robot robot) {
+    // Where to write each logged signal, by id. Outputs and signals this code no longer has are skipped.
+    SignalLogger logger = SignalLogger.getInstance();
+    List<DoubleConsumer> setters = new ArrayList<>();
+    Result result = new Result();
+
+    while (reader.nextFrame()) {
+      for (int id = setters.size(); id < reader.getSignalCount(); id++) {
+        DoubleConsumer setter = logger.getReplaySetter(reader.getName(id));
+        setters.add(setter);
+        if (setter != null) {
+          result.matchedSignals++;
+        }
+      }
+
+      for (int i = 0; i < reader.getCount(); i++) {
+        DoubleConsumer setter = setters.get(reader.getId(i));
+        if (setter != null) {
+          setter.accept(reader.getValue(i));
+        }
+      }
+      robot.getDriverStationInputs().applyToSimulation();
+
+      // Run the loop at the time it originally ran, so logged timestamps line up with the clock
+      double step = reader.getTimestamp() - Timer.getFPGATimestamp();
+      if (step > 0) {
+        SimHooks.stepTiming(step);
+      }
+      if (Double.isNaN(result.firstTimestamp)) {
+        result.firstTimestamp = reader.getTimestamp();
+      }
+      result.lastTimestamp = reader.getTimestamp();
+
+      robot.runLoop();
+      result.frames++;
+    }
+
+    result.loggedSignals = setters.size();
+    return result;
+  }
+}
@@ -0,0 +1,155 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.MecanumDriveKinematics;
+import edu.wpi.first.math.kinematics.MecanumDriveWheelSpeeds;
+import edu.wpi.first.math.system.plant.DCMotor;
+
+/**
+ * Physics model of a mecanum drivetrain, driven by the voltage applied to each wheel's motor. <br/>
+ *
+ * Each motor produces torque from its voltage and back-EMF, which accelerates a quarter of the robot's mass at
+ * that wheel. Since the wheels are coupled through the chassis, after each step the wheel speeds are replaced with
+ * the closest motion the chassis can actually make, using the kinematics. The model uses no clocks or hardware,
+ * so the same inputs always give the same result.
+ *
+ * <p>Wheels are indexed in the order front left, front right, back left, back right.
+ */
+public class MecanumDriveSim {
+  private final DCMotor motor;
+  private final double gearing;
+  private final double wheelRadius;
+  private final double massPerWheel;
+  private final double currentLimit;
+  private final MecanumDriveKinematics kinematics;
+
+  private final double[] wheelVelocities = new double[4];
+  private final double[] wheelPositions = new double[4];
+  private final double[] currents = new double[4];
+  private final MecanumDriveWheelSpeeds wheelSpeeds = new MecanumDriveWheelSpeeds();
+
+  /** Field position in meters and heading in radians, counterclockwise positive. */
+  private double x = 0;
+  private double y = 0;
+  private double heading = 0;
+
+  /**
+   * Creates a new MecanumDriveSim.
+   * 
+   * @param motor the motor driving each wheel
+   * @param gearing reduction from motor to wheel
+   * @param wheelDiameter wheel diameter in meters
+   * @param mass robot mass in kilograms
+   * @param currentLimit current limit of each motor controller in amps
+   * @param kinematics wheel locations
+   */
+  public MecanumDriveSim(DCMotor motor, double gearing, double wheelDiameter, double mass, double currentLimit, MecanumDriveKinematics kinematics) {
+    this.motor = motor;
+    this.gearing = gearing;
+    this.wheelRadius = wheelDiameter / 2;
+    this.massPerWheel = mass / 4;
+    this.currentLimit = currentLimit;
+    this.kinematics = kinematics;
+  }
+
+  /**
+   * Advance the simulation.
+   * 
+   * @param voltages the voltage applied to each motor
+   * @param dt the time step in seconds, should be a few milliseconds at most to stay stable
+   */
+  public void update(double[] voltages, double dt) {
+    for (int i = 0; i < 4; i++) {
+      double motorSpeed = wheelVelocities[i] / wheelRadius * gearing;
+      double current = (voltages[i] - motorSpeed / motor.KvRadPerSecPerVolt) / motor.rOhms;
+      currents[i] = MathUtil.clamp(current, -currentLimit, currentLimit);
+
+      double force = motor.KtNMPerAmp * currents[i] * gearing / wheelRadius;
+      wheelVelocities[i] += force / massPerWheel * dt;
+    }
+
+    // Keep only the part of the wheel motion that the chassis can make
+    wheelSpeeds.frontLeftMetersPerSecond = wheelVelocities[0];
+    wheelSpeeds.frontRightMetersPerSecond = wheelVelocities[1];
+    wheelSpeeds.rearLeftMetersPerSecond = wheelVelocities[2];
+    wheelSpeeds.rearRightMetersPerSecond = wheelVelocities[3];
+
+    ChassisSpeeds chassisSpeeds = kinematics.toChassisSpeeds(wheelSpeeds);
+    MecanumDriveWheelSpeeds consistent = kinematics.toWheelSpeeds(chassisSpeeds);
+
+    wheelVelocities[0] = consistent.frontLeftMetersPerSecond;
+    wheelVelocities[1] = consistent.frontRightMetersPerSecond;
+    wheelVelocities[2] = consistent.rearLeftMetersPerSecond;
+    wheelVelocities[3] = consistent.rearRightMetersPerSecond;
+
+    for (int i = 0; i < 4; i++) {
+      wheelPositions[i] += wheelVelocities[i] * dt;
+    }
+
+    // Robot-relative motion to field motion
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+    x += (chassisSpeeds.vxMetersPerSecond * cos - chassisSpeeds.vyMetersPerSecond * sin) * dt;
+    y += (chassisSpeeds.vxMetersPerSecond * sin + chassisSpeeds.vyMetersPerSecond * cos) * dt;
+    heading += chassisSpeeds.omegaRadiansPerSecond * dt;
+  }
+
+  /**
+   * Move the robot to a pose, as when it is placed on the field. Wheel positions and velocities are kept.
+   * 
+   * @param pose the new pose
+   */
+  public void setPose(Pose2d pose) {
+    x = pose.getX();
+    y = pose.getY();
+    heading = pose.getRotation().getRadians();
+  }
+
+  /**
+   * @return the true pose of the robot on the field
+   */
+  public Pose2d getPose() {
+    return new Pose2d(x, y, new Rotation2d(heading));
+  }
+
+  /**
+   * @return the heading in degrees, counterclockwise positive and not wrapped
+   */
+  public double getHeadingDegrees() {
+    return Math.toDegrees(heading);
+  }
+
+  /**
+   * @param wheel wheel index
+   * @return distance travelled by the wheel in meters
+   */
+  public double getWheelPosition(int wheel) {
+    return wheelPositions[wheel];
+  }
+
+  /**
+   * @param wheel wheel index
+   * @return surface speed of the wheel in meters per second
+   */
+  public double getWheelVelocity(int wheel) {
+    return wheelVelocities[wheel];
+  }
+
+  /**
+   * @return total current drawn by all four motors in amps
+   */
+  public double getCurrentDraw() {
+    double total = 0;
+    for (double current : currents) {
+      total += Math.abs(current);
+    }
+    return total;
+  }
+}
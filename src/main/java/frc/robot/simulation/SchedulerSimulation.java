@@ -0,0 +1,281 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.util.sendable.Sendable;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.util.sendable.SendableRegistry;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.LoopScheduler;
+import frc.robot.LoopScheduler.Priority;
+import frc.robot.telemetry.LatencyHistogram;
+import frc.robot.telemetry.LoopProfiler;
+
+/**
+ * Runs a robot loop overloaded with slow work, with and without a time budget, and checks the drive and shooter keep
+ * their cadence. <br/>
+ *
+ * Stand-ins for the drive and shooter take 3 ms and 2 ms each loop at high priority. Vision tracking takes 6 ms at
+ * normal priority, and a low priority command and two dashboard widgets take another 12 ms, so the loop needs 23 ms
+ * of a 20 ms period. Every {@link #SPIKE_PERIOD} loops the shooter takes 25 ms instead, and the overrun should be
+ * blamed on it. The loops are paced like TimedRobot's, starting as soon as they can when they fall behind, but on a
+ * simulated clock that the slow work moves on instead of spinning, so every run comes out the same and takes no real
+ * time. Run it with <code>./gradlew simulateScheduler</code>; SchedulerSimulationTest checks the same runs.
+ */
+public final class SchedulerSimulation {
+  /** Loops to run with each scheduler, 5 seconds. */
+  private static final int LOOPS = 250;
+
+  /** Loops at the start left out of the cadence, while the scheduler learns how long each task takes. */
+  private static final int WARMUP_LOOPS = 50;
+
+  /** Loops between the shooter's slow loops. */
+  private static final int SPIKE_PERIOD = 50;
+
+  /** Longest gap in seconds between runs of the drive or shooter that still counts as on time. */
+  private static final double LATE_INTERVAL = TimedRobot.kDefaultPeriod * 1.1;
+
+  /** Most of the runs that can be late for the cadence to count as kept. */
+  static final double MAX_LATE_FRACTION = 0.05;
+
+  /** The simulated clock in nanoseconds, which the loop schedulers and the slow work all run on. */
+  private static long clockNanos = 0;
+
+  private SchedulerSimulation() {}
+
+  public static void main(String... args) {
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+
+    // Commands that don't run when disabled are cancelled by the scheduler
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+
+    System.out.println("Running a 23 ms loop in a 20 ms period:");
+    boolean stockOnTime = run("No budget", Double.POSITIVE_INFINITY, false) <= MAX_LATE_FRACTION;
+    boolean budgetedOnTime = run("Budgeted", LoopScheduler.LOOP_BUDGET, true) <= MAX_LATE_FRACTION;
+
+    System.exit((budgetedOnTime && !stockOnTime) ? 0 : 1);
+  }
+
+  /**
+   * @param budget seconds of each loop to give the loop scheduler, infinite for no budget
+   * @param prioritized whether to give the slow work its priorities, or leave everything at high priority
+   * @return the fraction of the drive's and shooter's runs that were late, outside of the shooter's slow loops
+   */
+  static double run(String name, double budget, boolean prioritized) {
+    LoopScheduler scheduler = new LoopScheduler(budget, () -> clockNanos);
+    CommandScheduler commands = CommandScheduler.getInstance();
+    commands.cancelAll();
+
+    SlowSubsystem drive = new SlowSubsystem("Drive", 3.0);
+    SlowSubsystem shooter = new SlowSubsystem("Shooter", 0);
+    SlowSubsystem vision = new SlowSubsystem("Vision", 6.0);
+    SlowSubsystem plotter = new SlowSubsystem("Plotter", 0);
+    Sendable[] widgets = { new SlowWidget("Field", 5.0), new SlowWidget("Camera", 5.0) };
+
+    SlowCommand shootCommand = new SlowCommand("Shoot", shooter, 2.0, SPIKE_PERIOD);
+    SlowCommand plotCommand = new SlowCommand("Plot", plotter, 2.0, 0);
+    scheduler.addSubsystem(vision, prioritized ? Priority.NORMAL : Priority.HIGH);
+    // Without a budget, the widgets are updated every loop as SmartDashboard.updateValues() would
+    for (Sendable widget : widgets) {
+      scheduler.addDashboardData(widget);
+    }
+    Command plotting = scheduler.budgeted(plotCommand, prioritized ? Priority.LOW : Priority.HIGH);
+    shootCommand.schedule();
+    plotting.schedule();
+
+    List<Double> intervals = new ArrayList<>();
+    double longestLoop = 0;
+    int deferred = 0;
+    int visionGap = 0;
+    int longestVisionGap = 0;
+    long deadline = clockNanos;
+    for (int loop = 0; loop < LOOPS; loop++) {
+      // Wait for the next period, or start straight away when behind
+      deadline += (long) (TimedRobot.kDefaultPeriod * 1e9);
+      clockNanos = Math.max(clockNanos, deadline);
+
+      int visionRuns = vision.getRuns();
+      scheduler.startLoop();
+      scheduler.run();
+      scheduler.endLoop();
+      LoopProfiler.getInstance().endLoop();
+
+      longestLoop = Math.max(longestLoop, scheduler.getLoopTime());
+      deferred += scheduler.getDeferredCount();
+      visionGap = (vision.getRuns() == visionRuns) ? visionGap + 1 : 0;
+      longestVisionGap = Math.max(longestVisionGap, visionGap);
+
+      // The shooter's slow loop, and the one after as the loop catches up, are expected to be off
+      if (loop >= WARMUP_LOOPS && loop % SPIKE_PERIOD != 0 && loop % SPIKE_PERIOD != 1) {
+        intervals.add(drive.getLastInterval());
+        intervals.add(shootCommand.getLastInterval());
+      }
+    }
+
+    shootCommand.cancel();
+    plotting.cancel();
+    for (SubsystemBase subsystem : new SubsystemBase[] { drive, shooter, vision, plotter }) {
+      commands.unregisterSubsystem(subsystem);
+    }
+
+    double worst = 0;
+    double total = 0;
+    int late = 0;
+    for (double interval : intervals) {
+      worst = Math.max(worst, interval);
+      total += interval;
+      if (interval > LATE_INTERVAL) {
+        late++;
+      }
+    }
+
+    System.out.println("  " + name);
+    System.out.printf("    Drive and shooter interval: %.1f ms average, %.1f ms worst, %d of %d late%n",
+        total / intervals.size() * 1000, worst * 1000, late, intervals.size());
+    System.out.printf("    Longest loop: %.1f ms, %d overruns%n", longestLoop * 1000, scheduler.getOverruns());
+    System.out.printf("    Runs in %d loops: vision %d (at most %d loops put off), plot %d, widgets %d and %d, %d put off%n",
+        LOOPS, vision.getRuns(), longestVisionGap, plotCommand.getExecutions(), ((SlowWidget) widgets[0]).getUpdates(),
+        ((SlowWidget) widgets[1]).getUpdates(), deferred);
+    System.out.println("    Overruns blamed on:");
+    for (Map.Entry<String, Integer> cause : scheduler.getOverrunsByCause().entrySet()) {
+      System.out.printf("      %-30s %d%n", cause.getKey(), cause.getValue());
+    }
+    return (double) late / intervals.size();
+  }
+
+  /**
+   * Take up time the way slow robot code holds up the loop, by moving the simulated clock on.
+   */
+  private static void busy(double millis) {
+    clockNanos += (long) (millis * 1e6);
+  }
+
+  /** Measures the time between the starts of each run of something. */
+  private static class Cadence {
+    private long lastStart = 0;
+    private double lastInterval = 0;
+
+    void start() {
+      long start = clockNanos;
+      if (lastStart != 0) {
+        lastInterval = (start - lastStart) / 1e9;
+      }
+      lastStart = start;
+    }
+
+    /**
+     * @return seconds between the last two runs
+     */
+    double getLastInterval() {
+      return lastInterval;
+    }
+  }
+
+  /** A subsystem with a slow periodic(), timed by the profiler on the simulated clock the same way as the robot's. */
+  private static class SlowSubsystem extends SubsystemBase {
+    private final double millis;
+    private final LatencyHistogram periodicTime;
+    private final Cadence cadence = new Cadence();
+    private int runs = 0;
+
+    SlowSubsystem(String name, double millis) {
+      this.millis = millis;
+      setName(name);
+      periodicTime = LoopProfiler.getInstance().histogram(name + ".periodic");
+    }
+
+    @Override
+    public void periodic() {
+      long start = clockNanos;
+      cadence.start();
+      runs++;
+      busy(millis);
+      periodicTime.record(clockNanos - start);
+    }
+
+    double getLastInterval() {
+      return cadence.getLastInterval();
+    }
+
+    int getRuns() {
+      return runs;
+    }
+  }
+
+  /**
+   * A command with a slow execute(), which is much slower every so often if given a period. Timed by the profiler on
+   * the simulated clock, the way {@link LoopProfiler#instrument} times the robot's.
+   */
+  private static class SlowCommand extends CommandBase {
+    private final double millis;
+    private final int spikePeriod;
+    private final LatencyHistogram executeTime;
+    private final Cadence cadence = new Cadence();
+    private int executions = 0;
+
+    SlowCommand(String name, SlowSubsystem subsystem, double millis, int spikePeriod) {
+      this.millis = millis;
+      this.spikePeriod = spikePeriod;
+      setName(name);
+      addRequirements(subsystem);
+      executeTime = LoopProfiler.getInstance().histogram(name + ".execute");
+    }
+
+    @Override
+    public void execute() {
+      long start = clockNanos;
+      cadence.start();
+      executions++;
+      busy((spikePeriod > 0 && executions % spikePeriod == 0) ? 25.0 : millis);
+      executeTime.record(clockNanos - start);
+    }
+
+    double getLastInterval() {
+      return cadence.getLastInterval();
+    }
+
+    int getExecutions() {
+      return executions;
+    }
+  }
+
+  /** A dashboard widget with a property that's slow to read. */
+  private static class SlowWidget implements Sendable {
+    private final double millis;
+    private int updates = 0;
+
+    SlowWidget(String name, double millis) {
+      this.millis = millis;
+      SendableRegistry.add(this, name);
+    }
+
+    @Override
+    public void initSendable(SendableBuilder builder) {
+      builder.addDoubleProperty("Value", () -> {
+        updates++;
+        busy(millis);
+        return updates;
+      }, null);
+    }
+
+    int getUpdates() {
+      return updates;
+    }
+  }
+}
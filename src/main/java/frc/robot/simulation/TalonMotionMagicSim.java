@@ -0,0 +1,93 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+
+/**
+ * Stands in for Motion Magic on a Talon, for simulated motors. <br/>
+ *
+ * Like the Talon, it follows a trapezoidal profile to the target and closes a position loop on the profile's current
+ * point, with the velocity feedforward on the profile's velocity, all in the Talon's native units. A new target while
+ * it's running carries on from the current point of the profile; starting it from another control mode starts the
+ * profile from the measured position and velocity.
+ */
+public class TalonMotionMagicSim {
+  /** Full output of the Talon's closed loop, in its native units. */
+  private static final double TALON_FULL_OUTPUT = 1023;
+
+  private final double p;
+  private final double d;
+  private final double f;
+  private final TrapezoidProfile.Constraints constraints;
+
+  private TrapezoidProfile.State goal = new TrapezoidProfile.State();
+  private TrapezoidProfile.State setpoint = new TrapezoidProfile.State();
+  private boolean running = false;
+  private double lastError = 0;
+
+  /**
+   * Creates a new TalonMotionMagicSim.
+   *
+   * @param p proportional gain, in 1023 for full output per count of error
+   * @param d derivative gain, in 1023 for full output per count the error changes by each 1 ms loop
+   * @param f velocity feedforward, in 1023 for full output per count per 100 ms
+   * @param cruiseVelocity cruise velocity in counts per 100 ms
+   * @param acceleration acceleration in counts per 100 ms per second
+   */
+  public TalonMotionMagicSim(double p, double d, double f, double cruiseVelocity, double acceleration) {
+    this.p = p;
+    this.d = d;
+    this.f = f;
+    // The profile runs in counts and seconds
+    this.constraints = new TrapezoidProfile.Constraints(cruiseVelocity * 10, acceleration * 10);
+  }
+
+  /**
+   * Start moving to a target, or change the target of the current move.
+   *
+   * @param target target position in counts
+   * @param position measured position in counts
+   * @param velocity measured velocity in counts per second
+   */
+  public void setTarget(double target, double position, double velocity) {
+    if (!running) {
+      setpoint = new TrapezoidProfile.State(position, velocity);
+      lastError = 0;
+      running = true;
+    }
+    goal = new TrapezoidProfile.State(target, 0);
+  }
+
+  /**
+   * Stop following the profile, when the Talon is given another control mode.
+   */
+  public void stop() {
+    running = false;
+  }
+
+  /**
+   * @return whether a Motion Magic move is in control of the motor
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Step the profile and run the position loop, once per Talon control loop of 1 ms.
+   *
+   * @param position measured position in counts
+   * @param dt time since the last step in seconds
+   * @return duty cycle from -1 to 1
+   */
+  public double calculate(double position, double dt) {
+    setpoint = new TrapezoidProfile(constraints, goal, setpoint).calculate(dt);
+    double error = setpoint.position - position;
+    double output = f * setpoint.velocity / 10 + p * error + d * (error - lastError);
+    lastError = error;
+    return MathUtil.clamp(output / TALON_FULL_OUTPUT, -1, 1);
+  }
+}
@@ -0,0 +1,155 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.telemetry.ProfiledSubsystem;
+import frc.robot.telemetry.SignalLogger;
+import frc.robot.vision.MultiTargetTracker;
+import frc.robot.vision.PhotonVision;
+
+import static frc.robot.Constants.VisionConstants.*;
+import static frc.robot.vision.PhotonVisionIO.PhotonVisionIOInputs.MAX_TARGETS;
+
+/**
+ * Keeps track of every piece of cargo the {@link PhotonVision} camera sees, on the field rather than relative to the
+ * camera. <br/>
+ *
+ * Each new frame's targets are placed on the field using the estimated robot pose from when the image was captured,
+ * then handed to a {@link MultiTargetTracker}, which gives each piece of cargo an ID that lasts as long as it keeps
+ * being seen, and smooths its position and velocity. Commands can pick a piece of cargo once and keep following it
+ * by ID, even as other cargo comes and goes from view.
+ */
+public class CargoTrackerSubsystem extends ProfiledSubsystem {
+
+  private PhotonVision photon;
+  private PoseEstimatorSubsystem poseEstimator;
+
+  private final MultiTargetTracker tracker = new MultiTargetTracker(CARGO_MAX_TRACKS, MAX_TARGETS);
+
+  /** Field positions of the current frame's targets, reused each frame. */
+  private final double[] detectionX = new double[MAX_TARGETS];
+  private final double[] detectionY = new double[MAX_TARGETS];
+
+  private long lastFrameId = 0;
+
+  /** Creates a new CargoTrackerSubsystem. */
+  public CargoTrackerSubsystem(PhotonVision photon, PoseEstimatorSubsystem poseEstimator) {
+    this.photon = photon;
+    this.poseEstimator = poseEstimator;
+
+    SignalLogger logger = SignalLogger.getInstance();
+    logger.addDouble("CargoTracker/Tracks", tracker::getTrackCount);
+    logger.addDouble("CargoTracker/Confirmed Tracks", this::getConfirmedCount);
+  }
+
+  /**
+   * Find the trusted piece of cargo closest to a point.
+   *
+   * @param position a point on the field, such as the robot's position
+   * @return the cargo's track ID, or -1 if there is no trusted cargo
+   */
+  public int getClosestTrackId(Translation2d position) {
+    int closest = -1;
+    double closestDistance = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < tracker.getTrackCount(); i++) {
+      if (tracker.isConfirmed(i)) {
+        double dx = tracker.getX(i) - position.getX();
+        double dy = tracker.getY(i) - position.getY();
+        double distance = dx * dx + dy * dy;
+        if (distance < closestDistance) {
+          closestDistance = distance;
+          closest = tracker.getId(i);
+        }
+      }
+    }
+    return closest;
+  }
+
+  /**
+   * @return whether the cargo with the ID is still tracked
+   */
+  public boolean hasTrack(int trackId) {
+    return tracker.indexOf(trackId) >= 0;
+  }
+
+  /**
+   * Get where a piece of cargo is now, moved on from where it was last seen at its tracked velocity.
+   *
+   * @param trackId from {@link #getClosestTrackId}
+   * @return field position in meters, or null if the cargo is no longer tracked
+   */
+  public Translation2d getTrackPosition(int trackId) {
+    int i = tracker.indexOf(trackId);
+    if (i < 0) {
+      return null;
+    }
+
+    double dt = Timer.getFPGATimestamp() - tracker.getTime();
+    return new Translation2d(tracker.getX(i) + tracker.getVelocityX(i) * dt, tracker.getY(i) + tracker.getVelocityY(i) * dt);
+  }
+
+  /**
+   * @param trackId from {@link #getClosestTrackId}
+   * @return field velocity in meters per second, or null if the cargo is no longer tracked
+   */
+  public Translation2d getTrackVelocity(int trackId) {
+    int i = tracker.indexOf(trackId);
+    if (i < 0) {
+      return null;
+    }
+
+    return new Translation2d(tracker.getVelocityX(i), tracker.getVelocityY(i));
+  }
+
+  /**
+   * @return number of cargo tracks that have been seen enough to trust
+   */
+  public int getConfirmedCount() {
+    int count = 0;
+    for (int i = 0; i < tracker.getTrackCount(); i++) {
+      if (tracker.isConfirmed(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  protected void timedPeriodic() {
+    // This method will be called once per scheduler run
+    // Only track each frame once
+    long frameId = photon.getFrameId();
+    if (frameId != lastFrameId) {
+      lastFrameId = frameId;
+
+      // Where the camera was when the image was captured
+      double timestamp = photon.getCaptureTimestamp();
+      Pose2d camera = poseEstimator.getEstimatedPoseAt(timestamp).transformBy(ROBOT_TO_PHOTON_CAMERA);
+      double cos = camera.getRotation().getCos();
+      double sin = camera.getRotation().getSin();
+
+      int count = photon.getTargetCount();
+      for (int i = 0; i < count; i++) {
+        double targetX = photon.getTargetX(i);
+        double targetY = photon.getTargetY(i);
+        detectionX[i] = camera.getX() + targetX * cos - targetY * sin;
+        detectionY[i] = camera.getY() + targetX * sin + targetY * cos;
+      }
+
+      tracker.update(timestamp, detectionX, detectionY, count);
+    }
+  }
+
+  @Override
+  public void initSendable(SendableBuilder builder) {
+    builder.setSmartDashboardType("CargoTracker");
+    builder.addDoubleProperty("Tracks", tracker::getTrackCount, null);
+    builder.addDoubleProperty("Confirmed Tracks", this::getConfirmedCount, null);
+  }
+}
@@ -0,0 +1,74 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * Hardware access for {@link ClimbSubsystem}. <br/>
+ *
+ * {@link ClimbIOReal} talks to the motors and limit switches, {@link ClimbIOSim} runs a physics model of the climber
+ * and the robot hanging from it, and the interface's own no-op methods are used for replay, where the inputs are
+ * filled in from a log instead.
+ */
+public interface ClimbIO {
+
+  /** Values read from the climber each loop. Every field is logged, and set from the log during replay. */
+  public static class ClimbIOInputs {
+    public boolean limitSwitch1;
+    public boolean limitSwitch2;
+
+    /** Position of each telescope's integrated Falcon encoder in counts, 2048 per motor rotation. */
+    public double climbPosition1;
+    public double climbPosition2;
+
+    /** Second stage position in hex bore encoder ticks, 8192 per rotation. */
+    public double secondStagePosition;
+  }
+
+  /**
+   * Read the latest values from the hardware.
+   */
+  public default void updateInputs(ClimbIOInputs inputs) {}
+
+  /**
+   * Run both first stage climb motors open-loop.
+   *
+   * @param output duty cycle from -1 to 1
+   */
+  public default void setClimb(double output) {}
+
+  /**
+   * Move both first stage climb motors to a position with Motion Magic, each on its own encoder.
+   *
+   * @param position target in encoder counts
+   */
+  public default void setClimbPosition(double position) {}
+
+  /**
+   * Run each first stage climb motor at its own speed with the Talon's velocity loop.
+   *
+   * @param velocity1 speed of the first motor in encoder counts per 100 ms
+   * @param velocity2 speed of the second motor in encoder counts per 100 ms
+   */
+  public default void setClimbVelocities(double velocity1, double velocity2) {}
+
+  /**
+   * Zero both first stage encoders, when the telescopes are at the limit switches.
+   */
+  public default void resetClimbPosition() {}
+
+  /**
+   * Run both second stage motors open-loop.
+   *
+   * @param output duty cycle from -1 to 1
+   */
+  public default void setSecondStage(double output) {}
+
+  /**
+   * Move the second stage to a position with Motion Magic.
+   *
+   * @param position target in hex bore encoder ticks
+   */
+  public default void setSecondStagePosition(double position) {}
+}
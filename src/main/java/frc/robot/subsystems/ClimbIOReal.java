@@ -0,0 +1,180 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.can.BaseMotorController;
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+import frc.robot.can.CanStatusFrames;
+import frc.robot.telemetry.HalCallCounter;
+
+import static frc.robot.Constants.ClimbConstants.*;
+import static frc.robot.can.CanSignal.APPLIED_OUTPUT;
+import static frc.robot.can.CanSignal.POSITION;
+import static frc.robot.can.CanStatusFrames.use;
+
+/**
+ * The climber on the robot: two TalonFXs on the first stage, two TalonSRXs on the second stage,
+ * and a limit switch on each side. <br/>
+ *
+ * Each telescope runs Motion Magic on its own Falcon's encoder, or a velocity loop for synchronized moves, with the
+ * gains for each in their own slot. The second stage's encoder is on the first TalonSRX, so the second one follows it.
+ * Outputs are only sent when they change.
+ */
+public class ClimbIOReal implements ClimbIO {
+  private WPI_TalonFX climbMotor1;
+  private WPI_TalonFX climbMotor2;
+  private WPI_TalonSRX secondStageMotor1;
+  private WPI_TalonSRX secondStageMotor2;
+  private DigitalInput limitSwitch1;
+  private DigitalInput limitSwitch2;
+
+  private double lastClimb = Double.NaN;
+  private double lastClimbPosition = Double.NaN;
+  private double lastClimbVelocity1 = Double.NaN;
+  private double lastClimbVelocity2 = Double.NaN;
+  private boolean velocitySlot = false;
+  private double lastSecondStage = Double.NaN;
+  private double lastSecondStagePosition = Double.NaN;
+
+  public ClimbIOReal() {
+    climbMotor1 = new WPI_TalonFX(CLIMB_MOTOR_1_ID);
+    climbMotor2 = new WPI_TalonFX(CLIMB_MOTOR_2_ID);
+    limitSwitch1 = new DigitalInput(CLIMB_LIMIT_SWITCH_1_CHANNEL);
+    limitSwitch2 = new DigitalInput(CLIMB_LIMIT_SWITCH_2_CHANNEL);
+    secondStageMotor1 = new WPI_TalonSRX(SECOND_STAGE_MOTOR_1_ID);
+    secondStageMotor2 = new WPI_TalonSRX(SECOND_STAGE_MOTOR_2_ID);
+
+    secondStageMotor2.follow(secondStageMotor1);
+
+    // Motion Magic takes meters and degrees per second as counts per 100 ms
+    configureMotionMagic(climbMotor1, CLIMB_P, CLIMB_D, CLIMB_F, CLIMB_CRUISE_VELOCITY / CLIMB_METERS_PER_TICK / 10,
+        CLIMB_ACCELERATION / CLIMB_METERS_PER_TICK / 10);
+    configureMotionMagic(climbMotor2, CLIMB_P, CLIMB_D, CLIMB_F, CLIMB_CRUISE_VELOCITY / CLIMB_METERS_PER_TICK / 10,
+        CLIMB_ACCELERATION / CLIMB_METERS_PER_TICK / 10);
+    configureMotionMagic(secondStageMotor1, SECOND_STAGE_P, SECOND_STAGE_D, SECOND_STAGE_F,
+        SECOND_STAGE_CRUISE_VELOCITY / 360 * SECOND_STAGE_CPR / 10, SECOND_STAGE_ACCELERATION / 360 * SECOND_STAGE_CPR / 10);
+    climbMotor1.config_kP(1, CLIMB_VELOCITY_P);
+    climbMotor1.config_kF(1, CLIMB_F);
+    climbMotor2.config_kP(1, CLIMB_VELOCITY_P);
+    climbMotor2.config_kF(1, CLIMB_F);
+
+    // The telescope positions and the second stage angle are read, and the second follower takes its output from the
+    // first one's general status frame
+    CanStatusFrames frames = CanStatusFrames.getInstance();
+    frames.configure("Climb 1", climbMotor1, use(POSITION, 20));
+    frames.configure("Climb 2", climbMotor2, use(POSITION, 20));
+    frames.configure("Climb Second Stage 1", secondStageMotor1, use(POSITION, 20), use(APPLIED_OUTPUT, 10));
+    frames.configure("Climb Second Stage 2", secondStageMotor2);
+  }
+
+  private static void configureMotionMagic(BaseMotorController motor, double p, double d, double f, double cruiseVelocity,
+      double acceleration) {
+    motor.config_kP(0, p);
+    motor.config_kD(0, d);
+    motor.config_kF(0, f);
+    motor.selectProfileSlot(0, 0);
+    motor.configMotionCruiseVelocity(cruiseVelocity);
+    motor.configMotionAcceleration(acceleration);
+  }
+
+  @Override
+  public void updateInputs(ClimbIOInputs inputs) {
+    inputs.limitSwitch1 = limitSwitch1.get();
+    inputs.limitSwitch2 = limitSwitch2.get();
+    inputs.climbPosition1 = climbMotor1.getSelectedSensorPosition();
+    inputs.climbPosition2 = climbMotor2.getSelectedSensorPosition();
+    inputs.secondStagePosition = secondStageMotor1.getSelectedSensorPosition();
+    HalCallCounter.add(5);
+  }
+
+  @Override
+  public void setClimb(double output) {
+    if (output != lastClimb) {
+      lastClimb = output;
+      lastClimbPosition = Double.NaN;
+      lastClimbVelocity1 = Double.NaN;
+      lastClimbVelocity2 = Double.NaN;
+      climbMotor1.set(ControlMode.PercentOutput, output);
+      climbMotor2.set(ControlMode.PercentOutput, output);
+      HalCallCounter.add(2);
+    }
+  }
+
+  @Override
+  public void setClimbPosition(double position) {
+    if (position != lastClimbPosition) {
+      lastClimbPosition = position;
+      lastClimb = Double.NaN;
+      lastClimbVelocity1 = Double.NaN;
+      lastClimbVelocity2 = Double.NaN;
+      selectClimbSlot(false);
+      climbMotor1.set(ControlMode.MotionMagic, position);
+      climbMotor2.set(ControlMode.MotionMagic, position);
+      HalCallCounter.add(2);
+    }
+  }
+
+  @Override
+  public void setClimbVelocities(double velocity1, double velocity2) {
+    lastClimb = Double.NaN;
+    lastClimbPosition = Double.NaN;
+    selectClimbSlot(true);
+    if (velocity1 != lastClimbVelocity1) {
+      lastClimbVelocity1 = velocity1;
+      climbMotor1.set(ControlMode.Velocity, velocity1);
+      HalCallCounter.add(1);
+    }
+    if (velocity2 != lastClimbVelocity2) {
+      lastClimbVelocity2 = velocity2;
+      climbMotor2.set(ControlMode.Velocity, velocity2);
+      HalCallCounter.add(1);
+    }
+  }
+
+  /**
+   * Switch both telescopes between the Motion Magic gains in slot 0 and the velocity gains in slot 1.
+   */
+  private void selectClimbSlot(boolean velocity) {
+    if (velocity != velocitySlot) {
+      velocitySlot = velocity;
+      climbMotor1.selectProfileSlot(velocity ? 1 : 0, 0);
+      climbMotor2.selectProfileSlot(velocity ? 1 : 0, 0);
+      HalCallCounter.add(2);
+    }
+  }
+
+  @Override
+  public void resetClimbPosition() {
+    climbMotor1.setSelectedSensorPosition(0);
+    climbMotor2.setSelectedSensorPosition(0);
+    // The target was in counts from the old zero
+    lastClimbPosition = Double.NaN;
+    HalCallCounter.add(2);
+  }
+
+  @Override
+  public void setSecondStage(double output) {
+    if (output != lastSecondStage) {
+      lastSecondStage = output;
+      lastSecondStagePosition = Double.NaN;
+      secondStageMotor1.set(ControlMode.PercentOutput, output);
+      HalCallCounter.add(1);
+    }
+  }
+
+  @Override
+  public void setSecondStagePosition(double position) {
+    if (position != lastSecondStagePosition) {
+      lastSecondStagePosition = position;
+      lastSecondStage = Double.NaN;
+      secondStageMotor1.set(ControlMode.MotionMagic, position);
+      HalCallCounter.add(1);
+    }
+  }
+}
@@ -0,0 +1,162 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.simulation.ClimberSim;
+import frc.robot.simulation.TalonMotionMagicSim;
+
+import static frc.robot.Constants.ClimbConstants.*;
+import static frc.robot.Constants.DriveConstants.NOMINAL_VOLTAGE;
+import static frc.robot.Constants.DriveConstants.ROBOT_MASS;
+
+/**
+ * The climber in simulation, moved by a {@link ClimberSim} once per robot loop. <br/>
+ *
+ * Motion Magic and the velocity loop on each Talon are stood in for at the Talons' 1 ms rate, with the same gains,
+ * constraints and units, on encoders that count the way the real ones do. The robot's pitch from the model is what the gyro would read.
+ */
+public class ClimbIOSim implements ClimbIO {
+  /** Number of physics steps per robot loop, one per Talon control loop. */
+  private static final int STEPS_PER_LOOP = 20;
+
+  /** Full output of the Talon's closed loop, in its native units. */
+  private static final double TALON_FULL_OUTPUT = 1023;
+
+  private final ClimberSim climberSim = new ClimberSim(
+    CLIMB_MOTOR, CLIMB_GEARING, CLIMB_SPOOL_RADIUS, CLIMB_MAX_EXTENSION, CLIMB_TELESCOPE_SPACING,
+    SECOND_STAGE_MOTOR, SECOND_STAGE_GEARING, SECOND_STAGE_MOI, SECOND_STAGE_INITIAL_ANGLE, ROBOT_MASS
+  );
+
+  private final TalonMotionMagicSim[] climbControllers = {
+    new TalonMotionMagicSim(CLIMB_P, CLIMB_D, CLIMB_F, CLIMB_CRUISE_VELOCITY / CLIMB_METERS_PER_TICK / 10,
+        CLIMB_ACCELERATION / CLIMB_METERS_PER_TICK / 10),
+    new TalonMotionMagicSim(CLIMB_P, CLIMB_D, CLIMB_F, CLIMB_CRUISE_VELOCITY / CLIMB_METERS_PER_TICK / 10,
+        CLIMB_ACCELERATION / CLIMB_METERS_PER_TICK / 10)
+  };
+  private final TalonMotionMagicSim secondStageController = new TalonMotionMagicSim(SECOND_STAGE_P, SECOND_STAGE_D, SECOND_STAGE_F,
+      SECOND_STAGE_CRUISE_VELOCITY / 360 * SECOND_STAGE_CPR / 10, SECOND_STAGE_ACCELERATION / 360 * SECOND_STAGE_CPR / 10);
+
+  private double climbOutput = 0;
+
+  /** Target speed of each telescope's velocity loop in counts per 100 ms, while it's running. */
+  private final double[] climbVelocities = new double[2];
+  private boolean climbVelocityRunning = false;
+  private double secondStageOutput = 0;
+
+  /** Extension in meters where each telescope's encoder reads zero. */
+  private final double[] climbZero = new double[2];
+
+  @Override
+  public void updateInputs(ClimbIOInputs inputs) {
+    double dt = TimedRobot.kDefaultPeriod / STEPS_PER_LOOP;
+    for (int step = 0; step < STEPS_PER_LOOP; step++) {
+      double climbOutput1 = climbOutput;
+      double climbOutput2 = climbOutput;
+      if (climbControllers[0].isRunning()) {
+        climbOutput1 = climbControllers[0].calculate(getClimbPosition(0), dt);
+        climbOutput2 = climbControllers[1].calculate(getClimbPosition(1), dt);
+      } else if (climbVelocityRunning) {
+        climbOutput1 = calculateVelocity(0);
+        climbOutput2 = calculateVelocity(1);
+      }
+
+      double secondStage = secondStageOutput;
+      if (secondStageController.isRunning()) {
+        secondStage = secondStageController.calculate(getSecondStagePosition(), dt);
+      }
+
+      climberSim.update(climbOutput1 * NOMINAL_VOLTAGE, climbOutput2 * NOMINAL_VOLTAGE, secondStage * NOMINAL_VOLTAGE, dt);
+    }
+
+    inputs.limitSwitch1 = climberSim.isAtLimitSwitch(0);
+    inputs.limitSwitch2 = climberSim.isAtLimitSwitch(1);
+    inputs.climbPosition1 = getClimbPosition(0);
+    inputs.climbPosition2 = getClimbPosition(1);
+    inputs.secondStagePosition = getSecondStagePosition();
+  }
+
+  /**
+   * The Falcon encoder counts down as the telescope extends.
+   */
+  private double getClimbPosition(int side) {
+    return -(climberSim.getExtension(side) - climbZero[side]) / CLIMB_METERS_PER_TICK;
+  }
+
+  /**
+   * One step of the Talon's velocity loop, with the feedforward on the target speed.
+   */
+  private double calculateVelocity(int side) {
+    double velocity = -climberSim.getExtensionVelocity(side) / CLIMB_METERS_PER_TICK / 10;
+    double output = CLIMB_F * climbVelocities[side] + CLIMB_VELOCITY_P * (climbVelocities[side] - velocity);
+    return MathUtil.clamp(output / TALON_FULL_OUTPUT, -1, 1);
+  }
+
+  private double getSecondStagePosition() {
+    return (climberSim.getAngle() - SECOND_STAGE_INITIAL_ANGLE) / 360 * SECOND_STAGE_CPR;
+  }
+
+  @Override
+  public void setClimb(double output) {
+    climbOutput = output;
+    climbVelocityRunning = false;
+    climbControllers[0].stop();
+    climbControllers[1].stop();
+  }
+
+  @Override
+  public void setClimbPosition(double position) {
+    climbVelocityRunning = false;
+    for (int side = 0; side < 2; side++) {
+      double velocity = -climberSim.getExtensionVelocity(side) / CLIMB_METERS_PER_TICK;
+      climbControllers[side].setTarget(position, getClimbPosition(side), velocity);
+    }
+  }
+
+  @Override
+  public void setClimbVelocities(double velocity1, double velocity2) {
+    climbVelocities[0] = velocity1;
+    climbVelocities[1] = velocity2;
+    climbVelocityRunning = true;
+    climbControllers[0].stop();
+    climbControllers[1].stop();
+  }
+
+  @Override
+  public void resetClimbPosition() {
+    for (int side = 0; side < 2; side++) {
+      climbZero[side] = climberSim.getExtension(side);
+      // The Talon carries on from the same point, now counted from the new zero
+      climbControllers[side].stop();
+    }
+  }
+
+  @Override
+  public void setSecondStage(double output) {
+    secondStageOutput = output;
+    secondStageController.stop();
+  }
+
+  @Override
+  public void setSecondStagePosition(double position) {
+    double velocity = climberSim.getAngularVelocity() / 360 * SECOND_STAGE_CPR;
+    secondStageController.setTarget(position, getSecondStagePosition(), velocity);
+  }
+
+  /**
+   * @return the climber model, for checking where the robot ended up
+   */
+  public ClimberSim getClimberSim() {
+    return climberSim;
+  }
+
+  /**
+   * @return robot pitch in degrees from the model, for the simulated gyro
+   */
+  public double getPitch() {
+    return climberSim.getPitch();
+  }
+}
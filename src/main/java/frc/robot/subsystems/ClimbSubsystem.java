@@ -4,73 +4,165 @@
 
 package frc.robot.subsystems;
 
+import java.util.function.DoubleSupplier;
 
-import com.ctre.phoenix.motorcontrol.ControlMode;
-import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
-import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
-import edu.wpi.first.wpilibj.DigitalInput;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
-
-public class ClimbSubsystem extends SubsystemBase {
-
-  private WPI_TalonFX climbMotor1;
-  private WPI_TalonFX climbMotor2;
-  private WPI_TalonSRX secondStageMotor1;
-  private WPI_TalonSRX secondStageMotor2;
-  private DigitalInput limitSwitch1;
-  private DigitalInput limitSwitch2;
-  
-  //Sets the second stage climb initial angle using the rotation ticks from the hex bore encoder
-  private double secondStageInitialAngle = (2048 / 8192) * 360;
-
-  private double secondStageMaximumAngle = 115.0;
-  private double secondStageMinimumAngle = 62.5;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.ClimbIO.ClimbIOInputs;
+import frc.robot.telemetry.ProfiledSubsystem;
+import frc.robot.telemetry.SignalLogger;
+
+import static frc.robot.Constants.ClimbConstants.*;
+
+/**
+ * The telescoping first stage and the rotating second stage of the climber. <br/>
+ *
+ * Besides the manual controls, the climber can run the whole climb as a sequence of steps, each moving the telescopes
+ * and the second stage with Motion Magic and moving on the first loop its limit switch, encoder or gyro condition is
+ * met. The sequence stops once with the telescopes up, for the driver to drive under the mid rung, then runs from the
+ * mid rung to the traversal rung on its own. <br/>
+ *
+ * The telescopes are synchronized by default: rather than each following its own Motion Magic move, both are driven
+ * by a {@link ClimbSynchronizer} that keeps them level, which lets them move at full speed without the robot rolling
+ * towards the slower side. That includes pulling in by hand. The synchronizer only drives the telescopes while it's
+ * stepped, so whatever stops stepping it leaves them held: the sequence with Motion Magic when it stops, and
+ * {@link frc.robot.commands.climb.HoldClimb} whenever no other command has the climber.
+ */
+public class ClimbSubsystem extends ProfiledSubsystem {
+
+  /** Steps of the automatic climb, in order. */
+  public enum ClimbState {
+    /** On the floor with the climber folded up. */
+    STOWED,
+    /** Telescopes up past the mid rung, waiting for the driver to drive under it. */
+    REACH_MID,
+    /** Pulling up onto the mid rung, until the limit switches close. */
+    PULL_MID,
+    /** Pulled up on a rung, waiting for the robot to stop swinging so the second stage's hooks land on it. */
+    SETTLE,
+    /** Turning the second stage onto the rung. */
+    LATCH,
+    /** Letting the robot down onto the second stage, then tilting it towards the next rung with the telescopes out. */
+    REACH_NEXT,
+    /** Pulling up onto the next rung, letting go of the last one with the second stage on the way. */
+    PULL_NEXT,
+    /** Hanging from the traversal rung. */
+    DONE
+  }
+
+  /** Rungs the sequence climbs after the mid rung, up to and including the traversal rung. */
+  private static final int RUNGS_AFTER_MID = 2;
+
+  private final ClimbIO io;
+  private final ClimbIOInputs inputs = new ClimbIOInputs();
+  private final DoubleSupplier pitchSupplier;
+
+  private double secondStageMaximumAngle = SECOND_STAGE_MAX_ANGLE;
+  private double secondStageMinimumAngle = SECOND_STAGE_MIN_ANGLE;
   private double currentAngle;
 
+  /** Robot pitch in degrees, and how fast it's changing in degrees per second. */
+  private double pitch = 0;
+  private double pitchRate = 0;
+
+  private final ClimbSynchronizer synchronizer = new ClimbSynchronizer();
+  private boolean synchronizedClimb = true;
+
+  /** Whether the synchronizer is in control of the telescopes, rather than starting from where they are. */
+  private boolean synchronizerRunning = false;
+
+  private ClimbState climbState = ClimbState.STOWED;
+
+  /** Rungs climbed past the mid rung in this sequence. */
+  private int rungsClimbed = 0;
+
+  /** Seconds since the second stage started tilting the robot towards the next rung. */
+  private double tiltTime = 0;
 
-  /** Creates a new ClimbSubsystem. */
-  public ClimbSubsystem() {
+  /** Output last sent to each stage, for logging. */
+  private double climbOutput = 0;
+  private double secondStageOutput = 0;
 
-    climbMotor1 = new WPI_TalonFX(8);
-    climbMotor2 = new WPI_TalonFX(7);
-    limitSwitch1 = new DigitalInput(0);
-    limitSwitch2 = new DigitalInput(1);
-    secondStageMotor1 = new WPI_TalonSRX(6);
-    secondStageMotor2 = new WPI_TalonSRX(5);
+  /** Targets of the last Motion Magic moves, in meters of extension and degrees. */
+  private double climbTarget = 0;
+  private double secondStageTarget = SECOND_STAGE_STOWED_ANGLE;
 
+  /** Where {@link #hold} keeps the telescopes and the second stage, in meters of extension and degrees. */
+  private double holdExtension = 0;
+  private double holdAngle = SECOND_STAGE_STOWED_ANGLE;
+
+
+  /**
+   * Creates a new ClimbSubsystem.
+   *
+   * @param io the climber hardware, or nothing when replaying a log
+   * @param pitchSupplier robot pitch from the gyro in degrees
+   */
+  public ClimbSubsystem(ClimbIO io, DoubleSupplier pitchSupplier) {
+    this.io = io;
+    this.pitchSupplier = pitchSupplier;
+    InputSnapshot.getInstance().register(() -> io.updateInputs(inputs));
+
+    // Logged signals
+    SignalLogger logger = SignalLogger.getInstance();
+    logger.addInputs("ClimbSubsystem", inputs);
+    logger.addDouble("ClimbSubsystem/Second Stage Angle", () -> currentAngle);
+    logger.addDouble("ClimbSubsystem/Climb Output", () -> climbOutput);
+    logger.addDouble("ClimbSubsystem/Second Stage Output", () -> secondStageOutput);
+    logger.addDouble("ClimbSubsystem/Extension", this::getExtension);
+    logger.addDouble("ClimbSubsystem/Climb Target", () -> climbTarget);
+    logger.addDouble("ClimbSubsystem/Second Stage Target", () -> secondStageTarget);
+    logger.addDouble("ClimbSubsystem/Pitch Rate", () -> pitchRate);
+    logger.addDouble("ClimbSubsystem/Tilt", this::getTilt);
+    logger.addBoolean("ClimbSubsystem/Synchronized", this::getSynchronized);
+    logger.addDouble("ClimbSubsystem/State", () -> climbState.ordinal());
   }
-  
+
   @Override
-  public void periodic() {
+  protected void timedPeriodic() {
     // This method will be called once per scheduler run
-    currentAngle = (secondStageMotor1.getSelectedSensorPosition() / 8192) * 360;
+    currentAngle = SECOND_STAGE_INITIAL_ANGLE + (inputs.secondStagePosition / SECOND_STAGE_CPR) * 360;
+
+    double lastPitch = pitch;
+    pitch = pitchSupplier.getAsDouble();
+    pitchRate = (pitch - lastPitch) / TimedRobot.kDefaultPeriod;
   }
-  
+
 /**
  * will only run if both switches are not triggered
+ * synchronized, each side stops at its own switch and the other catches up
  */
   public void activateClimb(){
 
-    if (!limitSwitch1.get() && !limitSwitch2.get()){
-      climbMotor1.set(ControlMode.PercentOutput, 1);
-      climbMotor2.set(ControlMode.PercentOutput, 1);
+    if (synchronizedClimb) {
+      if (!limitSwitchTriggered()) {
+        startSynchronizer();
+        synchronizer.calculateVelocity(-CLIMB_SYNC_VELOCITY, getExtension(0), getExtension(1));
+        setClimbVelocities(inputs.limitSwitch1 ? 0 : synchronizer.getVelocity(0),
+            inputs.limitSwitch2 ? 0 : synchronizer.getVelocity(1));
+      } else {
+        deactivateClimb();
+      }
+    } else if (!inputs.limitSwitch1 && !inputs.limitSwitch2){
+      setClimb(1);
     }else{
       deactivateClimb();
     }
 
-    
+
   }
 
   public void deactivateClimb(){
 
-    climbMotor1.set(ControlMode.PercentOutput, 0);
-    climbMotor2.set(ControlMode.PercentOutput, 0);
+    setClimb(0);
   }
 
   public boolean limitSwitchTriggered(){
-    return(limitSwitch1.get() && limitSwitch2.get());
+    return(inputs.limitSwitch1 && inputs.limitSwitch2);
   }
-  
+
 
   /**
    * Allows the second stage climber to rotate forward
@@ -79,13 +171,11 @@ public class ClimbSubsystem extends SubsystemBase {
   {
     if(currentAngle >= secondStageMinimumAngle && currentAngle <= secondStageMaximumAngle)
     {
-      secondStageMotor1.set(ControlMode.PercentOutput, 0.5);
-      secondStageMotor2.set(ControlMode.PercentOutput, 0.5);
+      setSecondStage(0.5);
     }
     else
     {
-      secondStageMotor1.set(ControlMode.PercentOutput, 0);
-      secondStageMotor2.set(ControlMode.PercentOutput, 0);
+      setSecondStage(0);
     }
   }
 
@@ -97,23 +187,269 @@ public class ClimbSubsystem extends SubsystemBase {
   {
     if(currentAngle >= secondStageMinimumAngle && currentAngle <= secondStageMaximumAngle)
     {
-      secondStageMotor1.set(ControlMode.PercentOutput, -0.5);
-      secondStageMotor2.set(ControlMode.PercentOutput, -0.5);
+      setSecondStage(-0.5);
     }
     else
     {
-      secondStageMotor1.set(ControlMode.PercentOutput, 0);
-      secondStageMotor2.set(ControlMode.PercentOutput, 0);
+      setSecondStage(0);
     }
   }
-  
+
 
   //Stops the second stage climber
   public void deactivateStage2()
   {
-    secondStageMotor1.set(ControlMode.PercentOutput, 0);
-    secondStageMotor2.set(ControlMode.PercentOutput, 0);
+    setSecondStage(0);
+  }
+
+  /**
+   * Switch between synchronized telescopes and each running on its own, in case an encoder misbehaves.
+   */
+  public void toggleSynchronized() {
+    synchronizedClimb = !synchronizedClimb;
+    synchronizerRunning = false;
+  }
+
+  private boolean getSynchronized() {
+    return synchronizedClimb;
+  }
+
+  /**
+   * Start or resume the automatic climb. From the floor this puts the telescopes up for the mid rung; once they are
+   * up, it climbs from the mid rung to the traversal rung. Anywhere else it carries on with the current step.
+   */
+  public void startSequence() {
+    if (climbState == ClimbState.STOWED) {
+      climbState = ClimbState.REACH_MID;
+      rungsClimbed = 0;
+    } else if (climbState == ClimbState.REACH_MID && climbAt(MID_REACH_EXTENSION)) {
+      climbState = ClimbState.PULL_MID;
+    }
+  }
+
+  /**
+   * Run one loop of the automatic climb: move on to the next step if this one is finished, then move towards the
+   * step's targets.
+   */
+  public void runSequence() {
+    switch (climbState) {
+      case STOWED:
+      case REACH_MID:
+      case DONE:
+        // Waiting on the driver
+        break;
+      case PULL_MID:
+        if (limitSwitchTriggered()) {
+          resetClimbPosition();
+          climbState = ClimbState.SETTLE;
+        }
+        break;
+      case SETTLE:
+        if (Math.abs(pitch) <= LATCH_PITCH_TOLERANCE && Math.abs(pitchRate) <= PITCH_RATE_TOLERANCE) {
+          climbState = ClimbState.LATCH;
+        }
+        break;
+      case LATCH:
+        if (secondStageAt(SECOND_STAGE_LATCH_ANGLE)) {
+          climbState = ClimbState.REACH_NEXT;
+          tiltTime = 0;
+        }
+        break;
+      case REACH_NEXT:
+        if (climbAt(NEXT_REACH_EXTENSION) && secondStageAt(SECOND_STAGE_REACH_ANGLE)
+            && Math.abs(pitch - NEXT_RUNG_PITCH) <= REACH_PITCH_TOLERANCE && Math.abs(pitchRate) <= PITCH_RATE_TOLERANCE) {
+          climbState = ClimbState.PULL_NEXT;
+        }
+        break;
+      case PULL_NEXT:
+        if (limitSwitchTriggered() && secondStageAt(SECOND_STAGE_STOWED_ANGLE)) {
+          resetClimbPosition();
+          rungsClimbed++;
+          climbState = (rungsClimbed < RUNGS_AFTER_MID) ? ClimbState.SETTLE : ClimbState.DONE;
+        }
+        break;
+    }
+
+    switch (climbState) {
+      case STOWED:
+        moveTo(0, SECOND_STAGE_STOWED_ANGLE);
+        break;
+      case REACH_MID:
+        moveTo(MID_REACH_EXTENSION, SECOND_STAGE_STOWED_ANGLE);
+        break;
+      case PULL_MID:
+      case SETTLE:
+        moveTo(-CLIMB_PULL_OVERTRAVEL, SECOND_STAGE_STOWED_ANGLE);
+        break;
+      case LATCH:
+        moveTo(-CLIMB_PULL_OVERTRAVEL, SECOND_STAGE_LATCH_ANGLE);
+        break;
+      case REACH_NEXT:
+        // Only tilt the robot once its weight is on the second stage, so the tilt is measured from the latched angle
+        // Then tilt it steadily over one swing, which leaves it hanging still rather than swinging about the new angle
+        if (getExtension() >= SECOND_STAGE_HANDOFF_EXTENSION) {
+          tiltTime += TimedRobot.kDefaultPeriod;
+        }
+        double tilt = Math.min(tiltTime / ROBOT_SWING_PERIOD, 1);
+        moveTo(NEXT_REACH_EXTENSION, SECOND_STAGE_LATCH_ANGLE + (SECOND_STAGE_REACH_ANGLE - SECOND_STAGE_LATCH_ANGLE) * tilt);
+        break;
+      case PULL_NEXT:
+        // Keep the robot tilted until the telescopes have the next rung, then let go of the last one
+        moveTo(-CLIMB_PULL_OVERTRAVEL,
+            (getExtension() <= SECOND_STAGE_RELEASE_EXTENSION) ? SECOND_STAGE_STOWED_ANGLE : SECOND_STAGE_REACH_ANGLE);
+        break;
+      case DONE:
+        moveTo(-CLIMB_PULL_OVERTRAVEL, SECOND_STAGE_STOWED_ANGLE);
+        break;
+    }
+  }
+
+  /**
+   * Stop the automatic climb where it is, holding both stages where they are with Motion Magic, which the Talons keep
+   * doing without being stepped. {@link #startSequence} picks up from the same step.
+   */
+  public void pauseSequence() {
+    startHold();
+    synchronizerRunning = false;
+    io.setClimbPosition(-holdExtension / CLIMB_METERS_PER_TICK);
+    io.setSecondStagePosition((holdAngle - SECOND_STAGE_INITIAL_ANGLE) / 360 * SECOND_STAGE_CPR);
+  }
+
+  /**
+   * Take where both stages are now as where {@link #hold} keeps them.
+   */
+  public void startHold() {
+    holdExtension = getExtension();
+    holdAngle = MathUtil.clamp(currentAngle, secondStageMinimumAngle, secondStageMaximumAngle);
+  }
+
+  /**
+   * Keep both stages where {@link #startHold} found them, the telescopes synchronized or with Motion Magic the same
+   * as any other move. Synchronized holds are stepped here, so this has to be called every loop.
+   */
+  public void hold() {
+    moveTo(holdExtension, holdAngle);
+  }
+
+  /**
+   * @return whether the automatic climb can't go any further until the driver starts it again
+   */
+  public boolean isSequenceWaiting() {
+    return climbState == ClimbState.DONE || (climbState == ClimbState.REACH_MID && climbAt(MID_REACH_EXTENSION));
+  }
+
+  /**
+   * @return the step the automatic climb is on
+   */
+  public ClimbState getClimbState() {
+    return climbState;
+  }
+
+  /**
+   * @return average extension of the telescopes in meters, from fully in
+   */
+  public double getExtension() {
+    // The encoders count down as the telescopes extend
+    return -(inputs.climbPosition1 + inputs.climbPosition2) / 2 * CLIMB_METERS_PER_TICK;
   }
 
+  /**
+   * @param side 0 for the first telescope, 1 for the second
+   * @return extension of the telescope in meters, from fully in
+   */
+  private double getExtension(int side) {
+    return -((side == 0) ? inputs.climbPosition1 : inputs.climbPosition2) * CLIMB_METERS_PER_TICK;
+  }
+
+  /**
+   * @return how far the robot is rolled by one telescope being out further than the other, in degrees, positive with
+   *         the first one further out
+   */
+  public double getTilt() {
+    return Math.toDegrees(Math.atan2(getExtension(0) - getExtension(1), CLIMB_TELESCOPE_SPACING));
+  }
+
+  /**
+   * @return second stage angle in degrees
+   */
+  public double getSecondStageAngle() {
+    return currentAngle;
+  }
+
+  private boolean climbAt(double extension) {
+    return Math.abs(getExtension() - extension) <= CLIMB_POSITION_TOLERANCE;
+  }
 
+  private boolean secondStageAt(double angle) {
+    return Math.abs(currentAngle - angle) <= SECOND_STAGE_ANGLE_TOLERANCE;
+  }
+
+  /**
+   * Move both stages, the second stage with Motion Magic and the telescopes either synchronized or with Motion Magic.
+   * Synchronized moves are stepped here, so this has to be called every loop.
+   *
+   * @param extension telescope extension in meters
+   * @param angle second stage angle in degrees, kept within its safe range
+   */
+  private void moveTo(double extension, double angle) {
+    climbTarget = extension;
+    secondStageTarget = MathUtil.clamp(angle, secondStageMinimumAngle, secondStageMaximumAngle);
+    if (synchronizedClimb) {
+      startSynchronizer();
+      synchronizer.calculate(extension, getExtension(0), getExtension(1));
+      setClimbVelocities(synchronizer.getVelocity(0), synchronizer.getVelocity(1));
+    } else {
+      io.setClimbPosition(-extension / CLIMB_METERS_PER_TICK);
+    }
+    io.setSecondStagePosition((secondStageTarget - SECOND_STAGE_INITIAL_ANGLE) / 360 * SECOND_STAGE_CPR);
+  }
+
+  /**
+   * Start the synchronizer from where the telescopes are, if it wasn't already driving them.
+   */
+  private void startSynchronizer() {
+    if (!synchronizerRunning) {
+      synchronizer.reset(getExtension());
+      synchronizerRunning = true;
+    }
+  }
+
+  /**
+   * Zero the encoders at the limit switches, carrying on any synchronized move from the new zero.
+   */
+  private void resetClimbPosition() {
+    io.resetClimbPosition();
+    synchronizer.reset(0);
+  }
+
+  private void setClimb(double output) {
+    climbOutput = output;
+    synchronizerRunning = false;
+    io.setClimb(output);
+  }
+
+  /**
+   * @param velocity1 speed of the first telescope in meters per second, positive extending
+   * @param velocity2 speed of the second telescope in meters per second, positive extending
+   */
+  private void setClimbVelocities(double velocity1, double velocity2) {
+    // The encoders count down as the telescopes extend
+    io.setClimbVelocities(-velocity1 / CLIMB_METERS_PER_TICK / 10, -velocity2 / CLIMB_METERS_PER_TICK / 10);
+  }
+
+  private void setSecondStage(double output) {
+    secondStageOutput = output;
+    io.setSecondStage(output);
+  }
+
+  @Override
+  public void initSendable(SendableBuilder builder) {
+    builder.setSmartDashboardType("ClimbSubsystem");
+    builder.addStringProperty("Climb Step", () -> climbState.name(), null);
+    builder.addDoubleProperty("Extension", this::getExtension, null);
+    builder.addDoubleProperty("Second Stage Angle", this::getSecondStageAngle, null);
+    builder.addDoubleProperty("Pitch", () -> pitch, null);
+    builder.addDoubleProperty("Tilt", this::getTilt, null);
+    builder.addBooleanProperty("Synchronized", this::getSynchronized, null);
+  }
 }
@@ -0,0 +1,126 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.TimedRobot;
+
+import static frc.robot.Constants.ClimbConstants.*;
+
+/**
+ * Cross-coupled speed control of the two telescopes, so they stay level while moving at full speed. <br/>
+ *
+ * Both telescopes are given the same speed, from a trapezoidal profile of their average extension, and then each
+ * side's speed is corrected by the difference between the two extensions: the side that's ahead slows down and the
+ * side that's behind speeds up. The Talons run the speed loops, so a side that binds gets more output straight away,
+ * and when a side can't go any faster the other one is held back to match it. Runs on the roboRIO once per loop,
+ * so the profile is stepped in primitives rather than with a new {@link TrapezoidProfile} and states every call.
+ */
+public class ClimbSynchronizer {
+
+  /** The profile's current point: average extension in meters and its speed in meters per second. */
+  private double setpointPosition = 0;
+  private double setpointVelocity = 0;
+
+  /** Speed of each telescope from the last calculation, in meters per second, positive extending. */
+  private final double[] velocities = new double[2];
+
+  /**
+   * Start the profile from where the telescopes are, such as when taking over from another kind of control.
+   *
+   * @param extension average extension of the telescopes in meters
+   */
+  public void reset(double extension) {
+    setpointPosition = extension;
+    setpointVelocity = 0;
+  }
+
+  /**
+   * Run one loop of a move to an extension.
+   *
+   * @param goal extension to move to in meters
+   * @param extension1 extension of the first telescope in meters
+   * @param extension2 extension of the second telescope in meters
+   */
+  public void calculate(double goal, double extension1, double extension2) {
+    stepProfile(goal, TimedRobot.kDefaultPeriod);
+
+    // Hold the average on the profile, then share the speed out between the sides
+    double average = (extension1 + extension2) / 2;
+    double velocity = setpointVelocity + CLIMB_SYNC_POSITION_P * (setpointPosition - average);
+    calculateVelocity(velocity, extension1, extension2);
+  }
+
+  /**
+   * Move the setpoint along a trapezoidal profile to the goal at rest, the same as
+   * {@code new TrapezoidProfile(constraints, new State(goal, 0), setpoint).calculate(dt)}. The profile is worked
+   * out moving forwards and flipped back for a goal behind the setpoint, and a setpoint already moving is treated as
+   * partway through accelerating from rest.
+   */
+  private void stepProfile(double goal, double dt) {
+    double direction = (setpointPosition > goal) ? -1 : 1;
+    double initialPosition = setpointPosition * direction;
+    double initialVelocity = Math.min(setpointVelocity * direction, CLIMB_SYNC_VELOCITY);
+    double goalPosition = goal * direction;
+
+    double cutoffBegin = initialVelocity / CLIMB_ACCELERATION;
+    double cutoffDistBegin = cutoffBegin * cutoffBegin * CLIMB_ACCELERATION / 2;
+    double fullTrapezoidDist = cutoffDistBegin + (goalPosition - initialPosition);
+    double accelerationTime = CLIMB_SYNC_VELOCITY / CLIMB_ACCELERATION;
+    double fullSpeedDist = fullTrapezoidDist - accelerationTime * accelerationTime * CLIMB_ACCELERATION;
+
+    // Never reaches full speed
+    if (fullSpeedDist < 0) {
+      accelerationTime = Math.sqrt(fullTrapezoidDist / CLIMB_ACCELERATION);
+      fullSpeedDist = 0;
+    }
+
+    double endAccel = accelerationTime - cutoffBegin;
+    double endFullSpeed = endAccel + fullSpeedDist / CLIMB_SYNC_VELOCITY;
+    double endDecel = endFullSpeed + accelerationTime;
+
+    double position;
+    double velocity;
+    if (dt < endAccel) {
+      velocity = initialVelocity + dt * CLIMB_ACCELERATION;
+      position = initialPosition + (initialVelocity + dt * CLIMB_ACCELERATION / 2) * dt;
+    } else if (dt < endFullSpeed) {
+      velocity = CLIMB_SYNC_VELOCITY;
+      position = initialPosition + (initialVelocity + endAccel * CLIMB_ACCELERATION / 2) * endAccel
+          + CLIMB_SYNC_VELOCITY * (dt - endAccel);
+    } else if (dt <= endDecel) {
+      double timeLeft = endDecel - dt;
+      velocity = timeLeft * CLIMB_ACCELERATION;
+      position = goalPosition - (timeLeft * CLIMB_ACCELERATION / 2) * timeLeft;
+    } else {
+      velocity = 0;
+      position = goalPosition;
+    }
+
+    setpointPosition = position * direction;
+    setpointVelocity = velocity * direction;
+  }
+
+  /**
+   * Run one loop at a constant speed, for driving the telescopes by hand.
+   *
+   * @param velocity speed of both telescopes in meters per second, positive extending
+   * @param extension1 extension of the first telescope in meters
+   * @param extension2 extension of the second telescope in meters
+   */
+  public void calculateVelocity(double velocity, double extension1, double extension2) {
+    double correction = CLIMB_SYNC_P * (extension1 - extension2);
+    velocities[0] = velocity - correction;
+    velocities[1] = velocity + correction;
+  }
+
+  /**
+   * @param side 0 for the first telescope, 1 for the second
+   * @return speed for the telescope in meters per second, positive extending
+   */
+  public double getVelocity(int side) {
+    return velocities[side];
+  }
+}
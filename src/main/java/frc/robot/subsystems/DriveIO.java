@@ -0,0 +1,58 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static frc.robot.Constants.DriveConstants.*;
+
+/**
+ * Hardware access for {@link DriveSystem}. <br/>
+ *
+ * {@link DriveIOReal} talks to the SparkMaxes and gyro, {@link DriveIOSim} runs a physics model, and the interface's
+ * own no-op methods are used for replay, where the inputs are filled in from a log instead.
+ * Wheels are in the order front left, front right, back left, back right.
+ */
+public interface DriveIO {
+
+  /** Values read from the drivetrain each loop. Every field is logged, and set from the log during replay. */
+  public static class DriveIOInputs {
+    /** Values per odometry sample: FPGA time in seconds, gyro angle in degrees, then the four wheel velocities. */
+    public static final int ODOMETRY_SAMPLE_SIZE = 6;
+
+    /** Gyro angle in degrees, counterclockwise positive. */
+    public double gyroAngle;
+
+    /** Gyro pitch in degrees, nose up positive. */
+    public double gyroPitch;
+
+    /** Wheel velocities in meters per second. */
+    public final double[] wheelVelocities = new double[4];
+
+    /** Number of samples in {@link #odometrySamples} taken since the last loop. */
+    public int odometrySampleCount;
+
+    /** Samples taken at {@link frc.robot.Constants.DriveConstants#ODOMETRY_PERIOD}, oldest first. */
+    public final double[] odometrySamples = new double[MAX_ODOMETRY_SAMPLES * ODOMETRY_SAMPLE_SIZE];
+  }
+
+  /**
+   * Read the latest values from the hardware.
+   */
+  public default void updateInputs(DriveIOInputs inputs) {}
+
+  /**
+   * Drive each wheel open-loop.
+   *
+   * @param outputs duty cycle from -1 to 1 for each wheel
+   */
+  public default void setDutyCycles(double[] outputs) {}
+
+  /**
+   * Drive each wheel with the velocity loop on its motor controller.
+   *
+   * @param speeds setpoint in meters per second for each wheel
+   * @param feedforwards voltage to add to the loop's output for each wheel
+   */
+  public default void setVelocities(double[] speeds, double[] feedforwards) {}
+}
@@ -0,0 +1,178 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkMaxPIDController;
+import com.revrobotics.SparkMaxPIDController.ArbFFUnits;
+import com.revrobotics.CANSparkMax.ControlType;
+import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+
+import edu.wpi.first.wpilibj.ADIS16470_IMU;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.drive.MecanumDrive;
+import frc.robot.can.CanStatusFrames;
+import frc.robot.telemetry.HalCallCounter;
+
+import static frc.robot.Constants.DriveConstants.*;
+import static frc.robot.can.CanSignal.VELOCITY;
+import static frc.robot.can.CanStatusFrames.use;
+import static frc.robot.subsystems.DriveIO.DriveIOInputs.ODOMETRY_SAMPLE_SIZE;
+
+/**
+ * The drivetrain on the robot: four SparkMaxes driving NEOs, and an ADIS16470 gyro. <br/>
+ *
+ * The encoders and gyro are sampled on their own thread at {@link frc.robot.Constants.DriveConstants#ODOMETRY_PERIOD}
+ * so odometry error doesn't pile up during fast strafes or loop overruns. The samples are handed to
+ * {@link DriveSystem} each loop, which integrates them on the main thread so a replayed log gives the same pose.
+ * The pose is as fine-grained as the samples, but only changes once per loop.
+ */
+public class DriveIOReal implements DriveIO {
+  private CANSparkMax frontLeft;
+  private CANSparkMax backLeft;
+  private CANSparkMax frontRight;
+  private CANSparkMax backRight;
+
+  /** In the order front left, front right, back left, back right. */
+  private SparkMaxPIDController[] controllers;
+  private RelativeEncoder[] encoders;
+
+  private ADIS16470_IMU gyro;
+
+  /** Only used for its motor safety watchdog. */
+  private MecanumDrive mecanumDrive;
+
+  /** Runs {@link #sampleOdometry()} on its own thread. */
+  private Notifier odometryNotifier;
+
+  /** Samples taken since the last {@link #updateInputs}, guarded by itself. */
+  private final double[] samples = new double[MAX_ODOMETRY_SAMPLES * ODOMETRY_SAMPLE_SIZE];
+  private int sampleCount = 0;
+
+  public DriveIOReal() {
+    // Capitalized and underscored variable names are statically imported constants from Constants.java
+    frontLeft = new CANSparkMax(FRONT_LEFT_MOTOR, MotorType.kBrushless);
+    backLeft = new CANSparkMax(BACK_LEFT_MOTOR, MotorType.kBrushless);
+    frontRight = new CANSparkMax(FRONT_RIGHT_MOTOR, MotorType.kBrushless);
+    backRight = new CANSparkMax(BACK_RIGHT_MOTOR, MotorType.kBrushless);
+
+    CANSparkMax[] motors = { frontLeft, frontRight, backLeft, backRight };
+    String[] names = { "Drive Front Left", "Drive Front Right", "Drive Back Left", "Drive Back Right" };
+    controllers = new SparkMaxPIDController[4];
+    encoders = new RelativeEncoder[4];
+
+    for (int wheel = 0; wheel < 4; wheel++) {
+      CANSparkMax motor = motors[wheel];
+
+      // Current limits on breakers are set to 40 Amps
+      motor.setSmartCurrentLimit(CURRENT_LIMIT);
+
+      // Voltage compensation in volts
+      motor.enableVoltageCompensation(NOMINAL_VOLTAGE);
+
+      // Time in seconds to reach max velocity in open loop
+      motor.setOpenLoopRampRate(RAMP_RATE);
+
+      // Velocity loop gains, feedforward is added separately as a voltage
+      controllers[wheel] = motor.getPIDController();
+      controllers[wheel].setP(VELOCITY_P);
+      controllers[wheel].setFF(0);
+
+      // Encoders report meters and meters per second of the wheel instead of motor rotations and RPM
+      encoders[wheel] = motor.getEncoder();
+      encoders[wheel].setPositionConversionFactor(POSITION_CONVERSION);
+      encoders[wheel].setVelocityConversionFactor(VELOCITY_CONVERSION);
+
+      // Velocity is sampled by the odometry thread, nothing else is read
+      CanStatusFrames.getInstance().configure(names[wheel], motor, use(VELOCITY, (int) Math.round(ODOMETRY_PERIOD * 1000)));
+    }
+
+    mecanumDrive = new MecanumDrive(frontLeft, backLeft, frontRight, backRight);
+    gyro = new ADIS16470_IMU();
+
+    odometryNotifier = new Notifier(this::sampleOdometry);
+    odometryNotifier.setName("DriveOdometry");
+    odometryNotifier.startPeriodic(ODOMETRY_PERIOD);
+  }
+
+  /**
+   * Record the encoder velocities and gyro angle. Called from the odometry thread, not the scheduler.
+   */
+  private void sampleOdometry() {
+    double timestamp = Timer.getFPGATimestamp();
+    double angle = gyro.getAngle();
+    double frontLeftVelocity = encoders[0].getVelocity();
+    double frontRightVelocity = encoders[1].getVelocity();
+    double backLeftVelocity = encoders[2].getVelocity();
+    double backRightVelocity = encoders[3].getVelocity();
+    HalCallCounter.add(6);
+
+    synchronized (samples) {
+      // If the robot loop stalls, keep the newest samples
+      if (sampleCount == MAX_ODOMETRY_SAMPLES) {
+        System.arraycopy(samples, ODOMETRY_SAMPLE_SIZE, samples, 0, samples.length - ODOMETRY_SAMPLE_SIZE);
+        sampleCount--;
+      }
+
+      int offset = sampleCount * ODOMETRY_SAMPLE_SIZE;
+      samples[offset] = timestamp;
+      samples[offset + 1] = angle;
+      samples[offset + 2] = frontLeftVelocity;
+      samples[offset + 3] = frontRightVelocity;
+      samples[offset + 4] = backLeftVelocity;
+      samples[offset + 5] = backRightVelocity;
+      sampleCount++;
+    }
+  }
+
+  @Override
+  public void updateInputs(DriveIOInputs inputs) {
+    synchronized (samples) {
+      System.arraycopy(samples, 0, inputs.odometrySamples, 0, sampleCount * ODOMETRY_SAMPLE_SIZE);
+      inputs.odometrySampleCount = sampleCount;
+      sampleCount = 0;
+    }
+
+    // The newest sample is at most one odometry period old, so reuse it instead of reading everything again
+    if (inputs.odometrySampleCount > 0) {
+      int offset = (inputs.odometrySampleCount - 1) * ODOMETRY_SAMPLE_SIZE;
+      inputs.gyroAngle = inputs.odometrySamples[offset + 1];
+      System.arraycopy(inputs.odometrySamples, offset + 2, inputs.wheelVelocities, 0, 4);
+    } else {
+      inputs.gyroAngle = gyro.getAngle();
+      for (int wheel = 0; wheel < 4; wheel++) {
+        inputs.wheelVelocities[wheel] = encoders[wheel].getVelocity();
+      }
+      HalCallCounter.add(5);
+    }
+
+    // Only the climb needs pitch, so it isn't sampled by the odometry thread
+    // The gyro's Y axis runs across the robot, so the angle about it is the pitch
+    inputs.gyroPitch = gyro.getYComplementaryAngle();
+    HalCallCounter.add(1);
+  }
+
+  @Override
+  public void setDutyCycles(double[] outputs) {
+    frontLeft.set(outputs[0]);
+    frontRight.set(outputs[1]);
+    backLeft.set(outputs[2]);
+    backRight.set(outputs[3]);
+    mecanumDrive.feed();
+    HalCallCounter.add(4);
+  }
+
+  @Override
+  public void setVelocities(double[] speeds, double[] feedforwards) {
+    // The loop itself runs on the SparkMax, so roboRIO loop timing doesn't affect it
+    for (int wheel = 0; wheel < 4; wheel++) {
+      controllers[wheel].setReference(speeds[wheel], ControlType.kVelocity, 0, feedforwards[wheel], ArbFFUnits.kVoltage);
+    }
+    mecanumDrive.feed();
+    HalCallCounter.add(4);
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.simulation.MecanumDriveSim;
+
+import static frc.robot.Constants.DriveConstants.*;
+import static frc.robot.subsystems.DriveIO.DriveIOInputs.ODOMETRY_SAMPLE_SIZE;
+
+/**
+ * The drivetrain in simulation, moved by {@link MecanumDriveSim} once per robot loop. <br/>
+ *
+ * Odometry samples are taken every {@link frc.robot.Constants.DriveConstants#ODOMETRY_PERIOD} of simulated time,
+ * the same rate as the odometry thread on the robot.
+ */
+public class DriveIOSim implements DriveIO {
+  /** Number of physics steps per robot loop. Smaller steps than the robot loop keep the motor model stable. */
+  private static final int STEPS_PER_LOOP = 20;
+
+  private final MecanumDriveSim drivetrainSim = new MecanumDriveSim(DRIVE_MOTOR, GEAR_RATIO, WHEEL_DIAMETER, ROBOT_MASS, CURRENT_LIMIT, KINEMATICS);
+
+  private final double[] dutyCycles = new double[4];
+  private final double[] velocitySetpoints = new double[4];
+  private final double[] feedforwards = new double[4];
+  private boolean velocityControlled = false;
+
+  private final double[] voltages = new double[4];
+
+  private final DoubleSupplier pitchSupplier;
+
+  /**
+   * Creates a new DriveIOSim that stays level.
+   */
+  public DriveIOSim() {
+    this(() -> 0);
+  }
+
+  /**
+   * Creates a new DriveIOSim.
+   *
+   * @param pitchSupplier robot pitch in degrees for the simulated gyro, from whatever is tilting the robot
+   */
+  public DriveIOSim(DoubleSupplier pitchSupplier) {
+    this.pitchSupplier = pitchSupplier;
+  }
+
+  @Override
+  public void updateInputs(DriveIOInputs inputs) {
+    double dt = TimedRobot.kDefaultPeriod / STEPS_PER_LOOP;
+    int stepsPerSample = (int) Math.round(ODOMETRY_PERIOD / dt);
+    double loopStart = Timer.getFPGATimestamp() - TimedRobot.kDefaultPeriod;
+
+    inputs.odometrySampleCount = 0;
+    for (int step = 1; step <= STEPS_PER_LOOP; step++) {
+      for (int wheel = 0; wheel < 4; wheel++) {
+        if (velocityControlled) {
+          // Stand in for the velocity loop that runs on the SparkMax
+          double error = velocitySetpoints[wheel] - drivetrainSim.getWheelVelocity(wheel);
+          voltages[wheel] = MathUtil.clamp(feedforwards[wheel] + VELOCITY_P * error * NOMINAL_VOLTAGE, -NOMINAL_VOLTAGE, NOMINAL_VOLTAGE);
+        } else {
+          voltages[wheel] = dutyCycles[wheel] * NOMINAL_VOLTAGE;
+        }
+      }
+      drivetrainSim.update(voltages, dt);
+
+      if (step % stepsPerSample == 0 && inputs.odometrySampleCount < MAX_ODOMETRY_SAMPLES) {
+        int offset = inputs.odometrySampleCount * ODOMETRY_SAMPLE_SIZE;
+        inputs.odometrySamples[offset] = loopStart + step * dt;
+        inputs.odometrySamples[offset + 1] = drivetrainSim.getHeadingDegrees();
+        for (int wheel = 0; wheel < 4; wheel++) {
+          inputs.odometrySamples[offset + 2 + wheel] = drivetrainSim.getWheelVelocity(wheel);
+        }
+        inputs.odometrySampleCount++;
+      }
+    }
+
+    inputs.gyroAngle = drivetrainSim.getHeadingDegrees();
+    inputs.gyroPitch = pitchSupplier.getAsDouble();
+    for (int wheel = 0; wheel < 4; wheel++) {
+      inputs.wheelVelocities[wheel] = drivetrainSim.getWheelVelocity(wheel);
+    }
+  }
+
+  @Override
+  public void setDutyCycles(double[] outputs) {
+    velocityControlled = false;
+    System.arraycopy(outputs, 0, dutyCycles, 0, 4);
+  }
+
+  @Override
+  public void setVelocities(double[] speeds, double[] feedforwards) {
+    velocityControlled = true;
+    System.arraycopy(speeds, 0, velocitySetpoints, 0, 4);
+    System.arraycopy(feedforwards, 0, this.feedforwards, 0, 4);
+  }
+}
@@ -4,104 +4,134 @@
 
 package frc.robot.subsystems;
 
-import com.revrobotics.CANSparkMax;
-import com.revrobotics.RelativeEncoder;
-import com.revrobotics.SparkMaxPIDController;
-import com.revrobotics.CANSparkMax.ControlType;
-import com.revrobotics.CANSparkMaxLowLevel.MotorType;
-
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.kinematics.MecanumDriveOdometry;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.MecanumDriveWheelSpeeds;
 import edu.wpi.first.math.trajectory.Trajectory;
 import edu.wpi.first.math.trajectory.TrajectoryConfig;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.util.sendable.SendableBuilder;
-import edu.wpi.first.wpilibj.ADIS16470_IMU;
-import edu.wpi.first.wpilibj.drive.MecanumDrive;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.drive.RobotDriveBase;
 import edu.wpi.first.wpilibj2.command.MecanumControllerCommand;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.DriveIO.DriveIOInputs;
+import frc.robot.telemetry.ProfiledSubsystem;
+import frc.robot.telemetry.SignalLogger;
+
+import java.util.function.Supplier;
 
 // Static imports mean that variable names can be accessed without referencing the class name they came from
 import static frc.robot.Constants.DriveConstants.*;
 
-public class DriveSystem extends SubsystemBase {
+public class DriveSystem extends ProfiledSubsystem {
+
+  /** Called by {@link DriveSystem} with each odometry sample as it's integrated. */
+  @FunctionalInterface
+  public interface OdometryListener {
+    /**
+     * @param x meters along the field
+     * @param y meters across the field
+     * @param heading radians, counterclockwise positive
+     * @param timestamp FPGA time in seconds the sample was taken
+     */
+    void accept(double x, double y, double heading, double timestamp);
+  }
 
-  private CANSparkMax frontLeft;
-  private CANSparkMax backLeft;
-  private CANSparkMax frontRight;
-  private CANSparkMax backRight;
+  private final DriveIO io;
+  private final DriveIOInputs inputs = new DriveIOInputs();
 
-  private SparkMaxPIDController frontLeftController;
-  private SparkMaxPIDController backLeftController;
-  private SparkMaxPIDController frontRightController;
-  private SparkMaxPIDController backRightController;
+  private boolean fieldOriented = true;
 
-  private RelativeEncoder frontLeftEncoder;
-  private RelativeEncoder backLeftEncoder;
-  private RelativeEncoder frontRightEncoder;
-  private RelativeEncoder backRightEncoder;
+  /** Whether teleop drives with the SparkMax velocity loops instead of open-loop duty cycle. */
+  private boolean closedLoop = false;
 
-  private boolean fieldOriented = true;
-  private ADIS16470_IMU gyro;
+  private SimpleMotorFeedforward feedforward;
+
+  /**
+   * Last wheel velocity setpoints and when they were set, used to find the acceleration for feedforward.
+   * In the order front left, front right, back left, back right.
+   */
+  private final double[] lastWheelSetpoints = new double[4];
+  private double lastSetpointTime = 0;
+
+  /** Feedforward voltages sent with the last velocity setpoints, same order as {@link #lastWheelSetpoints}. */
+  private final double[] lastWheelFeedforwards = new double[4];
+
+  /** Whether the wheels were last commanded with velocity setpoints rather than duty cycle. */
+  private boolean velocityControlled = false;
+
+  /** Motor outputs reused by {@link #driveCartesian} each loop, in the order front left, front right, back left, back right. */
+  private final double[] wheelOutputs = new double[4];
+
+  /**
+   * Pose being integrated, in meters and radians, and the FPGA time of its sample. Odometry is integrated on the main
+   * thread from the samples taken since the last loop, so replaying a log gives the same pose.
+   */
+  private double poseX = 0;
+  private double poseY = 0;
+  private double poseHeading = 0;
+  private double poseTimestamp = 0;
+
+  /**
+   * Latest pose from odometry, replaced once per loop after the loop's samples are integrated. Replaced whole rather
+   * than updated in place, so other threads can read it without locking.
+   */
+  private volatile TimestampedPose latestPose;
 
-  private MecanumDrive mecanumDrive;
+  /** Gyro angle in radians plus this is the heading, set when the odometry is reset. */
+  private double gyroOffset = 0;
+  /** Heading in radians at the last odometry sample. */
+  private double previousHeading = 0;
+  /** FPGA time in seconds of the last odometry sample, or negative before the first. */
+  private double previousSampleTime = -1;
+
+  /** Called after each odometry sample is integrated, or null. */
+  private OdometryListener odometryListener;
 
-  private MecanumDriveOdometry odometry;
   private TrajectoryConfig trajectoryConfig;
 
   private ProfiledPIDController rotationController;
 
   private double speedMultiplier = 0.8;
 
-  /** Creates a new DriveSystem. */
-  public DriveSystem() {
-    // Capitalized and underscored variable names are statically imported constants from Constants.java
-    frontLeft = new CANSparkMax(FRONT_LEFT_MOTOR, MotorType.kBrushless);
-    backLeft = new CANSparkMax(BACK_LEFT_MOTOR, MotorType.kBrushless);
-    frontRight = new CANSparkMax(FRONT_RIGHT_MOTOR, MotorType.kBrushless);
-    backRight = new CANSparkMax(BACK_RIGHT_MOTOR, MotorType.kBrushless);
-
-    // Current limits on breakers are set to 40 Amps
-    frontLeft.setSmartCurrentLimit(CURRENT_LIMIT);
-    backLeft.setSmartCurrentLimit(CURRENT_LIMIT);
-    frontRight.setSmartCurrentLimit(CURRENT_LIMIT);
-    backRight.setSmartCurrentLimit(CURRENT_LIMIT);
-
-    // Voltage compensation in volts
-    frontLeft.enableVoltageCompensation(NOMINAL_VOLTAGE);
-    backLeft.enableVoltageCompensation(NOMINAL_VOLTAGE);
-    frontRight.enableVoltageCompensation(NOMINAL_VOLTAGE);
-    backRight.enableVoltageCompensation(NOMINAL_VOLTAGE);
-
-    // Time in seconds to reach max velocity in open loop
-    frontLeft.setOpenLoopRampRate(RAMP_RATE);
-    backLeft.setOpenLoopRampRate(RAMP_RATE);
-    frontRight.setOpenLoopRampRate(RAMP_RATE);
-    backRight.setOpenLoopRampRate(RAMP_RATE);
-
-    // PID Controllers
-    frontLeftController = frontLeft.getPIDController();
-    backLeftController = backLeft.getPIDController();
-    frontRightController = frontRight.getPIDController();
-    backRightController = backRight.getPIDController();
-
-    // Encoders
-    frontLeftEncoder = frontLeft.getEncoder();
-    backLeftEncoder = backLeft.getEncoder();
-    frontRightEncoder = frontRight.getEncoder();
-    backRightEncoder = backRight.getEncoder();
-
-    mecanumDrive = new MecanumDrive(frontLeft, backLeft, frontRight, backRight);
-    gyro = new ADIS16470_IMU();
-
-    odometry = new MecanumDriveOdometry(KINEMATICS, new Rotation2d(gyro.getAngle()));
+  /**
+   * Creates a new DriveSystem.
+   * 
+   * @param io the drivetrain hardware, simulation, or nothing when replaying a log
+   */
+  public DriveSystem(DriveIO io) {
+    this.io = io;
+    InputSnapshot.getInstance().register(() -> io.updateInputs(inputs));
+
+    feedforward = new SimpleMotorFeedforward(KS, KV, KA);
+
+    resetOdometry(new Pose2d());
     trajectoryConfig = new TrajectoryConfig(MAX_SPEED, MAX_ACCELERATION);
 
     rotationController = new ProfiledPIDController(0, 0, 0, new TrapezoidProfile.Constraints(MAX_ROTATION_SPEED, MAX_ROTATION_ACCELERATION));
+
+    // Logged signals
+    SignalLogger logger = SignalLogger.getInstance();
+    logger.addInputs("DriveSystem", inputs);
+    logger.addDouble("DriveSystem/X", () -> latestPose.getX());
+    logger.addDouble("DriveSystem/Y", () -> latestPose.getY());
+    logger.addDouble("DriveSystem/Heading", () -> Math.toDegrees(latestPose.getHeading()));
+    logger.addBoolean("DriveSystem/Field Oriented", this::getFieldOriented);
+    logger.addBoolean("DriveSystem/Closed Loop", this::getClosedLoop);
+    logger.addBoolean("DriveSystem/Velocity Controlled", () -> velocityControlled);
+
+    String[] wheelNames = { "Front Left", "Front Right", "Back Left", "Back Right" };
+    for (int i = 0; i < 4; i++) {
+      int wheel = i;
+      logger.addDouble("DriveSystem/" + wheelNames[wheel] + "/Setpoint", () -> lastWheelSetpoints[wheel]);
+      logger.addDouble("DriveSystem/" + wheelNames[wheel] + "/Output", () -> wheelOutputs[wheel]);
+    }
   }
 
   /**
@@ -118,29 +148,192 @@ public class DriveSystem extends SubsystemBase {
     double rotation = rotationVelocity * speedMultiplier;
 
     if (fieldOriented) {
-      mecanumDrive.driveCartesian(y, x, rotation, -gyro.getAngle());
+      driveCartesian(y, x, rotation, -inputs.gyroAngle);
+    } else {
+      driveCartesian(y, x, rotation, 0.0);
+    }
+  }
+
+  /**
+   * Drive with the output of {@link #mixCartesian}, either as duty cycle or through the velocity loops.
+   * 
+   * @param ySpeed speed along the robot's forward axis, from -1 to 1
+   * @param xSpeed speed along the robot's right axis, from -1 to 1
+   * @param zRotation rotation rate, clockwise positive, from -1 to 1
+   * @param gyroAngle angle in degrees to rotate the input by for field oriented driving
+   */
+  private void driveCartesian(double ySpeed, double xSpeed, double zRotation, double gyroAngle) {
+    mixCartesian(ySpeed, xSpeed, zRotation, gyroAngle, wheelOutputs);
+
+    if (closedLoop) {
+      // Full output on a wheel becomes full speed on that wheel
+      setWheelVelocities(
+        wheelOutputs[0] * MAX_WHEEL_SPEED,
+        wheelOutputs[2] * MAX_WHEEL_SPEED,
+        wheelOutputs[1] * MAX_WHEEL_SPEED,
+        wheelOutputs[3] * MAX_WHEEL_SPEED
+      );
     } else {
-      mecanumDrive.driveCartesian(y, x, rotation);
+      velocityControlled = false;
+      io.setDutyCycles(wheelOutputs);
+    }
+  }
+
+  /**
+   * Same math as {@link MecanumDrive#driveCartesian(double, double, double, double)}, but writes into
+   * an existing array instead of allocating new vectors and arrays every loop.
+   * 
+   * @param ySpeed speed along the robot's forward axis, from -1 to 1
+   * @param xSpeed speed along the robot's right axis, from -1 to 1
+   * @param zRotation rotation rate, clockwise positive, from -1 to 1
+   * @param gyroAngle angle in degrees to rotate the input by for field oriented driving
+   * @param outputs filled with outputs from -1 to 1, in the order front left, front right, back left, back right
+   */
+  static void mixCartesian(double ySpeed, double xSpeed, double zRotation, double gyroAngle, double[] outputs) {
+    ySpeed = MathUtil.applyDeadband(ySpeed, RobotDriveBase.kDefaultDeadband);
+    xSpeed = MathUtil.applyDeadband(xSpeed, RobotDriveBase.kDefaultDeadband);
+
+    // Compensate for gyro angle
+    double angle = Math.toRadians(-gyroAngle);
+    double cos = Math.cos(angle);
+    double sin = Math.sin(angle);
+    double forward = ySpeed * cos - xSpeed * sin;
+    double right = ySpeed * sin + xSpeed * cos;
+
+    outputs[0] = forward + right + zRotation;
+    outputs[1] = forward - right - zRotation;
+    outputs[2] = forward - right + zRotation;
+    outputs[3] = forward + right - zRotation;
+
+    // Scale all outputs down together if any are above full power
+    double maxMagnitude = 1.0;
+    for (double output : outputs) {
+      maxMagnitude = Math.max(maxMagnitude, Math.abs(output));
+    }
+    for (int i = 0; i < outputs.length; i++) {
+      outputs[i] /= maxMagnitude;
     }
   }
 
+  /**
+   * Drive the robot at a velocity using the velocity loops on each SparkMax.
+   * 
+   * @param speeds the robot-relative speeds, in meters per second and radians per second
+   */
+  public void drive(ChassisSpeeds speeds) {
+    MecanumDriveWheelSpeeds wheelSpeeds = KINEMATICS.toWheelSpeeds(speeds);
+    wheelSpeeds.desaturate(MAX_WHEEL_SPEED);
+    drive(wheelSpeeds);
+  }
+
+  /**
+   * Get the pose from odometry as of the last loop. Allocates a new Pose2d, so code that runs every loop should read
+   * {@link #getTimestampedPose()} instead.
+   * 
+   * @return the current pose of the robot in meters
+   */
   public Pose2d getPose() {
-    return odometry.getPoseMeters();
+    return latestPose.getPose();
   }
 
   /**
-   * Get the current speeds of the wheel as a MecanumDriveWheelSpeeds object. <br/>
-   * Units are RPM.
+   * Get the pose from odometry as of the last loop together with the FPGA time of the sample it came from.
+   * Safe to call from any thread.
    * 
-   * @return the current wheel speeds
+   * @return the current pose of the robot and its timestamp, which is never changed once returned
    */
-  private MecanumDriveWheelSpeeds getWheelSpeeds() {
-    return new MecanumDriveWheelSpeeds(
-      frontLeftEncoder.getVelocity(),
-      backLeftEncoder.getVelocity(),
-      frontRightEncoder.getVelocity(),
-      backRightEncoder.getVelocity()
-    );
+  public TimestampedPose getTimestampedPose() {
+    return latestPose;
+  }
+
+  /**
+   * Set what to call after each odometry sample is integrated, which is several times per loop. The listener is called
+   * on the main thread, with the pose and time of the sample as primitives so nothing is allocated per sample.
+   * 
+   * @param listener called with the pose and the time of the sample
+   */
+  public void setOdometryListener(OdometryListener listener) {
+    odometryListener = listener;
+  }
+
+  /**
+   * Reset the odometry to a known pose, such as the starting position of an autonomous routine.
+   * 
+   * @param pose the pose of the robot on the field in meters
+   */
+  public void resetOdometry(Pose2d pose) {
+    double heading = pose.getRotation().getRadians();
+    gyroOffset = heading - Math.toRadians(inputs.gyroAngle);
+    previousHeading = heading;
+    poseX = pose.getX();
+    poseY = pose.getY();
+    poseHeading = heading;
+    poseTimestamp = Timer.getFPGATimestamp();
+    latestPose = new TimestampedPose(poseX, poseY, poseHeading, poseTimestamp);
+  }
+
+  /**
+   * Integrate the odometry samples taken since the last loop, which are at a higher rate than the loop itself, then
+   * publish the pose. Only one pose is allocated per loop, however many samples there were.
+   */
+  private void updateOdometry() {
+    if (inputs.odometrySampleCount == 0) {
+      return;
+    }
+    for (int sample = 0; sample < inputs.odometrySampleCount; sample++) {
+      int offset = sample * DriveIOInputs.ODOMETRY_SAMPLE_SIZE;
+      double[] samples = inputs.odometrySamples;
+      integrateSample(samples[offset], samples[offset + 1], samples[offset + 2], samples[offset + 3], samples[offset + 4],
+          samples[offset + 5]);
+    }
+    latestPose = new TimestampedPose(poseX, poseY, poseHeading, poseTimestamp);
+  }
+
+  /**
+   * Move the pose by one odometry sample, the same way as MecanumDriveOdometry but without allocating.
+   * Wheel speeds are in meters per second.
+   *
+   * @param timestamp FPGA time in seconds the sample was taken
+   * @param gyroAngle gyro angle in degrees, counterclockwise positive
+   */
+  private void integrateSample(double timestamp, double gyroAngle, double frontLeft, double frontRight, double rearLeft,
+      double rearRight) {
+    double dt = (previousSampleTime >= 0) ? timestamp - previousSampleTime : 0;
+    previousSampleTime = timestamp;
+
+    // Forward kinematics for wheels at the corners of a rectangle, as in KINEMATICS
+    double vx = (frontLeft + frontRight + rearLeft + rearRight) / 4;
+    double vy = (-frontLeft + frontRight + rearLeft - rearRight) / 4;
+
+    double heading = Math.toRadians(gyroAngle) + gyroOffset;
+    double dx = vx * dt;
+    double dy = vy * dt;
+    double dTheta = MathUtil.angleModulus(heading - previousHeading);
+    previousHeading = heading;
+
+    // Pose exponential, the arc driven with constant speeds over the sample
+    double s;
+    double c;
+    if (Math.abs(dTheta) < 1e-9) {
+      s = 1.0 - dTheta * dTheta / 6.0;
+      c = 0.5 * dTheta;
+    } else {
+      s = Math.sin(dTheta) / dTheta;
+      c = (1 - Math.cos(dTheta)) / dTheta;
+    }
+    double forward = dx * s - dy * c;
+    double left = dx * c + dy * s;
+
+    double cos = Math.cos(poseHeading);
+    double sin = Math.sin(poseHeading);
+    poseX += forward * cos - left * sin;
+    poseY += forward * sin + left * cos;
+    poseHeading = MathUtil.angleModulus(heading);
+    poseTimestamp = timestamp;
+
+    if (odometryListener != null) {
+      odometryListener.accept(poseX, poseY, poseHeading, poseTimestamp);
+    }
   }
 
   /**
@@ -149,10 +342,43 @@ public class DriveSystem extends SubsystemBase {
    * @param speeds the speeds at which to drive the wheels
    */
   private void drive(MecanumDriveWheelSpeeds speeds) {
-    frontLeftController.setReference(speeds.frontLeftMetersPerSecond, ControlType.kVelocity);
-    backLeftController.setReference(speeds.rearLeftMetersPerSecond, ControlType.kVelocity);
-    frontRightController.setReference(speeds.frontRightMetersPerSecond, ControlType.kVelocity);
-    backRightController.setReference(speeds.rearRightMetersPerSecond, ControlType.kVelocity);
+    setWheelVelocities(
+      speeds.frontLeftMetersPerSecond,
+      speeds.rearLeftMetersPerSecond,
+      speeds.frontRightMetersPerSecond,
+      speeds.rearRightMetersPerSecond
+    );
+  }
+
+  /**
+   * Send velocity setpoints to the motor controllers, with feedforward from KS, KV and KA as an arbitrary voltage. <br/>
+   * Units are meters per second.
+   */
+  private void setWheelVelocities(double frontLeftSpeed, double backLeftSpeed, double frontRightSpeed, double backRightSpeed) {
+    double now = Timer.getFPGATimestamp();
+    double dt = now - lastSetpointTime;
+    lastSetpointTime = now;
+    velocityControlled = true;
+
+    wheelFeedforward(0, frontLeftSpeed, dt);
+    wheelFeedforward(1, frontRightSpeed, dt);
+    wheelFeedforward(2, backLeftSpeed, dt);
+    wheelFeedforward(3, backRightSpeed, dt);
+    io.setVelocities(lastWheelSetpoints, lastWheelFeedforwards);
+  }
+
+  /**
+   * Calculate the feedforward voltage for one wheel, using the change from its last setpoint as the acceleration.
+   * 
+   * @param wheel index into {@link #lastWheelSetpoints}
+   * @param speed the new setpoint in meters per second
+   * @param dt seconds since the last setpoint
+   */
+  private void wheelFeedforward(int wheel, double speed, double dt) {
+    // A long gap means the wheels weren't being driven in closed-loop, so there is no meaningful acceleration
+    double acceleration = (dt > 0 && dt < 0.1) ? (speed - lastWheelSetpoints[wheel]) / dt : 0;
+    lastWheelSetpoints[wheel] = speed;
+    lastWheelFeedforwards[wheel] = feedforward.calculate(speed, acceleration);
   }
 
   /**
@@ -172,9 +398,20 @@ public class DriveSystem extends SubsystemBase {
    * @return the command that follows the path
    */
   public MecanumControllerCommand trajectoryCommand(Trajectory trajectory) {
+    return trajectoryCommand(trajectory, this::getPose);
+  }
+
+  /**
+   * Generate a command for following a trajectory, using a different source for the robot's position than odometry.
+   * 
+   * @param trajectory the trajectory to follow in the command
+   * @param poseSupplier the position of the robot, such as a vision-corrected estimate
+   * @return the command that follows the path
+   */
+  public MecanumControllerCommand trajectoryCommand(Trajectory trajectory, Supplier<Pose2d> poseSupplier) {
     return new MecanumControllerCommand(
       trajectory, // Path to follow
-      this::getPose, // Current robot position
+      poseSupplier, // Current robot position
 
       KINEMATICS, // Distance from center of robot to each wheel
 
@@ -197,6 +434,17 @@ public class DriveSystem extends SubsystemBase {
     return fieldOriented;
   }
 
+  /**
+   * Switch teleop between open-loop duty cycle and the SparkMax velocity loops.
+   */
+  public void toggleClosedLoop() {
+    closedLoop = !closedLoop;
+  }
+
+  private boolean getClosedLoop() {
+    return closedLoop;
+  }
+
   public void toggleSlowMode() {
     //If speedMultiplier is not on full speed, it sets it full speed and the inverse
     speedMultiplier = (speedMultiplier == 0.8) ? 0.4 : 0.8;
@@ -217,7 +465,7 @@ public class DriveSystem extends SubsystemBase {
   public void rotateToAngle(double targetAngle)
   {
     double desiredAngle = targetAngle;
-    double currentAngle = gyro.getAngle();
+    double currentAngle = inputs.gyroAngle;
     
     if(currentAngle <= (desiredAngle + 5.0) || currentAngle >= (desiredAngle - 5.0))
     {
@@ -231,14 +479,28 @@ public class DriveSystem extends SubsystemBase {
       }
     }
 
-    currentAngle = gyro.getAngle();
+    currentAngle = inputs.gyroAngle;
   }
 
   /**
    * Returns the angle given by the gyro
    */
   public double getGyro() {
-    return gyro.getAngle();
+    return inputs.gyroAngle;
+  }
+
+  /**
+   * @return the pitch of the robot given by the gyro in degrees, nose up positive
+   */
+  public double getPitch() {
+    return inputs.gyroPitch;
+  }
+
+  /**
+   * @return the heading of the robot given by the gyro
+   */
+  public Rotation2d getRotation() {
+    return Rotation2d.fromDegrees(inputs.gyroAngle);
   }
   
   /**
@@ -248,22 +510,22 @@ public class DriveSystem extends SubsystemBase {
    * @param targetAngle Angle, in degrees, from camera
    */
   public void driveWithTargeting(double x, double y, double targetAngle) {
-    drive(x / 2, y / 2, (rotationController.calculate(getGyro(), getGyro() - targetAngle)));
+    double angle = getGyro();
+    drive(x / 2, y / 2, rotationController.calculate(angle, angle - targetAngle));
   }
 
   @Override
-  public void periodic() {
+  protected void timedPeriodic() {
     // This method will be called once per scheduler run
-    odometry.update(
-      new Rotation2d(gyro.getAngle()),
-      getWheelSpeeds()
-    );
+    // Inputs were read by the InputSnapshot at the start of the loop
+    updateOdometry();
   }
 
   @Override
   public void initSendable(SendableBuilder builder) {
     builder.setSmartDashboardType("DriveSystem");
     builder.addBooleanProperty("Field Oriented", this::getFieldOriented, null);
+    builder.addBooleanProperty("Closed Loop", this::getClosedLoop, null);
     builder.addDoubleProperty("Speed Multiplier", this::getSpeedMultiplier, null);
   }
 }
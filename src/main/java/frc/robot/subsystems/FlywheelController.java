@@ -0,0 +1,109 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.LinearQuadraticRegulator;
+import edu.wpi.first.math.estimator.KalmanFilter;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.system.LinearSystem;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.TimedRobot;
+
+import static frc.robot.Constants.OuttakeConstants.*;
+
+/**
+ * State-space velocity controller for the shooter flywheel. <br/>
+ *
+ * A Kalman filter estimates the flywheel's velocity from the encoder and the voltage it was given, and an LQR picks
+ * the voltage to apply, on top of the feedforward from the model, so spin-up uses the full voltage and recovery after
+ * a shot starts the moment the velocity drops. Runs on the roboRIO once per loop; the Talons just apply the voltage.
+ */
+public class FlywheelController {
+
+  /** Steady-state gains, found once from the model with WPILib's Kalman filter and LQR. */
+  private final double observerGain;
+  private final double regulatorGain;
+
+  /** The model over one loop: the next velocity is discreteA times this one, plus discreteB times the voltage. */
+  private final double discreteA;
+  private final double discreteB;
+
+  /**
+   * The filtered velocity and the setpoint from the last loop in radians per second. Each loop does the same math as
+   * LinearSystemLoop with plain numbers, since its matrices are new every call.
+   */
+  private double estimatedVelocity = 0;
+  private double lastSetpoint = 0;
+
+  public FlywheelController() {
+    LinearSystem<N1, N1, N1> plant = LinearSystemId.identifyVelocitySystem(FLYWHEEL_KV, FLYWHEEL_KA);
+
+    KalmanFilter<N1, N1, N1> observer = new KalmanFilter<>(
+      Nat.N1(), Nat.N1(), plant,
+      VecBuilder.fill(FLYWHEEL_MODEL_STD_DEV),
+      VecBuilder.fill(FLYWHEEL_ENCODER_STD_DEV),
+      TimedRobot.kDefaultPeriod
+    );
+
+    LinearQuadraticRegulator<N1, N1, N1> controller = new LinearQuadraticRegulator<>(
+      plant,
+      VecBuilder.fill(FLYWHEEL_VELOCITY_TOLERANCE),
+      VecBuilder.fill(FLYWHEEL_MAX_VOLTAGE),
+      TimedRobot.kDefaultPeriod
+    );
+
+    observerGain = observer.getK().get(0, 0);
+    regulatorGain = controller.getK().get(0, 0);
+
+    // Exact discretization of dx/dt = A x + B u for a single state
+    double a = plant.getA(0, 0);
+    double b = plant.getB(0, 0);
+    discreteA = Math.exp(a * TimedRobot.kDefaultPeriod);
+    discreteB = (discreteA - 1) / a * b;
+  }
+
+  /**
+   * Start the estimate from a known velocity, such as when the controller takes over from coasting.
+   *
+   * @param velocity flywheel velocity in radians per second
+   */
+  public void reset(double velocity) {
+    estimatedVelocity = velocity;
+    lastSetpoint = velocity;
+  }
+
+  /**
+   * Run one loop of the controller.
+   *
+   * @param measured flywheel velocity from the encoder in radians per second
+   * @param setpoint desired velocity in radians per second
+   * @return voltage to apply to the motors
+   */
+  public double calculate(double measured, double setpoint) {
+    // Correct the estimate with the measurement
+    estimatedVelocity += observerGain * (measured - estimatedVelocity);
+
+    // LQR feedback, plus the voltage the model says moves the last setpoint to this one
+    double feedback = regulatorGain * (setpoint - estimatedVelocity);
+    double feedforward = (setpoint - discreteA * lastSetpoint) / discreteB;
+    lastSetpoint = setpoint;
+    double voltage = MathUtil.clamp(feedback + feedforward, -FLYWHEEL_MAX_VOLTAGE, FLYWHEEL_MAX_VOLTAGE);
+
+    // Predict where the voltage takes the flywheel by the next loop
+    estimatedVelocity = discreteA * estimatedVelocity + discreteB * voltage;
+
+    return voltage;
+  }
+
+  /**
+   * @return the filtered velocity in radians per second
+   */
+  public double getEstimatedVelocity() {
+    return estimatedVelocity;
+  }
+}
@@ -0,0 +1,60 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * Hardware access for {@link IntakeSubsystem}. <br/>
+ *
+ * {@link IntakeIOReal} talks to the motors, encoder and limit switches, {@link IntakeIOSim} runs a model of the arm,
+ * and the interface's own no-op methods are used for replay, where the inputs are filled in from a log instead.
+ */
+public interface IntakeIO {
+
+  /** Values read from the intake each loop. Every field is logged, and set from the log during replay. */
+  public static class IntakeIOInputs {
+    public boolean limitSwitchUp;
+    public boolean limitSwitchDown;
+
+    /** Position of the arm's encoder in counts, 4096 per rotation, counting up as the intake deploys. */
+    public double deployPosition;
+
+    /** Current through the deploy motor in amps. */
+    public double deployCurrent;
+  }
+
+  /**
+   * Read the latest values from the hardware.
+   */
+  public default void updateInputs(IntakeIOInputs inputs) {}
+
+  /**
+   * Run the motor that raises and lowers the intake.
+   *
+   * @param output duty cycle from -1 to 1, positive deploys
+   */
+  public default void setDeploy(double output) {}
+
+  /**
+   * Move the arm to a position with Motion Magic.
+   *
+   * @param position target in encoder counts
+   * @param gravityOutput output added to hold the arm up against gravity, from -1 to 1
+   */
+  public default void setDeployPosition(double position, double gravityOutput) {}
+
+  /**
+   * Set the arm's encoder, when a limit switch shows where the arm is.
+   *
+   * @param position the arm's position in encoder counts
+   */
+  public default void resetDeployPosition(double position) {}
+
+  /**
+   * Run the intake rollers.
+   *
+   * @param output duty cycle from -1 to 1, positive takes cargo in
+   */
+  public default void setRoller(double output) {}
+}
@@ -0,0 +1,109 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.DemandType;
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+import frc.robot.can.CanStatusFrames;
+import frc.robot.telemetry.HalCallCounter;
+
+import static frc.robot.Constants.IntakeConstants.*;
+import static frc.robot.can.CanSignal.CURRENT;
+import static frc.robot.can.CanSignal.POSITION;
+import static frc.robot.can.CanStatusFrames.use;
+
+/**
+ * The intake on the robot: TalonSRXs on the deploy arm and the rollers, a mag encoder on the arm's pivot wired to the
+ * deploy Talon, and a limit switch at each end of the arm. <br/>
+ *
+ * The arm runs Motion Magic on the encoder. Outputs are only sent when they change, since the default command sets
+ * them every loop.
+ */
+public class IntakeIOReal implements IntakeIO {
+  private WPI_TalonSRX deployMotor;
+  private WPI_TalonSRX rollerMotor;
+
+  private DigitalInput limitSwitchUp;
+  private DigitalInput limitSwitchDown;
+
+  private double lastDeploy = Double.NaN;
+  private double lastDeployPosition = Double.NaN;
+  private double lastGravityOutput = Double.NaN;
+  private double lastRoller = Double.NaN;
+
+  public IntakeIOReal() {
+    deployMotor = new WPI_TalonSRX(DEPLOY_MOTOR_ID);
+    rollerMotor = new WPI_TalonSRX(ROLLER_MOTOR_ID);
+
+    limitSwitchUp = new DigitalInput(LIMIT_SWITCH_UP_CHANNEL);
+    limitSwitchDown = new DigitalInput(LIMIT_SWITCH_DOWN_CHANNEL);
+
+    // Positive output deploys, and the encoder counts up with it
+    deployMotor.configSelectedFeedbackSensor(FeedbackDevice.CTRE_MagEncoder_Relative);
+    deployMotor.setSensorPhase(true);
+    deployMotor.setSelectedSensorPosition(0);
+
+    // Motion Magic takes degrees per second as counts per 100 ms
+    deployMotor.config_kP(0, DEPLOY_P);
+    deployMotor.config_kF(0, DEPLOY_F);
+    deployMotor.configMotionCruiseVelocity(DEPLOY_CRUISE_VELOCITY / 360 * DEPLOY_CPR / 10);
+    deployMotor.configMotionAcceleration(DEPLOY_ACCELERATION / 360 * DEPLOY_CPR / 10);
+
+    // The limit switches are wired to the roboRIO, the arm's position and current are read from its Talon
+    CanStatusFrames.getInstance().configure("Intake Deploy", deployMotor, use(POSITION, 20), use(CURRENT, 20));
+    CanStatusFrames.getInstance().configure("Intake Roller", rollerMotor);
+  }
+
+  @Override
+  public void updateInputs(IntakeIOInputs inputs) {
+    inputs.limitSwitchUp = limitSwitchUp.get();
+    inputs.limitSwitchDown = limitSwitchDown.get();
+    inputs.deployPosition = deployMotor.getSelectedSensorPosition();
+    inputs.deployCurrent = deployMotor.getStatorCurrent();
+    HalCallCounter.add(4);
+  }
+
+  @Override
+  public void setDeploy(double output) {
+    if (output != lastDeploy) {
+      lastDeploy = output;
+      lastDeployPosition = Double.NaN;
+      deployMotor.set(output);
+      HalCallCounter.add(1);
+    }
+  }
+
+  @Override
+  public void setDeployPosition(double position, double gravityOutput) {
+    if (position != lastDeployPosition || gravityOutput != lastGravityOutput) {
+      lastDeployPosition = position;
+      lastGravityOutput = gravityOutput;
+      lastDeploy = Double.NaN;
+      deployMotor.set(ControlMode.MotionMagic, position, DemandType.ArbitraryFeedForward, gravityOutput);
+      HalCallCounter.add(1);
+    }
+  }
+
+  @Override
+  public void resetDeployPosition(double position) {
+    deployMotor.setSelectedSensorPosition(position);
+    // The target was in counts from the old zero
+    lastDeployPosition = Double.NaN;
+    HalCallCounter.add(1);
+  }
+
+  @Override
+  public void setRoller(double output) {
+    if (output != lastRoller) {
+      lastRoller = output;
+      rollerMotor.set(output);
+      HalCallCounter.add(1);
+    }
+  }
+}
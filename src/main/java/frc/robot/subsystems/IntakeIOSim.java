@@ -0,0 +1,156 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
+import frc.robot.simulation.TalonMotionMagicSim;
+
+import static frc.robot.Constants.DriveConstants.NOMINAL_VOLTAGE;
+import static frc.robot.Constants.IntakeConstants.*;
+
+/**
+ * The intake in simulation, with the deploy arm moved by a {@link SingleJointedArmSim} once per robot loop. <br/>
+ *
+ * The arm starts stowed, and swings between hard stops just past each limit switch. Motion Magic on the Talon is
+ * stood in for at the Talon's 1 ms rate, with the same gains, constraints and units. Either switch can be broken with
+ * {@link #breakLimitSwitch}, to check the arm is stopped when it stalls instead.
+ */
+public class IntakeIOSim implements IntakeIO {
+  /** Number of physics steps per robot loop, one per Talon control loop. */
+  private static final int STEPS_PER_LOOP = 20;
+
+  /** How far past each limit switch the arm's hard stops are, in degrees. */
+  private static final double HARD_STOP_TRAVEL = 1.0;
+
+  private final SingleJointedArmSim armSim = new SingleJointedArmSim(
+    DEPLOY_MOTOR, DEPLOY_GEARING, SingleJointedArmSim.estimateMOI(DEPLOY_ARM_LENGTH, DEPLOY_ARM_MASS), DEPLOY_ARM_LENGTH,
+    Math.toRadians(DEPLOY_DEPLOYED_ANGLE - HARD_STOP_TRAVEL), Math.toRadians(DEPLOY_STOWED_ANGLE + HARD_STOP_TRAVEL),
+    DEPLOY_ARM_MASS, true
+  );
+
+  private final TalonMotionMagicSim deployController = new TalonMotionMagicSim(DEPLOY_P, 0, DEPLOY_F,
+      DEPLOY_CRUISE_VELOCITY / 360 * DEPLOY_CPR / 10, DEPLOY_ACCELERATION / 360 * DEPLOY_CPR / 10);
+
+  private double deployOutput = 0;
+  private double gravityOutput = 0;
+  private double current = 0;
+
+  /** Speed in degrees per second the arm last hit a hard stop at. */
+  private double impactVelocity = 0;
+
+  /** Angle in degrees where the encoder reads zero. */
+  private double deployZero = DEPLOY_STOWED_ANGLE + HARD_STOP_TRAVEL;
+
+  private boolean limitSwitchUpBroken = false;
+  private boolean limitSwitchDownBroken = false;
+
+  public IntakeIOSim() {
+    // Resting against the stowed hard stop
+    armSim.setState(VecBuilder.fill(Math.toRadians(DEPLOY_STOWED_ANGLE + HARD_STOP_TRAVEL), 0));
+  }
+
+  @Override
+  public void updateInputs(IntakeIOInputs inputs) {
+    double dt = TimedRobot.kDefaultPeriod / STEPS_PER_LOOP;
+    for (int step = 0; step < STEPS_PER_LOOP; step++) {
+      double output = deployOutput;
+      if (deployController.isRunning()) {
+        output = MathUtil.clamp(deployController.calculate(getDeployPosition(), dt) + gravityOutput, -1, 1);
+      }
+
+      // Positive output deploys, lowering the arm
+      armSim.setInputVoltage(-output * NOMINAL_VOLTAGE);
+      double velocity = getArmVelocity();
+      boolean atHardStop = isAtHardStop();
+      armSim.update(dt);
+      if (!atHardStop && isAtHardStop()) {
+        impactVelocity = Math.abs(velocity);
+      }
+      current = Math.abs(armSim.getCurrentDrawAmps());
+    }
+
+    double angle = getArmAngle();
+    inputs.limitSwitchUp = !limitSwitchUpBroken && angle >= DEPLOY_STOWED_ANGLE;
+    inputs.limitSwitchDown = !limitSwitchDownBroken && angle <= DEPLOY_DEPLOYED_ANGLE;
+    inputs.deployPosition = getDeployPosition();
+    inputs.deployCurrent = current;
+  }
+
+  private boolean isAtHardStop() {
+    double angle = getArmAngle();
+    return angle <= DEPLOY_DEPLOYED_ANGLE - HARD_STOP_TRAVEL + 1e-6 || angle >= DEPLOY_STOWED_ANGLE + HARD_STOP_TRAVEL - 1e-6;
+  }
+
+  /**
+   * The encoder counts up as the arm deploys.
+   */
+  private double getDeployPosition() {
+    return (deployZero - getArmAngle()) / 360 * DEPLOY_CPR;
+  }
+
+  @Override
+  public void setDeploy(double output) {
+    deployOutput = output;
+    deployController.stop();
+  }
+
+  @Override
+  public void setDeployPosition(double position, double gravityOutput) {
+    this.gravityOutput = gravityOutput;
+    double velocity = -Math.toDegrees(armSim.getVelocityRadPerSec()) / 360 * DEPLOY_CPR;
+    deployController.setTarget(position, getDeployPosition(), velocity);
+  }
+
+  @Override
+  public void resetDeployPosition(double position) {
+    deployZero = getArmAngle() + position / DEPLOY_CPR * 360;
+    // The Talon carries on from the same point, now counted from the new zero
+    deployController.stop();
+  }
+
+  /**
+   * Stop a limit switch from ever closing, as if it were unplugged.
+   *
+   * @param down true for the switch at the deployed end, false for the stowed end
+   */
+  public void breakLimitSwitch(boolean down) {
+    if (down) {
+      limitSwitchDownBroken = true;
+    } else {
+      limitSwitchUpBroken = true;
+    }
+  }
+
+  /**
+   * @return the arm's angle above horizontal in degrees, from the model
+   */
+  public double getArmAngle() {
+    return Math.toDegrees(armSim.getAngleRads());
+  }
+
+  /**
+   * @return the arm's angular velocity in degrees per second, positive raising it
+   */
+  public double getArmVelocity() {
+    return Math.toDegrees(armSim.getVelocityRadPerSec());
+  }
+
+  /**
+   * @return speed in degrees per second the arm last hit a hard stop at
+   */
+  public double getImpactVelocity() {
+    return impactVelocity;
+  }
+
+  /**
+   * @return current through the deploy motor in amps
+   */
+  public double getCurrent() {
+    return current;
+  }
+}
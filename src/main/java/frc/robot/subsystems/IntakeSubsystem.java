@@ -4,37 +4,112 @@
 
 package frc.robot.subsystems;
 
-import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.IntakeIO.IntakeIOInputs;
+import frc.robot.telemetry.ProfiledSubsystem;
+import frc.robot.telemetry.SignalLogger;
+
+import static frc.robot.Constants.IntakeConstants.*;
+
+/**
+ * The intake's deploy arm and rollers. <br/>
+ *
+ * The arm is moved with Motion Magic, as fast as it can go, once a limit switch has shown where it is. Each switch sets
+ * the encoder when it closes, and the arm stops there. Until the arm is homed, or with profiling turned off, it is
+ * driven slowly towards the switch instead. If the arm stops moving for long enough short of where it's going, such as
+ * against a hard stop with a switch that didn't close, the deploy motor is stopped until the arm is driven the other
+ * way. Driven slowly that shows as stall current, and with Motion Magic, which only pushes lightly that close to its
+ * target, as the arm sitting short of the target.
+ */
+public class IntakeSubsystem extends ProfiledSubsystem {
+
+  private final IntakeIO io;
+  private final IntakeIOInputs inputs = new IntakeIOInputs();
 
-import edu.wpi.first.wpilibj.DigitalInput;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
+  private final double intakeSpeed = 0.5;
+  private final double deploySpeed = 0.2;
 
+  /** Output last sent to each motor, for logging. */
+  private double deployOutput = 0;
+  private double rollerOutput = 0;
 
+  private boolean profiledDeploy = true;
 
-public class IntakeSubsystem extends SubsystemBase {
-  private WPI_TalonSRX deployMotor;
-  private WPI_TalonSRX rollerMotor;
+  /** Whether a limit switch has set the encoder since the robot started. */
+  private boolean homed = false;
+  private boolean lastLimitSwitchUp = false;
+  private boolean lastLimitSwitchDown = false;
 
-  private DigitalInput limitSwitchUp;
-  private DigitalInput limitSwitchDown;
+  /**
+   * Which way the arm was last driven, 1 to deploy and -1 to retract, whether the motor is running, and whether it's
+   * running a Motion Magic move.
+   */
+  private int deployDirection = 0;
+  private boolean deployRunning = false;
+  private boolean deployProfiled = false;
 
-  private final double intakeSpeed = 0.5;
-  private final double deploySpeed = 0.2;
+  /** Arm angle from the encoder in degrees, and its speed in degrees per second. */
+  private double deployAngle = DEPLOY_STOWED_ANGLE;
+  private double deployVelocity = 0;
 
+  /** How long the arm has been stalled in seconds, and whether the deploy motor's been stopped for it. */
+  private double stallTime = 0;
+  private boolean stalled = false;
 
-  /** Creates a new IntakeSubsystem. */
-  public IntakeSubsystem() {
-    deployMotor = new WPI_TalonSRX(0);
-    rollerMotor = new WPI_TalonSRX(1);
+  /** Target of the last Motion Magic move in degrees. */
+  private double deployTarget = DEPLOY_STOWED_ANGLE;
 
 
-    limitSwitchUp = new DigitalInput(0);
-    limitSwitchDown = new DigitalInput(1);
+  /**
+   * Creates a new IntakeSubsystem.
+   * 
+   * @param io the intake hardware, or nothing when replaying a log
+   */
+  public IntakeSubsystem(IntakeIO io) {
+    this.io = io;
+    InputSnapshot.getInstance().register(() -> io.updateInputs(inputs));
+
+    // Logged signals
+    SignalLogger logger = SignalLogger.getInstance();
+    logger.addInputs("IntakeSubsystem", inputs);
+    logger.addDouble("IntakeSubsystem/Deploy Output", () -> deployOutput);
+    logger.addDouble("IntakeSubsystem/Roller Output", () -> rollerOutput);
+    logger.addDouble("IntakeSubsystem/Deploy Angle", this::getDeployAngle);
+    logger.addDouble("IntakeSubsystem/Deploy Target", () -> deployTarget);
+    logger.addBoolean("IntakeSubsystem/Homed", () -> homed);
+    logger.addBoolean("IntakeSubsystem/Stalled", this::isStalled);
+    logger.addBoolean("IntakeSubsystem/Profiled", () -> profiledDeploy);
   }
 
   @Override
-  public void periodic() {
+  protected void timedPeriodic() {
     // This method will be called once per scheduler run
+    double lastDeployAngle = deployAngle;
+    deployAngle = getDeployAngle();
+    deployVelocity = (deployAngle - lastDeployAngle) / TimedRobot.kDefaultPeriod;
+
+    // Home the encoder as each switch closes
+    if (inputs.limitSwitchUp && !lastLimitSwitchUp) {
+      io.resetDeployPosition(0);
+      homed = true;
+    }
+    if (inputs.limitSwitchDown && !lastLimitSwitchDown) {
+      io.resetDeployPosition(angleToPosition(DEPLOY_DEPLOYED_ANGLE));
+      homed = true;
+    }
+    lastLimitSwitchUp = inputs.limitSwitchUp;
+    lastLimitSwitchDown = inputs.limitSwitchDown;
+
+    // The output is cut on the next call to deploy or retract
+    boolean pushing = Math.abs(inputs.deployCurrent) >= DEPLOY_STALL_CURRENT
+        || (deployProfiled && Math.abs(deployAngle - deployTarget) > DEPLOY_STALL_ERROR);
+    if (deployRunning && pushing && Math.abs(deployVelocity) < DEPLOY_STALL_VELOCITY) {
+      stallTime += TimedRobot.kDefaultPeriod;
+      stalled = stalled || stallTime >= DEPLOY_STALL_TIME;
+    } else {
+      stallTime = 0;
+    }
   }
 
   /** 
@@ -42,14 +117,7 @@ public class IntakeSubsystem extends SubsystemBase {
   */
   public void deployIntake()
   {
-    if(limitSwitchDown.get())
-    {
-      deployMotor.set(0);
-    }
-    else
-    {
-      deployMotor.set(deploySpeed);
-    }
+    driveArm(1, inputs.limitSwitchDown, DEPLOY_DEPLOYED_ANGLE - DEPLOY_OVERTRAVEL);
   }
 
   /** 
@@ -57,13 +125,28 @@ public class IntakeSubsystem extends SubsystemBase {
   */
   public void retractIntake(){
   
-    if(limitSwitchUp.get())
-    {
-      deployMotor.set(0);
+    driveArm(-1, inputs.limitSwitchUp, DEPLOY_STOWED_ANGLE + DEPLOY_OVERTRAVEL);
+  }
+
+  /**
+   * Drive the arm towards one of its limit switches, stopping it there or if it stalls.
+   *
+   * @param direction 1 to deploy, -1 to retract
+   * @param atSwitch whether the switch at that end is closed
+   * @param targetAngle where to aim a profiled move, in degrees
+   */
+  private void driveArm(int direction, boolean atSwitch, double targetAngle) {
+    if (direction != deployDirection) {
+      deployDirection = direction;
+      stalled = false;
     }
-    else
-    {
-      deployMotor.set(deploySpeed * -1);
+
+    if (atSwitch || stalled) {
+      setDeploy(0);
+    } else if (profiledDeploy && homed) {
+      moveTo(targetAngle);
+    } else {
+      setDeploy(deploySpeed * direction);
     }
   }
 
@@ -72,7 +155,7 @@ public class IntakeSubsystem extends SubsystemBase {
    */
   public void intakeCargo()
   {
-    rollerMotor.set(intakeSpeed);
+    setRoller(intakeSpeed);
   }
 
   /**
@@ -80,6 +163,56 @@ public class IntakeSubsystem extends SubsystemBase {
    */
   public void reverseIntakeCargo()
   {
-    rollerMotor.set(intakeSpeed * -1);
+    setRoller(intakeSpeed * -1);
+  }
+
+  /**
+   * Switch between profiled moves and driving the arm slowly to the switches, in case the encoder misbehaves.
+   */
+  public void toggleProfiledDeploy() {
+    profiledDeploy = !profiledDeploy;
+  }
+
+  /**
+   * @return the arm's angle above horizontal in degrees, from the encoder
+   */
+  public double getDeployAngle() {
+    return DEPLOY_STOWED_ANGLE - inputs.deployPosition / DEPLOY_CPR * 360;
+  }
+
+  /**
+   * @return whether the deploy motor has been stopped for stalling
+   */
+  public boolean isStalled() {
+    return stalled;
+  }
+
+  private static double angleToPosition(double angle) {
+    return (DEPLOY_STOWED_ANGLE - angle) / 360 * DEPLOY_CPR;
+  }
+
+  /**
+   * Start a Motion Magic move of the arm, holding it up against gravity on the way.
+   *
+   * @param angle arm angle above horizontal in degrees
+   */
+  private void moveTo(double angle) {
+    deployTarget = angle;
+    deployRunning = true;
+    deployProfiled = true;
+    // Positive output deploys, so holding the arm up takes negative output
+    io.setDeployPosition(angleToPosition(angle), -DEPLOY_KG * Math.cos(Math.toRadians(getDeployAngle())));
+  }
+
+  private void setDeploy(double output) {
+    deployOutput = output;
+    deployRunning = output != 0;
+    deployProfiled = false;
+    io.setDeploy(output);
+  }
+
+  private void setRoller(double output) {
+    rollerOutput = output;
+    io.setRoller(output);
   }
 }
@@ -0,0 +1,49 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * Hardware access for {@link OuttakeSubsystem}. <br/>
+ *
+ * {@link OuttakeIOReal} talks to the Talons, in simulation as well as on the robot, and the interface's own no-op
+ * methods are used for replay, where the inputs are filled in from a log instead.
+ */
+public interface OuttakeIO {
+
+  /** Values read from the outtake each loop. Every field is logged, and set from the log during replay. */
+  public static class OuttakeIOInputs {
+    /** Shooter velocity in encoder ticks per 100 ms. */
+    public double shooterVelocity;
+
+    /** Supply current of the leading shooter motor in amps. */
+    public double shooterSupplyCurrent;
+  }
+
+  /**
+   * Read the latest values from the hardware.
+   */
+  public default void updateInputs(OuttakeIOInputs inputs) {}
+
+  /**
+   * Run the shooter's velocity loop on the TalonFX.
+   *
+   * @param setpoint the velocity setpoint in encoder ticks per 100 ms
+   */
+  public default void setShooterVelocity(double setpoint) {}
+
+  /**
+   * Drive the shooter open-loop, for a controller running on the roboRIO.
+   *
+   * @param volts voltage to apply, compensated for the battery
+   */
+  public default void setShooterVoltage(double volts) {}
+
+  /**
+   * Run the feeder open-loop.
+   *
+   * @param output duty cycle from -1 to 1
+   */
+  public default void setFeeder(double output) {}
+}
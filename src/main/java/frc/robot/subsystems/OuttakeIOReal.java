@@ -0,0 +1,108 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
+import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
+
+import frc.robot.can.CanStatusFrames;
+import frc.robot.telemetry.HalCallCounter;
+
+import static frc.robot.Constants.OuttakeConstants.*;
+import static frc.robot.can.CanSignal.*;
+import static frc.robot.can.CanStatusFrames.use;
+
+/**
+ * The outtake on the robot: two TalonFXs on the shooter, one following the other, and a TalonSRX on the feeder. <br/>
+ *
+ * Outputs are only sent when they change. The Talons keep running the last control request, so sending the same
+ * one every loop only adds CAN traffic.
+ */
+public class OuttakeIOReal implements OuttakeIO {
+  private WPI_TalonFX shootMotor1;
+  private WPI_TalonFX shootMotor2;
+  private WPI_TalonSRX feederMotor;
+
+  private double lastShooterVelocity = Double.NaN;
+  private double lastShooterVoltage = Double.NaN;
+  private double lastFeeder = Double.NaN;
+
+  public OuttakeIOReal() {
+    shootMotor1 = new WPI_TalonFX(SHOOT_MOTOR_1);
+    shootMotor2 = new WPI_TalonFX(SHOOT_MOTOR_2);
+    feederMotor = new WPI_TalonSRX(FEEDER_MOTOR);
+
+    shootMotor2.follow(shootMotor1);
+
+    // P, I, D and F are statically imported constants
+    shootMotor1.config_kP(1, P);
+    shootMotor2.config_kP(1, P);
+
+    shootMotor1.config_kI(1, I);
+    shootMotor2.config_kI(1, I);
+    shootMotor1.config_IntegralZone(1, I_ZONE);
+    shootMotor2.config_IntegralZone(1, I_ZONE);
+
+    shootMotor1.config_kD(1, D);
+    shootMotor2.config_kD(1, D);
+
+    shootMotor1.config_kF(1, F);
+    shootMotor2.config_kF(1, F);
+
+    shootMotor1.selectProfileSlot(1, 0);
+    shootMotor2.selectProfileSlot(1, 0);
+
+    // Voltage requests from the state-space controller are scaled against this rather than the battery
+    // The follower copies the leader's output as a fraction, so it needs the same compensation
+    shootMotor1.configVoltageCompSaturation(FLYWHEEL_MAX_VOLTAGE);
+    shootMotor2.configVoltageCompSaturation(FLYWHEEL_MAX_VOLTAGE);
+    shootMotor1.enableVoltageCompensation(true);
+    shootMotor2.enableVoltageCompensation(true);
+
+    // The second shooter motor follows the first, so the first keeps sending its output quickly
+    CanStatusFrames frames = CanStatusFrames.getInstance();
+    frames.configure("Shooter 1", shootMotor1, use(VELOCITY, 20), use(CURRENT, 20), use(APPLIED_OUTPUT, 10));
+    frames.configure("Shooter 2", shootMotor2);
+    frames.configure("Feeder", feederMotor);
+  }
+
+  @Override
+  public void updateInputs(OuttakeIOInputs inputs) {
+    // The integrated sensor is the selected sensor, so its velocity comes in Status 2, and the current in its own frame
+    inputs.shooterVelocity = shootMotor1.getSelectedSensorVelocity();
+    inputs.shooterSupplyCurrent = shootMotor1.getSupplyCurrent();
+    HalCallCounter.add(2);
+  }
+
+  @Override
+  public void setShooterVelocity(double setpoint) {
+    if (setpoint != lastShooterVelocity) {
+      lastShooterVelocity = setpoint;
+      lastShooterVoltage = Double.NaN;
+      shootMotor1.set(ControlMode.Velocity, setpoint);
+      HalCallCounter.add(1);
+    }
+  }
+
+  @Override
+  public void setShooterVoltage(double volts) {
+    if (volts != lastShooterVoltage) {
+      lastShooterVoltage = volts;
+      lastShooterVelocity = Double.NaN;
+      shootMotor1.set(ControlMode.PercentOutput, volts / FLYWHEEL_MAX_VOLTAGE);
+      HalCallCounter.add(1);
+    }
+  }
+
+  @Override
+  public void setFeeder(double output) {
+    if (output != lastFeeder) {
+      lastFeeder = output;
+      feederMotor.set(ControlMode.PercentOutput, output);
+      HalCallCounter.add(1);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
+
+import static frc.robot.Constants.OuttakeConstants.*;
+
+/**
+ * The outtake in simulation, with the flywheel moved by a {@link FlywheelSim} once per robot loop. <br/>
+ *
+ * The TalonFX's velocity loop is stood in for at the Talon's 1 ms rate, using the same gains and units, so the two
+ * shooter controllers can be compared on the same model. Cargo loaded with {@link #loadCargo} is carried to the
+ * flywheel while the feeder runs, and launched when it gets there.
+ */
+public class OuttakeIOSim implements OuttakeIO {
+  /** Number of physics steps per robot loop, one per Talon control loop. */
+  private static final int STEPS_PER_LOOP = 20;
+
+  /** Full output of the Talon's closed loop, in its native units. */
+  private static final double TALON_FULL_OUTPUT = 1023;
+
+  /** Mass of a piece of cargo in kg. */
+  private static final double CARGO_MASS = 0.27;
+
+  /** Radius of the flywheel in meters, where it grips the cargo. */
+  private static final double FLYWHEEL_RADIUS = Units.inchesToMeters(2);
+
+  /** Time in seconds for the feeder at full output to carry a piece of cargo from where it waits to the flywheel. */
+  private static final double FEED_TRAVEL_TIME = 0.1;
+
+  private final FlywheelSim flywheelSim = new FlywheelSim(
+    LinearSystemId.createFlywheelSystem(SHOOTER_MOTOR, FLYWHEEL_MOI, FLYWHEEL_GEARING), SHOOTER_MOTOR, FLYWHEEL_GEARING
+  );
+
+  private boolean velocityControlled = false;
+  private double velocitySetpoint = 0;
+  /** The Talon's integral accumulator, the sum of the error over each 1 ms loop. */
+  private double velocityIntegral = 0;
+  private double voltage = 0;
+  private double feeder = 0;
+
+  private int cargoLoaded = 0;
+
+  /** How far the next piece of cargo is towards the flywheel, from 0 to 1. */
+  private double feedProgress = 0;
+
+  /** Flywheel RPM as each piece of cargo was launched. */
+  private final List<Double> launchRpms = new ArrayList<>();
+
+  @Override
+  public void updateInputs(OuttakeIOInputs inputs) {
+    double dt = TimedRobot.kDefaultPeriod / STEPS_PER_LOOP;
+    for (int step = 0; step < STEPS_PER_LOOP; step++) {
+      double volts = voltage;
+      if (velocityControlled) {
+        // Stand in for the velocity loop on the TalonFX, which works in ticks per 100 ms
+        double error = velocitySetpoint - getTicksPer100ms();
+        velocityIntegral = (Math.abs(error) <= I_ZONE) ? velocityIntegral + error : 0;
+        double output = F * velocitySetpoint + P * error + I * velocityIntegral;
+        volts = MathUtil.clamp(output / TALON_FULL_OUTPUT, -1, 1) * FLYWHEEL_MAX_VOLTAGE;
+      }
+      flywheelSim.setInputVoltage(volts);
+      flywheelSim.update(dt);
+
+      if (cargoLoaded > 0 && feeder > 0) {
+        feedProgress += feeder * dt / FEED_TRAVEL_TIME;
+        if (feedProgress >= 1) {
+          launchRpms.add(getFlywheelRpm());
+          launchCargo();
+          cargoLoaded--;
+          feedProgress = 0;
+        }
+      }
+
+      // The motors' current through the controller's duty cycle, split between the two motors
+      inputs.shooterSupplyCurrent = Math.abs(flywheelSim.getCurrentDrawAmps() * volts / FLYWHEEL_MAX_VOLTAGE) / SHOOTER_MOTOR_COUNT;
+    }
+
+    inputs.shooterVelocity = getTicksPer100ms();
+  }
+
+  private double getTicksPer100ms() {
+    double motorRpm = flywheelSim.getAngularVelocityRPM() * FLYWHEEL_GEARING;
+    return motorRpm * CPR / 600;
+  }
+
+  @Override
+  public void setShooterVelocity(double setpoint) {
+    // The Talon clears its integral accumulator when it changes control mode
+    if (!velocityControlled) {
+      velocityIntegral = 0;
+    }
+    velocityControlled = true;
+    velocitySetpoint = setpoint;
+  }
+
+  @Override
+  public void setShooterVoltage(double volts) {
+    velocityControlled = false;
+    voltage = MathUtil.clamp(volts, -FLYWHEEL_MAX_VOLTAGE, FLYWHEEL_MAX_VOLTAGE);
+  }
+
+  @Override
+  public void setFeeder(double output) {
+    feeder = output;
+  }
+
+  /**
+   * Put cargo in the feeder, ready to be shot.
+   *
+   * @param count pieces of cargo to add
+   */
+  public void loadCargo(int count) {
+    cargoLoaded += count;
+  }
+
+  /**
+   * @return pieces of cargo still in the feeder
+   */
+  public int getCargoLoaded() {
+    return cargoLoaded;
+  }
+
+  /**
+   * @return flywheel RPM as each piece of cargo was launched, in order
+   */
+  public List<Double> getLaunchRpms() {
+    return launchRpms;
+  }
+
+  /**
+   * Launch a piece of cargo. The flywheel shares its momentum with the cargo as it speeds the cargo up, so it slows
+   * down by the ratio of its inertia to the combined inertia.
+   */
+  public void launchCargo() {
+    double cargoInertia = CARGO_MASS * FLYWHEEL_RADIUS * FLYWHEEL_RADIUS;
+    double velocity = flywheelSim.getAngularVelocityRadPerSec() * FLYWHEEL_MOI / (FLYWHEEL_MOI + cargoInertia);
+    flywheelSim.setState(VecBuilder.fill(velocity));
+  }
+
+  /**
+   * @return flywheel speed in RPM
+   */
+  public double getFlywheelRpm() {
+    return flywheelSim.getAngularVelocityRPM();
+  }
+
+  /**
+   * @return current drawn by the shooter motors in amps
+   */
+  public double getCurrentDraw() {
+    return flywheelSim.getCurrentDrawAmps();
+  }
+}
@@ -4,70 +4,158 @@
 
 package frc.robot.subsystems;
 
-import com.ctre.phoenix.motorcontrol.ControlMode;
-import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
-import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
-
+import edu.wpi.first.math.util.Units;
 import edu.wpi.first.util.sendable.SendableBuilder;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.OuttakeIO.OuttakeIOInputs;
+import frc.robot.telemetry.ProfiledSubsystem;
+import frc.robot.telemetry.SignalLogger;
 
 import static frc.robot.Constants.OuttakeConstants.*;
 
-public class OuttakeSubsystem extends SubsystemBase {
+/**
+ * The shooter flywheel and the feeder that loads cargo into it. <br/>
+ *
+ * While shooting, the feeder is sequenced one piece of cargo at a time: it runs once the flywheel is up to speed,
+ * stops as soon as a shot is detected, from the flywheel's supply current spiking or its speed dipping below what it
+ * was when the feeder started, and runs again on the first loop the flywheel is back within tolerance. That way the
+ * next piece of cargo never reaches a flywheel that hasn't recovered, without waiting any longer than it needs to.
+ * The setpoint is held while a piece of cargo is being fed, so a setpoint that follows the distance to the hub can't
+ * be taken for a shot.
+ */
+public class OuttakeSubsystem extends ProfiledSubsystem {
+
+  /** What the feeder is doing while shooting. */
+  private enum FeederState {
+    /** Stopped until the flywheel is within tolerance. */
+    WAITING,
+    /** Loading cargo into the flywheel, until a shot is detected. */
+    FEEDING
+  }
 
-  private WPI_TalonFX shootMotor1;
-  private WPI_TalonFX shootMotor2;
-  private WPI_TalonSRX feederMotor;
+  private final OuttakeIO io;
+  private final OuttakeIOInputs inputs = new OuttakeIOInputs();
+
+  private final ShotMap shotMap;
 
   private final double LOAD_SPEED = 0.8;
 
   /** The current setpoint */
   private double setpoint = 0;
 
-  /** RPM within the setpoint to be counted as up to speed */
-  private double setpointError = 15;
+  /**
+   * Whether the flywheel is run by the state-space controller on the roboRIO, rather than the TalonFX's velocity loop.
+   * The velocity loop is the default until FLYWHEEL_KV and FLYWHEEL_KA are measured, since the state-space controller
+   * is only as good as its model.
+   */
+  private boolean stateSpace = false;
+
+  private final FlywheelController flywheelController = new FlywheelController();
 
-  /** Creates a new OuttakeSubsystem. */
-  public OuttakeSubsystem() {
-    shootMotor1 = new WPI_TalonFX(SHOOT_MOTOR_1);
-    shootMotor2 = new WPI_TalonFX(SHOOT_MOTOR_2);
-    feederMotor = new WPI_TalonSRX(FEEDER_MOTOR);
+  /** Whether the flywheel controller was running last loop, so it can start from the measured velocity */
+  private boolean controllerRunning = false;
 
-    shootMotor2.follow(shootMotor1);
+  /** Whether the feeder stops after each shot, rather than running continuously once the flywheel first reaches speed */
+  private boolean sequencing = true;
 
-    // P and D are statically imported constants
-    shootMotor1.config_kP(1, P);
-    shootMotor2.config_kP(1, P);
+  private FeederState feederState = FeederState.WAITING;
 
-    shootMotor1.config_kD(1, D);
-    shootMotor2.config_kD(1, D);
+  /** Flywheel speed in RPM when the feeder last started, which a shot dips below */
+  private double feedStartRpm = 0;
 
-    shootMotor1.selectProfileSlot(1, 0);
-    shootMotor2.selectProfileSlot(1, 0);
+  /** Shots detected since the robot started */
+  private int shotsFired = 0;
+
+  /**
+   * Creates a new OuttakeSubsystem.
+   * 
+   * @param io the outtake hardware, or nothing when replaying a log
+   * @param shotMap flywheel speeds for shooting from a distance
+   */
+  public OuttakeSubsystem(OuttakeIO io, ShotMap shotMap) {
+    this.io = io;
+    this.shotMap = shotMap;
+    InputSnapshot.getInstance().register(() -> io.updateInputs(inputs));
+
+    // Logged signals
+    SignalLogger logger = SignalLogger.getInstance();
+    logger.addInputs("OuttakeSubsystem", inputs);
+    logger.addDouble("OuttakeSubsystem/Setpoint", this::getSetpoint);
+    logger.addBoolean("OuttakeSubsystem/Up To Speed", this::upToSpeed);
+    logger.addBoolean("OuttakeSubsystem/State Space", this::getStateSpace);
+    logger.addDouble("OuttakeSubsystem/RPM", this::getRPM);
+    logger.addBoolean("OuttakeSubsystem/Feeding", () -> feederState == FeederState.FEEDING);
+    logger.addDouble("OuttakeSubsystem/Shots Fired", this::getShotsFired);
   }
 
    /**
     * Sets speed of motors in order to shoot in low goal
     */
   public void shootLow(){
-    // Open loop control is used on feed motors
-    if (upToSpeed()) {
-      // Only feed if the shooter is ready
-      feederMotor.set(ControlMode.PercentOutput, LOAD_SPEED);
-    }
-
-    setpoint = LOW_RPM;
+    setShotSetpoint(LOW_RPM);
+    feed();
   }
 
   /**
    * Sets speed of motors in order to shoot in high goal
    */
   public void shootHigh(){
-    if (upToSpeed()) {
-      feederMotor.set(ControlMode.PercentOutput, LOAD_SPEED);
+    setShotSetpoint(HIGH_RPM);
+    feed();
+  }
+
+  /**
+   * Sets speed of motors to shoot in the high goal from a distance, using the shot map. Call every loop while aiming,
+   * so the speed follows the distance between shots.
+   * 
+   * @param distance distance from the center of the hub in meters
+   */
+  public void shootAtDistance(double distance) {
+    setShotSetpoint(shotMap.getRPM(distance));
+    feed();
+  }
+
+  /**
+   * Change the setpoint, unless a piece of cargo is being fed one shot at a time, in which case it stays where it was
+   * when the feeder started until the shot is detected.
+   */
+  private void setShotSetpoint(double rpm) {
+    if (!sequencing || feederState != FeederState.FEEDING) {
+      setpoint = rpm;
+    }
+  }
+
+  /**
+   * Run the feeder for this loop of shooting. Only feeds if the shooter is ready.
+   */
+  private void feed() {
+    switch (feederState) {
+      case WAITING:
+        // The current has to settle too, or the flywheel's own recovery would be taken for the next shot
+        if (upToSpeed() && inputs.shooterSupplyCurrent < SHOT_CURRENT_THRESHOLD) {
+          feederState = FeederState.FEEDING;
+          feedStartRpm = getRPM();
+        }
+        break;
+      case FEEDING:
+        if (sequencing && shotDetected()) {
+          shotsFired++;
+          feederState = FeederState.WAITING;
+        }
+        break;
     }
 
-    setpoint = HIGH_RPM;
+    // Open loop control is used on feed motors
+    io.setFeeder((feederState == FeederState.FEEDING) ? LOAD_SPEED : 0);
+  }
+
+  /**
+   * Check whether cargo just left the flywheel. The current spikes as soon as the cargo loads the flywheel, before the
+   * filtered velocity shows the dip, so either one counts. The dip is measured from the speed the flywheel had settled
+   * at when the feeder started, not the setpoint.
+   */
+  private boolean shotDetected() {
+    return inputs.shooterSupplyCurrent >= SHOT_CURRENT_THRESHOLD || getRPM() < feedStartRpm - RPM_TOLERANCE;
   }
 
   /**
@@ -75,23 +163,78 @@ public class OuttakeSubsystem extends SubsystemBase {
    */
   public void stopShooter(){
     setpoint = 0;
+    feederState = FeederState.WAITING;
+    io.setFeeder(0);
+  }
+
+  /**
+   * Switch between the state-space controller and the TalonFX's velocity loop.
+   */
+  public void toggleStateSpace() {
+    stateSpace = !stateSpace;
+  }
+
+  private boolean getStateSpace() {
+    return stateSpace;
+  }
+
+  /**
+   * Switch between stopping the feeder after each shot and running it continuously once the flywheel is first up to
+   * speed, in case the shot detection misbehaves.
+   */
+  public void toggleSequencing() {
+    sequencing = !sequencing;
+  }
+
+  private boolean getSequencing() {
+    return sequencing;
+  }
+
+  /**
+   * @return number of shots detected since the robot started
+   */
+  public int getShotsFired() {
+    return shotsFired;
   }
 
   /**
-   * Check if the shooter is at its setpoint, within the error margin set by setpointError.
+   * Check if the shooter is at its setpoint, within the error margin set by RPM_TOLERANCE.
    * 
    * @return true if it is within the margin of error
    */
   public boolean upToSpeed() {
-    // Units are in encoder units per 100 ms right now
-    double velocity = shootMotor1.getSensorCollection().getIntegratedSensorVelocity();
-
-    // converting from encoder ticks / 100 ms to rotations per minutes
-    // ((velocity * 10 ms) * 60 s) / 2048 ticks
-    double rpm = (velocity * 60 * 10) / 2048;
+    double rpm = getRPM();
 
     // check if rpm is within tolerance
-    return rpm >= (setpoint - setpointError) && rpm <= (setpoint + setpointError);
+    return rpm >= (setpoint - RPM_TOLERANCE) && rpm <= (setpoint + RPM_TOLERANCE);
+  }
+
+  /**
+   * @return the flywheel's speed in rotations per minute
+   */
+  public double getRPM() {
+    return ticksToRPM(inputs.shooterVelocity);
+  }
+
+  /**
+   * Convert an encoder velocity to flywheel speed.
+   * 
+   * @param ticksPer100ms velocity in encoder ticks per 100 ms, as the TalonFX reports it
+   * @return flywheel speed in rotations per minute
+   */
+  public static double ticksToRPM(double ticksPer100ms) {
+    // ((velocity * 10 ms) * 60 s) / 2048 ticks, then through the gearing to the flywheel
+    return (ticksPer100ms * 60 * 10) / CPR / FLYWHEEL_GEARING;
+  }
+
+  /**
+   * Convert a flywheel speed to an encoder velocity.
+   * 
+   * @param rpm flywheel speed in rotations per minute
+   * @return velocity in encoder ticks per 100 ms, as the TalonFX expects it
+   */
+  public static double rpmToTicks(double rpm) {
+    return rpm * FLYWHEEL_GEARING * CPR / (60 * 10);
   }
 
   /**
@@ -102,9 +245,24 @@ public class OuttakeSubsystem extends SubsystemBase {
   }
 
   @Override
-  public void periodic() {
+  protected void timedPeriodic() {
     // This method will be called once per scheduler run
-    shootMotor1.set(ControlMode.Velocity, setpoint);
+    if (!stateSpace) {
+      // The TalonFX runs its own loop in ticks per 100 ms
+      io.setShooterVelocity(rpmToTicks(setpoint));
+      controllerRunning = false;
+    } else if (setpoint == 0) {
+      // Coast down rather than braking
+      io.setShooterVoltage(0);
+      controllerRunning = false;
+    } else {
+      double velocity = Units.rotationsPerMinuteToRadiansPerSecond(getRPM());
+      if (!controllerRunning) {
+        flywheelController.reset(velocity);
+        controllerRunning = true;
+      }
+      io.setShooterVoltage(flywheelController.calculate(velocity, Units.rotationsPerMinuteToRadiansPerSecond(setpoint)));
+    }
   }
 
   @Override
@@ -112,5 +270,9 @@ public class OuttakeSubsystem extends SubsystemBase {
     builder.setSmartDashboardType("OuttakeSubsystem");
     builder.addBooleanProperty("Up to speed", this::upToSpeed, null);
     builder.addDoubleProperty("Setpoint", this::getSetpoint, null);
+    builder.addDoubleProperty("RPM", this::getRPM, null);
+    builder.addBooleanProperty("State Space", this::getStateSpace, null);
+    builder.addBooleanProperty("Sequencing", this::getSequencing, null);
+    builder.addDoubleProperty("Shots Fired", this::getShotsFired, null);
   }
 }
@@ -0,0 +1,271 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import frc.robot.telemetry.ProfiledSubsystem;
+import frc.robot.vision.Limelight;
+
+import static frc.robot.Constants.DriveConstants.ODOMETRY_PERIOD;
+import static frc.robot.Constants.VisionConstants.*;
+
+/**
+ * Fuses the odometry from {@link DriveSystem} with robot poses measured by the {@link Limelight}. <br/>
+ *
+ * Odometry is treated as accurate over short distances but offset from the field by an unknown origin.
+ * A Kalman filter estimates that origin: it grows less certain as the robot drives, and each vision frame
+ * is compared against the odometry pose from the moment the image was captured (not the moment the result
+ * arrived), so pipeline latency doesn't pull the estimate towards where the robot used to be.
+ */
+public class PoseEstimatorSubsystem extends ProfiledSubsystem {
+
+  private DriveSystem driveSystem;
+  private Limelight limelight;
+
+  /**
+   * Ring buffer of every odometry sample, oldest at historyStart: position in meters, heading in radians and FPGA time
+   * in seconds. Kept as primitives so recording a sample allocates nothing.
+   */
+  private final int historyLength = (int) Math.ceil(POSE_HISTORY_SECONDS / ODOMETRY_PERIOD);
+  private final double[] historyX = new double[historyLength];
+  private final double[] historyY = new double[historyLength];
+  private final double[] historyHeading = new double[historyLength];
+  private final double[] historyTime = new double[historyLength];
+  private int historyStart = 0;
+  private int historySize = 0;
+
+  /** Estimated pose of the odometry origin on the field. */
+  private double originX = 0;
+  private double originY = 0;
+  private double originTheta = 0;
+
+  /** Variance of each component of the origin estimate. Starts large since the starting pose is unknown until reset. */
+  private double varianceXY = 1.0;
+  private double varianceTheta = 1.0;
+
+  /** Distance and turn in radians since the uncertainty was last grown, added up from every odometry sample. */
+  private double pendingDistance = 0;
+  private double pendingTurn = 0;
+
+  private long lastFrameId = -1;
+
+  /** The odometry pose found by {@link #findOdometryPoseAt}, in meters and radians. */
+  private double foundX = 0;
+  private double foundY = 0;
+  private double foundHeading = 0;
+
+  /** Creates a new PoseEstimatorSubsystem. */
+  public PoseEstimatorSubsystem(DriveSystem driveSystem, Limelight limelight) {
+    this.driveSystem = driveSystem;
+    this.limelight = limelight;
+
+    driveSystem.setOdometryListener(this::recordOdometry);
+  }
+
+  /**
+   * Get the best estimate of where the robot is on the field.
+   *
+   * @return the estimated pose of the robot in meters
+   */
+  public Pose2d getEstimatedPose() {
+    return toField(driveSystem.getPose());
+  }
+
+  /**
+   * Get the best estimate of where the robot was on the field at an earlier time.
+   *
+   * @param timestamp FPGA time in seconds
+   * @return the estimated pose, or the current estimate if the time is older than the kept history
+   */
+  public Pose2d getEstimatedPoseAt(double timestamp) {
+    Pose2d odometryPose = getOdometryPoseAt(timestamp);
+    return toField((odometryPose == null) ? driveSystem.getPose() : odometryPose);
+  }
+
+  /**
+   * Reset the estimate to a known pose, trusting it completely.
+   *
+   * @param pose the pose of the robot on the field in meters
+   */
+  public void resetPose(Pose2d pose) {
+    driveSystem.resetOdometry(pose);
+    historySize = 0;
+    pendingDistance = 0;
+    pendingTurn = 0;
+    originX = 0;
+    originY = 0;
+    originTheta = 0;
+    varianceXY = 0;
+    varianceTheta = 0;
+  }
+
+  /**
+   * Fold a vision measurement into the estimate.
+   *
+   * @param visionPose the robot pose measured by vision
+   * @param timestamp FPGA time in seconds at which the image was captured
+   */
+  public void addVisionMeasurement(Pose2d visionPose, double timestamp) {
+    addVisionMeasurement(visionPose.getX(), visionPose.getY(), visionPose.getRotation().getRadians(), timestamp);
+  }
+
+  /**
+   * Fold a vision measurement into the estimate, given as primitives so the loop can fuse a frame without allocating.
+   *
+   * @param visionX meters along the field of the robot pose measured by vision
+   * @param visionY meters across the field
+   * @param visionHeading radians, counterclockwise positive
+   * @param timestamp FPGA time in seconds at which the image was captured
+   */
+  public void addVisionMeasurement(double visionX, double visionY, double visionHeading, double timestamp) {
+    // Too old to line up with odometry
+    if (!findOdometryPoseAt(timestamp)) {
+      return;
+    }
+
+    // Where the odometry origin must be for the odometry pose at capture time to land on the vision pose:
+    // the vision pose moved by the inverse of the odometry pose
+    double inverseX = -foundX * Math.cos(foundHeading) - foundY * Math.sin(foundHeading);
+    double inverseY = foundX * Math.sin(foundHeading) - foundY * Math.cos(foundHeading);
+    double measuredX = visionX + inverseX * Math.cos(visionHeading) - inverseY * Math.sin(visionHeading);
+    double measuredY = visionY + inverseX * Math.sin(visionHeading) + inverseY * Math.cos(visionHeading);
+    double measuredTheta = visionHeading - foundHeading;
+
+    double gainXY = varianceXY / (varianceXY + VISION_STD_DEV_METERS * VISION_STD_DEV_METERS);
+    double gainTheta = varianceTheta / (varianceTheta + VISION_STD_DEV_RADIANS * VISION_STD_DEV_RADIANS);
+
+    originX += gainXY * (measuredX - originX);
+    originY += gainXY * (measuredY - originY);
+    originTheta += gainTheta * MathUtil.angleModulus(measuredTheta - originTheta);
+
+    varianceXY *= 1 - gainXY;
+    varianceTheta *= 1 - gainTheta;
+  }
+
+  /**
+   * Convert a pose from odometry coordinates to field coordinates using the current origin estimate.
+   */
+  private Pose2d toField(Pose2d odometryPose) {
+    Pose2d origin = new Pose2d(originX, originY, new Rotation2d(originTheta));
+    return origin.transformBy(new Transform2d(new Pose2d(), odometryPose));
+  }
+
+  /**
+   * Look up the odometry pose at a past time, interpolating between recorded samples.
+   *
+   * @return the pose, or null if the time is outside the kept history
+   */
+  private Pose2d getOdometryPoseAt(double timestamp) {
+    return findOdometryPoseAt(timestamp) ? new Pose2d(foundX, foundY, new Rotation2d(foundHeading)) : null;
+  }
+
+  /**
+   * Look up the odometry pose at a past time, interpolating between recorded samples, and leave it in foundX, foundY
+   * and foundHeading.
+   *
+   * @return whether the time is inside the kept history
+   */
+  private boolean findOdometryPoseAt(double timestamp) {
+    if (historySize == 0 || timestamp < historyTime[historyIndex(0)]) {
+      return false;
+    }
+
+    int newest = historyIndex(historySize - 1);
+    if (timestamp >= historyTime[newest]) {
+      foundX = historyX[newest];
+      foundY = historyY[newest];
+      foundHeading = historyHeading[newest];
+      return true;
+    }
+
+    // Walk back from the newest sample; vision latency is under 100 ms so this ends within about 20 steps
+    for (int i = historySize - 2; i >= 0; i--) {
+      int before = historyIndex(i);
+      if (historyTime[before] <= timestamp) {
+        int after = historyIndex(i + 1);
+        double fraction = (timestamp - historyTime[before]) / (historyTime[after] - historyTime[before]);
+        foundX = historyX[before] + (historyX[after] - historyX[before]) * fraction;
+        foundY = historyY[before] + (historyY[after] - historyY[before]) * fraction;
+        // The shorter way round, the same as interpolating Rotation2d
+        foundHeading = historyHeading[before]
+            + MathUtil.angleModulus(historyHeading[after] - historyHeading[before]) * fraction;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @param index position in the history, 0 being the oldest sample
+   * @return index into the history arrays
+   */
+  private int historyIndex(int index) {
+    return (historyStart + index) % historyLength;
+  }
+
+  /**
+   * Add an odometry sample to the history, and add how far the robot moved to what the uncertainty grows by.
+   * Called by {@link DriveSystem} for each sample, so a vision frame lines up with odometry to within 5 ms.
+   */
+  private void recordOdometry(double x, double y, double heading, double timestamp) {
+    if (historySize > 0) {
+      int previous = historyIndex(historySize - 1);
+      if (timestamp <= historyTime[previous]) {
+        return;
+      }
+
+      double distance = Math.hypot(x - historyX[previous], y - historyY[previous]);
+      double turn = Math.abs(MathUtil.angleModulus(heading - historyHeading[previous]));
+      pendingDistance += distance;
+      pendingTurn += turn;
+    }
+
+    int index;
+    if (historySize < historyLength) {
+      index = historyIndex(historySize);
+      historySize++;
+    } else {
+      // Overwrite the oldest
+      index = historyStart;
+      historyStart = (historyStart + 1) % historyLength;
+    }
+    historyX[index] = x;
+    historyY[index] = y;
+    historyHeading[index] = heading;
+    historyTime[index] = timestamp;
+  }
+
+  @Override
+  protected void timedPeriodic() {
+    // This method will be called once per scheduler run
+    // Grown once per loop from the whole loop's movement, so the drift doesn't depend on how often odometry is sampled
+    varianceXY += Math.pow(ODOMETRY_DRIFT_PER_METER * pendingDistance, 2);
+    varianceTheta += Math.pow(GYRO_DRIFT_PER_RADIAN * pendingTurn, 2);
+    pendingDistance = 0;
+    pendingTurn = 0;
+
+    // Only fuse each frame once
+    long frameId = limelight.getFrameId();
+    if (frameId != lastFrameId && limelight.hasTargets()) {
+      addVisionMeasurement(limelight.getRobotX(), limelight.getRobotY(), limelight.getRobotHeading(),
+          limelight.getCaptureTimestamp());
+    }
+    lastFrameId = frameId;
+  }
+
+  @Override
+  public void initSendable(SendableBuilder builder) {
+    builder.setSmartDashboardType("PoseEstimator");
+    builder.addDoubleProperty("X", () -> getEstimatedPose().getX(), null);
+    builder.addDoubleProperty("Y", () -> getEstimatedPose().getY(), null);
+    builder.addDoubleProperty("Heading", () -> getEstimatedPose().getRotation().getDegrees(), null);
+    builder.addDoubleProperty("Position Std Dev", () -> Math.sqrt(varianceXY), null);
+  }
+}
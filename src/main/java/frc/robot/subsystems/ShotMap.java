@@ -0,0 +1,136 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+
+import static frc.robot.Constants.OuttakeConstants.*;
+
+/**
+ * Flywheel speed for each distance from the hub, tuned on the field and loaded from the deploy directory. <br/>
+ *
+ * The tuned points can be any distance apart. When loaded, the line through them is sampled every
+ * {@link frc.robot.Constants.OuttakeConstants#SHOT_MAP_RESOLUTION}, so looking up a distance is an index calculation
+ * and one interpolation, with no searching or allocation. Distances outside the tuned range use the nearest end.
+ */
+public class ShotMap {
+  /** File inside the deploy directory with one "distance,rpm" pair per line. Lines starting with # are comments. */
+  public static final String FILE = "shotmap.csv";
+
+  private final double minDistance;
+  private final double inverseResolution;
+  private final double[] rpm;
+
+  /**
+   * Load the shot map from the deploy directory. <br/>
+   * Call this during robotInit so reading the file doesn't land in a match.
+   */
+  public ShotMap() {
+    this(Filesystem.getDeployDirectory().toPath().resolve(FILE));
+  }
+
+  /**
+   * Load a shot map from a file, or fall back to {@link frc.robot.Constants.OuttakeConstants#HIGH_RPM} at every
+   * distance if it can't be read.
+   *
+   * @param path the file to load
+   */
+  public ShotMap(Path path) {
+    this(readPoints(path));
+  }
+
+  /**
+   * Build a shot map from tuned points.
+   *
+   * @param points flywheel RPM keyed by distance from the hub in meters
+   */
+  public ShotMap(TreeMap<Double, Double> points) {
+    minDistance = points.firstKey();
+    inverseResolution = 1.0 / SHOT_MAP_RESOLUTION;
+
+    int samples = (int) Math.ceil((points.lastKey() - minDistance) * inverseResolution) + 1;
+    rpm = new double[samples];
+    for (int i = 0; i < samples; i++) {
+      rpm[i] = interpolate(points, minDistance + i * SHOT_MAP_RESOLUTION);
+    }
+  }
+
+  /**
+   * Get the flywheel speed to score from a distance.
+   *
+   * @param distance distance from the center of the hub in meters
+   * @return flywheel RPM
+   */
+  public double getRPM(double distance) {
+    double index = (distance - minDistance) * inverseResolution;
+    if (!(index > 0)) {
+      // Also catches NaN, for a distance that couldn't be measured
+      return rpm[0];
+    }
+
+    int low = (int) index;
+    if (low >= rpm.length - 1) {
+      return rpm[rpm.length - 1];
+    }
+
+    double fraction = index - low;
+    return rpm[low] + (rpm[low + 1] - rpm[low]) * fraction;
+  }
+
+  private static double interpolate(TreeMap<Double, Double> points, double distance) {
+    Map.Entry<Double, Double> below = points.floorEntry(distance);
+    Map.Entry<Double, Double> above = points.ceilingEntry(distance);
+    if (below == null) {
+      return above.getValue();
+    }
+    if (above == null || above.getKey().equals(below.getKey())) {
+      return below.getValue();
+    }
+
+    double fraction = (distance - below.getKey()) / (above.getKey() - below.getKey());
+    return below.getValue() + (above.getValue() - below.getValue()) * fraction;
+  }
+
+  private static TreeMap<Double, Double> readPoints(Path path) {
+    TreeMap<Double, Double> points = new TreeMap<>();
+    try {
+      List<String> lines = Files.readAllLines(path);
+      List<String> errors = new ArrayList<>();
+      for (int i = 0; i < lines.size(); i++) {
+        String line = lines.get(i).trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+
+        String[] fields = line.split(",");
+        try {
+          points.put(Double.parseDouble(fields[0].trim()), Double.parseDouble(fields[1].trim()));
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+          errors.add("line " + (i + 1) + ": \"" + line + "\"");
+        }
+      }
+
+      if (!errors.isEmpty()) {
+        DriverStation.reportWarning("Skipped unreadable shot map entries in " + path + ": " + String.join(", ", errors), false);
+      }
+    } catch (IOException e) {
+      DriverStation.reportError("Could not load shot map " + path + ", using the high goal RPM everywhere", e.getStackTrace());
+    }
+
+    if (points.isEmpty()) {
+      points.put(0.0, HIGH_RPM);
+    }
+    return points;
+  }
+}
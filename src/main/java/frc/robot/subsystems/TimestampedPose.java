@@ -0,0 +1,72 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * A robot pose paired with the FPGA time (in seconds) at which it was measured. <br/>
+ * Immutable, so {@link DriveSystem} can publish a new one through a volatile field and a reader on any thread always
+ * sees the position, heading and time from the same sample.
+ */
+public final class TimestampedPose {
+  private final double x;
+  private final double y;
+  private final double heading;
+  private final double timestamp;
+
+  /**
+   * @param x meters along the field
+   * @param y meters across the field
+   * @param heading radians, counterclockwise positive
+   * @param timestamp FPGA time in seconds
+   */
+  public TimestampedPose(double x, double y, double heading, double timestamp) {
+    this.x = x;
+    this.y = y;
+    this.heading = heading;
+    this.timestamp = timestamp;
+  }
+
+  public TimestampedPose(Pose2d pose, double timestamp) {
+    this(pose.getX(), pose.getY(), pose.getRotation().getRadians(), timestamp);
+  }
+
+  /**
+   * @return the pose of the robot on the field in meters, as a new object
+   */
+  public Pose2d getPose() {
+    return new Pose2d(x, y, new Rotation2d(heading));
+  }
+
+  /**
+   * @return meters along the field
+   */
+  public double getX() {
+    return x;
+  }
+
+  /**
+   * @return meters across the field
+   */
+  public double getY() {
+    return y;
+  }
+
+  /**
+   * @return heading in radians, counterclockwise positive
+   */
+  public double getHeading() {
+    return heading;
+  }
+
+  /**
+   * @return the FPGA time in seconds at which the pose was measured
+   */
+  public double getTimestamp() {
+    return timestamp;
+  }
+}
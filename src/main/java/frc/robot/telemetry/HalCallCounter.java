@@ -0,0 +1,36 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.telemetry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the calls the IO layer makes into native code: the HAL, the CTRE and REV libraries, and NetworkTables. <br/>
+ *
+ * Each of these crosses JNI, and most reads and writes to a motor controller are a CAN frame, so the number per loop
+ * is a measure of how hard the code leans on the hardware. The IO implementations add to the count where they make
+ * the calls, including from the odometry thread, and the robot takes the total once per loop.
+ */
+public final class HalCallCounter {
+  private static final AtomicInteger calls = new AtomicInteger();
+
+  private HalCallCounter() {}
+
+  /**
+   * @param count how many native calls were just made
+   */
+  public static void add(int count) {
+    calls.addAndGet(count);
+  }
+
+  /**
+   * Call once at the end of every robot loop.
+   *
+   * @return the number of calls made since the last loop
+   */
+  public static int endLoop() {
+    return calls.getAndSet(0);
+  }
+}
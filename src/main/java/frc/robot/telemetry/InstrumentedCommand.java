@@ -0,0 +1,66 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.telemetry;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
+/**
+ * Runs another command, timing its execute() and isFinished() and logging how long each run lasts.
+ * Created by {@link LoopProfiler#instrument(Command)}.
+ */
+class InstrumentedCommand extends CommandBase {
+
+  private final LoopProfiler profiler;
+  private final Command command;
+  private final LatencyHistogram executeTime;
+  private final LatencyHistogram isFinishedTime;
+
+  private double startTime;
+
+  InstrumentedCommand(LoopProfiler profiler, Command command, LatencyHistogram executeTime, LatencyHistogram isFinishedTime) {
+    this.profiler = profiler;
+    this.command = command;
+    this.executeTime = executeTime;
+    this.isFinishedTime = isFinishedTime;
+
+    setName(command.getName());
+    addRequirements(command.getRequirements().toArray(new Subsystem[0]));
+  }
+
+  @Override
+  public void initialize() {
+    startTime = Timer.getFPGATimestamp();
+    command.initialize();
+  }
+
+  @Override
+  public void execute() {
+    long start = System.nanoTime();
+    command.execute();
+    executeTime.record(System.nanoTime() - start);
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    command.end(interrupted);
+    profiler.recordRun(getName(), startTime, Timer.getFPGATimestamp(), interrupted);
+  }
+
+  @Override
+  public boolean isFinished() {
+    long start = System.nanoTime();
+    boolean finished = command.isFinished();
+    isFinishedTime.record(System.nanoTime() - start);
+    return finished;
+  }
+
+  @Override
+  public boolean runsWhenDisabled() {
+    return command.runsWhenDisabled();
+  }
+}
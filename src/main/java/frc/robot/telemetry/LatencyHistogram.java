@@ -0,0 +1,135 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size histogram of durations in nanoseconds. <br/>
+ *
+ * Buckets are exact below 16 ns, then each power of two is split into 16 buckets, so any recorded value is
+ * reported within about 6%. Recording is a few integer operations and never allocates.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** Enough buckets to hold durations up to about 17 seconds. */
+  private static final int BUCKETS = SUB_BUCKETS + (34 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final String name;
+  private final long[] counts = new long[BUCKETS];
+  private long count = 0;
+  private long max = 0;
+
+  /** Total recorded since {@link #resetLoop()}, which is called once per robot loop. */
+  private long loopTotal = 0;
+
+  public LatencyHistogram(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @return what is being timed, such as "DriveSystem.periodic"
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Record a duration.
+   * 
+   * @param nanos the duration in nanoseconds
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    counts[bucketOf(nanos)]++;
+    count++;
+    max = Math.max(max, nanos);
+    loopTotal += nanos;
+  }
+
+  /**
+   * @return how many durations have been recorded since the last reset
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return the longest duration recorded since the last reset, in nanoseconds
+   */
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Find the duration that the given fraction of recorded durations are at or below.
+   * 
+   * @param percentile from 0 to 1, such as 0.99 for p99
+   * @return the duration in nanoseconds, or 0 if nothing has been recorded
+   */
+  public long getPercentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+
+    long target = (long) Math.ceil(percentile * count);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += counts[bucket];
+      if (seen >= target && counts[bucket] > 0) {
+        // Report the top of the bucket, but never more than what was actually seen
+        return Math.min(lowestValueOf(bucket + 1) - 1, max);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * @return the total duration recorded in the current robot loop, in nanoseconds
+   */
+  public long getLoopTotal() {
+    return loopTotal;
+  }
+
+  /**
+   * Start a new robot loop for {@link #getLoopTotal()}, keeping the window of recorded durations.
+   */
+  public void resetLoop() {
+    loopTotal = 0;
+  }
+
+  /**
+   * Clear all recorded durations, starting a new window.
+   */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    max = 0;
+  }
+
+  private static int bucketOf(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return Math.min(SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+  }
+
+  private static long lowestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+    int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+  }
+}
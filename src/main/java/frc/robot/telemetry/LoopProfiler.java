@@ -0,0 +1,311 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.telemetry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * Times each subsystem periodic and command in the robot loop, so an overrun can be traced to what caused it. <br/>
+ *
+ * Each timed item gets a {@link LatencyHistogram}. Once a second the p50, p99 and max of every histogram are
+ * published under the "LoopProfiler" table in microseconds, then the histograms start a new window.
+ * The profiler also publishes an estimate of its own cost per loop, and keeps a log of how long each
+ * command ran. Within a loop, it can say which timed item took longest, for blaming overruns. <br/>
+ *
+ * Every command the scheduler runs is timed through its hooks by {@link #instrumentScheduler}, so nothing has to
+ * opt in. Commands inside a group only show up as the group, so {@link #instrument} can time them separately.
+ * Subsystems are timed by extending {@link ProfiledSubsystem}.
+ */
+public final class LoopProfiler {
+  /** Loops between publishing, 1 second at the default 20 ms period. */
+  private static final int PUBLISH_PERIOD_LOOPS = 50;
+
+  /** Most command runs kept for {@link #getCommandRuns()}. */
+  private static final int MAX_COMMAND_RUNS = 256;
+
+  private static LoopProfiler instance;
+
+  private final NetworkTable table = NetworkTableInstance.getDefault().getTable("LoopProfiler");
+  private final List<Published> published = new ArrayList<>();
+
+  /** Nanoseconds that one timed section adds, from two nanoTime() calls and a record(). */
+  private final double recordCost;
+
+  private final NetworkTableEntry overheadEntry = table.getEntry("Overhead Per Loop (us)");
+  private int loopsSincePublish = 0;
+  private long publishNanos = 0;
+
+  private final List<CommandRun> commandRuns = new ArrayList<>();
+
+  /** Histograms and start times of the commands the scheduler is running, looked up by identity. */
+  private final Map<Command, LatencyHistogram> executeTimes = new IdentityHashMap<>();
+  private final Map<Command, Double> startTimes = new IdentityHashMap<>();
+
+  /** System.nanoTime() of the last scheduler event, which the next command's time is measured from. */
+  private long lastCommandEvent = 0;
+
+  /** The scheduler whose command callbacks are set, which can't be taken off again. */
+  private CommandScheduler instrumented;
+
+  /** One run of an instrumented command, from initialize() to end(). */
+  public static class CommandRun {
+    public final String name;
+    /** FPGA times in seconds. */
+    public final double startTime;
+    public final double endTime;
+    public final boolean interrupted;
+
+    CommandRun(String name, double startTime, double endTime, boolean interrupted) {
+      this.name = name;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.interrupted = interrupted;
+    }
+
+    /**
+     * @return how long the command ran in seconds
+     */
+    public double getDuration() {
+      return endTime - startTime;
+    }
+  }
+
+  /** A histogram and the entries it is published to, looked up once when the histogram is created. */
+  private static class Published {
+    final LatencyHistogram histogram;
+    final NetworkTableEntry p50;
+    final NetworkTableEntry p99;
+    final NetworkTableEntry max;
+    /** Whether the histogram times a section containing other timed items. */
+    final boolean aggregate;
+
+    Published(LatencyHistogram histogram, NetworkTable table, boolean aggregate) {
+      this.histogram = histogram;
+      this.aggregate = aggregate;
+      NetworkTable subTable = table.getSubTable(histogram.getName());
+      p50 = subTable.getEntry("p50 (us)");
+      p99 = subTable.getEntry("p99 (us)");
+      max = subTable.getEntry("max (us)");
+    }
+  }
+
+  private LoopProfiler() {
+    recordCost = calibrate();
+  }
+
+  /**
+   * @return the profiler shared by the whole robot
+   */
+  public static synchronized LoopProfiler getInstance() {
+    if (instance == null) {
+      instance = new LoopProfiler();
+    }
+    return instance;
+  }
+
+  /**
+   * Get the histogram for a timed item, creating it the first time. Call this during construction, not every loop.
+   * 
+   * @param name what is being timed, such as "DriveSystem.periodic"
+   * @return the histogram to record durations into
+   */
+  public LatencyHistogram histogram(String name) {
+    return histogram(name, false);
+  }
+
+  /**
+   * Get the histogram for a section that contains other timed items, such as the whole command scheduler. It's
+   * published the same way, but left out of {@link #getLoopTotal()} and {@link #getSlowest()} so nothing is counted
+   * twice.
+   *
+   * @param name what is being timed, such as "CommandScheduler.run"
+   * @return the histogram to record durations into
+   */
+  public LatencyHistogram aggregateHistogram(String name) {
+    return histogram(name, true);
+  }
+
+  private LatencyHistogram histogram(String name, boolean aggregate) {
+    for (Published entry : published) {
+      if (entry.histogram.getName().equals(name)) {
+        return entry.histogram;
+      }
+    }
+
+    LatencyHistogram histogram = new LatencyHistogram(name);
+    published.add(new Published(histogram, table, aggregate));
+    return histogram;
+  }
+
+  /**
+   * @return nanoseconds recorded so far this loop by every timed item that doesn't contain others
+   */
+  public long getLoopTotal() {
+    long total = 0;
+    for (int i = 0; i < published.size(); i++) {
+      Published entry = published.get(i);
+      if (!entry.aggregate) {
+        total += entry.histogram.getLoopTotal();
+      }
+    }
+    return total;
+  }
+
+  /**
+   * @return the timed item that has recorded the most time so far this loop, leaving out ones that contain others,
+   *         or null if nothing has been recorded
+   */
+  public LatencyHistogram getSlowest() {
+    LatencyHistogram slowest = null;
+    for (int i = 0; i < published.size(); i++) {
+      Published entry = published.get(i);
+      if (!entry.aggregate && entry.histogram.getLoopTotal() > 0
+          && (slowest == null || entry.histogram.getLoopTotal() > slowest.getLoopTotal())) {
+        slowest = entry.histogram;
+      }
+    }
+    return slowest;
+  }
+
+  /**
+   * Time every command run by a scheduler, and log how long each one ran. <br/>
+   *
+   * The scheduler only calls back after execute(), so each command's time runs from the previous command's callback
+   * and also counts that command's isFinished(). The first command's time starts after the buttons are polled, so
+   * call this after every button binding is made. Calling it again for the same scheduler, after its buttons were
+   * cleared for a new robot, only adds the button back.
+   *
+   * @param scheduler the scheduler to time, which is the one robot code uses
+   */
+  public void instrumentScheduler(CommandScheduler scheduler) {
+    scheduler.addButton(() -> lastCommandEvent = System.nanoTime());
+    if (scheduler == instrumented) {
+      return;
+    }
+    instrumented = scheduler;
+    scheduler.onCommandInitialize(command -> startTimes.put(command, Timer.getFPGATimestamp()));
+    scheduler.onCommandExecute(this::recordExecute);
+    scheduler.onCommandFinish(command -> recordEnd(command, false));
+    scheduler.onCommandInterrupt(command -> recordEnd(command, true));
+  }
+
+  private void recordExecute(Command command) {
+    long now = System.nanoTime();
+
+    LatencyHistogram executeTime = executeTimes.get(command);
+    if (executeTime == null) {
+      executeTime = histogram(command.getName() + ".execute");
+      executeTimes.put(command, executeTime);
+    }
+    executeTime.record(now - lastCommandEvent);
+
+    lastCommandEvent = now;
+  }
+
+  private void recordEnd(Command command, boolean interrupted) {
+    double now = Timer.getFPGATimestamp();
+    Double startTime = startTimes.remove(command);
+    executeTimes.remove(command);
+    recordRun(command.getName(), (startTime != null) ? startTime : now, now, interrupted);
+
+    // Leaves end() out of the next command's time
+    lastCommandEvent = System.nanoTime();
+  }
+
+  /**
+   * Wrap a command so its execute() and isFinished() are timed. The wrapper has the same name and requirements.
+   * Only needed for commands inside a group, since the scheduler's commands are timed by {@link #instrumentScheduler}.
+   * 
+   * @param command the command to time
+   * @return the command to schedule in its place
+   */
+  public Command instrument(Command command) {
+    return new InstrumentedCommand(
+      this,
+      command,
+      histogram(command.getName() + ".execute"),
+      histogram(command.getName() + ".isFinished")
+    );
+  }
+
+  /**
+   * @return the most recent completed runs of instrumented commands, oldest first
+   */
+  public synchronized List<CommandRun> getCommandRuns() {
+    return Collections.unmodifiableList(new ArrayList<>(commandRuns));
+  }
+
+  /**
+   * Called when a command ends. Only runs once per command, not every loop.
+   */
+  synchronized void recordRun(String name, double startTime, double endTime, boolean interrupted) {
+    if (commandRuns.size() >= MAX_COMMAND_RUNS) {
+      commandRuns.remove(0);
+    }
+    commandRuns.add(new CommandRun(name, startTime, endTime, interrupted));
+  }
+
+  /**
+   * Call once at the end of every robot loop. Starts the next loop's totals, and publishes and resets the histograms
+   * every {@link #PUBLISH_PERIOD_LOOPS} loops.
+   */
+  public void endLoop() {
+    for (int i = 0; i < published.size(); i++) {
+      published.get(i).histogram.resetLoop();
+    }
+
+    loopsSincePublish++;
+    if (loopsSincePublish < PUBLISH_PERIOD_LOOPS) {
+      return;
+    }
+
+    long start = System.nanoTime();
+
+    long records = 0;
+    for (Published entry : published) {
+      LatencyHistogram histogram = entry.histogram;
+      records += histogram.getCount();
+
+      entry.p50.setDouble(histogram.getPercentile(0.5) / 1000.0);
+      entry.p99.setDouble(histogram.getPercentile(0.99) / 1000.0);
+      entry.max.setDouble(histogram.getMax() / 1000.0);
+      histogram.reset();
+    }
+
+    // Time spent publishing is spread over the loops in the window, the same as the time spent recording
+    overheadEntry.setDouble((records * recordCost + publishNanos) / loopsSincePublish / 1000.0);
+
+    loopsSincePublish = 0;
+    publishNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Measure what timing a section costs, so the overhead of profiling can be reported.
+   * 
+   * @return nanoseconds per timed section
+   */
+  private static double calibrate() {
+    LatencyHistogram scratch = new LatencyHistogram("calibration");
+    int iterations = 10000;
+
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      long sectionStart = System.nanoTime();
+      scratch.record(System.nanoTime() - sectionStart);
+    }
+    return (double) (System.nanoTime() - start) / iterations;
+  }
+}
@@ -0,0 +1,27 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.telemetry;
+
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+
+/**
+ * A subsystem whose periodic() is timed by the {@link LoopProfiler}, under "&lt;name&gt;.periodic". Subsystems put
+ * their periodic work in {@link #timedPeriodic()} instead of overriding periodic().
+ */
+public abstract class ProfiledSubsystem extends SubsystemBase {
+  private final LatencyHistogram periodicTime = LoopProfiler.getInstance().histogram(getName() + ".periodic");
+
+  @Override
+  public final void periodic() {
+    long start = System.nanoTime();
+    timedPeriodic();
+    periodicTime.record(System.nanoTime() - start);
+  }
+
+  /**
+   * The subsystem's work each loop, called once per scheduler run.
+   */
+  protected abstract void timedPeriodic();
+}
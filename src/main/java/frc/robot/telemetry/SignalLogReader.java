@@ -0,0 +1,156 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.telemetry;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a log written by {@link SignalLogger}, one frame at a time. <br/>
+ *
+ * Signal definitions are collected as they are passed, so {@link #getName(int)} works for every id in the current
+ * frame. A log cut off part way through a record, as happens when the robot loses power, ends at the last whole frame.
+ */
+public final class SignalLogReader {
+  private final MappedByteBuffer buffer;
+
+  private final List<String> names = new ArrayList<>();
+  private final List<Byte> types = new ArrayList<>();
+
+  private double timestamp;
+  private int count;
+  private int[] ids = new int[64];
+  private double[] values = new double[64];
+
+  /**
+   * Open a log file.
+   *
+   * @param path the .rlog file
+   * @throws IOException if the file can't be read or isn't a signal log
+   */
+  public SignalLogReader(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    if (buffer.remaining() < 6 || buffer.getInt() != SignalLogger.MAGIC) {
+      throw new IOException(path + " is not a signal log");
+    }
+    short version = buffer.getShort();
+    if (version != SignalLogger.VERSION) {
+      throw new IOException(path + " is version " + version + ", expected " + SignalLogger.VERSION);
+    }
+  }
+
+  /**
+   * Advance to the next frame.
+   *
+   * @return false if there are no more frames
+   */
+  public boolean nextFrame() {
+    try {
+      while (buffer.hasRemaining()) {
+        byte record = buffer.get();
+
+        if (record == SignalLogger.RECORD_DEFINITION) {
+          int id = buffer.getShort() & 0xFFFF;
+          byte type = buffer.get();
+          byte[] name = new byte[buffer.getShort() & 0xFFFF];
+          buffer.get(name);
+
+          while (names.size() <= id) {
+            names.add(null);
+            types.add(null);
+          }
+          names.set(id, new String(name, StandardCharsets.UTF_8));
+          types.set(id, type);
+        } else if (record == SignalLogger.RECORD_FRAME) {
+          double frameTimestamp = buffer.getDouble();
+          int frameCount = buffer.getShort() & 0xFFFF;
+          if (frameCount > ids.length) {
+            ids = new int[frameCount];
+            values = new double[frameCount];
+          }
+          for (int i = 0; i < frameCount; i++) {
+            ids[i] = buffer.getShort() & 0xFFFF;
+            values[i] = buffer.getDouble();
+          }
+
+          timestamp = frameTimestamp;
+          count = frameCount;
+          return true;
+        } else {
+          // Anything else means the file is damaged from here on
+          return false;
+        }
+      }
+    } catch (BufferUnderflowException e) {
+      // Cut off part way through a record
+    }
+    return false;
+  }
+
+  /**
+   * @return the FPGA time in seconds of the current frame
+   */
+  public double getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return how many signals changed in the current frame
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @param index from 0 to {@link #getCount()}
+   * @return the id of a signal that changed in the current frame
+   */
+  public int getId(int index) {
+    return ids[index];
+  }
+
+  /**
+   * @param index from 0 to {@link #getCount()}
+   * @return the new value of the signal, 0 or 1 for booleans
+   */
+  public double getValue(int index) {
+    return values[index];
+  }
+
+  /**
+   * @param id a signal id from {@link #getId(int)}
+   * @return the name the signal was registered with
+   */
+  public String getName(int id) {
+    return names.get(id);
+  }
+
+  /**
+   * @param id a signal id from {@link #getId(int)}
+   * @return {@link SignalLogger#TYPE_DOUBLE} or {@link SignalLogger#TYPE_BOOLEAN}
+   */
+  public byte getType(int id) {
+    return types.get(id);
+  }
+
+  /**
+   * @return how many signals have been defined so far
+   */
+  public int getSignalCount() {
+    return names.size();
+  }
+}
@@ -0,0 +1,487 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.telemetry;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Records named signals every robot loop to a binary log file, so a match can be looked at afterwards. <br/>
+ *
+ * Signals are registered once with a supplier, the same way Sendable properties are. At the end of each loop
+ * {@link #endLoop()} samples every signal and copies the ones that changed into a preallocated ring buffer.
+ * A background thread drains the ring buffer into large writes, so the robot loop never touches the file system
+ * and never allocates. If the writer falls behind, whole frames are dropped rather than blocking the loop, and the
+ * next frame records every signal so the log stays consistent.
+ *
+ * <p>Subsystem inputs, the values read from hardware each loop, are registered with {@link #addInputs}. Those can be
+ * written back from a log by {@link #getReplaySetter(String)}, which is how a recorded match is replayed.
+ *
+ * <p>Logs go to a USB stick if one is plugged in, otherwise /home/lvuser, or the working directory in simulation. The
+ * {@link #LOG_DIRECTORY_PROPERTY} system property overrides that, so tests can log to a temporary directory.
+ *
+ * <p>The file is little-endian: an int magic and short version, then records that each start with a byte type.
+ * A signal definition is a short id, a byte signal type and a short-length UTF-8 name, and always comes before
+ * the signal's first value. A frame is a double FPGA timestamp in seconds, a short count, then count pairs of a
+ * short id and a double value holding every signal that changed since the previous frame.
+ */
+public final class SignalLogger {
+  public static final int MAGIC = 0x474F4C52;
+  public static final short VERSION = 1;
+  public static final String EXTENSION = ".rlog";
+
+  /** System property naming the directory to write logs to instead. */
+  public static final String LOG_DIRECTORY_PROPERTY = "robot.logDirectory";
+
+  public static final byte RECORD_DEFINITION = 0;
+  public static final byte RECORD_FRAME = 1;
+
+  public static final byte TYPE_DOUBLE = 0;
+  public static final byte TYPE_BOOLEAN = 1;
+
+  /** Longs in the ring buffer, a few seconds of 500 changing signals. Must be a power of two. */
+  private static final int RING_CAPACITY = 1 << 18;
+
+  /** Bytes collected before writing to the file. */
+  private static final int WRITE_BUFFER_SIZE = 1 << 18;
+
+  /** How often the writer thread drains the ring buffer, and the longest data waits in memory before being written. */
+  private static final long DRAIN_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long WRITE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /** Where logs are written, in order of preference. */
+  private static final String[] ROBOT_LOG_DIRECTORIES = { "/u/logs", "/home/lvuser/logs" };
+  private static final String SIM_LOG_DIRECTORY = "logs";
+
+  private static SignalLogger instance;
+
+  /** A registered signal. The supplier is only called on the main thread. */
+  private static class Signal {
+    final String name;
+    final byte type;
+    final DoubleSupplier supplier;
+    /** Writes a replayed value back into the input, or null if the signal is an output. */
+    final DoubleConsumer replay;
+
+    Signal(String name, byte type, DoubleSupplier supplier, DoubleConsumer replay) {
+      this.name = name;
+      this.type = type;
+      this.supplier = supplier;
+      this.replay = replay;
+    }
+  }
+
+  private final Path directory;
+
+  /** Replaced whole on registration so the writer thread can read the definitions without locking. */
+  private volatile Signal[] signals = new Signal[0];
+
+  /** Raw bits of the value last logged for each signal. */
+  private long[] lastValues = new long[0];
+
+  /** Log every signal in the next frame, after a dropped frame or new registrations. */
+  private boolean writeAll = true;
+
+  private final long[] ring = new long[RING_CAPACITY];
+  private final int ringMask = RING_CAPACITY - 1;
+
+  /** Next slot the main thread writes, published to the writer through frameEnd. */
+  private long head = 0;
+  private volatile long frameEnd = 0;
+
+  /** Next slot the writer thread reads, published back to the main thread so it can reuse space. */
+  private volatile long tail = 0;
+
+  private volatile long droppedFrames = 0;
+
+  private Thread writer;
+  /** The file being written, or null before {@link #start()}. */
+  private Path path;
+  private volatile boolean failed = false;
+
+  /** Set on shutdown, so the writer drains what is left and stops. */
+  private volatile boolean closing = false;
+
+  /** Number of signal definitions written so far. Only used by the writer thread. */
+  private int definedSignals = 0;
+
+  SignalLogger(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return the logger shared by the whole robot
+   */
+  public static synchronized SignalLogger getInstance() {
+    if (instance == null) {
+      instance = new SignalLogger(chooseDirectory());
+    }
+    return instance;
+  }
+
+  /**
+   * Close the shared logger, so the next {@link #getInstance()} starts a new log with no signals registered. For
+   * programs that build more than one robot, as the tests do.
+   */
+  public static synchronized void resetInstance() {
+    if (instance != null) {
+      instance.close();
+      instance = null;
+    }
+  }
+
+  /**
+   * Register a signal sampled every loop. Call this during construction, not every loop.
+   *
+   * @param name the name of the signal, such as "DriveSystem/X"
+   * @param supplier gets the value of the signal, called once per loop on the main thread
+   */
+  public void addDouble(String name, DoubleSupplier supplier) {
+    register(new Signal(name, TYPE_DOUBLE, supplier, null));
+  }
+
+  /**
+   * Register a signal sampled every loop. Call this during construction, not every loop.
+   *
+   * @param name the name of the signal, such as "IntakeSubsystem/Deployed"
+   * @param supplier gets the value of the signal, called once per loop on the main thread
+   */
+  public void addBoolean(String name, BooleanSupplier supplier) {
+    register(new Signal(name, TYPE_BOOLEAN, () -> supplier.getAsBoolean() ? 1 : 0, null));
+  }
+
+  /**
+   * Register every public field of an inputs object as a replayable signal named "prefix/field".
+   * Fields can be double, boolean, int, long or double[]. Arrays must be final, and each element is its own signal.
+   * Call this during construction, not every loop.
+   *
+   * @param prefix the start of each signal name, such as "DriveSystem"
+   * @param inputs the object the subsystem's IO fills in each loop
+   */
+  public void addInputs(String prefix, Object inputs) {
+    for (Field field : inputs.getClass().getFields()) {
+      if (Modifier.isStatic(field.getModifiers())) {
+        continue;
+      }
+
+      String name = prefix + "/" + field.getName();
+      Class<?> type = field.getType();
+
+      if (type == double[].class) {
+        double[] array;
+        try {
+          array = (double[]) field.get(inputs);
+        } catch (IllegalAccessException e) {
+          throw new IllegalArgumentException("Can't read input " + name, e);
+        }
+        for (int i = 0; i < array.length; i++) {
+          int index = i;
+          register(new Signal(name + "/" + i, TYPE_DOUBLE, () -> array[index], value -> array[index] = value));
+        }
+      } else if (type == double.class || type == int.class || type == long.class || type == boolean.class) {
+        byte signalType = (type == boolean.class) ? TYPE_BOOLEAN : TYPE_DOUBLE;
+        register(new Signal(name, signalType, () -> readField(field, inputs), value -> writeField(field, inputs, value)));
+      } else {
+        throw new IllegalArgumentException("Can't log input " + name + " of type " + type.getSimpleName());
+      }
+    }
+  }
+
+  /**
+   * Read a primitive field as a double without boxing it.
+   */
+  private static double readField(Field field, Object owner) {
+    try {
+      if (field.getType() == boolean.class) {
+        return field.getBoolean(owner) ? 1 : 0;
+      }
+      return field.getDouble(owner);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Write a double into a primitive field, converting it to the field's type.
+   */
+  private static void writeField(Field field, Object owner, double value) {
+    try {
+      Class<?> type = field.getType();
+      if (type == boolean.class) {
+        field.setBoolean(owner, value != 0);
+      } else if (type == int.class) {
+        field.setInt(owner, (int) value);
+      } else if (type == long.class) {
+        field.setLong(owner, (long) value);
+      } else {
+        field.setDouble(owner, value);
+      }
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Find where to write a replayed value for an input signal.
+   *
+   * @param name the name of the signal, as it appears in the log
+   * @return a setter for the input, or null if no input with that name is registered
+   */
+  public DoubleConsumer getReplaySetter(String name) {
+    for (Signal signal : signals) {
+      if (signal.replay != null && signal.name.equals(name)) {
+        return signal.replay;
+      }
+    }
+    return null;
+  }
+
+  private synchronized void register(Signal signal) {
+    Signal[] registered = Arrays.copyOf(signals, signals.length + 1);
+    registered[signals.length] = signal;
+    lastValues = Arrays.copyOf(lastValues, registered.length);
+    signals = registered;
+    writeAll = true;
+  }
+
+  /**
+   * Open a new log file and start the writer thread. Does nothing if already started.
+   */
+  public synchronized void start() {
+    if (writer != null) {
+      return;
+    }
+
+    path = directory.resolve("robot_" + System.currentTimeMillis() + EXTENSION);
+    writer = new Thread(this::runWriter, "SignalLogger");
+    writer.setDaemon(true);
+    writer.setPriority(Thread.MIN_PRIORITY);
+    writer.start();
+
+    // Write out the last second of data when the robot program is stopped
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      closing = true;
+      LockSupport.unpark(writer);
+      try {
+        writer.join(TimeUnit.NANOSECONDS.toMillis(WRITE_PERIOD_NANOS));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, "SignalLoggerShutdown"));
+  }
+
+  /**
+   * Write out every frame logged so far and stop the writer thread, waiting for it to finish. Frames logged after this
+   * are not written. Does nothing if not started.
+   */
+  public synchronized void close() {
+    if (writer == null || closing) {
+      return;
+    }
+
+    closing = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the log file being written, or null if not started
+   */
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Sample every signal into the log. Call once at the end of every robot loop.
+   */
+  public void endLoop() {
+    endLoop(Timer.getFPGATimestamp());
+  }
+
+  /**
+   * Sample every signal into the log.
+   *
+   * @param timestamp FPGA time in seconds to log the values at
+   */
+  void endLoop(double timestamp) {
+    if (failed) {
+      return;
+    }
+
+    Signal[] signals = this.signals;
+    long[] lastValues = this.lastValues;
+
+    // Room for a header and every signal, so the frame can't run into data the writer hasn't read yet
+    if (head + 2 + 2L * signals.length - tail > RING_CAPACITY) {
+      droppedFrames++;
+      writeAll = true;
+      return;
+    }
+
+    long position = head + 2;
+    int count = 0;
+    for (int id = 0; id < signals.length; id++) {
+      long value = Double.doubleToRawLongBits(signals[id].supplier.getAsDouble());
+      if (writeAll || value != lastValues[id]) {
+        lastValues[id] = value;
+        ring[(int) (position++ & ringMask)] = id;
+        ring[(int) (position++ & ringMask)] = value;
+        count++;
+      }
+    }
+
+    ring[(int) (head & ringMask)] = Double.doubleToRawLongBits(timestamp);
+    ring[(int) ((head + 1) & ringMask)] = count;
+
+    writeAll = false;
+    head = position;
+    frameEnd = position;
+  }
+
+  /**
+   * @return how many frames were dropped because the writer thread fell behind
+   */
+  public long getDroppedFrames() {
+    return droppedFrames;
+  }
+
+  private void runWriter() {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC);
+      buffer.putShort(VERSION);
+
+      long lastWrite = System.nanoTime();
+
+      while (!closing) {
+        LockSupport.parkNanos(DRAIN_PERIOD_NANOS);
+        drain(channel, buffer);
+
+        if (buffer.position() > WRITE_BUFFER_SIZE / 2 || System.nanoTime() - lastWrite > WRITE_PERIOD_NANOS) {
+          write(channel, buffer);
+          lastWrite = System.nanoTime();
+        }
+      }
+
+      drain(channel, buffer);
+      write(channel, buffer);
+    } catch (IOException e) {
+      failed = true;
+      DriverStation.reportError("Signal logging stopped, could not write " + path + ": " + e.getMessage(), false);
+    }
+  }
+
+  /**
+   * Copy new definitions and every published frame out of the ring buffer into the write buffer.
+   */
+  private void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+    // Frames are published after the signals they use are registered, so reading the end of the frames first means
+    // every signal they use is in the definitions read after it
+    long end = frameEnd;
+
+    // Definitions first, since the frames about to be copied may use them
+    Signal[] signals = this.signals;
+    for (; definedSignals < signals.length; definedSignals++) {
+      byte[] name = signals[definedSignals].name.getBytes(StandardCharsets.UTF_8);
+      ensureSpace(channel, buffer, 1 + 2 + 1 + 2 + name.length);
+      buffer.put(RECORD_DEFINITION);
+      buffer.putShort((short) definedSignals);
+      buffer.put(signals[definedSignals].type);
+      buffer.putShort((short) name.length);
+      buffer.put(name);
+    }
+
+    long position = tail;
+    while (position < end) {
+      double timestamp = Double.longBitsToDouble(ring[(int) (position & ringMask)]);
+      int count = (int) ring[(int) ((position + 1) & ringMask)];
+      position += 2;
+
+      ensureSpace(channel, buffer, 1 + 8 + 2 + count * (2 + 8));
+      buffer.put(RECORD_FRAME);
+      buffer.putDouble(timestamp);
+      buffer.putShort((short) count);
+      for (int i = 0; i < count; i++) {
+        buffer.putShort((short) ring[(int) (position++ & ringMask)]);
+        buffer.putLong(ring[(int) (position++ & ringMask)]);
+      }
+    }
+    // Copied out, so the main thread can reuse the space
+    tail = position;
+  }
+
+  private static void ensureSpace(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      write(channel, buffer);
+    }
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * @return the first log directory that exists or can be created
+   */
+  private static Path chooseDirectory() {
+    List<String> candidates = new ArrayList<>();
+    String override = System.getProperty(LOG_DIRECTORY_PROPERTY);
+    if (override != null) {
+      candidates.add(override);
+    } else if (RobotBase.isReal()) {
+      candidates.addAll(Arrays.asList(ROBOT_LOG_DIRECTORIES));
+    } else {
+      candidates.add(SIM_LOG_DIRECTORY);
+    }
+
+    for (String candidate : candidates) {
+      Path path = Paths.get(candidate);
+
+      // The USB stick's mount point only exists while one is plugged in
+      if (path.getParent() != null && !Files.isDirectory(path.getParent())) {
+        continue;
+      }
+
+      try {
+        Files.createDirectories(path);
+        if (Files.isWritable(path)) {
+          return path;
+        }
+      } catch (IOException e) {
+        // Try the next one, e.g. no USB stick
+      }
+    }
+    return Paths.get(candidates.get(candidates.size() - 1));
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.trajectory;
+
+import java.util.List;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+
+import static frc.robot.Constants.DriveConstants.*;
+
+/**
+ * The autonomous paths that don't depend on anything seen during the match. <br/>
+ * These are generated at build time by {@link GenerateTrajectories} and loaded on the robot by {@link TrajectoryLibrary},
+ * so the robot never has to run the generator for them.
+ */
+public final class AutoPaths {
+    /** Backs out of the tarmac from the starting line. */
+    public static final String TAXI = "Taxi";
+
+    /** From the tarmac to the cargo in front of the terminal. */
+    public static final String TARMAC_TO_TERMINAL = "TarmacToTerminal";
+
+    /** From the terminal back to shooting range of the hub. */
+    public static final String TERMINAL_TO_TARMAC = "TerminalToTarmac";
+
+    /** Every path name. */
+    public static final List<String> NAMES = List.of(TAXI, TARMAC_TO_TERMINAL, TERMINAL_TO_TARMAC);
+
+    private AutoPaths() {}
+
+    /**
+     * Generate a single path by name.
+     * 
+     * @param name one of the names in this class
+     * @return the generated trajectory
+     * @throws IllegalArgumentException if there is no path with that name
+     */
+    public static Trajectory generate(String name) {
+        switch (name) {
+            case TAXI:
+                return TrajectoryGenerator.generateTrajectory(
+                    new Pose2d(7.6, 2.9, Rotation2d.fromDegrees(-110)),
+                    List.of(),
+                    new Pose2d(7.2, 1.7, Rotation2d.fromDegrees(-110)),
+                    config(false)
+                );
+            case TARMAC_TO_TERMINAL:
+                return TrajectoryGenerator.generateTrajectory(
+                    new Pose2d(7.2, 1.7, Rotation2d.fromDegrees(-110)),
+                    List.of(new Translation2d(5.0, 1.9)),
+                    new Pose2d(1.5, 1.5, Rotation2d.fromDegrees(-135)),
+                    config(false)
+                );
+            case TERMINAL_TO_TARMAC:
+                return TrajectoryGenerator.generateTrajectory(
+                    new Pose2d(1.5, 1.5, Rotation2d.fromDegrees(-135)),
+                    List.of(new Translation2d(5.0, 1.9)),
+                    new Pose2d(7.0, 2.5, Rotation2d.fromDegrees(-135)),
+                    config(true)
+                );
+            default:
+                throw new IllegalArgumentException("No auto path named " + name);
+        }
+    }
+
+    /**
+     * Same limits as {@link frc.robot.subsystems.DriveSystem#getTrajectoryConfig()}, without needing the hardware.
+     */
+    private static TrajectoryConfig config(boolean reversed) {
+        return new TrajectoryConfig(MAX_SPEED, MAX_ACCELERATION).setKinematics(KINEMATICS).setReversed(reversed);
+    }
+}
@@ -0,0 +1,142 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.trajectory;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+
+/**
+ * Works out where to meet a rolling piece of cargo. <br/>
+ *
+ * Driving to where the cargo is when the path is planned means arriving after it has rolled away. Instead, this finds
+ * the earliest time at which the robot, driving a straight trapezoidal profile within the {@link TrajectoryConfig}'s
+ * speed and acceleration limits, could be at the same spot as the cargo, assuming the cargo keeps its current
+ * velocity. The real trajectory is a spline rather than a straight line, so commands following it should re-plan as
+ * the robot gets closer.
+ */
+public final class CargoIntercept {
+    /** Step in seconds used to search for the first time the robot can make it. */
+    private static final double SEARCH_STEP = 0.05;
+
+    /** Bisection steps used to refine the time once it is bracketed, to well under a millisecond. */
+    private static final int REFINE_STEPS = 8;
+
+    private CargoIntercept() {}
+
+    /**
+     * Get the time to drive a distance in a straight line and stop.
+     *
+     * @param distance meters to drive
+     * @param startSpeed meters per second the robot is already driving towards the end
+     * @param maxVelocity meters per second
+     * @param maxAcceleration meters per second squared
+     * @return seconds to arrive
+     */
+    public static double travelTime(double distance, double startSpeed, double maxVelocity, double maxAcceleration) {
+        double v0 = Math.min(Math.max(startSpeed, 0), maxVelocity);
+
+        // Already too close to stop in time, so arrive while still braking
+        double stoppingDistance = v0 * v0 / (2 * maxAcceleration);
+        if (distance <= stoppingDistance) {
+            return (v0 - Math.sqrt(Math.max(v0 * v0 - 2 * maxAcceleration * distance, 0))) / maxAcceleration;
+        }
+
+        // Accelerate to a peak then brake; cruise at the limit if the peak would be past it
+        double peak = Math.sqrt(maxAcceleration * distance + v0 * v0 / 2);
+        if (peak <= maxVelocity) {
+            return (2 * peak - v0) / maxAcceleration;
+        }
+
+        double rampDistance = (2 * maxVelocity * maxVelocity - v0 * v0) / (2 * maxAcceleration);
+        return (2 * maxVelocity - v0) / maxAcceleration + (distance - rampDistance) / maxVelocity;
+    }
+
+    /**
+     * Get the earliest time the robot can meet the cargo.
+     *
+     * @param start where the robot is
+     * @param startSpeed meters per second the robot is already driving
+     * @param cargo where the cargo is now
+     * @param cargoVelocity meters per second the cargo is rolling
+     * @param limits max speed and acceleration of the robot
+     * @param horizon furthest ahead in seconds to look
+     * @return seconds from now, or NaN if the cargo can't be caught within the horizon
+     */
+    public static double interceptTime(Translation2d start, double startSpeed, Translation2d cargo, Translation2d cargoVelocity,
+            TrajectoryConfig limits, double horizon) {
+        double dx = cargo.getX() - start.getX();
+        double dy = cargo.getY() - start.getY();
+        double vx = cargoVelocity.getX();
+        double vy = cargoVelocity.getY();
+        double maxVelocity = limits.getMaxVelocity();
+        double maxAcceleration = limits.getMaxAcceleration();
+
+        // Slack is how much longer the cargo takes to get somewhere than the robot; the first time it reaches zero is
+        // the earliest the robot can be waiting there
+        double previous = 0;
+        double slack = travelTime(Math.hypot(dx, dy), startSpeed, maxVelocity, maxAcceleration);
+        if (slack <= 0) {
+            return 0;
+        }
+
+        for (double t = SEARCH_STEP; t <= horizon; t += SEARCH_STEP) {
+            slack = travelTime(Math.hypot(dx + vx * t, dy + vy * t), startSpeed, maxVelocity, maxAcceleration) - t;
+            if (slack <= 0) {
+                // Bracketed between the last step and this one
+                double low = previous;
+                double high = t;
+                for (int i = 0; i < REFINE_STEPS; i++) {
+                    double mid = (low + high) / 2;
+                    double midSlack = travelTime(Math.hypot(dx + vx * mid, dy + vy * mid), startSpeed, maxVelocity, maxAcceleration) - mid;
+                    if (midSlack <= 0) {
+                        high = mid;
+                    } else {
+                        low = mid;
+                    }
+                }
+                return high;
+            }
+            previous = t;
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * Get the pose to drive to in order to meet the cargo, facing the way the robot drives so the intake meets it.
+     * If the cargo can't be caught within the horizon, this is where the cargo is now.
+     *
+     * @param start where the robot is
+     * @param startSpeed meters per second the robot is already driving
+     * @param cargo where the cargo is now
+     * @param cargoVelocity meters per second the cargo is rolling
+     * @param limits max speed and acceleration of the robot
+     * @param horizon furthest ahead in seconds to look
+     * @return the end pose of the path
+     */
+    public static Pose2d interceptPose(Pose2d start, double startSpeed, Translation2d cargo, Translation2d cargoVelocity,
+            TrajectoryConfig limits, double horizon) {
+        double time = interceptTime(start.getTranslation(), startSpeed, cargo, cargoVelocity, limits, horizon);
+        Translation2d meet = Double.isNaN(time) ? cargo : cargo.plus(cargoVelocity.times(time));
+
+        Translation2d toMeet = meet.minus(start.getTranslation());
+        return new Pose2d(meet, new Rotation2d(toMeet.getX(), toMeet.getY()));
+    }
+
+    /**
+     * Copy a config's limits for a path that starts while the robot is already moving.
+     *
+     * @param limits max speed, acceleration and constraints to keep
+     * @param startSpeed meters per second the robot is driving at the start of the path
+     * @return a new config, so the shared one is never changed while another plan is using it
+     */
+    public static TrajectoryConfig startingAt(TrajectoryConfig limits, double startSpeed) {
+        return new TrajectoryConfig(limits.getMaxVelocity(), limits.getMaxAcceleration())
+            .setStartVelocity(Math.min(Math.max(startSpeed, 0), limits.getMaxVelocity()))
+            .addConstraints(limits.getConstraints());
+    }
+}
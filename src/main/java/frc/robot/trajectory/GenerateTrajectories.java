@@ -0,0 +1,39 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.trajectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * Build-time tool, run by the generateTrajectories Gradle task before every deploy, that writes every
+ * {@link AutoPaths} path into the deploy directory. How long each takes to load compared to parsing
+ * JSON or generating it is measured by TrajectoryBenchmark instead.
+ */
+public final class GenerateTrajectories {
+    private GenerateTrajectories() {}
+
+    /**
+     * @param args the directory to write trajectories to
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: GenerateTrajectories <output directory>");
+            System.exit(1);
+        }
+
+        Path directory = Paths.get(args[0]);
+        Files.createDirectories(directory);
+
+        for (String name : AutoPaths.NAMES) {
+            Trajectory trajectory = AutoPaths.generate(name);
+            TrajectoryFile.write(trajectory, directory.resolve(name + TrajectoryFile.EXTENSION));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.trajectory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * Reads and writes trajectories in a compact binary format, so they can be generated at build time and
+ * loaded on the robot without parsing JSON or running the generator. <br/>
+ *
+ * Layout (little endian): magic, version, state count, then for each state the time, velocity,
+ * acceleration, x, y, heading in radians and curvature as floats.
+ */
+public final class TrajectoryFile {
+    /** File extension for binary trajectories in the deploy directory. */
+    public static final String EXTENSION = ".traj";
+
+    private static final int MAGIC = 0x4A415254; // "TRAJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int STATE_BYTES = 7 * Float.BYTES;
+
+    private TrajectoryFile() {}
+
+    /**
+     * Write a trajectory to a file, replacing it if it exists.
+     * 
+     * @param trajectory the trajectory to write
+     * @param path where to write it
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Trajectory trajectory, Path path) throws IOException {
+        List<Trajectory.State> states = trajectory.getStates();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + states.size() * STATE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(states.size());
+
+        for (Trajectory.State state : states) {
+            buffer.putFloat((float) state.timeSeconds);
+            buffer.putFloat((float) state.velocityMetersPerSecond);
+            buffer.putFloat((float) state.accelerationMetersPerSecondSq);
+            buffer.putFloat((float) state.poseMeters.getX());
+            buffer.putFloat((float) state.poseMeters.getY());
+            buffer.putFloat((float) state.poseMeters.getRotation().getRadians());
+            buffer.putFloat((float) state.curvatureRadPerMeter);
+        }
+
+        Files.write(path, buffer.array());
+    }
+
+    /**
+     * Read a trajectory by memory-mapping the file.
+     * 
+     * @param path the file to read
+     * @return the trajectory
+     * @throws IOException if the file can't be read or isn't a trajectory file
+     */
+    public static Trajectory read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a trajectory file");
+            }
+
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(path + " has trajectory format version " + version + ", expected " + VERSION);
+            }
+
+            int stateCount = buffer.getInt();
+            if (buffer.remaining() < stateCount * STATE_BYTES) {
+                throw new IOException(path + " is truncated");
+            }
+
+            List<Trajectory.State> states = new ArrayList<>(stateCount);
+            for (int i = 0; i < stateCount; i++) {
+                double time = buffer.getFloat();
+                double velocity = buffer.getFloat();
+                double acceleration = buffer.getFloat();
+                double x = buffer.getFloat();
+                double y = buffer.getFloat();
+                double heading = buffer.getFloat();
+                double curvature = buffer.getFloat();
+
+                states.add(new Trajectory.State(time, velocity, acceleration, new Pose2d(x, y, new Rotation2d(heading)), curvature));
+            }
+
+            return new Trajectory(states);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.trajectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * Holds the precomputed autonomous trajectories, loaded once from the deploy directory at startup.
+ */
+public class TrajectoryLibrary {
+    /** Folder inside the deploy directory that {@link GenerateTrajectories} writes to. */
+    public static final String DIRECTORY = "trajectories";
+
+    private final Map<String, Trajectory> trajectories = new HashMap<>();
+
+    /**
+     * Load every path in {@link AutoPaths} from the deploy directory. <br/>
+     * Call this during robotInit so none of the cost lands in autonomous.
+     */
+    public TrajectoryLibrary() {
+        this(Filesystem.getDeployDirectory().toPath().resolve(DIRECTORY));
+    }
+
+    /**
+     * Load every path in {@link AutoPaths} from a directory.
+     * 
+     * @param directory the directory containing the trajectory files
+     */
+    public TrajectoryLibrary(Path directory) {
+        for (String name : AutoPaths.NAMES) {
+            Path path = directory.resolve(name + TrajectoryFile.EXTENSION);
+            try {
+                trajectories.put(name, TrajectoryFile.read(path));
+            } catch (IOException e) {
+                // Missing files mean the generateTrajectories task didn't run before deploying
+                DriverStation.reportError("Could not load trajectory " + path + ", generating it instead", e.getStackTrace());
+                trajectories.put(name, AutoPaths.generate(name));
+            }
+        }
+    }
+
+    /**
+     * Get a precomputed trajectory.
+     * 
+     * @param name one of the names in {@link AutoPaths}
+     * @return the trajectory
+     * @throws IllegalArgumentException if there is no path with that name
+     */
+    public Trajectory get(String name) {
+        Trajectory trajectory = trajectories.get(name);
+        if (trajectory == null) {
+            throw new IllegalArgumentException("No auto path named " + name);
+        }
+        return trajectory;
+    }
+}
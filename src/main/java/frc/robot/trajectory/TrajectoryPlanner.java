@@ -0,0 +1,152 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.trajectory;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import frc.robot.InputSnapshot;
+import frc.robot.RobotMode;
+import frc.robot.telemetry.SignalLogger;
+
+/**
+ * Generates trajectories on a background thread, for paths that depend on what the robot sees during the match
+ * and so can't be precomputed like {@link AutoPaths}. The scheduler thread only ever checks whether a plan is done.
+ * <br/>
+ *
+ * Plans are handed over at the start of a loop, by the {@link InputSnapshot}, rather than whenever the background
+ * thread finishes them, and how many have been handed over is logged like any other input. When replaying a log there
+ * is no background thread: each plan is generated on the main thread on the loop the log says it finished, so the
+ * replayed commands start following it on the same loop they did in the match.
+ */
+public class TrajectoryPlanner {
+    /** Values read at the start of each loop. Logged, and set from the log during replay. */
+    public static class PlannerInputs {
+        /** Plans finished by the start of the loop, counting every plan this planner was asked for. */
+        public long finishedPlans;
+    }
+
+    /** A requested plan, with the future the caller holds, which is only completed when the plan is handed over. */
+    private static class Plan {
+        final Supplier<Trajectory> generator;
+        final CompletableFuture<Trajectory> result = new CompletableFuture<>();
+        /** The plan being generated on the background thread, or null when replaying. */
+        CompletableFuture<Trajectory> background;
+
+        Plan(Supplier<Trajectory> generator) {
+            this.generator = generator;
+        }
+    }
+
+    /** Null when replaying. */
+    private final ExecutorService executor;
+
+    private final PlannerInputs inputs = new PlannerInputs();
+
+    /** Plans not handed over yet, oldest first, which is the order the single background thread finishes them in. */
+    private final ArrayDeque<Plan> pending = new ArrayDeque<>();
+    private long handedOver = 0;
+
+    /**
+     * Creates a new TrajectoryPlanner that plans on a background thread.
+     */
+    public TrajectoryPlanner() {
+        this(RobotMode.SIM);
+    }
+
+    /**
+     * Creates a new TrajectoryPlanner.
+     *
+     * @param mode {@link RobotMode#REPLAY} to plan on the main thread when the log says each plan finished, otherwise
+     *             plans are generated on a background thread
+     */
+    public TrajectoryPlanner(RobotMode mode) {
+        if (mode == RobotMode.REPLAY) {
+            executor = null;
+        } else {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "TrajectoryPlanner");
+                // Don't keep the robot program alive, and let the main loop win any contention for the CPU
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+
+        InputSnapshot.getInstance().register(this::update);
+        SignalLogger.getInstance().addInputs("TrajectoryPlanner", inputs);
+    }
+
+    /**
+     * Start generating a trajectory in the background.
+     *
+     * @param start the starting pose
+     * @param waypoints points to pass through on the way
+     * @param end the ending pose
+     * @param config max speed, acceleration and direction; must not be changed until the plan completes
+     * @return a future that completes with the trajectory at the start of the first loop after it's generated
+     */
+    public CompletableFuture<Trajectory> plan(Pose2d start, List<Translation2d> waypoints, Pose2d end, TrajectoryConfig config) {
+        return plan(() -> TrajectoryGenerator.generateTrajectory(start, waypoints, end, config));
+    }
+
+    /**
+     * Start generating a trajectory in the background some other way, such as from a path file.
+     *
+     * @param generator makes the trajectory, on the background thread, or on the main thread when replaying
+     * @return a future that completes with the trajectory at the start of the first loop after it's generated
+     */
+    public CompletableFuture<Trajectory> plan(Supplier<Trajectory> generator) {
+        Plan plan = new Plan(generator);
+        if (executor != null) {
+            plan.background = CompletableFuture.supplyAsync(plan.generator, executor);
+        }
+        pending.add(plan);
+        return plan.result;
+    }
+
+    /**
+     * Count the plans the background thread has finished, then hand over every plan the inputs say is finished.
+     * Runs at the start of every loop.
+     */
+    private void update() {
+        if (executor != null) {
+            inputs.finishedPlans = handedOver;
+            for (Plan plan : pending) {
+                if (!plan.background.isDone()) {
+                    break;
+                }
+                inputs.finishedPlans++;
+            }
+        }
+
+        while (handedOver < inputs.finishedPlans && !pending.isEmpty()) {
+            handOver(pending.poll());
+            handedOver++;
+        }
+    }
+
+    private static void handOver(Plan plan) {
+        // Cancelled by the command that asked for it, so there's nothing to generate
+        if (plan.result.isDone()) {
+            return;
+        }
+
+        try {
+            plan.result.complete((plan.background != null) ? plan.background.join() : plan.generator.get());
+        } catch (RuntimeException e) {
+            plan.result.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import java.util.Arrays;
+
+/**
+ * Solves the assignment problem: pairs each row of a square cost matrix with one column so the total cost is as
+ * small as possible. <br/>
+ *
+ * This is the O(n^3) Hungarian algorithm with row and column potentials. Every array is allocated up front for the
+ * largest matrix, so solving allocates nothing.
+ */
+class HungarianAssignment {
+    private final int capacity;
+
+    /** Costs, row major with a stride of {@link #capacity}. */
+    private final double[] cost;
+
+    // Working arrays, indexed from 1 with 0 as a sentinel
+    private final double[] rowPotential;
+    private final double[] columnPotential;
+    private final double[] minSlack;
+    private final int[] columnRow;
+    private final int[] previousColumn;
+    private final boolean[] visited;
+
+    /** Column assigned to each row by the last {@link #solve}. */
+    private final int[] rowColumn;
+
+    /**
+     * @param capacity the largest number of rows and columns that will be solved
+     */
+    HungarianAssignment(int capacity) {
+        this.capacity = capacity;
+        cost = new double[capacity * capacity];
+        rowPotential = new double[capacity + 1];
+        columnPotential = new double[capacity + 1];
+        minSlack = new double[capacity + 1];
+        columnRow = new int[capacity + 1];
+        previousColumn = new int[capacity + 1];
+        visited = new boolean[capacity + 1];
+        rowColumn = new int[capacity];
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    void setCost(int row, int column, double value) {
+        cost[row * capacity + column] = value;
+    }
+
+    /**
+     * Assign the top left size by size corner of the cost matrix.
+     *
+     * @return the column assigned to each row. Reused by the next call.
+     */
+    int[] solve(int size) {
+        Arrays.fill(rowPotential, 0, size + 1, 0.0);
+        Arrays.fill(columnPotential, 0, size + 1, 0.0);
+        Arrays.fill(columnRow, 0, size + 1, 0);
+
+        for (int row = 1; row <= size; row++) {
+            // Grow an alternating path from this row until it reaches an unassigned column
+            columnRow[0] = row;
+            int column = 0;
+            Arrays.fill(minSlack, 0, size + 1, Double.POSITIVE_INFINITY);
+            Arrays.fill(visited, 0, size + 1, false);
+
+            do {
+                visited[column] = true;
+                int pathRow = columnRow[column];
+                double delta = Double.POSITIVE_INFINITY;
+                int nextColumn = 0;
+
+                for (int j = 1; j <= size; j++) {
+                    if (!visited[j]) {
+                        double slack = cost[(pathRow - 1) * capacity + (j - 1)] - rowPotential[pathRow] - columnPotential[j];
+                        if (slack < minSlack[j]) {
+                            minSlack[j] = slack;
+                            previousColumn[j] = column;
+                        }
+                        if (minSlack[j] < delta) {
+                            delta = minSlack[j];
+                            nextColumn = j;
+                        }
+                    }
+                }
+
+                for (int j = 0; j <= size; j++) {
+                    if (visited[j]) {
+                        rowPotential[columnRow[j]] += delta;
+                        columnPotential[j] -= delta;
+                    } else {
+                        minSlack[j] -= delta;
+                    }
+                }
+
+                column = nextColumn;
+            } while (columnRow[column] != 0);
+
+            // Flip the assignments along the path
+            do {
+                int previous = previousColumn[column];
+                columnRow[column] = columnRow[previous];
+                column = previous;
+            } while (column != 0);
+        }
+
+        for (int j = 1; j <= size; j++) {
+            rowColumn[columnRow[j] - 1] = j - 1;
+        }
+        return rowColumn;
+    }
+}
@@ -4,34 +4,114 @@
 
 package frc.robot.vision;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.networktables.NetworkTable;
-import edu.wpi.first.networktables.NetworkTableEntry;
-import edu.wpi.first.util.sendable.Sendable;
 import edu.wpi.first.util.sendable.SendableBuilder;
-import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.InputSnapshot;
+import frc.robot.telemetry.SignalLogger;
+import frc.robot.vision.LimelightIO.LimelightIOInputs;
 
-/** Add your docs here. */
-public class Limelight implements Sendable{
+import static frc.robot.Constants.VisionConstants.*;
 
-    private NetworkTable table;
-    private NetworkTableEntry targets;
-    private NetworkTableEntry horizontalOffset;
-    private NetworkTableEntry verticalOffset;
-    private NetworkTableEntry targetArea;
-    private NetworkTableEntry camMode;
-    private NetworkTableEntry robotPosition3D;
+/**
+ * The Limelight, which targets the hub. <br/>
+ *
+ * Its values are read once at the start of each loop by the {@link InputSnapshot}, before anything uses them. <br/>
+ *
+ * Frames older than {@link frc.robot.Constants.VisionConstants#LIMELIGHT_MAX_FRAME_AGE} are treated as having no
+ * target, so nothing steers or corrects its pose from an image the Limelight stopped updating. The frame rate,
+ * frame age and skipped frames are published to show how well frames are keeping up.
+ */
+public class Limelight extends SubsystemBase {
 
-    public Limelight() {
-        table = NetworkTableInstance.getDefault().getTable("limelight");
-        targets = table.getEntry("tv");
-        horizontalOffset = table.getEntry("tx");
-        verticalOffset = table.getEntry("ty");
-        targetArea = table.getEntry("ta");
-        camMode = table.getEntry("camMode");
-        robotPosition3D = table.getEntry("cam-tran");
+    private final LimelightIO io;
+    private final LimelightIOInputs inputs = new LimelightIOInputs();
+
+    /** Transform built from the last "cam-tran" update, and the id of that update. */
+    private Transform2d transform = new Transform2d();
+    private long transformChange = -1;
+
+    /** Robot pose worked out from the last "cam-tran" update, in meters and radians, and the id of that update. */
+    private double robotX = 0;
+    private double robotY = 0;
+    private double robotHeading = 0;
+    private long robotPoseChange = -1;
+
+    /** Seconds since the newest frame was captured, as of the start of this loop. */
+    private double frameAge = Double.POSITIVE_INFINITY;
+
+    /** Frames counted since windowStart, for the frame rate. */
+    private int windowFrames = 0;
+    private double windowStart = 0;
+    private double frameRate = 0;
+
+    /** Frames that were replaced by a newer one before a loop used them. */
+    private long skippedFrames = 0;
+
+    /**
+     * @param io the Limelight's NetworkTables entries, or nothing when replaying a log
+     */
+    public Limelight(LimelightIO io) {
+        this.io = io;
+        InputSnapshot.getInstance().register(() -> io.updateInputs(inputs));
+
+        // Logged signals
+        SignalLogger logger = SignalLogger.getInstance();
+        logger.addInputs("Limelight", inputs);
+        logger.addDouble("Limelight/Frame Age", () -> frameAge);
+        logger.addBoolean("Limelight/Fresh", this::isFresh);
+    }
+
+    @Override
+    public void periodic() {
+        double now = Timer.getFPGATimestamp();
+        frameAge = (inputs.frameId > 0) ? now - inputs.captureTimestamp : Double.POSITIVE_INFINITY;
+
+        if (inputs.framesReceived > 1) {
+            skippedFrames += inputs.framesReceived - 1;
+        }
+
+        windowFrames += inputs.framesReceived;
+        if (now - windowStart >= 1.0) {
+            frameRate = windowFrames / (now - windowStart);
+            windowFrames = 0;
+            windowStart = now;
+        }
+    }
+
+    /**
+     * Check whether the newest frame is recent enough to act on.
+     * 
+     * @return true if a frame has arrived within the maximum frame age
+     */
+    public boolean isFresh() {
+        return frameAge <= LIMELIGHT_MAX_FRAME_AGE;
+    }
+
+    /**
+     * @return seconds since the newest frame was captured, or infinity if no frame has arrived
+     */
+    public double getFrameAge() {
+        return frameAge;
+    }
+
+    /**
+     * @return frames per second received over the last whole second
+     */
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * @return frames replaced by a newer one before a loop used them, since the robot started
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
     }
 
     /**
@@ -40,7 +120,7 @@ public class Limelight implements Sendable{
      * @return true if a target is found, false otherwise
      */
     public boolean hasTargets() {
-        return targets.getBoolean(false);
+        return isFresh() && inputs.targetValid == 1.0;
     }
     
     /**
@@ -49,7 +129,7 @@ public class Limelight implements Sendable{
      * @return -29.8 to 29.8 degrees
      */
     public double getHorizontalOffset() {
-        return horizontalOffset.getDouble(0.0);
+        return inputs.horizontalOffset;
     }
 
     /**
@@ -57,7 +137,21 @@ public class Limelight implements Sendable{
      * @return -24.85 to 24.85
      */
     public double getVerticalOffset() {
-        return verticalOffset.getDouble(0.0);
+        return inputs.verticalOffset;
+    }
+
+    /**
+     * Estimates the distance to the hub from how far up the image the vision tape is, using the Limelight's mounting
+     * height and angle.
+     * @return horizontal distance from the Limelight to the center of the hub in meters, or NaN without a target
+     */
+    public double getHubDistance() {
+        if (!hasTargets()) {
+            return Double.NaN;
+        }
+
+        double angle = Math.toRadians(LIMELIGHT_MOUNT_ANGLE + inputs.verticalOffset);
+        return (HUB_TARGET_HEIGHT - LIMELIGHT_HEIGHT) / Math.tan(angle) + HUB_TARGET_RADIUS;
     }
 
     /**
@@ -65,7 +159,31 @@ public class Limelight implements Sendable{
      * @return 0% of image to 100% of image 
      */
     public double getTargetArea() {
-        return targetArea.getDouble(0.0);
+        return inputs.targetArea;
+    }
+
+    /**
+     * Gets the total time between the image being captured and the result being published.
+     * @return pipeline latency plus image capture latency, in milliseconds
+     */
+    public double getLatency() {
+        return inputs.pipelineLatency + LIMELIGHT_CAPTURE_LATENCY;
+    }
+
+    /**
+     * Gets the time at which the image for the current result was captured.
+     * @return FPGA timestamp in seconds
+     */
+    public double getCaptureTimestamp() {
+        return inputs.captureTimestamp;
+    }
+
+    /**
+     * Identifies the frame the current values came from.
+     * @return an ID that changes once per new frame
+     */
+    public long getFrameId() {
+        return inputs.frameId;
     }
 
     /**
@@ -73,7 +191,7 @@ public class Limelight implements Sendable{
      * @return 0 for vision, 1 for driver camera
      */
     public int getCamMode() {
-        return camMode.getNumber(1).intValue();
+        return (int) inputs.camMode;
     }
 
     /**
@@ -81,9 +199,7 @@ public class Limelight implements Sendable{
      * @param mode 0 for vision, 1 for driver camera
      */
     public void setCamMode(int mode) {
-        camMode.setNumber(mode);
-
-    
+        io.setCamMode(mode);
     }
     
     /**
@@ -94,68 +210,109 @@ public class Limelight implements Sendable{
         return getHorizontalOffset() < 0;
     }
 
-    /**
-     * Gives us access to the position of the robot in a 3D field environment
-     * @return The position of the robot with Translation (X,Y,Z) and Rotation (Pitch, Yaw, Roll) through a network table entry
-     */
-    public NetworkTableEntry getRobotPosition3D()
-    {
-        return robotPosition3D;
-    }
-
-
     /**
      * Gives limelight access to a transform2d
-     * Creates variables for the all the "cam-tran" network table entry values
+     * Reads all the "cam-tran" network table entry values
      * Creates a translation2d and rotation2d for the limelight to use
      * Uses the translation2d and rotation2d to create a transform2d
+     * The transform is only rebuilt when the limelight publishes a new "cam-tran", so repeated calls don't allocate
      * @return The limelight instance of a transform2d
      */
     public Transform2d generateTransform()
     {
-        //Default position and rotation values
-        Number[] defaultValues =
-        {
-            0.0f,
-            0.0f,
-            0.0f,
-            0.0f,
-            0.0f,
-            0.0f
-        };
-
-        //Retrieve NumberArray from limelight networkTable
-        Number[] robotPositionValues = getRobotPosition3D().getNumberArray(defaultValues);
-        
+        if (inputs.camTranId == transformChange) {
+            return transform;
+        }
+        transformChange = inputs.camTranId;
+
+        //Values from the limelight networkTable, in the order X, Y, Z, Pitch, Yaw, Roll
+        transform = toTransform(inputs.camTran);
+
+        //Returns the limelight instance of Transform2d
+        return transform;
+    }
+
+    /**
+     * Creates a Translation2d and a Rotation2d from "cam-tran" values, and uses them to create a transform2d
+     * @param robotPositionValues X, Y, Z, Pitch, Yaw, Roll from the "cam-tran" network table entry
+     * @return The transform2d, or no movement if there aren't enough values
+     */
+    static Transform2d toTransform(double[] robotPositionValues)
+    {
+        if (robotPositionValues.length < 6) {
+            return new Transform2d();
+        }
+
         //Gets the X-value from the "cam-tran" network table entry
-        double robotPositionX = robotPositionValues[0].doubleValue();
+        double robotPositionX = robotPositionValues[0];
         
         //Gets the Y-value from the "cam-tran" network table entry
-        double robotPositionY = robotPositionValues[1].doubleValue();
-
-        //Gets the Z-value from the "cam-tran" network table entry
-        double robotPositionZ = robotPositionValues[2].doubleValue();
-
-        //Gets the Pitch value from the "cam-tran" network table entry
-        double robotRotationPitch = robotPositionValues[3].doubleValue();
-        double robotRotationPitchRadians = Math.toRadians(robotRotationPitch);
+        double robotPositionY = robotPositionValues[1];
 
         //Gets the Yaw value from the "cam-tran" network table entry
-        double robotRotationYaw = robotPositionValues[4].doubleValue();
-        double robotRotationYawRadians = Math.toRadians(robotRotationYaw);
-
-        //Gets the Roll value from the "cam-tran" network table entry
-        double robotRotationRoll = robotPositionValues[5].doubleValue();
+        double robotRotationYawRadians = Math.toRadians(robotPositionValues[4]);
 
         //Creates a Translation2d and a Rotation2d for use in a Transform2d value
         Translation2d limelightTranslation2d = new Translation2d(robotPositionX, robotPositionY);
-        Rotation2d limelightRotation2d = new Rotation2d(robotRotationPitchRadians, robotRotationYawRadians);
+        Rotation2d limelightRotation2d = new Rotation2d(robotRotationYawRadians);
 
         //Creates a transform2d for use by the limelight
-        Transform2d limelightTransform2d = new Transform2d(limelightTranslation2d, limelightRotation2d);
+        return new Transform2d(limelightTranslation2d, limelightRotation2d);
+    }
 
-        //Returns the limelight instance of Transform2d
-        return limelightTransform2d;
+    /**
+     * Works backwards from the transform to the hub to find where the robot is on the field
+     * @return The pose of the robot on the field, at the time the frame was captured
+     */
+    public Pose2d getRobotPose()
+    {
+        return new Pose2d(getRobotX(), getRobotY(), new Rotation2d(getRobotHeading()));
+    }
+
+    /**
+     * @return meters along the field of the robot pose from the newest "cam-tran", see {@link #getRobotPose()}
+     */
+    public double getRobotX() {
+        updateRobotPose();
+        return robotX;
+    }
+
+    /**
+     * @return meters across the field of the robot pose from the newest "cam-tran", see {@link #getRobotPose()}
+     */
+    public double getRobotY() {
+        updateRobotPose();
+        return robotY;
+    }
+
+    /**
+     * @return heading in radians of the robot pose from the newest "cam-tran", see {@link #getRobotPose()}
+     */
+    public double getRobotHeading() {
+        updateRobotPose();
+        return robotHeading;
+    }
+
+    /**
+     * Work out {@code HUB_POSE.plus(generateTransform().inverse())} in primitives when "cam-tran" changes, since the
+     * pose estimator fuses a new frame nearly every loop.
+     */
+    private void updateRobotPose() {
+        if (inputs.camTranId == robotPoseChange) {
+            return;
+        }
+        robotPoseChange = inputs.camTranId;
+
+        // Inverse of the transform from the robot to the hub
+        double yaw = Math.toRadians(inputs.camTran[4]);
+        double inverseX = -inputs.camTran[0] * Math.cos(yaw) - inputs.camTran[1] * Math.sin(yaw);
+        double inverseY = inputs.camTran[0] * Math.sin(yaw) - inputs.camTran[1] * Math.cos(yaw);
+
+        // Applied from the hub
+        double hubHeading = HUB_POSE.getRotation().getRadians();
+        robotX = HUB_POSE.getX() + inverseX * Math.cos(hubHeading) - inverseY * Math.sin(hubHeading);
+        robotY = HUB_POSE.getY() + inverseX * Math.sin(hubHeading) + inverseY * Math.cos(hubHeading);
+        robotHeading = MathUtil.angleModulus(hubHeading - yaw);
     }
 
 
@@ -165,6 +322,12 @@ public class Limelight implements Sendable{
         builder.addBooleanProperty("Has Targets", this::hasTargets, null);
         builder.addDoubleProperty("Horizontal Offset", this::getHorizontalOffset, null);
         builder.addDoubleProperty("Vertical Offset", this::getVerticalOffset, null);
+        builder.addDoubleProperty("Hub Distance", this::getHubDistance, null);
         builder.addDoubleProperty("Cam Mode", this::getCamMode, null);
+        builder.addDoubleProperty("Latency", this::getLatency, null);
+        builder.addDoubleProperty("Frame Rate (Hz)", () -> frameRate, null);
+        builder.addDoubleProperty("Frame Age (ms)", () -> frameAge * 1000, null);
+        builder.addDoubleProperty("Skipped Frames", () -> skippedFrames, null);
+        builder.addBooleanProperty("Fresh", this::isFresh, null);
     }
 }
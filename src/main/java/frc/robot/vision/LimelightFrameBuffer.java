@@ -0,0 +1,83 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import frc.robot.vision.LimelightIO.LimelightIOInputs;
+
+/**
+ * Hands Limelight frames from the NetworkTables listener thread to the robot loop. <br/>
+ *
+ * Each frame's values and latency are written into one slot together, under the same lock the robot loop takes to
+ * read them, so a frame is never seen half updated. The Limelight publishes the entries of a frame one after
+ * another, so updates that arrive within {@link #SAME_FRAME_WINDOW} of the newest frame are folded into it rather
+ * than starting a new one. The buffer only keeps the last few frames; the robot loop uses the newest and older ones
+ * are dropped.
+ */
+class LimelightFrameBuffer {
+    /** Frames kept. The Limelight runs at up to 90 fps, so about 2 arrive per robot loop. */
+    private static final int CAPACITY = 4;
+
+    /** Updates closer together than this, in seconds, belong to the same frame. Well under the 11 ms between frames. */
+    static final double SAME_FRAME_WINDOW = 0.002;
+
+    private final double[] publishTime = new double[CAPACITY];
+    private final double[] targetValid = new double[CAPACITY];
+    private final double[] horizontalOffset = new double[CAPACITY];
+    private final double[] verticalOffset = new double[CAPACITY];
+    private final double[] targetArea = new double[CAPACITY];
+    private final double[] pipelineLatency = new double[CAPACITY];
+
+    /** Frames recorded since the buffer was created. The newest frame is in slot (frameCount - 1) % CAPACITY. */
+    private long frameCount = 0;
+
+    /** Value of frameCount at the last {@link #drain}. */
+    private long drainedCount = 0;
+
+    /**
+     * Record the Limelight's values. Called from the listener thread each time one of its entries changes.
+     *
+     * @param time NetworkTables time of the update in seconds
+     */
+    synchronized void record(double time, double tv, double tx, double ty, double ta, double tl) {
+        int slot;
+        if (frameCount > 0 && time - publishTime[(int) ((frameCount - 1) % CAPACITY)] < SAME_FRAME_WINDOW) {
+            // More of the frame that is already being recorded
+            slot = (int) ((frameCount - 1) % CAPACITY);
+        } else {
+            slot = (int) (frameCount % CAPACITY);
+            frameCount++;
+            publishTime[slot] = time;
+        }
+
+        targetValid[slot] = tv;
+        horizontalOffset[slot] = tx;
+        verticalOffset[slot] = ty;
+        targetArea[slot] = ta;
+        pipelineLatency[slot] = tl;
+    }
+
+    /**
+     * Copy the newest frame into the inputs. Called once per loop.
+     *
+     * @param captureLatency milliseconds the Limelight takes to capture an image, on top of the pipeline latency
+     */
+    synchronized void drain(LimelightIOInputs inputs, double captureLatency) {
+        inputs.framesReceived = (int) (frameCount - drainedCount);
+        drainedCount = frameCount;
+
+        if (frameCount == 0) {
+            return;
+        }
+
+        int slot = (int) ((frameCount - 1) % CAPACITY);
+        inputs.targetValid = targetValid[slot];
+        inputs.horizontalOffset = horizontalOffset[slot];
+        inputs.verticalOffset = verticalOffset[slot];
+        inputs.targetArea = targetArea[slot];
+        inputs.pipelineLatency = pipelineLatency[slot];
+        inputs.captureTimestamp = publishTime[slot] - (pipelineLatency[slot] + captureLatency) / 1000.0;
+        inputs.frameId = frameCount;
+    }
+}
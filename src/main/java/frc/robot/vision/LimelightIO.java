@@ -0,0 +1,60 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+/**
+ * Access to the Limelight for {@link Limelight}. <br/>
+ *
+ * {@link LimelightIOReal} reads the "limelight" NetworkTables table, in simulation as well as on the robot, and the
+ * interface's own no-op methods are used for replay, where the inputs are filled in from a log instead.
+ */
+public interface LimelightIO {
+
+    /**
+     * Values read from the Limelight each loop. Every field is logged, and set from the log during replay. <br/>
+     *
+     * The target values, latency and capture time all come from the newest frame received.
+     */
+    public static class LimelightIOInputs {
+        /** "tv", 1 if the Limelight has a target. */
+        public double targetValid;
+
+        /** "tx" and "ty" in degrees, and "ta" in percent of the image. */
+        public double horizontalOffset;
+        public double verticalOffset;
+        public double targetArea;
+
+        /** "tl", the pipeline latency in milliseconds. */
+        public double pipelineLatency;
+
+        /** "camMode", 0 for vision, 1 for driver camera. */
+        public double camMode;
+
+        /** "cam-tran": X, Y, Z, Pitch, Yaw, Roll, or all zeros if not published. */
+        public final double[] camTran = new double[6];
+
+        /** FPGA time in seconds at which the newest frame's image was captured. */
+        public double captureTimestamp;
+
+        /** Frames received since the last loop. More than one means frames were skipped, none means nothing new. */
+        public int framesReceived;
+
+        /** Counts frames received, so changes once per new frame. 0 until the first frame. */
+        public long frameId;
+
+        /** Changes when "cam-tran" is republished. */
+        public long camTranId;
+    }
+
+    /**
+     * Read the latest values from the Limelight.
+     */
+    public default void updateInputs(LimelightIOInputs inputs) {}
+
+    /**
+     * @param mode 0 for vision, 1 for driver camera
+     */
+    public default void setCamMode(int mode) {}
+}
@@ -0,0 +1,110 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableValue;
+import frc.robot.telemetry.HalCallCounter;
+
+import static frc.robot.Constants.VisionConstants.*;
+
+/**
+ * The Limelight's NetworkTables entries. <br/>
+ *
+ * Frames are taken as they arrive, by a listener on the targeting entries, instead of polling the entries each loop.
+ * The listener captures every targeting value together with its NetworkTables timestamp into a
+ * {@link LimelightFrameBuffer}, and each loop takes the newest frame from it, so a frame's values always belong
+ * together and the robot knows exactly how old they are.
+ */
+public class LimelightIOReal implements LimelightIO {
+
+    /** Position used when the limelight hasn't published "cam-tran". */
+    private static final double[] DEFAULT_POSITION = new double[6];
+
+    private NetworkTable table;
+    private NetworkTableEntry targets;
+    private NetworkTableEntry horizontalOffset;
+    private NetworkTableEntry verticalOffset;
+    private NetworkTableEntry targetArea;
+    private NetworkTableEntry camMode;
+    private NetworkTableEntry robotPosition3D;
+    private NetworkTableEntry latency;
+
+    private final LimelightFrameBuffer frames = new LimelightFrameBuffer();
+
+    public LimelightIOReal() {
+        this(NetworkTableInstance.getDefault());
+    }
+
+    /**
+     * @param instance where the Limelight publishes, such as a local instance standing in for the robot's server
+     */
+    public LimelightIOReal(NetworkTableInstance instance) {
+        table = instance.getTable("limelight");
+        targets = table.getEntry("tv");
+        horizontalOffset = table.getEntry("tx");
+        verticalOffset = table.getEntry("ty");
+        targetArea = table.getEntry("ta");
+        camMode = table.getEntry("camMode");
+        robotPosition3D = table.getEntry("cam-tran");
+        latency = table.getEntry("tl");
+
+        // Runs on the NetworkTables listener thread. Local changes are included so a stand-in publishing to the same
+        // instance, as in simulation, is heard too; this class only ever writes "camMode", which is ignored
+        table.addEntryListener((changedTable, key, entry, value, flags) -> {
+            if (isTargetingKey(key)) {
+                recordFrame(value);
+            }
+        }, EntryListenerFlags.kNew | EntryListenerFlags.kUpdate | EntryListenerFlags.kLocal);
+    }
+
+    private static boolean isTargetingKey(String key) {
+        return key.equals("tl") || key.equals("tv") || key.equals("tx") || key.equals("ty") || key.equals("ta");
+    }
+
+    /**
+     * Capture every targeting value as of this update.
+     */
+    private void recordFrame(NetworkTableValue value) {
+        frames.record(
+            value.getTime() / 1e6,
+            targets.getDouble(0.0),
+            horizontalOffset.getDouble(0.0),
+            verticalOffset.getDouble(0.0),
+            targetArea.getDouble(0.0),
+            latency.getDouble(0.0)
+        );
+        HalCallCounter.add(5);
+    }
+
+    @Override
+    public void updateInputs(LimelightIOInputs inputs) {
+        frames.drain(inputs, LIMELIGHT_CAPTURE_LATENCY);
+        inputs.camMode = camMode.getDouble(1);
+
+        // Only copy "cam-tran" when it changes, since reading an array allocates
+        long camTranId = robotPosition3D.getLastChange();
+        HalCallCounter.add(2);
+        if (camTranId != inputs.camTranId) {
+            inputs.camTranId = camTranId;
+            double[] camTran = robotPosition3D.getDoubleArray(DEFAULT_POSITION);
+            HalCallCounter.add(1);
+            if (camTran.length >= 6) {
+                System.arraycopy(camTran, 0, inputs.camTran, 0, 6);
+            } else {
+                System.arraycopy(DEFAULT_POSITION, 0, inputs.camTran, 0, 6);
+            }
+        }
+    }
+
+    @Override
+    public void setCamMode(int mode) {
+        camMode.setNumber(mode);
+        HalCallCounter.add(1);
+    }
+}
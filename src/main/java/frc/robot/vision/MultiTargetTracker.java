@@ -0,0 +1,324 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import static frc.robot.Constants.VisionConstants.*;
+
+/**
+ * Follows objects on the field from frame to frame, giving each one an ID that stays the same for as long as it
+ * keeps being seen. <br/>
+ *
+ * Each track has a constant velocity Kalman filter, run separately on x and y, that smooths its position and
+ * estimates its velocity. Each frame the tracks are predicted forward to the frame's capture time, and the Hungarian
+ * algorithm pairs them with the frame's detections so the total squared distance is smallest. Pairs further apart
+ * than {@link frc.robot.Constants.VisionConstants#CARGO_GATE_DISTANCE} are not allowed. Detections left over start new
+ * tracks, and tracks that go unseen for {@link frc.robot.Constants.VisionConstants#CARGO_TRACK_TIMEOUT} are dropped.
+ * <br/>
+ *
+ * Tracks are stored in parallel arrays allocated up front and kept packed at the front, so a frame allocates nothing.
+ * A track's index changes when another track is dropped; its ID doesn't.
+ */
+public class MultiTargetTracker {
+    /** Cost of a pair outside the gate. Large enough that the assignment only uses one when it has to, then discarded. */
+    private static final double GATED_COST = 1e9;
+
+    private final int maxTracks;
+    private final int maxDetections;
+
+    private final int[] id;
+    private final double[] x;
+    private final double[] y;
+    private final double[] velocityX;
+    private final double[] velocityY;
+
+    /**
+     * Covariance of [position, velocity]. X and Y see the same measurements and noise, so they share one.
+     * Stored as its three distinct entries.
+     */
+    private final double[] positionVariance;
+    private final double[] covariance;
+    private final double[] velocityVariance;
+
+    private final double[] lastSeen;
+    private final int[] hits;
+
+    private int trackCount = 0;
+    private int nextId = 1;
+
+    /** Time the tracks are predicted to, or NaN before the first frame. */
+    private double time = Double.NaN;
+
+    private final HungarianAssignment assignment;
+    private final boolean[] detectionUsed;
+
+    private final double measurementVariance = CARGO_POSITION_STD_DEV * CARGO_POSITION_STD_DEV;
+    private final double accelerationVariance = CARGO_ACCELERATION_STD_DEV * CARGO_ACCELERATION_STD_DEV;
+    private final double gateSquared = CARGO_GATE_DISTANCE * CARGO_GATE_DISTANCE;
+
+    /**
+     * @param maxTracks most objects tracked at once. New objects are ignored while this many are tracked.
+     * @param maxDetections most detections used from one frame
+     */
+    public MultiTargetTracker(int maxTracks, int maxDetections) {
+        this.maxTracks = maxTracks;
+        this.maxDetections = maxDetections;
+
+        id = new int[maxTracks];
+        x = new double[maxTracks];
+        y = new double[maxTracks];
+        velocityX = new double[maxTracks];
+        velocityY = new double[maxTracks];
+        positionVariance = new double[maxTracks];
+        covariance = new double[maxTracks];
+        velocityVariance = new double[maxTracks];
+        lastSeen = new double[maxTracks];
+        hits = new int[maxTracks];
+
+        assignment = new HungarianAssignment(Math.max(maxTracks, maxDetections));
+        detectionUsed = new boolean[maxDetections];
+    }
+
+    /**
+     * Add a frame's detections.
+     *
+     * @param timestamp time in seconds the frame was captured. Frames older than the last one are ignored.
+     * @param detectionX field x of each detection in meters
+     * @param detectionY field y of each detection in meters
+     * @param detectionCount how many entries of the arrays are detections
+     */
+    public void update(double timestamp, double[] detectionX, double[] detectionY, int detectionCount) {
+        if (timestamp < time) {
+            return;
+        }
+
+        if (!Double.isNaN(time)) {
+            predict(timestamp - time);
+        }
+        time = timestamp;
+
+        int detections = Math.min(detectionCount, maxDetections);
+        associate(detectionX, detectionY, detections);
+
+        // Start tracks for whatever wasn't matched
+        for (int j = 0; j < detections; j++) {
+            if (!detectionUsed[j] && trackCount < maxTracks) {
+                startTrack(detectionX[j], detectionY[j]);
+            }
+        }
+
+        // Drop tracks that haven't been seen in a while, moving the last track into the gap
+        int i = 0;
+        while (i < trackCount) {
+            if (time - lastSeen[i] > CARGO_TRACK_TIMEOUT) {
+                removeTrack(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Forget every track.
+     */
+    public void clear() {
+        trackCount = 0;
+        time = Double.NaN;
+    }
+
+    private void predict(double dt) {
+        double dt2 = dt * dt;
+        double q00 = accelerationVariance * dt2 * dt2 / 4;
+        double q01 = accelerationVariance * dt2 * dt / 2;
+        double q11 = accelerationVariance * dt2;
+
+        for (int i = 0; i < trackCount; i++) {
+            x[i] += velocityX[i] * dt;
+            y[i] += velocityY[i] * dt;
+
+            double p00 = positionVariance[i];
+            double p01 = covariance[i];
+            double p11 = velocityVariance[i];
+            positionVariance[i] = p00 + 2 * dt * p01 + dt2 * p11 + q00;
+            covariance[i] = p01 + dt * p11 + q01;
+            velocityVariance[i] = p11 + q11;
+        }
+    }
+
+    private void associate(double[] detectionX, double[] detectionY, int detections) {
+        for (int j = 0; j < detections; j++) {
+            detectionUsed[j] = false;
+        }
+        if (trackCount == 0 || detections == 0) {
+            return;
+        }
+
+        // Square the problem with zero cost padding, so surplus tracks or detections are left unassigned
+        int size = Math.max(trackCount, detections);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                double cost = 0;
+                if (i < trackCount && j < detections) {
+                    cost = distanceSquared(i, detectionX[j], detectionY[j]);
+                    if (cost > gateSquared) {
+                        cost = GATED_COST;
+                    }
+                }
+                assignment.setCost(i, j, cost);
+            }
+        }
+
+        int[] trackDetection = assignment.solve(size);
+        for (int i = 0; i < trackCount; i++) {
+            int j = trackDetection[i];
+            if (j < detections && distanceSquared(i, detectionX[j], detectionY[j]) <= gateSquared) {
+                correct(i, detectionX[j], detectionY[j]);
+                detectionUsed[j] = true;
+            }
+        }
+    }
+
+    private double distanceSquared(int track, double detectionX, double detectionY) {
+        double dx = detectionX - x[track];
+        double dy = detectionY - y[track];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Kalman update with a position measurement.
+     */
+    private void correct(int i, double measuredX, double measuredY) {
+        double p00 = positionVariance[i];
+        double p01 = covariance[i];
+        double p11 = velocityVariance[i];
+
+        double innovationVariance = p00 + measurementVariance;
+        double positionGain = p00 / innovationVariance;
+        double velocityGain = p01 / innovationVariance;
+
+        double errorX = measuredX - x[i];
+        double errorY = measuredY - y[i];
+        x[i] += positionGain * errorX;
+        y[i] += positionGain * errorY;
+        velocityX[i] += velocityGain * errorX;
+        velocityY[i] += velocityGain * errorY;
+
+        positionVariance[i] = (1 - positionGain) * p00;
+        covariance[i] = (1 - positionGain) * p01;
+        velocityVariance[i] = p11 - velocityGain * p01;
+
+        lastSeen[i] = time;
+        hits[i]++;
+    }
+
+    private void startTrack(double startX, double startY) {
+        int i = trackCount++;
+        id[i] = nextId++;
+        x[i] = startX;
+        y[i] = startY;
+        velocityX[i] = 0;
+        velocityY[i] = 0;
+
+        // Velocity is unknown until the next frame, so start with a spread around standing still
+        positionVariance[i] = measurementVariance;
+        covariance[i] = 0;
+        velocityVariance[i] = gateSquared;
+
+        lastSeen[i] = time;
+        hits[i] = 1;
+    }
+
+    private void removeTrack(int i) {
+        int last = --trackCount;
+        id[i] = id[last];
+        x[i] = x[last];
+        y[i] = y[last];
+        velocityX[i] = velocityX[last];
+        velocityY[i] = velocityY[last];
+        positionVariance[i] = positionVariance[last];
+        covariance[i] = covariance[last];
+        velocityVariance[i] = velocityVariance[last];
+        lastSeen[i] = lastSeen[last];
+        hits[i] = hits[last];
+    }
+
+    /**
+     * @return number of tracks. Every accessor below takes an index from 0 up to this.
+     */
+    public int getTrackCount() {
+        return trackCount;
+    }
+
+    /**
+     * @return time in seconds of the last frame, which the tracks' positions are for
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return index of the track with the ID, or -1 if it is no longer tracked
+     */
+    public int indexOf(int trackId) {
+        for (int i = 0; i < trackCount; i++) {
+            if (id[i] == trackId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getId(int index) {
+        return id[index];
+    }
+
+    /**
+     * @return whether the track has been seen in enough frames to be trusted
+     */
+    public boolean isConfirmed(int index) {
+        return hits[index] >= CARGO_CONFIRM_HITS;
+    }
+
+    /**
+     * @return smoothed field x in meters, as of {@link #getTime()}
+     */
+    public double getX(int index) {
+        return x[index];
+    }
+
+    /**
+     * @return smoothed field y in meters, as of {@link #getTime()}
+     */
+    public double getY(int index) {
+        return y[index];
+    }
+
+    /**
+     * @return field x velocity in meters per second
+     */
+    public double getVelocityX(int index) {
+        return velocityX[index];
+    }
+
+    /**
+     * @return field y velocity in meters per second
+     */
+    public double getVelocityY(int index) {
+        return velocityY[index];
+    }
+
+    /**
+     * @return standard deviation of the position in meters
+     */
+    public double getPositionStdDev(int index) {
+        return Math.sqrt(positionVariance[index]);
+    }
+
+    /**
+     * @return time in seconds the track was last seen
+     */
+    public double getLastSeen(int index) {
+        return lastSeen[index];
+    }
+}
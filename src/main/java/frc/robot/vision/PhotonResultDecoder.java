@@ -0,0 +1,60 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import java.util.List;
+
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+
+import edu.wpi.first.math.geometry.Transform2d;
+import frc.robot.vision.PhotonVisionIO.PhotonVisionIOInputs;
+
+import static frc.robot.vision.PhotonVisionIO.PhotonVisionIOInputs.MAX_TARGETS;
+
+/**
+ * Turns the bytes PhotonVision publishes into {@link PhotonVisionIOInputs}. <br/>
+ *
+ * Does the same work as PhotonCamera.getLatestResult(), but decodes into one result object that is kept between
+ * frames, then copies every target into the inputs' arrays.
+ */
+class PhotonResultDecoder {
+    private final PhotonPipelineResult result = new PhotonPipelineResult();
+
+    /**
+     * @param data the serialized result, from the camera's "rawBytes" entry
+     * @param publishTime time in seconds the result was published, from the entry's last change
+     * @param inputs filled in with the result
+     */
+    void decode(byte[] data, double publishTime, PhotonVisionIOInputs inputs) {
+        // An empty entry means PhotonVision hasn't published yet
+        if (data.length == 0) {
+            inputs.targetCount = 0;
+            inputs.latency = 0;
+            inputs.timestamp = publishTime;
+            return;
+        }
+
+        result.createFromPacket(new Packet(data));
+
+        inputs.latency = result.getLatencyMillis();
+        inputs.timestamp = publishTime - inputs.latency / 1000.0;
+
+        List<PhotonTrackedTarget> targets = result.getTargets();
+        inputs.targetCount = Math.min(targets.size(), MAX_TARGETS);
+        for (int i = 0; i < inputs.targetCount; i++) {
+            PhotonTrackedTarget target = targets.get(i);
+            Transform2d cameraToTarget = target.getCameraToTarget();
+            inputs.yaw[i] = target.getYaw();
+            inputs.pitch[i] = target.getPitch();
+            inputs.area[i] = target.getArea();
+            inputs.skew[i] = target.getSkew();
+            inputs.targetX[i] = cameraToTarget.getX();
+            inputs.targetY[i] = cameraToTarget.getY();
+            inputs.targetRotation[i] = cameraToTarget.getRotation().getDegrees();
+        }
+    }
+}
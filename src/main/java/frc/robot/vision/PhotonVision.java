@@ -4,18 +4,24 @@
 
 package frc.robot.vision;
 
-import org.photonvision.PhotonCamera;
-import org.photonvision.targeting.PhotonPipelineResult;
-import org.photonvision.targeting.PhotonTrackedTarget;
-
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.networktables.NetworkTableInstance;
-import edu.wpi.first.util.sendable.Sendable;
 import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.InputSnapshot;
+import frc.robot.telemetry.SignalLogger;
+import frc.robot.vision.PhotonVisionIO.PhotonVisionIOInputs;
 
 
-/** Add your docs here. */
-public class PhotonVision implements Sendable {
+/**
+ * The PhotonVision camera, which finds cargo. <br/>
+ *
+ * Its result is read once at the start of each loop by the {@link InputSnapshot}, before anything uses it, so every
+ * caller in a loop sees the same frame. The timestamp, latency and every target come from that one result.
+ */
+public class PhotonVision extends SubsystemBase {
 
     public enum PipelineMode {
         BLUE(5), 
@@ -32,11 +38,19 @@ public class PhotonVision implements Sendable {
     private PipelineMode pipeline;
     
 
-    //Microsoft Camera
-    private PhotonCamera msCam;
+    private final PhotonVisionIO io;
+    private final PhotonVisionIOInputs inputs = new PhotonVisionIOInputs();
+
+    /** Transforms to each target, built the first time they're asked for in a frame, and the frame they're from. */
+    private final Transform2d[] transforms = new Transform2d[PhotonVisionIOInputs.MAX_TARGETS];
+    private final long[] transformFrames = new long[PhotonVisionIOInputs.MAX_TARGETS];
 
-    public PhotonVision(String table) {
-        msCam = new PhotonCamera(table);
+    /**
+     * @param io the camera, or nothing when replaying a log
+     */
+    public PhotonVision(PhotonVisionIO io) {
+        this.io = io;
+        InputSnapshot.getInstance().register(() -> io.updateInputs(inputs));
 
         // Initialize the pipeline mode depending on which alliance
         boolean redAlliance = NetworkTableInstance.getDefault().getTable("FMSInfo").getEntry("IsRedAlliance").getBoolean(true);
@@ -45,6 +59,9 @@ public class PhotonVision implements Sendable {
         } else {
             setPipeline(PipelineMode.BLUE);
         }
+
+        // Logged signals
+        SignalLogger.getInstance().addInputs("PhotonVision", inputs);
     }
 
     @Override
@@ -68,7 +85,7 @@ public class PhotonVision implements Sendable {
      */
     public void setDriverMode(boolean mode) {
         driverMode = mode;
-        msCam.setDriverMode(driverMode);
+        io.setDriverMode(driverMode);
     }
 
     /**
@@ -85,7 +102,7 @@ public class PhotonVision implements Sendable {
      */
     public void setPipeline(PipelineMode mode) {
         this.pipeline = mode;
-        msCam.setPipelineIndex(pipeline.pipelineIndex);
+        io.setPipelineIndex(pipeline.pipelineIndex);
     }
 
     /**
@@ -101,8 +118,7 @@ public class PhotonVision implements Sendable {
      * @return True if targets detected; False if no targets detected
      */
     public boolean hasTargets() {
-        PhotonPipelineResult result = msCam.getLatestResult();
-        return result.hasTargets();
+        return inputs.targetCount > 0;
     }
 
     /**
@@ -110,11 +126,8 @@ public class PhotonVision implements Sendable {
      * @return Angle measure of offset
      */
     public double getHorizontalOffset() {
-        PhotonPipelineResult result = msCam.getLatestResult();
-        
-        if(result.hasTargets()) {
-            PhotonTrackedTarget target = result.getBestTarget();
-            return target.getYaw();
+        if (hasTargets()) {
+            return inputs.yaw[0];
         }
 
        return Double.NaN;
@@ -125,11 +138,8 @@ public class PhotonVision implements Sendable {
      * @return Angle measure of offset 
      */
     public double getVerticalOffset() {
-        PhotonPipelineResult result = msCam.getLatestResult();
-
-        if (result.hasTargets()) {
-            PhotonTrackedTarget target = result.getBestTarget();
-            return target.getPitch();   
+        if (hasTargets()) {
+            return inputs.pitch[0];
         }
 
         return Double.NaN;
@@ -140,14 +150,112 @@ public class PhotonVision implements Sendable {
      * @return Trajectory
      */
     public Transform2d transformToTarget() {
-        PhotonPipelineResult result = msCam.getLatestResult();
-        
-        if (result.hasTargets()) {
-            PhotonTrackedTarget target = result.getBestTarget();
-            return target.getCameraToTarget();
+        if (hasTargets()) {
+            return transformToTarget(0);
         }
         
         return null;
     }
-    
-}
\ No newline at end of file
+
+    /**
+     * Gets the time at which the image for the current result was captured.
+     * @return FPGA timestamp in seconds
+     */
+    public double getCaptureTimestamp() {
+        return inputs.timestamp;
+    }
+
+    /**
+     * Gets the time PhotonVision took to process the current result.
+     * @return pipeline latency in milliseconds
+     */
+    public double getLatency() {
+        return inputs.latency;
+    }
+
+    /**
+     * Identifies the result the current values came from.
+     * @return an ID that changes once per new result
+     */
+    public long getFrameId() {
+        return inputs.frameId;
+    }
+
+    /**
+     * Gets how many targets are in the current result. Every target accessor below takes an index from 0 up to this,
+     * with 0 the best target.
+     * @return number of targets, at most {@link PhotonVisionIOInputs#MAX_TARGETS}
+     */
+    public int getTargetCount() {
+        return inputs.targetCount;
+    }
+
+    /**
+     * @param index which target, 0 for the best
+     * @return horizontal offset from crosshair to the target in degrees
+     */
+    public double getTargetYaw(int index) {
+        return inputs.yaw[index];
+    }
+
+    /**
+     * @param index which target, 0 for the best
+     * @return vertical offset from crosshair to the target in degrees
+     */
+    public double getTargetPitch(int index) {
+        return inputs.pitch[index];
+    }
+
+    /**
+     * @param index which target, 0 for the best
+     * @return percent of the image the target covers
+     */
+    public double getTargetArea(int index) {
+        return inputs.area[index];
+    }
+
+    /**
+     * @param index which target, 0 for the best
+     * @return rotation of the target's bounding box in degrees
+     */
+    public double getTargetSkew(int index) {
+        return inputs.skew[index];
+    }
+
+    /**
+     * @param index which target, 0 for the best
+     * @return distance forward from the camera to the target in meters
+     */
+    public double getTargetX(int index) {
+        return inputs.targetX[index];
+    }
+
+    /**
+     * @param index which target, 0 for the best
+     * @return distance left from the camera to the target in meters
+     */
+    public double getTargetY(int index) {
+        return inputs.targetY[index];
+    }
+
+    /**
+     * @param index which target, 0 for the best
+     * @return rotation of the target relative to the camera in degrees, counterclockwise positive
+     */
+    public double getTargetRotation(int index) {
+        return inputs.targetRotation[index];
+    }
+
+    /**
+     * Only builds a new transform once per frame, however many times it's called.
+     * @param index which target, 0 for the best
+     * @return transform from the camera to the target
+     */
+    public Transform2d transformToTarget(int index) {
+        if (transforms[index] == null || transformFrames[index] != inputs.frameId) {
+            transforms[index] = new Transform2d(new Translation2d(inputs.targetX[index], inputs.targetY[index]), Rotation2d.fromDegrees(inputs.targetRotation[index]));
+            transformFrames[index] = inputs.frameId;
+        }
+        return transforms[index];
+    }
+}
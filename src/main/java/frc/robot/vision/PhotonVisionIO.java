@@ -0,0 +1,58 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+/**
+ * Access to a PhotonVision camera for {@link PhotonVision}. <br/>
+ *
+ * {@link PhotonVisionIOReal} reads the camera's results, in simulation as well as on the robot, and the interface's
+ * own no-op methods are used for replay, where the inputs are filled in from a log instead.
+ */
+public interface PhotonVisionIO {
+
+    /**
+     * The camera's latest result, with every target it found. Every field is logged, and set from the log during replay. <br/>
+     *
+     * The arrays are reused, so only the first {@link #targetCount} entries belong to the current result.
+     * Targets are in PhotonVision's sort order, best first.
+     */
+    public static class PhotonVisionIOInputs {
+        /** Most targets kept from one result. */
+        public static final int MAX_TARGETS = 20;
+
+        public int targetCount;
+
+        /** Offset from the crosshair to each target in degrees. */
+        public final double[] yaw = new double[MAX_TARGETS];
+        public final double[] pitch = new double[MAX_TARGETS];
+
+        /** Percent of the image each target covers. */
+        public final double[] area = new double[MAX_TARGETS];
+        public final double[] skew = new double[MAX_TARGETS];
+
+        /** Camera to target transforms, in meters and degrees. */
+        public final double[] targetX = new double[MAX_TARGETS];
+        public final double[] targetY = new double[MAX_TARGETS];
+        public final double[] targetRotation = new double[MAX_TARGETS];
+
+        /** Pipeline latency in milliseconds. */
+        public double latency;
+
+        /** FPGA time in seconds at which the image was captured. */
+        public double timestamp;
+
+        /** Changes once per new result. */
+        public long frameId;
+    }
+
+    /**
+     * Read the latest result from the camera.
+     */
+    public default void updateInputs(PhotonVisionIOInputs inputs) {}
+
+    public default void setDriverMode(boolean driverMode) {}
+
+    public default void setPipelineIndex(int index) {}
+}
@@ -0,0 +1,66 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import org.photonvision.PhotonCamera;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import frc.robot.telemetry.HalCallCounter;
+
+/**
+ * A camera running PhotonVision. <br/>
+ *
+ * Reads the serialized result straight from NetworkTables, and only decodes it when a new one is published,
+ * so a loop costs one timestamp check when the camera has nothing new.
+ */
+public class PhotonVisionIOReal implements PhotonVisionIO {
+
+    /** Returned by NetworkTables when nothing has been published. */
+    private static final byte[] EMPTY = new byte[0];
+
+    //Microsoft Camera
+    private PhotonCamera msCam;
+
+    /** The entry PhotonVision publishes each serialized result to. */
+    private NetworkTableEntry rawBytes;
+
+    private final PhotonResultDecoder decoder = new PhotonResultDecoder();
+
+    /**
+     * @param table the camera's name in PhotonVision
+     */
+    public PhotonVisionIOReal(String table) {
+        msCam = new PhotonCamera(table);
+        rawBytes = NetworkTableInstance.getDefault().getTable("photonvision").getSubTable(table).getEntry("rawBytes");
+    }
+
+    @Override
+    public void updateInputs(PhotonVisionIOInputs inputs) {
+        // Only decode when PhotonVision has published a new result
+        long frameId = rawBytes.getLastChange();
+        HalCallCounter.add(1);
+        if (frameId == inputs.frameId) {
+            return;
+        }
+        inputs.frameId = frameId;
+
+        // The last change is in microseconds, on the same clock as the FPGA timestamp
+        decoder.decode(rawBytes.getRaw(EMPTY), frameId / 1e6, inputs);
+        HalCallCounter.add(1);
+    }
+
+    @Override
+    public void setDriverMode(boolean driverMode) {
+        msCam.setDriverMode(driverMode);
+        HalCallCounter.add(1);
+    }
+
+    @Override
+    public void setPipelineIndex(int index) {
+        msCam.setPipelineIndex(index);
+        HalCallCounter.add(1);
+    }
+}
@@ -0,0 +1,80 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+
+/**
+ * Runs each autonomous routine on the simulated robot, stepping the clock a loop at a time the same way as
+ * {@link frc.robot.simulation.AutoSimulation}, and checks it finishes within the autonomous period.
+ */
+public class AutonomousTest {
+  /** Length of the autonomous period in seconds. */
+  private static final double AUTO_LENGTH = 15.0;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+
+    // Only advance time when told to
+    SimHooks.pauseTiming();
+
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(true);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+  }
+
+  /** The robot built by the current test, closed after it so the next test starts from nothing. */
+  private Robot robot;
+
+  @After
+  public void closeRobot() {
+    if (robot != null) {
+      robot.close();
+      robot = null;
+    }
+  }
+
+  @Test
+  public void taxiFinishes() {
+    assertFinishes(RobotContainer.TAXI_AUTO);
+  }
+
+  @Test
+  public void shootThreeStartFinishes() {
+    assertFinishes(RobotContainer.SHOOT_THREE_START_AUTO);
+  }
+
+  private void assertFinishes(String autoName) {
+    robot = new Robot(RobotMode.SIM);
+    robot.robotInit();
+
+    Command auto = robot.getRobotContainer().getAutonomousCommand(autoName);
+    assertNotNull("No autonomous routine named " + autoName, auto);
+
+    double start = Timer.getFPGATimestamp();
+    auto.schedule();
+    while (auto.isScheduled() && Timer.getFPGATimestamp() - start < AUTO_LENGTH) {
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      robot.runRobotPeriodic();
+    }
+
+    assertFalse(autoName + " was still running at the end of autonomous", auto.isScheduled());
+  }
+}
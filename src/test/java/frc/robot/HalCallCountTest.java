@@ -0,0 +1,151 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static frc.robot.Constants.VisionConstants.PHOTON_CAMERA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.subsystems.ClimbIO;
+import frc.robot.subsystems.ClimbIOReal;
+import frc.robot.subsystems.ClimbSubsystem;
+import frc.robot.subsystems.DriveIO;
+import frc.robot.subsystems.DriveIOReal;
+import frc.robot.subsystems.DriveSystem;
+import frc.robot.subsystems.IntakeIO;
+import frc.robot.subsystems.IntakeIOReal;
+import frc.robot.subsystems.IntakeSubsystem;
+import frc.robot.subsystems.OuttakeIO;
+import frc.robot.subsystems.OuttakeIOReal;
+import frc.robot.subsystems.OuttakeSubsystem;
+import frc.robot.subsystems.ShotMap;
+import frc.robot.vision.Limelight;
+import frc.robot.vision.LimelightIO;
+import frc.robot.vision.LimelightIOReal;
+import frc.robot.vision.PhotonVision;
+import frc.robot.vision.PhotonVisionIO;
+import frc.robot.vision.PhotonVisionIOReal;
+
+/**
+ * Runs the subsystems with the real IO on the desktop simulator, where the HAL, CTRE and REV libraries all have
+ * simulated devices, and counts every call the subsystems make into their IO each loop in teleop with nothing
+ * scheduled. The IO is the only way to the hardware, so this counts the trips to it without relying on the counts the
+ * IO keeps itself. <br/>
+ *
+ * The calls are counted twice: once with nothing else reading, and once with every value read many more times per
+ * loop, the way it was when each reader went to the hardware. Each IO has to be read exactly once per loop both times,
+ * and nothing else about the calls may change.
+ */
+public class HalCallCountTest {
+  /** Loops to run before counting, for the outputs to settle. */
+  private static final int WARMUP_LOOPS = 50;
+
+  /** Loops counted each time. */
+  private static final int MEASURED_LOOPS = 50;
+
+  /** How many times each value is read per loop when adding readers. */
+  private static final int EXTRA_READS = 10;
+
+  /** The IO interfaces, whose updateInputs has to be called exactly once per loop. */
+  private static final Class<?>[] IO_TYPES = {
+    DriveIO.class, OuttakeIO.class, IntakeIO.class, ClimbIO.class, LimelightIO.class, PhotonVisionIO.class,
+  };
+
+  /** Calls into the IO by interface and method name, since the last loop. */
+  private static final Map<String, Integer> calls = new TreeMap<>();
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+
+    // Only advance time when told to, so the odometry thread samples the same number of times every loop
+    SimHooks.pauseTiming();
+
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+  }
+
+  @Test
+  public void ioCallsDontDependOnReaders() {
+    DriveSystem driveSystem = new DriveSystem(counting(DriveIO.class, new DriveIOReal()));
+    OuttakeSubsystem outtake = new OuttakeSubsystem(counting(OuttakeIO.class, new OuttakeIOReal()), new ShotMap());
+    new IntakeSubsystem(counting(IntakeIO.class, new IntakeIOReal()));
+    new ClimbSubsystem(counting(ClimbIO.class, new ClimbIOReal()), driveSystem::getPitch);
+    Limelight limelight = new Limelight(counting(LimelightIO.class, new LimelightIOReal()));
+    new PhotonVision(counting(PhotonVisionIO.class, new PhotonVisionIOReal(PHOTON_CAMERA)));
+
+    count(() -> {}, WARMUP_LOOPS);
+    List<Map<String, Integer>> alone = count(() -> {}, MEASURED_LOOPS);
+
+    List<Map<String, Integer>> read = count(() -> {
+      for (int i = 0; i < EXTRA_READS; i++) {
+        driveSystem.getGyro();
+        driveSystem.getPitch();
+        driveSystem.getRotation();
+        driveSystem.getPose();
+        outtake.getRPM();
+        outtake.upToSpeed();
+        limelight.hasTargets();
+        limelight.getHorizontalOffset();
+        limelight.getHubDistance();
+      }
+    }, MEASURED_LOOPS);
+
+    Map<String, Integer> perLoop = alone.get(0);
+    for (Class<?> type : IO_TYPES) {
+      String reads = type.getSimpleName() + ".updateInputs";
+      assertEquals(reads + " in " + perLoop, Integer.valueOf(1), perLoop.get(reads));
+    }
+    for (int loop = 0; loop < MEASURED_LOOPS; loop++) {
+      assertEquals("IO calls in loop " + loop, perLoop, alone.get(loop));
+      assertEquals("IO calls in loop " + loop + " with extra readers", perLoop, read.get(loop));
+    }
+  }
+
+  /**
+   * Wrap an IO so every call to it is counted in {@link #calls}.
+   */
+  private static <T> T counting(Class<T> type, T io) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+      calls.merge(type.getSimpleName() + "." + method.getName(), 1, Integer::sum);
+      return method.invoke(io, args);
+    }));
+  }
+
+  /**
+   * Run loops the way the robot does, reading the inputs and then running the subsystems, calling the readers in
+   * between.
+   *
+   * @return the IO calls made in each loop
+   */
+  private static List<Map<String, Integer>> count(Runnable readers, int loops) {
+    List<Map<String, Integer>> counts = new ArrayList<>();
+    for (int loop = 0; loop < loops; loop++) {
+      calls.clear();
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      InputSnapshot.getInstance().update();
+      readers.run();
+      CommandScheduler.getInstance().run();
+      counts.add(new TreeMap<>(calls));
+    }
+    return counts;
+  }
+}
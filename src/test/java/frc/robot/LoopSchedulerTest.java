@@ -0,0 +1,104 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.RunCommand;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.LoopScheduler.Priority;
+
+/**
+ * Checks what the loop scheduler takes over from the command scheduler when it runs a subsystem as a task, and that
+ * the loop's budget counts the mode's periodic function along with the rest of the loop. The loop is timed on a fake
+ * clock, so only the time the test adds is counted.
+ */
+public class LoopSchedulerTest {
+  /** Milliseconds the slow teleopPeriodic() takes. */
+  private static final double MODE_PERIODIC_MILLIS = 10.0;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+    SimHooks.pauseTiming();
+
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+  }
+
+  @Test
+  public void taskRunsBothPeriodics() {
+    CountingSubsystem subsystem = new CountingSubsystem();
+    LoopScheduler scheduler = new LoopScheduler(Double.POSITIVE_INFINITY);
+    scheduler.addSubsystem(subsystem, Priority.NORMAL);
+
+    scheduler.startLoop();
+    scheduler.run();
+
+    // Once by the task, and not again by the command scheduler
+    assertEquals(1, subsystem.periodics);
+    assertEquals(1, subsystem.simulationPeriodics);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void subsystemWithDefaultCommandStaysHighPriority() {
+    CountingSubsystem subsystem = new CountingSubsystem();
+    subsystem.setDefaultCommand(new RunCommand(() -> {}, subsystem));
+    try {
+      new LoopScheduler(Double.POSITIVE_INFINITY).addSubsystem(subsystem, Priority.LOW);
+    } finally {
+      CommandScheduler.getInstance().unregisterSubsystem(subsystem);
+    }
+  }
+
+  @Test
+  public void budgetCountsModePeriodic() {
+    long[] clockNanos = { 0 };
+    LoopScheduler.setInstance(new LoopScheduler(LoopScheduler.LOOP_BUDGET, () -> clockNanos[0]));
+    Robot robot = new Robot(RobotMode.SIM) {
+      @Override
+      public void teleopPeriodic() {
+        clockNanos[0] += (long) (MODE_PERIODIC_MILLIS * 1e6);
+      }
+    };
+    robot.robotInit();
+
+    try {
+      for (int loop = 0; loop < 5; loop++) {
+        SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+        robot.runLoop();
+        assertEquals(MODE_PERIODIC_MILLIS / 1000, LoopScheduler.getInstance().getLoopTime(), 1e-9);
+      }
+    } finally {
+      robot.close();
+    }
+  }
+
+  private static class CountingSubsystem extends SubsystemBase {
+    int periodics = 0;
+    int simulationPeriodics = 0;
+
+    @Override
+    public void periodic() {
+      periodics++;
+    }
+
+    @Override
+    public void simulationPeriodic() {
+      simulationPeriodics++;
+    }
+  }
+}
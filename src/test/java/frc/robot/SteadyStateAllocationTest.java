@@ -0,0 +1,313 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static frc.robot.Constants.DriveConstants.ODOMETRY_PERIOD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.TreeMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.RunCommand;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import frc.robot.commands.Intake.Deploy;
+import frc.robot.commands.climb.HoldClimb;
+import frc.robot.commands.outtake.ShootAtDistance;
+import frc.robot.subsystems.ClimbIO;
+import frc.robot.subsystems.ClimbSubsystem;
+import frc.robot.subsystems.ClimbSynchronizer;
+import frc.robot.subsystems.DriveIO;
+import frc.robot.subsystems.DriveSystem;
+import frc.robot.subsystems.FlywheelController;
+import frc.robot.subsystems.IntakeIO;
+import frc.robot.subsystems.IntakeSubsystem;
+import frc.robot.subsystems.OuttakeIO;
+import frc.robot.subsystems.OuttakeSubsystem;
+import frc.robot.subsystems.PoseEstimatorSubsystem;
+import frc.robot.subsystems.ShotMap;
+import frc.robot.subsystems.TimestampedPose;
+import frc.robot.vision.Limelight;
+import frc.robot.vision.LimelightIO;
+import frc.robot.vision.PhotonVision;
+import frc.robot.vision.PhotonVisionIO;
+
+/**
+ * Runs the code that runs every loop many times over and checks it allocates nothing once warmed up, so the garbage
+ * collector never has to pause the robot loop. The one exception is the pose {@link DriveSystem} publishes each loop
+ * for other threads to read, which has to be a new object every time. <br/>
+ *
+ * The robot loop runs through the command scheduler, with the Limelight seeing the hub in every frame so the pose
+ * estimator fuses vision each loop. The scheduler itself allocates a little every loop, naming each subsystem and
+ * command for its watchdog, so that loop is checked against itself with everything the robot's code does run twice.
+ * <br/>
+ *
+ * Allocations are counted with the JVM's per-thread allocated bytes, so only the test thread's allocations count.
+ */
+public class SteadyStateAllocationTest {
+  /** Loops to run before measuring, enough for the JIT compiler to compile the loop. */
+  private static final int WARMUP_LOOPS = 20000;
+
+  /** Loops measured in each attempt. */
+  private static final int MEASURED_LOOPS = 1000;
+
+  /** Attempts to measure, keeping the least, in case the JIT compiler swaps code out partway through one. */
+  private static final int ATTEMPTS = 5;
+
+  private static com.sun.management.ThreadMXBean threads;
+  private static long threadId;
+
+  /** Bytes reading the allocated bytes allocates itself, taken off every measurement. */
+  private static long measurementBytes;
+
+  /** Bytes in one {@link TimestampedPose}, which the drive allocates once per loop. */
+  private static long poseBytes;
+
+  /** Keeps the measured pose reachable so it can't be optimized away. */
+  private static volatile TimestampedPose publishedPose;
+
+  @BeforeClass
+  public static void initialize() {
+    assertTrue(HAL.initialize(500, 0));
+
+    // Only advance time when told to, so the scheduler's watchdog never times out and each loop is the same
+    SimHooks.pauseTiming();
+
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    threadId = Thread.currentThread().getId();
+
+    measurementBytes = Long.MAX_VALUE;
+    for (int i = 0; i < WARMUP_LOOPS; i++) {
+      long before = threads.getThreadAllocatedBytes(threadId);
+      measurementBytes = Math.min(measurementBytes, threads.getThreadAllocatedBytes(threadId) - before);
+    }
+
+    long before = threads.getThreadAllocatedBytes(threadId);
+    publishedPose = new TimestampedPose(0, 0, 0, 0);
+    poseBytes = threads.getThreadAllocatedBytes(threadId) - before - measurementBytes;
+  }
+
+  @Test
+  public void robotLoopDoesntAllocate() {
+    DriveSystem driveSystem = new DriveSystem(new StraightDriveIO());
+    OuttakeSubsystem outtake = new OuttakeSubsystem(new OuttakeIO() {}, new ShotMap(shotPoints()));
+    IntakeSubsystem intake = new IntakeSubsystem(new HomedIntakeIO());
+    ClimbSubsystem climb = new ClimbSubsystem(new ClimbIO() {}, driveSystem::getPitch);
+    Limelight limelight = new Limelight(new TargetLimelightIO());
+    PoseEstimatorSubsystem poseEstimator = new PoseEstimatorSubsystem(driveSystem, limelight);
+    Subsystem[] subsystems = { driveSystem, outtake, intake, climb, limelight, poseEstimator };
+
+    // Driving, shooting at the hub the Limelight sees, deploying the intake and holding the climber all at once
+    Command[] commands = {
+      new RunCommand(() -> driveSystem.drive(0.5, 0.2, 0.1), driveSystem),
+      new ShootAtDistance(outtake, limelight),
+      new Deploy(intake),
+      new HoldClimb(climb),
+    };
+    for (Command command : commands) {
+      command.schedule();
+    }
+
+    Runnable robotLoop = () -> {
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      InputSnapshot.getInstance().update();
+      CommandScheduler.getInstance().run();
+    };
+    Runnable robotCodeTwice = () -> {
+      robotLoop.run();
+      for (Subsystem subsystem : subsystems) {
+        subsystem.periodic();
+      }
+      for (Command command : commands) {
+        command.execute();
+      }
+    };
+
+    assertExtraAllocation("Open-loop robot loop", poseBytes, robotLoop, robotCodeTwice);
+
+    driveSystem.toggleClosedLoop();
+    assertExtraAllocation("Closed-loop robot loop", poseBytes, robotLoop, robotCodeTwice);
+
+    CommandScheduler.getInstance().cancelAll();
+    CommandScheduler.getInstance().unregisterSubsystem(subsystems);
+  }
+
+  @Test
+  public void flywheelControllerDoesntAllocate() {
+    FlywheelController controller = new FlywheelController();
+    double setpoint = Units.rotationsPerMinuteToRadiansPerSecond(3000);
+    controller.reset(0);
+
+    assertNoAllocation("Flywheel controller", () -> controller.calculate(controller.getEstimatedVelocity(), setpoint));
+  }
+
+  @Test
+  public void climbSynchronizerDoesntAllocate() {
+    ClimbSynchronizer synchronizer = new ClimbSynchronizer();
+    double[] extensions = { 0, 0.01 };
+    int[] loops = { 0 };
+
+    assertNoAllocation("Climb synchronizer", () -> {
+      // Swap between extending and retracting every two seconds so the profile keeps moving
+      double goal = (loops[0]++ / 100 % 2 == 0) ? 0.5 : 0;
+      synchronizer.calculate(goal, extensions[0], extensions[1]);
+      for (int side = 0; side < 2; side++) {
+        extensions[side] += synchronizer.getVelocity(side) * TimedRobot.kDefaultPeriod;
+      }
+    });
+  }
+
+  @Test
+  public void shootingAtDistanceDoesntAllocate() {
+    OuttakeSubsystem outtake = new OuttakeSubsystem(new OuttakeIO() {}, new ShotMap(shotPoints()));
+    double[] distance = { 1.0 };
+
+    assertNoAllocation("Shooting at a distance", () -> {
+      // Walk back and forth across the map so the setpoint keeps changing
+      distance[0] = (distance[0] >= 5.0) ? 1.0 : distance[0] + 0.01;
+      InputSnapshot.getInstance().update();
+      outtake.shootAtDistance(distance[0]);
+      outtake.periodic();
+    });
+  }
+
+  @Test
+  public void photonVisionDoesntAllocate() {
+    PhotonVision photon = new PhotonVision(new PhotonVisionIO() {});
+
+    assertNoAllocation("PhotonVision target accessors", () -> {
+      InputSnapshot.getInstance().update();
+      photon.hasTargets();
+      photon.getHorizontalOffset();
+      photon.getVerticalOffset();
+      photon.transformToTarget(0);
+      photon.getTargetRotation(0);
+    });
+  }
+
+  /**
+   * @return shooter speeds for two distances, so the speed changes with the distance
+   */
+  private static TreeMap<Double, Double> shotPoints() {
+    TreeMap<Double, Double> points = new TreeMap<>();
+    points.put(1.0, 2500.0);
+    points.put(5.0, 3700.0);
+    return points;
+  }
+
+  /**
+   * Warm up a loop, then check it allocates nothing.
+   */
+  private static void assertNoAllocation(String name, Runnable loop) {
+    assertEquals(name + " allocated bytes over " + MEASURED_LOOPS + " loops", 0, measure(loop));
+  }
+
+  /**
+   * Warm up two loops, then check the second allocates exactly the given bytes each time more than the first.
+   */
+  private static void assertExtraAllocation(String name, long bytesPerLoop, Runnable baseline, Runnable loop) {
+    long baselineBytes = measure(baseline);
+    assertEquals(name + " allocated bytes over " + MEASURED_LOOPS + " loops, past the " + baselineBytes
+        + " the command scheduler did", bytesPerLoop * MEASURED_LOOPS, measure(loop) - baselineBytes);
+  }
+
+  /**
+   * Warm up a loop, then measure it.
+   *
+   * @return the fewest bytes allocated over {@link #MEASURED_LOOPS} loops in any attempt
+   */
+  private static long measure(Runnable loop) {
+    for (int i = 0; i < WARMUP_LOOPS; i++) {
+      loop.run();
+    }
+
+    long least = Long.MAX_VALUE;
+    for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+      long before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < MEASURED_LOOPS; i++) {
+        loop.run();
+      }
+      least = Math.min(least, threads.getThreadAllocatedBytes(threadId) - before - measurementBytes);
+    }
+    return least;
+  }
+
+  /**
+   * Drives straight ahead at a steady speed, with a loop's worth of odometry samples up to the FPGA time each time it's
+   * read.
+   */
+  private static class StraightDriveIO implements DriveIO {
+    private final int samplesPerLoop = (int) Math.round(TimedRobot.kDefaultPeriod / ODOMETRY_PERIOD);
+
+    @Override
+    public void updateInputs(DriveIOInputs inputs) {
+      double now = Timer.getFPGATimestamp();
+      inputs.odometrySampleCount = 0;
+      for (int i = 0; i < samplesPerLoop; i++) {
+        int offset = i * DriveIOInputs.ODOMETRY_SAMPLE_SIZE;
+        inputs.odometrySamples[offset] = now - (samplesPerLoop - 1 - i) * ODOMETRY_PERIOD;
+        inputs.odometrySamples[offset + 1] = 0;
+        for (int wheel = 0; wheel < 4; wheel++) {
+          inputs.odometrySamples[offset + 2 + wheel] = 1.0;
+        }
+        inputs.odometrySampleCount++;
+      }
+    }
+  }
+
+  /** The intake with its stowed switch closed, so the arm is homed and deploys with Motion Magic. */
+  private static class HomedIntakeIO implements IntakeIO {
+    @Override
+    public void updateInputs(IntakeIOInputs inputs) {
+      inputs.limitSwitchUp = true;
+    }
+  }
+
+  /**
+   * Sees the hub in every frame, from a distance that keeps changing, so every loop has a new frame and robot pose to
+   * fuse.
+   */
+  private static class TargetLimelightIO implements LimelightIO {
+    /** Seconds from capturing each frame to reading it. */
+    private static final double LATENCY = 0.03;
+
+    private long frameId = 0;
+
+    @Override
+    public void updateInputs(LimelightIOInputs inputs) {
+      frameId++;
+      double distance = 3.0 + (frameId % 100) * 0.01;
+
+      inputs.targetValid = 1;
+      inputs.horizontalOffset = 2.0;
+      inputs.verticalOffset = 20.0 - distance;
+      inputs.targetArea = 1.5;
+      inputs.pipelineLatency = 11.0;
+      inputs.captureTimestamp = Timer.getFPGATimestamp() - LATENCY;
+      inputs.framesReceived = 1;
+      inputs.frameId = frameId;
+
+      // X, Y, Z, Pitch, Yaw, Roll
+      inputs.camTran[0] = -distance;
+      inputs.camTran[1] = 0.5;
+      inputs.camTran[4] = 5.0;
+      inputs.camTranId = frameId;
+    }
+  }
+}
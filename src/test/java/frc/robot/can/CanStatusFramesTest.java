@@ -0,0 +1,131 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.can;
+
+import static frc.robot.can.CanSignal.*;
+import static frc.robot.can.CanStatusFrames.use;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ctre.phoenix.motorcontrol.can.TalonFX;
+import com.ctre.phoenix.motorcontrol.can.TalonSRX;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.can.CanStatusFrames.DeviceConfiguration;
+
+/**
+ * Configures simulated Talons and checks the frames chosen for them, what {@link CanStatusFrames#check()} reports,
+ * and the estimated bus load. Each test uses its own CAN ids, since the simulated devices last the whole run.
+ */
+public class CanStatusFramesTest {
+  /** Bits per frame and bus rate the estimate uses. */
+  private static final double BITS_PER_FRAME_SECOND = 128 / 1e6;
+
+  private static final double UTILIZATION_TOLERANCE = 1e-9;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Test
+  public void talonFxCurrentComesFromItsCurrentFrame() {
+    CanStatusFrames frames = new CanStatusFrames();
+    frames.configure("Shooter", new TalonFX(20), use(VELOCITY, 20), use(CURRENT, 20));
+
+    DeviceConfiguration device = frames.getDevices().get(0);
+    assertEquals("TalonFX", device.type);
+    assertEquals(20, period(device, "Status_2_Feedback0"));
+    assertEquals(20, period(device, "Status_Brushless_Current"));
+    assertEquals(255, period(device, "Status_21_FeedbackIntegrated"));
+    assertEquals(255, period(device, "Status_4_AinTempVbat"));
+    assertEquals(List.of(), frames.check());
+  }
+
+  @Test
+  public void talonSrxCurrentComesFromFeedbackFrame() {
+    CanStatusFrames frames = new CanStatusFrames();
+    frames.configure("Intake Deploy", new TalonSRX(21), use(POSITION, 20), use(CURRENT, 10));
+
+    DeviceConfiguration device = frames.getDevices().get(0);
+    assertEquals("TalonSRX", device.type);
+    assertEquals(10, period(device, "Status_2_Feedback0"));
+    assertEquals(255, period(device, "Status_3_Quadrature"));
+    assertFalse(device.frameNames.contains("Status_Brushless_Current"));
+    assertEquals(List.of(), frames.check());
+  }
+
+  @Test
+  public void checkReportsSignalsTheDeviceDoesntSend() {
+    CanStatusFrames frames = new CanStatusFrames();
+    frames.configure("Climb", new TalonFX(22), use(ANALOG, 100));
+
+    List<String> problems = frames.check();
+    assertEquals(problems.toString(), 1, problems.size());
+    assertTrue(problems.get(0), problems.get(0).contains("doesn't report ANALOG"));
+  }
+
+  @Test
+  public void checkReportsSignalsFasterThanTheTalonSends() {
+    CanStatusFrames frames = new CanStatusFrames();
+    frames.configure("Feeder", new TalonSRX(23), use(POSITION, 0));
+
+    List<String> problems = frames.check();
+    assertEquals(problems.toString(), 1, problems.size());
+    assertTrue(problems.get(0), problems.get(0).contains("arrives every 1 ms, needed every 0 ms"));
+  }
+
+  @Test
+  public void checkReportsSharedIds() {
+    CanStatusFrames frames = new CanStatusFrames();
+    TalonSRX talon = new TalonSRX(24);
+    frames.configure("Roller", talon);
+    frames.configure("Second Roller", talon);
+
+    List<String> problems = frames.check();
+    assertEquals(problems.toString(), 1, problems.size());
+    assertTrue(problems.get(0), problems.get(0).contains("already has CAN id 24"));
+  }
+
+  @Test
+  public void checkReportsBusLoad() {
+    CanStatusFrames frames = new CanStatusFrames();
+    frames.configure("Fast 1", new TalonFX(25), use(APPLIED_OUTPUT, 1), use(VELOCITY, 1), use(CURRENT, 1));
+    frames.configure("Fast 2", new TalonFX(26), use(APPLIED_OUTPUT, 1), use(VELOCITY, 1), use(CURRENT, 1));
+
+    List<String> problems = frames.check();
+    assertEquals(problems.toString(), 1, problems.size());
+    assertTrue(problems.get(0), problems.get(0).startsWith("Estimated CAN utilization"));
+  }
+
+  /**
+   * Every frame a TalonFX sends counts towards the load, including the integrated sensor and current frames.
+   */
+  @Test
+  public void utilizationCountsEveryTalonFxFrame() {
+    CanStatusFrames frames = new CanStatusFrames();
+    frames.configure("Idle", new TalonFX(27));
+
+    // Control frames every 10 ms, then Status 1, 2, the five 160 ms frames, 21 and the current frame
+    double defaults = 100 + 100 + 50 + 5 * 1000.0 / 160 + 1000.0 / 250 + 1000.0 / 50;
+    assertEquals(defaults * BITS_PER_FRAME_SECOND, frames.getEstimatedUtilization(false), UTILIZATION_TOLERANCE);
+
+    // Nothing is read, so Status 1 drops to 100 ms and the other eight to 255 ms
+    double configured = 100 + 10 + 8 * 1000.0 / 255;
+    assertEquals(configured * BITS_PER_FRAME_SECOND, frames.getEstimatedUtilization(true), UTILIZATION_TOLERANCE);
+  }
+
+  private static int period(DeviceConfiguration device, String frame) {
+    int index = device.frameNames.indexOf(frame);
+    assertTrue(device.type + " has no " + frame, index >= 0);
+    return device.framePeriods.get(index);
+  }
+}
@@ -0,0 +1,184 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.drive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.DriveIO;
+import frc.robot.subsystems.DriveSystem;
+import frc.robot.trajectory.TrajectoryPlanner;
+
+/**
+ * Runs FollowPlannedTrajectory on paused timing with planners that can't finish until the test lets them, and checks
+ * the command keeps running its loops without waiting on them, and that planning happens on another thread. Also
+ * checks a re-plan is only swapped in on the loop it was planned to start from.
+ */
+public class FollowPlannedTrajectoryTest {
+  /** Loops to run the command for, 3 seconds. */
+  private static final int LOOPS = 150;
+
+  private static final double REPLAN_PERIOD = 0.5;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Test(timeout = 10000)
+  public void planningStaysOffTheLoop() {
+    SimHooks.pauseTiming();
+    CountDownLatch planReleased = new CountDownLatch(1);
+    CountDownLatch replanReleased = new CountDownLatch(1);
+    try {
+      DriveSystem driveSystem = new DriveSystem(new DriveIO() {});
+      TrajectoryPlanner planner = new TrajectoryPlanner();
+      Trajectory path = plan(driveSystem.getTrajectoryConfig());
+      Set<Thread> planningThreads = ConcurrentHashMap.newKeySet();
+      List<CompletableFuture<Trajectory>> replans = new ArrayList<>();
+
+      FollowPlannedTrajectory command = new FollowPlannedTrajectory(
+        driveSystem,
+        () -> planner.plan(blocked(planReleased, path, planningThreads)),
+        from -> track(replans, planner.plan(blocked(replanReleased, path, planningThreads))),
+        REPLAN_PERIOD,
+        driveSystem::getPose
+      );
+
+      // The plan can't finish, so each loop only gets through if execute() doesn't wait for it
+      command.initialize();
+      for (int loop = 0; loop < LOOPS; loop++) {
+        SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+        InputSnapshot.getInstance().update();
+        command.execute();
+      }
+      assertNull("Followed a plan that can't have finished", command.getTrajectory());
+
+      // Once it finishes, it's picked up at the start of a loop
+      planReleased.countDown();
+      while (command.getTrajectory() == null) {
+        InputSnapshot.getInstance().update();
+        command.execute();
+      }
+      assertSame(path, command.getTrajectory());
+
+      // A re-plan that can't finish is dropped once it's late, and the command keeps following the plan it has
+      stepUntilReplan(command, replans, 1);
+      for (int loop = 0; loop < LOOPS && !replans.get(0).isDone(); loop++) {
+        SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+        InputSnapshot.getInstance().update();
+        command.execute();
+      }
+      assertTrue("A re-plan that can't finish wasn't dropped", replans.get(0).isCancelled());
+      assertSame(path, command.getTrajectory());
+
+      assertEquals("Planned on the loop's thread", 1, planningThreads.size());
+      assertFalse("Planned on the loop's thread", planningThreads.contains(Thread.currentThread()));
+      command.end(true);
+    } finally {
+      planReleased.countDown();
+      replanReleased.countDown();
+      SimHooks.resumeTiming();
+    }
+  }
+
+  @Test
+  public void lateReplanIsDropped() {
+    SimHooks.pauseTiming();
+    try {
+      DriveSystem driveSystem = new DriveSystem(new DriveIO() {});
+      TrajectoryConfig config = driveSystem.getTrajectoryConfig();
+      Trajectory straight = TrajectoryGenerator.generateTrajectory(new Pose2d(), List.of(), new Pose2d(5, 0, new Rotation2d()), config);
+      List<CompletableFuture<Trajectory>> replans = new ArrayList<>();
+
+      FollowPlannedTrajectory command = new FollowPlannedTrajectory(
+        driveSystem,
+        () -> CompletableFuture.completedFuture(straight),
+        from -> track(replans, new CompletableFuture<>()),
+        REPLAN_PERIOD,
+        driveSystem::getPose
+      );
+
+      command.initialize();
+      stepUntilReplan(command, replans, 1);
+
+      // The planner thread takes three loops, finishing after the re-plan was due to take over
+      SimHooks.stepTiming(3 * TimedRobot.kDefaultPeriod);
+      replans.get(0).complete(plan(config));
+      command.execute();
+      assertSame("A late re-plan was swapped in", straight, command.getTrajectory());
+
+      // The next one is ready on the loop it starts from, so it takes over
+      stepUntilReplan(command, replans, 2);
+      Trajectory onTime = plan(config);
+      replans.get(1).complete(onTime);
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      command.execute();
+      assertSame("A re-plan ready in time wasn't swapped in", onTime, command.getTrajectory());
+
+      command.end(true);
+    } finally {
+      SimHooks.resumeTiming();
+    }
+  }
+
+  /**
+   * Run the command a loop at a time on paused timing until it has asked for the given number of re-plans.
+   */
+  private static void stepUntilReplan(FollowPlannedTrajectory command, List<CompletableFuture<Trajectory>> replans, int count) {
+    for (int loop = 0; loop < LOOPS && replans.size() < count; loop++) {
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      command.execute();
+    }
+    assertEquals(count, replans.size());
+  }
+
+  private static Trajectory plan(TrajectoryConfig config) {
+    return TrajectoryGenerator.generateTrajectory(new Pose2d(), List.of(), new Pose2d(5, 1, new Rotation2d()), config);
+  }
+
+  private static CompletableFuture<Trajectory> track(List<CompletableFuture<Trajectory>> plans, CompletableFuture<Trajectory> plan) {
+    plans.add(plan);
+    return plan;
+  }
+
+  /**
+   * @return a planner that can't finish until released, noting the thread it runs on
+   */
+  private static Supplier<Trajectory> blocked(CountDownLatch released, Trajectory trajectory, Set<Thread> threads) {
+    return () -> {
+      threads.add(Thread.currentThread());
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return trajectory;
+    };
+  }
+}
@@ -0,0 +1,193 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import static frc.robot.Constants.ClimbConstants.CLIMB_POSITION_TOLERANCE;
+import static frc.robot.Constants.ClimbConstants.MID_REACH_EXTENSION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+import frc.robot.subsystems.ClimbIOSim;
+import frc.robot.subsystems.ClimbSubsystem;
+import frc.robot.subsystems.ClimbSubsystem.ClimbState;
+
+/**
+ * Runs the automatic climb and the pull onto the mid rung by hand on the simulated climber, a loop at a time the way
+ * {@link ClimbSimulation} does: inputs, subsystem periodic, then the command. The sequence has to go through its steps
+ * in order and end on the traversal rung in time, synchronized telescopes have to keep the robot level where
+ * running each on its own rolls it, and the telescopes have to stay put once nothing steps the synchronizer.
+ */
+public class ClimberSimTest {
+  /** Longest time in seconds to let each press of the button run. */
+  private static final double TIMEOUT = 30.0;
+
+  /** Longest time in seconds to put the telescopes up, and to climb from the mid rung to the traversal rung. */
+  private static final double MAX_REACH_TIME = 3.0;
+  private static final double MAX_CLIMB_TIME = 10.0;
+
+  /** Most the robot may roll in degrees with the telescopes synchronized. */
+  private static final double MAX_SYNCHRONIZED_ROLL = 0.25;
+
+  /** Time in seconds the telescopes run up before the climb is paused, and then how long they're left alone. */
+  private static final double PAUSE_AFTER = 0.5;
+  private static final double PAUSE_TIME = 1.0;
+
+  /** Furthest in meters the telescopes may coast past where the climb was paused. */
+  private static final double MAX_PAUSE_TRAVEL = 0.05;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Test
+  public void sequenceClimbsToTraversalInOrder() {
+    ClimbIOSim io = new ClimbIOSim();
+    ClimbSubsystem climb = new ClimbSubsystem(io, io::getPitch);
+    ClimberSim climber = io.getClimberSim();
+    List<ClimbState> states = new ArrayList<>();
+
+    double reachTime = press(climb, climber, states, new double[1]);
+    assertTrue("Telescopes up in " + reachTime + " s", reachTime <= MAX_REACH_TIME);
+    assertEquals(Arrays.asList(ClimbState.REACH_MID), states);
+    assertEquals(ClimberSim.Support.FLOOR, climber.getSupport());
+
+    double[] roll = new double[1];
+    double climbTime = press(climb, climber, states, roll);
+    assertTrue("Mid rung to traversal in " + climbTime + " s", climbTime <= MAX_CLIMB_TIME);
+    assertEquals(Arrays.asList(
+        ClimbState.REACH_MID, ClimbState.PULL_MID,
+        ClimbState.SETTLE, ClimbState.LATCH, ClimbState.REACH_NEXT, ClimbState.PULL_NEXT,
+        ClimbState.SETTLE, ClimbState.LATCH, ClimbState.REACH_NEXT, ClimbState.PULL_NEXT,
+        ClimbState.DONE), states);
+    assertEquals(ClimberSim.TRAVERSAL_RUNG, climber.getRung());
+    assertEquals(0, climber.getMisses());
+    assertTrue("Rolled " + roll[0] + " deg", roll[0] <= MAX_SYNCHRONIZED_ROLL);
+  }
+
+  /**
+   * Pauses the climb with the telescopes on their way up, as the button does, and then doesn't step the synchronizer.
+   * The telescopes have to stop near where they were rather than carry on at the last speed it set, stay there while
+   * the climber's default command holds them, and go the rest of the way up on the next press.
+   */
+  @Test
+  public void pausedTelescopesStop() {
+    ClimbIOSim io = new ClimbIOSim();
+    ClimbSubsystem climb = new ClimbSubsystem(io, io::getPitch);
+    ClimberSim climber = io.getClimberSim();
+
+    climb.startSequence();
+    for (double time = 0; time < PAUSE_AFTER; time += TimedRobot.kDefaultPeriod) {
+      InputSnapshot.getInstance().update();
+      climb.periodic();
+      climb.runSequence();
+    }
+    double pausedExtension = climber.getExtension();
+    assertTrue("Telescopes not moving when paused", climber.getExtensionVelocity(0) > 0);
+    climb.pauseSequence();
+
+    for (double time = 0; time < PAUSE_TIME; time += TimedRobot.kDefaultPeriod) {
+      InputSnapshot.getInstance().update();
+      climb.periodic();
+    }
+    assertEquals(pausedExtension, climber.getExtension(), MAX_PAUSE_TRAVEL);
+    assertEquals(0, climber.getExtensionVelocity(0), 0.01);
+    assertEquals(0, climber.getExtensionVelocity(1), 0.01);
+
+    // Then as HoldClimb does
+    climb.startHold();
+    double heldExtension = climber.getExtension();
+    for (double time = 0; time < PAUSE_TIME; time += TimedRobot.kDefaultPeriod) {
+      InputSnapshot.getInstance().update();
+      climb.periodic();
+      climb.hold();
+    }
+    assertEquals(heldExtension, climber.getExtension(), CLIMB_POSITION_TOLERANCE);
+
+    assertTrue(press(climb, climber, new ArrayList<>(), new double[1]) <= MAX_REACH_TIME);
+    assertEquals(ClimbState.REACH_MID, climb.getClimbState());
+    assertEquals(MID_REACH_EXTENSION, climb.getExtension(), CLIMB_POSITION_TOLERANCE);
+  }
+
+  /**
+   * Pulling up onto the mid rung by hand rolls the robot towards the heavier, stiffer side when both telescopes get
+   * full power, and barely at all when they're synchronized.
+   */
+  @Test
+  public void synchronizedPullKeepsRobotLevel() {
+    double synchronizedRoll = manualPull(true);
+    double openLoopRoll = manualPull(false);
+
+    String result = String.format("rolled %.2f deg synchronized, %.2f deg open-loop", synchronizedRoll, openLoopRoll);
+    assertTrue(result, synchronizedRoll <= MAX_SYNCHRONIZED_ROLL);
+    assertTrue(result, synchronizedRoll * 4 < openLoopRoll);
+  }
+
+  /**
+   * Put the telescopes up with the sequence, then pull them in as {@link frc.robot.commands.climb.ClimbStageOne} does,
+   * until the first limit switch closes.
+   *
+   * @return the most the robot rolled during the pull, in degrees
+   */
+  private static double manualPull(boolean synchronizedClimb) {
+    ClimbIOSim io = new ClimbIOSim();
+    ClimbSubsystem climb = new ClimbSubsystem(io, io::getPitch);
+    ClimberSim climber = io.getClimberSim();
+    if (!synchronizedClimb) {
+      climb.toggleSynchronized();
+    }
+    assertTrue(press(climb, climber, new ArrayList<>(), new double[1]) <= MAX_REACH_TIME);
+
+    double roll = 0;
+    for (double time = 0; time < TIMEOUT; time += TimedRobot.kDefaultPeriod) {
+      InputSnapshot.getInstance().update();
+      climb.periodic();
+      roll = Math.max(roll, Math.abs(climber.getRoll()));
+      if (climber.isAtLimitSwitch(0) || climber.isAtLimitSwitch(1)) {
+        climb.deactivateClimb();
+        return roll;
+      }
+      climb.activateClimb();
+    }
+    climb.deactivateClimb();
+    throw new AssertionError("No limit switch closed in " + TIMEOUT + " s");
+  }
+
+  /**
+   * Run the climb as the button's command would, until it finishes.
+   *
+   * @param states each step the sequence was in, added to as it moves on
+   * @param roll the most the robot rolled in degrees, updated every loop
+   * @return seconds taken
+   */
+  private static double press(ClimbSubsystem climb, ClimberSim climber, List<ClimbState> states, double[] roll) {
+    climb.startSequence();
+    for (double time = 0; time < TIMEOUT; time += TimedRobot.kDefaultPeriod) {
+      InputSnapshot.getInstance().update();
+      climb.periodic();
+      climb.runSequence();
+      if (states.isEmpty() || states.get(states.size() - 1) != climb.getClimbState()) {
+        states.add(climb.getClimbState());
+      }
+      roll[0] = Math.max(roll[0], Math.abs(climber.getRoll()));
+
+      if (climb.isSequenceWaiting()) {
+        return time + TimedRobot.kDefaultPeriod;
+      }
+    }
+    climb.pauseSequence();
+    throw new AssertionError("Stuck in " + climb.getClimbState() + " after " + TIMEOUT + " s");
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.subsystems.IntakeIOSim;
+import frc.robot.subsystems.IntakeSubsystem;
+
+/**
+ * Runs the moves of {@link IntakeSimulation} on the simulated arm. Motion Magic has to deploy and retract the intake
+ * in time, and sooner than driving it slowly, and with either limit switch broken the arm has to be stopped for
+ * stalling rather than left pushing against the hard stop.
+ */
+public class IntakeSimulationTest {
+  /** Longest time in seconds from the button to the limit switch with Motion Magic, either way. */
+  private static final double MAX_PROFILED_MOVE_TIME = 0.5;
+
+  /** Longest time in seconds from the button to stopping the arm against a hard stop with a broken switch. */
+  private static final double MAX_STOP_TIME = 2.0;
+
+  /** Most current in amps the deploy motor may draw once it's been stopped. */
+  private static final double MAX_STOPPED_CURRENT = 1.0;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Test
+  public void profiledMovesAreFaster() {
+    double[] profiled = deployAndRetract(true);
+    double[] fixed = deployAndRetract(false);
+
+    String result = String.format(
+        "Motion Magic deployed in %.2f s and retracted in %.2f s, fixed output in %.2f s and %.2f s",
+        profiled[0], profiled[1], fixed[0], fixed[1]);
+    for (int move = 0; move < 2; move++) {
+      assertTrue(result, profiled[move] <= MAX_PROFILED_MOVE_TIME);
+      assertTrue(result, profiled[move] < fixed[move]);
+    }
+  }
+
+  @Test
+  public void brokenDeployedSwitchStopsArm() {
+    checkStopped(true, true);
+    checkStopped(false, true);
+  }
+
+  @Test
+  public void brokenStowedSwitchStopsArm() {
+    checkStopped(true, false);
+    checkStopped(false, false);
+  }
+
+  /**
+   * @return seconds to deploy and then to retract, NaN if the switch didn't close
+   */
+  private static double[] deployAndRetract(boolean profiled) {
+    IntakeIOSim io = new IntakeIOSim();
+    IntakeSubsystem intake = IntakeSimulation.create(io, profiled);
+    double deployTime = IntakeSimulation.move(intake, io, true);
+    double retractTime = IntakeSimulation.move(intake, io, false);
+    assertFalse("Deployed switch didn't close", Double.isNaN(deployTime));
+    assertFalse("Stowed switch didn't close", Double.isNaN(retractTime));
+    return new double[] {deployTime, retractTime};
+  }
+
+  private static void checkStopped(boolean profiled, boolean deploy) {
+    IntakeIOSim io = new IntakeIOSim();
+    IntakeSubsystem intake = IntakeSimulation.create(io, profiled);
+    double stopTime = IntakeSimulation.moveWithBrokenSwitch(intake, io, deploy);
+
+    String move = String.format("%s with %s", deploy ? "Deploying" : "Retracting",
+        profiled ? "Motion Magic" : "fixed output");
+    assertFalse(move + " was never stopped", Double.isNaN(stopTime));
+    assertTrue(move + " stopped after " + stopTime + " s", stopTime <= MAX_STOP_TIME);
+    assertTrue(move + " left drawing " + io.getCurrent() + " A", io.getCurrent() <= MAX_STOPPED_CURRENT);
+  }
+}
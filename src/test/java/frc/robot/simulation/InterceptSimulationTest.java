@@ -0,0 +1,31 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Runs the scenarios of {@link InterceptSimulation} and checks intercepting rolling cargo gets to it sooner than
+ * chasing it, and misses no more often.
+ */
+public class InterceptSimulationTest {
+  private static final int SCENARIOS = 200;
+
+  @Test
+  public void interceptingBeatsChasing() {
+    double[][] times = InterceptSimulation.runScenarios(SCENARIOS);
+    double chaseMean = InterceptSimulation.meanTime(times[0]);
+    double interceptMean = InterceptSimulation.meanTime(times[1]);
+    int chaseMissed = InterceptSimulation.countMissed(times[0]);
+    int interceptMissed = InterceptSimulation.countMissed(times[1]);
+
+    String result = String.format("chasing took %.2f s on average with %d missed, intercepting %.2f s with %d missed",
+        chaseMean, chaseMissed, interceptMean, interceptMissed);
+    assertTrue(result, interceptMean < chaseMean);
+    assertTrue(result, interceptMissed <= chaseMissed);
+  }
+}
@@ -0,0 +1,189 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Robot;
+import frc.robot.RobotContainer;
+import frc.robot.RobotMode;
+import frc.robot.telemetry.SignalLogReader;
+import frc.robot.telemetry.SignalLogger;
+
+/**
+ * Records a whole match on the simulated robot, replays the log through a robot with no hardware the way
+ * {@link LogReplay} does, and checks every logged output comes out the same on every loop. The match runs Shoot Three
+ * Start, whose paths are planned in the background during the match, then drives and intakes from the joystick. <br/>
+ *
+ * Replay is how a code change is checked against a real match, so it also has to be fast: a 2.5 minute match has to
+ * replay in a few seconds.
+ */
+public class LogReplayTest {
+  /** Length of a match in seconds, and when the driver takes over. */
+  private static final double MATCH_LENGTH = 150.0;
+  private static final double AUTO_LENGTH = 15.0;
+
+  /** Least times faster than real time the match has to replay, 2.5 minutes in 10 seconds. */
+  private static final double MIN_SPEEDUP = 15.0;
+
+  /** The driver's joystick, and the axes and button the test moves. */
+  private static final int DRIVER_PORT = 0;
+  private static final int X_AXIS = 0;
+  private static final int Y_AXIS = 1;
+  private static final int Z_AXIS = 2;
+  private static final int DEPLOY_BUTTON = 6;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+
+    // Only advance time when told to
+    SimHooks.pauseTiming();
+  }
+
+  @Test
+  public void replayReproducesEveryOutput() throws IOException {
+    // Record
+    startMatch();
+    Robot recorded = new Robot(RobotMode.SIM);
+    recorded.robotInit();
+    Path recordedLog = SignalLogger.getInstance().getPath();
+    startAuto(recorded);
+
+    for (double time = TimedRobot.kDefaultPeriod; time <= MATCH_LENGTH; time += TimedRobot.kDefaultPeriod) {
+      driverInputs(time);
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      recorded.runLoop();
+    }
+    recorded.close();
+
+    // Replay, starting the routine the same way before the first loop
+    startMatch();
+    Robot replayed = new Robot(RobotMode.REPLAY);
+    replayed.robotInit();
+    Path replayedLog = SignalLogger.getInstance().getPath();
+    startAuto(replayed);
+
+    long wallStart = System.nanoTime();
+    LogReplay.Result result = LogReplay.replay(new SignalLogReader(recordedLog), replayed);
+    double wallTime = (System.nanoTime() - wallStart) / 1e9;
+    replayed.close();
+
+    String speed = String.format("Replayed %.1f s of match in %.2f s", result.getMatchTime(), wallTime);
+    assertEquals(MATCH_LENGTH, result.getMatchTime(), 2 * TimedRobot.kDefaultPeriod);
+    assertTrue(speed, result.getMatchTime() / wallTime >= MIN_SPEEDUP);
+
+    assertSameOutputs(recordedLog, replayedLog);
+  }
+
+  /**
+   * Restart the clock and enable the robot in teleop, so the routine only runs when the test schedules it and both runs
+   * start from the same time.
+   */
+  private static void startMatch() {
+    SimHooks.restartTiming();
+
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.setJoystickAxisCount(DRIVER_PORT, 6);
+    DriverStationSim.setJoystickButtonCount(DRIVER_PORT, 12);
+    for (int axis = 0; axis < 6; axis++) {
+      DriverStationSim.setJoystickAxis(DRIVER_PORT, axis, 0);
+    }
+    DriverStationSim.setJoystickButtons(DRIVER_PORT, 0);
+    DriverStationSim.notifyNewData();
+  }
+
+  private static void startAuto(Robot robot) {
+    Command auto = robot.getRobotContainer().getAutonomousCommand(RobotContainer.SHOOT_THREE_START_AUTO);
+    assertNotNull(auto);
+    auto.schedule();
+  }
+
+  /**
+   * Move the joystick as the driver would after autonomous: drive forward and to the side, turn, then hold the deploy
+   * button. Only tells the driver station when something changes.
+   */
+  private static void driverInputs(double time) {
+    if (isAt(time, AUTO_LENGTH + 5)) {
+      DriverStationSim.setJoystickAxis(DRIVER_PORT, Y_AXIS, -0.6);
+      DriverStationSim.setJoystickAxis(DRIVER_PORT, X_AXIS, 0.3);
+    } else if (isAt(time, AUTO_LENGTH + 8)) {
+      DriverStationSim.setJoystickAxis(DRIVER_PORT, Y_AXIS, 0);
+      DriverStationSim.setJoystickAxis(DRIVER_PORT, X_AXIS, 0);
+      DriverStationSim.setJoystickAxis(DRIVER_PORT, Z_AXIS, 0.5);
+    } else if (isAt(time, AUTO_LENGTH + 10)) {
+      DriverStationSim.setJoystickAxis(DRIVER_PORT, Z_AXIS, 0);
+      DriverStationSim.setJoystickButtons(DRIVER_PORT, 1 << (DEPLOY_BUTTON - 1));
+    } else if (isAt(time, AUTO_LENGTH + 12)) {
+      DriverStationSim.setJoystickButtons(DRIVER_PORT, 0);
+    } else {
+      return;
+    }
+    DriverStationSim.notifyNewData();
+  }
+
+  /**
+   * @return whether the loop at the given time is the first one at or after the event
+   */
+  private static boolean isAt(double time, double event) {
+    return time >= event && time - TimedRobot.kDefaultPeriod < event;
+  }
+
+  /**
+   * Read both logs a frame at a time and check they have the same frames, with the same value for every signal, except
+   * the loop timing and HAL call counts under "Robot/", which depend on the computer and the IO.
+   */
+  private static void assertSameOutputs(Path recordedLog, Path replayedLog) throws IOException {
+    SignalLogReader recorded = new SignalLogReader(recordedLog);
+    SignalLogReader replayed = new SignalLogReader(replayedLog);
+    Map<String, Double> recordedValues = new HashMap<>();
+    Map<String, Double> replayedValues = new HashMap<>();
+
+    int frames = 0;
+    while (recorded.nextFrame()) {
+      assertTrue("Replay stopped after " + frames + " loops", replayed.nextFrame());
+      assertEquals("Time of loop " + frames, recorded.getTimestamp(), replayed.getTimestamp(), 0);
+      readFrame(recorded, recordedValues);
+      readFrame(replayed, replayedValues);
+
+      for (Map.Entry<String, Double> signal : recordedValues.entrySet()) {
+        String name = signal.getKey();
+        // Only builds the message for a mismatch, since this runs for every signal on every loop
+        if (!name.startsWith("Robot/") && !signal.getValue().equals(replayedValues.get(name))) {
+          assertEquals(name + " at " + recorded.getTimestamp() + " s", signal.getValue(), replayedValues.get(name));
+        }
+      }
+      frames++;
+    }
+    assertFalse("Replay ran more loops than were recorded", replayed.nextFrame());
+  }
+
+  /**
+   * Update the latest value of every signal that changed in the reader's current frame.
+   */
+  private static void readFrame(SignalLogReader reader, Map<String, Double> values) {
+    for (int i = 0; i < reader.getCount(); i++) {
+      values.put(reader.getName(reader.getId(i)), reader.getValue(i));
+    }
+  }
+}
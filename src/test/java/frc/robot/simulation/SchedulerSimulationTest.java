@@ -0,0 +1,43 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.simulation;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import frc.robot.LoopScheduler;
+
+/**
+ * Runs the overloaded loop of {@link SchedulerSimulation}, with slow normal and low priority commands, subsystems and
+ * dashboard widgets on top of the drive and shooter. Without a budget the drive and shooter fall behind every loop,
+ * and with one they have to keep their cadence. The loops run on a simulated clock, so the result is the same every
+ * time and doesn't depend on how busy the computer is.
+ */
+public class SchedulerSimulationTest {
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+
+    // Commands that don't run when disabled are cancelled by the scheduler
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+  }
+
+  @Test
+  public void budgetKeepsHighPriorityCadence() {
+    double stockLate = SchedulerSimulation.run("No budget", Double.POSITIVE_INFINITY, false);
+    double budgetedLate = SchedulerSimulation.run("Budgeted", LoopScheduler.LOOP_BUDGET, true);
+
+    String result = String.format("%.0f%% of runs late without a budget, %.0f%% with one", stockLate * 100,
+        budgetedLate * 100);
+    assertTrue(result, stockLate > SchedulerSimulation.MAX_LATE_FRACTION);
+    assertTrue(result, budgetedLate <= SchedulerSimulation.MAX_LATE_FRACTION);
+  }
+}
@@ -0,0 +1,130 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static frc.robot.Constants.DriveConstants.*;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+import frc.robot.simulation.MecanumDriveSim;
+
+/**
+ * Drives a scripted path on {@link MecanumDriveSim} and compares the pose from odometry against where the model
+ * actually is, with the drivetrain sampled once per loop (50 Hz) and at the odometry thread's rate (200 Hz). <br/>
+ *
+ * Each sample's wheel speeds are taken to hold for the whole time since the last one, so the pose is off by about half
+ * a sample period's worth of every change in speed. The path starts, turns and strafes, and ends still moving, so the
+ * error doesn't cancel out.
+ */
+public class OdometryRateTest {
+  /** Model time step in seconds, small enough that the model's own integration error is well under the tolerance. */
+  private static final double STEP = 0.0002;
+
+  /**
+   * Each segment of the path: seconds to drive, then the three inputs to
+   * {@link DriveSystem#drive(double, double, double)}.
+   */
+  private static final double[][] PATH = {
+    { 0.6, 1.0, 0.0, 0.0 },
+    { 0.8, 0.6, 0.0, 0.6 },
+    { 0.6, 0.0, 1.0, 0.0 },
+    { 0.8, -0.5, 0.5, -0.8 },
+    { 0.5, 1.0, 0.0, 0.0 },
+  };
+
+  /** Most the 200 Hz pose may be off from the model at the end, in meters. */
+  private static final double MAX_ERROR = 0.05;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Test
+  public void sampling200HzIsMoreAccurate() {
+    double error50Hz = drivePath(TimedRobot.kDefaultPeriod);
+    double error200Hz = drivePath(ODOMETRY_PERIOD);
+
+    String result = String.format("Pose off by %.4f m at 50 Hz, %.4f m at 200 Hz", error50Hz, error200Hz);
+    assertTrue(result, error200Hz <= MAX_ERROR);
+    assertTrue(result, error200Hz * 2 < error50Hz);
+  }
+
+  /**
+   * Drive the path with open-loop inputs through {@link DriveSystem}, a loop at a time.
+   *
+   * @param samplePeriod seconds between odometry samples
+   * @return meters between the odometry pose and the model's pose at the end
+   */
+  private static double drivePath(double samplePeriod) {
+    SampledDriveIO io = new SampledDriveIO(samplePeriod);
+    DriveSystem driveSystem = new DriveSystem(io);
+
+    for (double[] segment : PATH) {
+      for (double time = 0; time < segment[0]; time += TimedRobot.kDefaultPeriod) {
+        InputSnapshot.getInstance().update();
+        driveSystem.periodic();
+        driveSystem.drive(segment[1], segment[2], segment[3]);
+      }
+    }
+    InputSnapshot.getInstance().update();
+    driveSystem.periodic();
+
+    Pose2d expected = io.getModelPose();
+    Pose2d measured = driveSystem.getPose();
+    return measured.getTranslation().getDistance(expected.getTranslation());
+  }
+
+  /** The drivetrain model, with an odometry sample taken every sample period of model time. */
+  private static class SampledDriveIO implements DriveIO {
+    private final MecanumDriveSim drivetrainSim =
+        new MecanumDriveSim(DRIVE_MOTOR, GEAR_RATIO, WHEEL_DIAMETER, ROBOT_MASS, CURRENT_LIMIT, KINEMATICS);
+    private final int stepsPerLoop = (int) Math.round(TimedRobot.kDefaultPeriod / STEP);
+    private final int stepsPerSample;
+    private final double[] voltages = new double[4];
+    private int steps = 0;
+
+    SampledDriveIO(double samplePeriod) {
+      stepsPerSample = (int) Math.round(samplePeriod / STEP);
+    }
+
+    @Override
+    public void updateInputs(DriveIOInputs inputs) {
+      inputs.odometrySampleCount = 0;
+      for (int i = 0; i < stepsPerLoop; i++) {
+        drivetrainSim.update(voltages, STEP);
+        steps++;
+
+        if (steps % stepsPerSample == 0) {
+          int offset = inputs.odometrySampleCount * DriveIOInputs.ODOMETRY_SAMPLE_SIZE;
+          inputs.odometrySamples[offset] = steps * STEP;
+          inputs.odometrySamples[offset + 1] = drivetrainSim.getHeadingDegrees();
+          for (int wheel = 0; wheel < 4; wheel++) {
+            inputs.odometrySamples[offset + 2 + wheel] = drivetrainSim.getWheelVelocity(wheel);
+          }
+          inputs.odometrySampleCount++;
+        }
+      }
+      inputs.gyroAngle = drivetrainSim.getHeadingDegrees();
+    }
+
+    @Override
+    public void setDutyCycles(double[] outputs) {
+      for (int wheel = 0; wheel < 4; wheel++) {
+        voltages[wheel] = outputs[wheel] * NOMINAL_VOLTAGE;
+      }
+    }
+
+    Pose2d getModelPose() {
+      return drivetrainSim.getPose();
+    }
+  }
+}
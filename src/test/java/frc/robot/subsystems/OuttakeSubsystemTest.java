@@ -0,0 +1,109 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static frc.robot.Constants.OuttakeConstants.HIGH_RPM;
+import static frc.robot.Constants.OuttakeConstants.RPM_TOLERANCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.TreeMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+
+/**
+ * Runs the shooter on the simulated flywheel, a loop at a time the way the scheduler does: subsystem periodic, then
+ * the shooting command. Each test has its own flywheel, stopped at the end since the input snapshot keeps stepping it.
+ */
+public class OuttakeSubsystemTest {
+  /** Time in seconds the flywheel gets to reach its setpoint from a stop. */
+  private static final double SPIN_UP_TIME = 2.0;
+
+  /** Time in seconds it then has to stay there. */
+  private static final double HOLD_TIME = 1.0;
+
+  /** Longest time in seconds to empty the feeder. */
+  private static final double FEED_TIMEOUT = 3.0;
+
+  /**
+   * How the distance to the hub changes while backing away from it: a step each time the Limelight's estimate moves
+   * on, which the shot map turns into a setpoint step of more than RPM_TOLERANCE.
+   */
+  private static final double DISTANCE_STEP = 0.1;
+  private static final double DISTANCE_STEP_PERIOD = 0.1;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  /**
+   * The TalonFX's velocity loop is the default, so it has to settle on the setpoint rather than short of it.
+   */
+  @Test
+  public void talonVelocityLoopReachesSetpoint() {
+    OuttakeSubsystem outtake = new OuttakeSubsystem(new OuttakeIOSim(), shotMap());
+
+    for (double time = 0; time < SPIN_UP_TIME; time += TimedRobot.kDefaultPeriod) {
+      step(outtake);
+      outtake.shootHigh();
+    }
+    for (double time = 0; time < HOLD_TIME; time += TimedRobot.kDefaultPeriod) {
+      step(outtake);
+      outtake.shootHigh();
+      assertEquals(HIGH_RPM, outtake.getRPM(), RPM_TOLERANCE);
+    }
+    outtake.stopShooter();
+  }
+
+  /**
+   * Feeds two pieces of cargo while the distance to the hub keeps changing, so the shot map's setpoint would move
+   * partway through feeding. Every shot counted has to be a piece of cargo that really left, and both have to leave.
+   */
+  @Test
+  public void movingDistanceIsNotTakenForAShot() {
+    OuttakeIOSim io = new OuttakeIOSim();
+    OuttakeSubsystem outtake = new OuttakeSubsystem(io, shotMap());
+    io.loadCargo(2);
+
+    double time = 0;
+    while (io.getCargoLoaded() > 0 && time < FEED_TIMEOUT) {
+      step(outtake);
+      outtake.shootAtDistance(1.5 + DISTANCE_STEP * Math.floor(time / DISTANCE_STEP_PERIOD));
+      time += TimedRobot.kDefaultPeriod;
+
+      int launched = io.getLaunchRpms().size();
+      assertTrue(String.format("%d shots counted at %.2fs with %d launched", outtake.getShotsFired(), time, launched),
+          outtake.getShotsFired() <= launched);
+    }
+    assertEquals("Cargo left in the feeder", 0, io.getCargoLoaded());
+
+    // A few more loops, for the last shot to be counted and no more after it
+    for (int loop = 0; loop < 10; loop++) {
+      step(outtake);
+      outtake.shootAtDistance(1.5 + DISTANCE_STEP * Math.floor(time / DISTANCE_STEP_PERIOD));
+      time += TimedRobot.kDefaultPeriod;
+    }
+    assertEquals(2, outtake.getShotsFired());
+    outtake.stopShooter();
+  }
+
+  private static void step(OuttakeSubsystem outtake) {
+    InputSnapshot.getInstance().update();
+    outtake.periodic();
+  }
+
+  private static ShotMap shotMap() {
+    TreeMap<Double, Double> points = new TreeMap<>();
+    points.put(1.0, 1800.0);
+    points.put(5.0, 2600.0);
+    return new ShotMap(points);
+  }
+}
@@ -0,0 +1,163 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static frc.robot.Constants.DriveConstants.KINEMATICS;
+import static frc.robot.Constants.DriveConstants.ODOMETRY_PERIOD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.MecanumDriveWheelSpeeds;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.InputSnapshot;
+import frc.robot.vision.Limelight;
+import frc.robot.vision.LimelightIO;
+
+/**
+ * Drives an arc with the odometry started away from the robot's real pose, and feeds the pose estimator vision frames
+ * that arrive 30 to 80 ms after they were captured. The estimate should land on the real pose, not where the robot was
+ * when the frame was captured.
+ */
+public class PoseEstimatorSubsystemTest {
+  /** Robot speeds while driving the arc, in meters per second and radians per second. */
+  private static final double SPEED = 2.0;
+  private static final double TURN_RATE = 1.0;
+
+  /** Where the robot really starts, which the odometry doesn't know about. */
+  private static final Pose2d START = new Pose2d(2.0, 1.0, Rotation2d.fromDegrees(30));
+
+  /** FPGA time in seconds of the first odometry sample. */
+  private static final double START_TIME = 1.0;
+
+  /** Loops to drive, with a vision frame each loop. */
+  private static final int LOOPS = 75;
+
+  private static final double POSITION_TOLERANCE = 0.01;
+  private static final double HEADING_TOLERANCE = Math.toRadians(0.5);
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Test
+  public void compensates30msLatency() {
+    assertTracks(0.030);
+  }
+
+  @Test
+  public void compensates55msLatency() {
+    assertTracks(0.055);
+  }
+
+  @Test
+  public void compensates80msLatency() {
+    assertTracks(0.080);
+  }
+
+  /**
+   * Fusing the same frames as if they were captured when they arrived should leave the estimate behind the robot, or
+   * the tests above wouldn't show anything.
+   */
+  @Test
+  public void ignoringLatencyLagsBehind() {
+    double error = drive(0.080, false);
+    assertTrue("Error without latency compensation was only " + error + " m", error > 0.1);
+  }
+
+  private static void assertTracks(double latency) {
+    double error = drive(latency, true);
+    assertEquals("Position error with " + latency * 1000 + " ms latency", 0, error, POSITION_TOLERANCE);
+  }
+
+  /**
+   * Drive the arc, fusing a frame each loop captured the given time before the loop.
+   *
+   * @param compensate whether to pass the estimator the capture time, or the time the frame arrived
+   * @return meters between the estimated and real pose at the end
+   */
+  private static double drive(double latency, boolean compensate) {
+    ArcDriveIO io = new ArcDriveIO();
+    DriveSystem driveSystem = new DriveSystem(io);
+    Limelight limelight = new Limelight(new LimelightIO() {});
+    PoseEstimatorSubsystem estimator = new PoseEstimatorSubsystem(driveSystem, limelight);
+
+    for (int loop = 0; loop < LOOPS; loop++) {
+      InputSnapshot.getInstance().update();
+      driveSystem.periodic();
+      estimator.periodic();
+
+      double now = io.getTime();
+      double captureTime = now - latency;
+      if (captureTime >= START_TIME) {
+        estimator.addVisionMeasurement(fieldPose(captureTime), compensate ? captureTime : now);
+      }
+    }
+
+    Pose2d expected = fieldPose(io.getTime());
+    Pose2d estimated = estimator.getEstimatedPose();
+    if (compensate) {
+      double headingError = estimated.getRotation().minus(expected.getRotation()).getRadians();
+      assertEquals("Heading error with " + latency * 1000 + " ms latency", 0, headingError, HEADING_TOLERANCE);
+    }
+    return estimated.getTranslation().getDistance(expected.getTranslation());
+  }
+
+  /**
+   * @return the pose the odometry should measure at a time, driving an arc from the origin
+   */
+  private static Pose2d odometryPose(double time) {
+    double heading = TURN_RATE * (time - START_TIME);
+    double radius = SPEED / TURN_RATE;
+    return new Pose2d(radius * Math.sin(heading), radius * (1 - Math.cos(heading)), new Rotation2d(heading));
+  }
+
+  /**
+   * @return where the robot really is on the field at a time
+   */
+  private static Pose2d fieldPose(double time) {
+    return START.transformBy(new Transform2d(new Pose2d(), odometryPose(time)));
+  }
+
+  /** Produces the odometry samples of a robot driving the arc, a loop's worth each time the inputs are read. */
+  private static class ArcDriveIO implements DriveIO {
+    private final MecanumDriveWheelSpeeds wheelSpeeds = KINEMATICS.toWheelSpeeds(new ChassisSpeeds(SPEED, 0, TURN_RATE));
+    private final int samplesPerLoop = (int) Math.round(TimedRobot.kDefaultPeriod / ODOMETRY_PERIOD);
+    private int samples = 0;
+
+    @Override
+    public void updateInputs(DriveIOInputs inputs) {
+      inputs.odometrySampleCount = 0;
+      for (int i = 0; i < samplesPerLoop; i++) {
+        int offset = i * DriveIOInputs.ODOMETRY_SAMPLE_SIZE;
+        double time = START_TIME + samples * ODOMETRY_PERIOD;
+        inputs.odometrySamples[offset] = time;
+        inputs.odometrySamples[offset + 1] = Math.toDegrees(TURN_RATE * (time - START_TIME));
+        inputs.odometrySamples[offset + 2] = wheelSpeeds.frontLeftMetersPerSecond;
+        inputs.odometrySamples[offset + 3] = wheelSpeeds.frontRightMetersPerSecond;
+        inputs.odometrySamples[offset + 4] = wheelSpeeds.rearLeftMetersPerSecond;
+        inputs.odometrySamples[offset + 5] = wheelSpeeds.rearRightMetersPerSecond;
+        inputs.odometrySampleCount++;
+        samples++;
+      }
+      inputs.gyroAngle = inputs.odometrySamples[(samplesPerLoop - 1) * DriveIOInputs.ODOMETRY_SAMPLE_SIZE + 1];
+    }
+
+    /**
+     * @return FPGA time in seconds of the newest sample
+     */
+    double getTime() {
+      return START_TIME + (samples - 1) * ODOMETRY_PERIOD;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Solves cost matrices with {@link HungarianAssignment} and checks the assignment is the cheapest one: for a matrix
+ * where taking each row's cheapest column in turn is not, for part of a larger matrix, and against trying every
+ * assignment of random matrices.
+ */
+public class HungarianAssignmentTest {
+  /** Random matrices solved, and the largest size, small enough to try every assignment. */
+  private static final int RANDOM_MATRICES = 200;
+  private static final int MAX_RANDOM_SIZE = 6;
+
+  @Test
+  public void knownMatrix() {
+    // Taking the cheapest column of each row in turn costs 2 + 3 + 5 + 4 = 14
+    double[][] costs = {
+      { 9, 2, 7, 8 },
+      { 6, 4, 3, 7 },
+      { 5, 8, 1, 8 },
+      { 7, 6, 9, 4 },
+    };
+    HungarianAssignment assignment = assignment(costs, costs.length);
+
+    int[] columns = assignment.solve(costs.length);
+    assertArrayEquals(new int[] { 1, 0, 2, 3 }, Arrays.copyOf(columns, costs.length));
+    assertEquals(13, totalCost(costs, columns), 0);
+  }
+
+  @Test
+  public void onlyUsesTopLeftCorner() {
+    // Everything outside the corner is cheaper, so any of it being read would change the assignment
+    double[][] costs = {
+      { 4, 1, 3 },
+      { 2, 0, 5 },
+      { 3, 2, 2 },
+    };
+    HungarianAssignment assignment = new HungarianAssignment(5);
+    for (int row = 0; row < 5; row++) {
+      for (int column = 0; column < 5; column++) {
+        boolean inCorner = row < costs.length && column < costs.length;
+        assignment.setCost(row, column, inCorner ? costs[row][column] : -100);
+      }
+    }
+
+    int[] columns = assignment.solve(costs.length);
+    assertArrayEquals(new int[] { 1, 0, 2 }, Arrays.copyOf(columns, costs.length));
+  }
+
+  @Test
+  public void matchesEveryAssignmentTried() {
+    Random random = new Random(5895);
+    HungarianAssignment assignment = new HungarianAssignment(MAX_RANDOM_SIZE);
+
+    // One solver for every matrix, the way the tracker reuses it
+    for (int matrix = 0; matrix < RANDOM_MATRICES; matrix++) {
+      int size = 1 + random.nextInt(MAX_RANDOM_SIZE);
+      double[][] costs = new double[size][size];
+      for (int row = 0; row < size; row++) {
+        for (int column = 0; column < size; column++) {
+          costs[row][column] = random.nextInt(20);
+          assignment.setCost(row, column, costs[row][column]);
+        }
+      }
+
+      int[] columns = assignment.solve(size);
+      assertEquals("Cost of matrix " + matrix + " " + Arrays.deepToString(costs),
+          cheapest(costs, 0, new boolean[size]), totalCost(costs, columns), 0);
+    }
+  }
+
+  private static HungarianAssignment assignment(double[][] costs, int capacity) {
+    HungarianAssignment assignment = new HungarianAssignment(capacity);
+    for (int row = 0; row < costs.length; row++) {
+      for (int column = 0; column < costs.length; column++) {
+        assignment.setCost(row, column, costs[row][column]);
+      }
+    }
+    return assignment;
+  }
+
+  /**
+   * @return the total cost, after checking each column is used once
+   */
+  private static double totalCost(double[][] costs, int[] columns) {
+    boolean[] used = new boolean[costs.length];
+    double total = 0;
+    for (int row = 0; row < costs.length; row++) {
+      assertFalse("Column " + columns[row] + " assigned twice", used[columns[row]]);
+      used[columns[row]] = true;
+      total += costs[row][columns[row]];
+    }
+    return total;
+  }
+
+  /**
+   * Try every assignment of the rows from the given one on.
+   *
+   * @return the lowest total cost of the rows from the given one on
+   */
+  private static double cheapest(double[][] costs, int row, boolean[] used) {
+    if (row == costs.length) {
+      return 0;
+    }
+
+    double best = Double.POSITIVE_INFINITY;
+    for (int column = 0; column < costs.length; column++) {
+      if (!used[column]) {
+        used[column] = true;
+        best = Math.min(best, costs[row][column] + cheapest(costs, row + 1, used));
+        used[column] = false;
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,156 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import static frc.robot.Constants.VisionConstants.LIMELIGHT_CAPTURE_LATENCY;
+import static frc.robot.Constants.VisionConstants.LIMELIGHT_MAX_FRAME_AGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.InputSnapshot;
+import frc.robot.vision.LimelightIO.LimelightIOInputs;
+
+/**
+ * Publishes Limelight frames to a local NetworkTables instance, the way the Limelight does, and checks what the robot
+ * makes of them: the newest frame wins, the entries of one frame count once, old frames are dropped, and the frame
+ * rate and skipped frames are counted. <br/>
+ *
+ * Timing is paused, so the NetworkTables timestamps of the published values are the simulated FPGA time.
+ */
+public class LimelightIORealTest {
+  /** Seconds between frames, 100 frames per second. */
+  private static final double FRAME_PERIOD = 0.010;
+
+  /** "tl" of every published frame, in milliseconds. */
+  private static final double PIPELINE_LATENCY = 20.0;
+
+  /** Seconds to wait for the listener thread to take the published values. */
+  private static final double LISTENER_TIMEOUT = 1.0;
+
+  private NetworkTableInstance instance;
+  private NetworkTable table;
+
+  @BeforeClass
+  public static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+    SimHooks.pauseTiming();
+  }
+
+  /** A new instance for each test. Not closed, since the input snapshot keeps reading every Limelight created. */
+  @Before
+  public void createInstance() {
+    instance = NetworkTableInstance.create();
+    table = instance.getTable("limelight");
+  }
+
+  @Test
+  public void newestFrameWins() {
+    LimelightIOReal io = new LimelightIOReal(instance);
+    LimelightIOInputs inputs = new LimelightIOInputs();
+
+    // More frames than the buffer holds, in between two loops
+    for (int frame = 1; frame <= 6; frame++) {
+      SimHooks.stepTiming(FRAME_PERIOD);
+      publish(frame);
+    }
+    double lastPublish = Timer.getFPGATimestamp();
+    io.updateInputs(inputs);
+
+    // Each frame sets five entries, which have to count as one frame
+    assertEquals(6, inputs.framesReceived);
+    assertEquals(6, inputs.frameId);
+    assertEquals(6.0, inputs.horizontalOffset, 0);
+    assertEquals(-6.0, inputs.verticalOffset, 0);
+    assertEquals(lastPublish - (PIPELINE_LATENCY + LIMELIGHT_CAPTURE_LATENCY) / 1000, inputs.captureTimestamp, 1e-6);
+
+    SimHooks.stepTiming(FRAME_PERIOD);
+    publish(7);
+    io.updateInputs(inputs);
+    assertEquals(1, inputs.framesReceived);
+    assertEquals(7, inputs.frameId);
+    assertEquals(7.0, inputs.horizontalOffset, 0);
+
+    // Nothing new keeps the last frame
+    io.updateInputs(inputs);
+    assertEquals(0, inputs.framesReceived);
+    assertEquals(7, inputs.frameId);
+    assertEquals(7.0, inputs.horizontalOffset, 0);
+  }
+
+  @Test
+  public void oldFramesAreDropped() {
+    Limelight limelight = new Limelight(new LimelightIOReal(instance));
+
+    SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+    publish(3);
+    double frameAge = (PIPELINE_LATENCY + LIMELIGHT_CAPTURE_LATENCY) / 1000;
+    runLoop(limelight);
+    assertEquals(frameAge, limelight.getFrameAge(), 1e-6);
+    assertTrue(limelight.hasTargets());
+    assertEquals(3.0, limelight.getHorizontalOffset(), 0);
+
+    // The Limelight stops publishing, and the frame ages until it is no use
+    double elapsed = 0;
+    while (frameAge + elapsed + TimedRobot.kDefaultPeriod <= LIMELIGHT_MAX_FRAME_AGE) {
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      elapsed += TimedRobot.kDefaultPeriod;
+      runLoop(limelight);
+      assertTrue("Frame dropped after " + elapsed + " s", limelight.hasTargets());
+    }
+
+    SimHooks.stepTiming(2 * TimedRobot.kDefaultPeriod);
+    runLoop(limelight);
+    assertFalse(limelight.isFresh());
+    assertFalse(limelight.hasTargets());
+  }
+
+  @Test
+  public void frameRateAndSkippedFramesAreCounted() {
+    Limelight limelight = new Limelight(new LimelightIOReal(instance));
+    int framesPerLoop = (int) Math.round(TimedRobot.kDefaultPeriod / FRAME_PERIOD);
+    int loops = 150;
+
+    for (int loop = 0; loop < loops; loop++) {
+      for (int frame = 0; frame < framesPerLoop; frame++) {
+        SimHooks.stepTiming(FRAME_PERIOD);
+        publish(loop * framesPerLoop + frame);
+      }
+      runLoop(limelight);
+    }
+
+    assertEquals(1 / FRAME_PERIOD, limelight.getFrameRate(), 5);
+
+    // Every loop gets two frames, so uses one and skips the other
+    assertEquals(loops * (framesPerLoop - 1), limelight.getSkippedFrames());
+  }
+
+  /**
+   * Publish a frame with a target at the given horizontal offset, and wait for the listener to take it.
+   */
+  private void publish(double tx) {
+    table.getEntry("tl").setDouble(PIPELINE_LATENCY);
+    table.getEntry("tv").setDouble(1);
+    table.getEntry("tx").setDouble(tx);
+    table.getEntry("ty").setDouble(-tx);
+    table.getEntry("ta").setDouble(1 + tx);
+    assertTrue(instance.waitForEntryListenerQueue(LISTENER_TIMEOUT));
+  }
+
+  private static void runLoop(Limelight limelight) {
+    InputSnapshot.getInstance().update();
+    limelight.periodic();
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.vision;
+
+import static frc.robot.Constants.VisionConstants.CARGO_TRACK_TIMEOUT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Feeds {@link MultiTargetTracker} frames of detections at the camera's frame rate, and checks targets keep their IDs
+ * as they cross, and a target that stops being seen is dropped after
+ * {@link frc.robot.Constants.VisionConstants#CARGO_TRACK_TIMEOUT} without disturbing the others.
+ */
+public class MultiTargetTrackerTest {
+  /** Seconds between frames, 30 frames per second. */
+  private static final double FRAME_PERIOD = 1.0 / 30;
+
+  /** Meters each detection is off by, alternating sides every frame. */
+  private static final double NOISE = 0.03;
+
+  @Test
+  public void crossingTargetsKeepTheirIds() {
+    MultiTargetTracker tracker = new MultiTargetTracker(4, 4);
+    double[] detectionX = new double[2];
+    double[] detectionY = new double[2];
+
+    // Both roll at 2 m/s along the field, one from each side, and pass through the same point a second in
+    int leftId = 0;
+    int rightId = 0;
+    for (int frame = 0; frame * FRAME_PERIOD <= 2.0; frame++) {
+      double time = frame * FRAME_PERIOD;
+      double noise = (frame % 2 == 0) ? NOISE : -NOISE;
+
+      // Swap the order of the detections every frame, so the order doesn't give the IDs away
+      int left = frame % 2;
+      int right = 1 - left;
+      detectionX[left] = 2 * time + noise;
+      detectionY[left] = 1.5 - 1.5 * time - noise;
+      detectionX[right] = 2 * time - noise;
+      detectionY[right] = -1.5 + 1.5 * time + noise;
+      tracker.update(time, detectionX, detectionY, 2);
+
+      if (frame == 0) {
+        leftId = tracker.getId(nearest(tracker, detectionX[left], detectionY[left]));
+        rightId = tracker.getId(nearest(tracker, detectionX[right], detectionY[right]));
+        assertNotEquals(leftId, rightId);
+      }
+      assertEquals("Tracks at " + time + " s", 2, tracker.getTrackCount());
+    }
+
+    // Each has crossed to the other side of the field
+    int leftIndex = tracker.indexOf(leftId);
+    int rightIndex = tracker.indexOf(rightId);
+    assertTrue("Target from the left was lost", leftIndex >= 0);
+    assertTrue("Target from the right was lost", rightIndex >= 0);
+    assertEquals("Target from the left swapped IDs", -1.5, tracker.getY(leftIndex), 0.1);
+    assertEquals("Target from the right swapped IDs", 1.5, tracker.getY(rightIndex), 0.1);
+    assertEquals(-1.5, tracker.getVelocityY(leftIndex), 0.1);
+    assertEquals(1.5, tracker.getVelocityY(rightIndex), 0.1);
+  }
+
+  @Test
+  public void unseenTrackIsDroppedAfterTimeout() {
+    MultiTargetTracker tracker = new MultiTargetTracker(4, 4);
+    double[] detectionX = { 0, 3 };
+    double[] detectionY = { 0, 1 };
+
+    // Both are seen for half a second, then only the first
+    double lostTime = 0.5;
+    double time = 0;
+    for (; time < lostTime; time += FRAME_PERIOD) {
+      tracker.update(time, detectionX, detectionY, 2);
+    }
+    int keptId = tracker.getId(nearest(tracker, detectionX[0], detectionY[0]));
+    int lostId = tracker.getId(nearest(tracker, detectionX[1], detectionY[1]));
+    double lastSeen = tracker.getLastSeen(tracker.indexOf(lostId));
+
+    for (; time < lostTime + 2 * CARGO_TRACK_TIMEOUT; time += FRAME_PERIOD) {
+      tracker.update(time, detectionX, detectionY, 1);
+
+      boolean expired = time - lastSeen > CARGO_TRACK_TIMEOUT;
+      assertEquals("Unseen track kept at " + time + " s", expired, tracker.indexOf(lostId) < 0);
+      assertEquals(expired ? 1 : 2, tracker.getTrackCount());
+      assertTrue("Track still being seen was dropped at " + time + " s", tracker.indexOf(keptId) >= 0);
+    }
+
+    // The track left keeps its ID and position, whatever its index now
+    int keptIndex = tracker.indexOf(keptId);
+    assertEquals(detectionX[0], tracker.getX(keptIndex), 1e-6);
+    assertEquals(detectionY[0], tracker.getY(keptIndex), 1e-6);
+  }
+
+  /**
+   * @return index of the track closest to a point
+   */
+  private static int nearest(MultiTargetTracker tracker, double x, double y) {
+    int nearest = -1;
+    double nearestDistance = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < tracker.getTrackCount(); i++) {
+      double distance = Math.hypot(tracker.getX(i) - x, tracker.getY(i) - y);
+      if (distance < nearestDistance) {
+        nearest = i;
+        nearestDistance = distance;
+      }
+    }
+    return nearest;
+  }
+}